@@ -0,0 +1,44 @@
+package org.bluedb.api;
+
+import java.io.Serializable;
+
+/**
+ * Combines the values matching a query into a single result as they are read, so that they never have to all be in
+ * memory at once. Common aggregators can be created using {@link Aggregators}.<br><br>
+ *
+ * A query can be split up and aggregated in parts at the same time, each part with its own accumulator, and then the
+ * parts are combined in order. Each accumulator is only used by one thread at a time, but the aggregator itself can be
+ * used by more than one.
+ * @param <V> the class of objects stored in collection as values
+ * @param <A> the type of the accumulator, which is also the result of the aggregation
+ */
+public interface Aggregator<V extends Serializable, A> {
+	/**
+	 * @return a new accumulator that hasn't had any values added to it yet
+	 */
+	public A createAccumulator();
+
+	/**
+	 * Adds a value to an accumulator.
+	 * @param accumulator the accumulator to add the value to
+	 * @param value collection value matching the query, or null if {@link #needsValues()} is false
+	 * @return the accumulator with the value added. It can be the same object or a new one.
+	 */
+	public A accumulate(A accumulator, V value);
+
+	/**
+	 * Combines the accumulators of two parts of a query.
+	 * @param first the accumulator of the values that come first
+	 * @param second the accumulator of the values that come after them
+	 * @return an accumulator with the values of both. It can be one of them or a new one.
+	 */
+	public A combine(A first, A second);
+
+	/**
+	 * @return false if the aggregator only counts values, so that a query without conditions on the values can count
+	 * records without reading them
+	 */
+	public default boolean needsValues() {
+		return true;
+	}
+}
@@ -0,0 +1,170 @@
+package org.bluedb.api;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Creates common {@link Aggregator}s to pass to {@link ReadBlueQuery#aggregate(Aggregator)}
+ */
+public class Aggregators {
+
+	private Aggregators() {}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @return an aggregator that counts the values matching the query
+	 */
+	public static <V extends Serializable> Aggregator<V, Long> count() {
+		return new Aggregator<V, Long>() {
+			@Override
+			public Long createAccumulator() {
+				return 0L;
+			}
+
+			@Override
+			public Long accumulate(Long count, V value) {
+				return count + 1;
+			}
+
+			@Override
+			public Long combine(Long first, Long second) {
+				return first + second;
+			}
+
+			@Override
+			public boolean needsValues() {
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @param mapper gets the number to add up from each value
+	 * @return an aggregator that adds up a whole number from each value matching the query
+	 */
+	public static <V extends Serializable> Aggregator<V, Long> sum(ToLongFunction<V> mapper) {
+		return new Aggregator<V, Long>() {
+			@Override
+			public Long createAccumulator() {
+				return 0L;
+			}
+
+			@Override
+			public Long accumulate(Long sum, V value) {
+				return sum + mapper.applyAsLong(value);
+			}
+
+			@Override
+			public Long combine(Long first, Long second) {
+				return first + second;
+			}
+		};
+	}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @param mapper gets the number to add up from each value
+	 * @return an aggregator that adds up a decimal number from each value matching the query
+	 */
+	public static <V extends Serializable> Aggregator<V, Double> sumDouble(ToDoubleFunction<V> mapper) {
+		return new Aggregator<V, Double>() {
+			@Override
+			public Double createAccumulator() {
+				return 0.0;
+			}
+
+			@Override
+			public Double accumulate(Double sum, V value) {
+				return sum + mapper.applyAsDouble(value);
+			}
+
+			@Override
+			public Double combine(Double first, Double second) {
+				return first + second;
+			}
+		};
+	}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @param comparator orders the values
+	 * @return an aggregator that finds the smallest value matching the query, or Optional.empty if there are none. If
+	 * there is a tie the first one is kept.
+	 */
+	public static <V extends Serializable> Aggregator<V, Optional<V>> min(Comparator<? super V> comparator) {
+		return new Aggregator<V, Optional<V>>() {
+			@Override
+			public Optional<V> createAccumulator() {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<V> accumulate(Optional<V> min, V value) {
+				return combine(min, Optional.of(value));
+			}
+
+			@Override
+			public Optional<V> combine(Optional<V> first, Optional<V> second) {
+				if (!first.isPresent()) {
+					return second;
+				}
+				if (!second.isPresent()) {
+					return first;
+				}
+				return comparator.compare(second.get(), first.get()) < 0 ? second : first;
+			}
+		};
+	}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @param comparator orders the values
+	 * @return an aggregator that finds the largest value matching the query, or Optional.empty if there are none. If
+	 * there is a tie the first one is kept.
+	 */
+	public static <V extends Serializable> Aggregator<V, Optional<V>> max(Comparator<? super V> comparator) {
+		return min(comparator.reversed());
+	}
+
+	/**
+	 * @param <V> the class of objects stored in collection as values
+	 * @param <K> the type of the groups
+	 * @param <A> the result of each group
+	 * @param classifier gets the group that a value belongs in
+	 * @param downstream aggregates the values in each group
+	 * @return an aggregator that splits the values matching the query into groups and aggregates each group
+	 */
+	public static <V extends Serializable, K, A> Aggregator<V, Map<K, A>> groupBy(Function<? super V, ? extends K> classifier, Aggregator<V, A> downstream) {
+		return new Aggregator<V, Map<K, A>>() {
+			@Override
+			public Map<K, A> createAccumulator() {
+				return new HashMap<>();
+			}
+
+			@Override
+			public Map<K, A> accumulate(Map<K, A> groups, V value) {
+				K group = classifier.apply(value);
+				A groupAccumulator = groups.containsKey(group) ? groups.get(group) : downstream.createAccumulator();
+				groups.put(group, downstream.accumulate(groupAccumulator, value));
+				return groups;
+			}
+
+			@Override
+			public Map<K, A> combine(Map<K, A> first, Map<K, A> second) {
+				for (Entry<K, A> entry : second.entrySet()) {
+					K group = entry.getKey();
+					first.put(group, first.containsKey(group) ? downstream.combine(first.get(group), entry.getValue()) : entry.getValue());
+				}
+				return first;
+			}
+		};
+	}
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.bluedb.api.datastructures.BlueKeyValuePair;
 import org.bluedb.api.exceptions.BlueDbException;
@@ -109,6 +110,59 @@ public interface BlueCollection<V extends Serializable> extends ReadableBlueColl
 	 */
 	public void delete(BlueKey key) throws BlueDbException;
 
+	/**
+	 * Asynchronous version of {@link #insert(BlueKey, Serializable)}. If the database limits the number of asynchronous 
+	 * writes in flight then this blocks until there is room for this write.
+	 * @param key key where value should be saved (must match the keyType specified when the collection was created)
+	 * @param value value to be saved for the key
+	 * @return a future that completes once the value has been inserted, or completes exceptionally with a 
+	 * {@link BlueDbException} if the insert fails
+	 */
+	public CompletableFuture<Void> insertAsync(BlueKey key, V value);
+
+	/**
+	 * Asynchronous version of {@link #batchUpsert(Map)}. The map must not be modified until the future completes.
+	 * @param values the key value pairs to insert. Key types must match the keyType specified when the collection was created.
+	 * @return a future that completes once the values have been saved, or completes exceptionally with a 
+	 * {@link BlueDbException} if the batch fails
+	 */
+	public CompletableFuture<Void> batchUpsertAsync(Map<BlueKey, V> values);
+
+	/**
+	 * Asynchronous version of {@link #batchUpsert(Iterator)}. The iterator is consumed on another thread.
+	 * @param keyValuePairs the key value pairs to insert. Key types must match the keyType specified when the 
+	 * collection was created.
+	 * @return a future that completes once the values have been saved, or completes exceptionally with a 
+	 * {@link BlueDbException} if the batch fails
+	 */
+	public CompletableFuture<Void> batchUpsertAsync(Iterator<BlueKeyValuePair<V>> keyValuePairs);
+
+	/**
+	 * Asynchronous version of {@link #update(BlueKey, Updater)}. The updater is called on another thread.
+	 * @param key The key for the value which will be updated
+	 * @param updater a function that mutates the value to which the specified key is mapped
+	 * @return a future that completes once the value has been updated, or completes exceptionally with a 
+	 * {@link BlueDbException} if the update fails
+	 */
+	public CompletableFuture<Void> updateAsync(BlueKey key, Updater<V> updater);
+
+	/**
+	 * Asynchronous version of {@link #replace(BlueKey, Mapper)}. The updater is called on another thread.
+	 * @param key the key for the value which will be replaced
+	 * @param updater a function that returns the value that should replace the value to which the specified key is mapped
+	 * @return a future that completes once the value has been replaced, or completes exceptionally with a 
+	 * {@link BlueDbException} if the replace fails
+	 */
+	public CompletableFuture<Void> replaceAsync(BlueKey key, Mapper<V> updater);
+
+	/**
+	 * Asynchronous version of {@link #delete(BlueKey)}
+	 * @param key the key for the value which will be deleted
+	 * @return a future that completes once the value has been deleted, or completes exceptionally with a 
+	 * {@link BlueDbException} if the delete fails
+	 */
+	public CompletableFuture<Void> deleteAsync(BlueKey key);
+
 	/**
 	 * Creates a {@link BlueQuery} object which can be used to build and execute a query against this collection.
 	 * @return a {@link BlueQuery} object which can be used to build and execute a query against this collection.
@@ -43,6 +43,17 @@ public interface BlueCollectionBuilder<K extends BlueKey, V extends Serializable
 	 * @return itself, after version is set as the desired version.
 	 */
 	public BlueCollectionBuilder<K, V> withCollectionVersion(BlueCollectionVersion version);
+
+	/**
+	 * Keeps the most recently read values of the collection in memory so that repeated calls to
+	 * {@link BlueCollection#get(org.bluedb.api.keys.BlueKey)} and {@link BlueCollection#contains(org.bluedb.api.keys.BlueKey)}
+	 * don't have to go to disk. Values are cached as serialized bytes, so changing a value that was returned doesn't change
+	 * the cached copy. This also applies to the collection if it already exists.
+	 * @param maxBytes the most memory the cached values can take up, or 0 to turn the cache off
+	 * @return itself, after maxBytes is set as the cache size
+	 * @throws IllegalArgumentException if maxBytes is negative
+	 */
+	public BlueCollectionBuilder<K, V> withEntityCache(long maxBytes);
 	
 	/**
 	 * @return the existing {@link BlueCollection} or else builds a new one if none exists
@@ -1,6 +1,7 @@
 package org.bluedb.api;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.datastructures.BlueSimpleSet;
@@ -26,6 +27,21 @@ public interface BlueQuery<V extends Serializable> extends ReadBlueQuery<V> {
 	@Override
 	BlueQuery<V> whereKeyIsIn(BlueSimpleSet<BlueKey> keys);
 	
+	@Override
+	BlueQuery<V> limit(int maxResults);
+	
+	@Override
+	BlueQuery<V> offset(int resultsToSkip);
+	
+	@Override
+	BlueQuery<V> startAfter(String cursor);
+	
+	@Override
+	BlueQuery<V> descending();
+	
+	@Override
+	BlueQuery<V> orderBy(Comparator<V> comparator);
+	
 	/**
 	 * Executes the query and deletes any matching values
 	 * @throws BlueDbException if the query fails
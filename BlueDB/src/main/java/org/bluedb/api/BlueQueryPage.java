@@ -0,0 +1,43 @@
+package org.bluedb.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of query results returned by {@link ReadBlueQuery#getPage()}, along with a cursor that can be passed to
+ * {@link ReadBlueQuery#startAfter(String)} to get the next page.
+ * @param <V> The value type of the collection being queried
+ */
+public final class BlueQueryPage<V extends Serializable> {
+
+	private final List<V> values;
+	private final String nextPageCursor;
+
+	public BlueQueryPage(List<V> values, String nextPageCursor) {
+		this.values = Collections.unmodifiableList(values);
+		this.nextPageCursor = nextPageCursor;
+	}
+
+	/**
+	 * @return the values on this page, in the order the query returns them
+	 */
+	public List<V> getValues() {
+		return values;
+	}
+
+	/**
+	 * @return an opaque cursor that resumes the query after the last value on this page, or null if there are no more
+	 * results. It can be saved and used with a new query on the same collection later, such as in another request.
+	 */
+	public String getNextPageCursor() {
+		return nextPageCursor;
+	}
+
+	/**
+	 * @return true if the query has more results after this page
+	 */
+	public boolean hasNextPage() {
+		return nextPageCursor != null;
+	}
+}
@@ -1,6 +1,7 @@
 package org.bluedb.api;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.datastructures.BlueSimpleSet;
@@ -26,6 +27,21 @@ public interface BlueTimeQuery<V extends Serializable> extends BlueQuery<V>, Rea
 	@Override
 	BlueTimeQuery<V> whereKeyIsIn(BlueSimpleSet<BlueKey> keys);
 	
+	@Override
+	BlueTimeQuery<V> limit(int maxResults);
+	
+	@Override
+	BlueTimeQuery<V> offset(int resultsToSkip);
+	
+	@Override
+	BlueTimeQuery<V> startAfter(String cursor);
+	
+	@Override
+	BlueTimeQuery<V> descending();
+	
+	@Override
+	BlueTimeQuery<V> orderBy(Comparator<V> comparator);
+	
 	@Override
 	BlueTimeQuery<V>  whereKeyIsActive();
 	
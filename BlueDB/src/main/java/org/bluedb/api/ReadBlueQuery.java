@@ -1,10 +1,12 @@
 package org.bluedb.api;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.bluedb.api.datastructures.BlueSimpleInMemorySet;
 import org.bluedb.api.datastructures.BlueSimpleSet;
@@ -57,6 +59,51 @@ public interface ReadBlueQuery<V extends Serializable> {
 	 */
 	ReadBlueQuery<V> whereKeyIsIn(BlueSimpleSet<BlueKey> keys);
 
+	/**
+	 * Limits the number of results the query returns. BlueDB stops reading the collection once it has found that many.
+	 * @param maxResults the most results to return
+	 * @return itself, with the limit added to the query
+	 */
+	ReadBlueQuery<V> limit(int maxResults);
+
+	/**
+	 * Skips the first results of the query. When possible the skipped records are counted by their keys rather than
+	 * being deserialized, but they still have to be found, so {@link #startAfter(String)} is much faster for getting
+	 * later pages of a large query.
+	 * @param resultsToSkip the number of results to skip
+	 * @return itself, with the offset added to the query
+	 */
+	ReadBlueQuery<V> offset(int resultsToSkip);
+
+	/**
+	 * Resumes a query after the last result of a previous page. The query skips straight to where that result was saved
+	 * rather than reading everything before it. The query should have the same conditions as the one that returned the
+	 * cursor. Any {@link #offset(int)} is applied after the cursor.
+	 * @param cursor a cursor from {@link BlueQueryPage#getNextPageCursor()}, or null to start at the beginning
+	 * @return itself, starting after the cursor
+	 * @throws IllegalArgumentException if the cursor wasn't returned by a query on this collection
+	 */
+	ReadBlueQuery<V> startAfter(String cursor);
+
+	/**
+	 * Returns the results in reverse key order, so for a time collection the latest values come first. The collection is
+	 * read backwards from the end of the query range, so {@link #getFirst()} and {@link #limit(int)} only read the last
+	 * records in the range. {@link #offset(int)} and {@link #startAfter(String)} follow the reversed order.
+	 * @return itself, returning the results in reverse order
+	 */
+	ReadBlueQuery<V> descending();
+
+	/**
+	 * Returns the results sorted by the comparator instead of by key, with ties in key order. With {@link #descending()}
+	 * the whole order is reversed. {@link #offset(int)} and {@link #limit(int)} are applied to the sorted results, and if
+	 * they only need a few results then only that many are kept while the collection is read. Otherwise the results are
+	 * sorted on disk once there are too many to hold in memory. Sorted queries can't be paged with
+	 * {@link #startAfter(String)} or {@link #getPage()}.
+	 * @param comparator the order to return the values in
+	 * @return itself, returning the results in the comparator's order
+	 */
+	ReadBlueQuery<V> orderBy(Comparator<V> comparator);
+
 	/**
 	 * Executes the query and returns the results as a list. Use getIterator if you don't want to load all matching 
 	 * values into memory at once.
@@ -72,6 +119,14 @@ public interface ReadBlueQuery<V extends Serializable> {
 	 */
 	Optional<V> getFirst() throws BlueDbException;
 
+	/**
+	 * Executes the query and returns a page of results, which is at most {@link #limit(int)} values. The page has a
+	 * cursor that can be passed to {@link #startAfter(String)} on a new query to get the next page.
+	 * @return a page of the query results
+	 * @throws BlueDbException if the query fails
+	 */
+	BlueQueryPage<V> getPage() throws BlueDbException;
+
 	/**
 	 * Begins executing the query and returns an iterator for processing the results. BlueDB will iterate over
 	 * the collection on disk as you iterate over it in memory. This makes the iterator an extremely memory efficient
@@ -106,6 +161,63 @@ public interface ReadBlueQuery<V extends Serializable> {
 	 */
 	CloseableIterator<V> getIterator(long timeout, TimeUnit timeUnit) throws BlueDbException;
 
+	/**
+	 * Begins executing the query and returns an iterator over the keys of the results, in the same order as
+	 * {@link #getIterator()}. Keys are checked before values are read, so if the query only has conditions on keys, such
+	 * as {@link #whereKeyIsIn(Set)} or a time range, the values are never deserialized.
+	 * 
+	 * <br><br>
+	 * 
+	 * <b>Important: </b>Use within a try-with-resources statement and iterate through as quickly as possible
+	 * in order to ensure that you don't block other BlueDB tasks. If you fail to call next for 15 seconds then
+	 * the iterator will timeout and release resources.
+	 * 
+	 * @return an iterator for the keys of the query results
+	 * @throws BlueDbException if the query fails
+	 */
+	CloseableIterator<BlueKey> getKeys() throws BlueDbException;
+
+	/**
+	 * Begins executing the query and returns a stream of the results, in the same order as {@link #getIterator()}.
+	 * Like the iterator, BlueDB reads the collection on disk as the stream is consumed.
+	 * 
+	 * <br><br>
+	 * 
+	 * <b>Important: </b>Use within a try-with-resources statement. A stream that isn't read to the end, such as one
+	 * ended by findFirst or limit, holds onto resources and can block other BlueDB tasks until it is closed.
+	 * 
+	 * @return a sequential stream of the query results
+	 * @throws BlueDbException if the query fails
+	 */
+	Stream<V> stream() throws BlueDbException;
+
+	/**
+	 * Begins executing the query and returns a parallel stream of the results. The collection is split up by segment so
+	 * that different threads read different parts of it at the same time. Conditions on the query are called from those
+	 * threads, so they must be safe to call from more than one thread at a time.
+	 * 
+	 * <br><br>
+	 * 
+	 * <b>Important: </b>Use within a try-with-resources statement. A stream that isn't read to the end, such as one
+	 * ended by findAny or anyMatch, holds onto resources and can block other BlueDB tasks until it is closed.
+	 * 
+	 * @return a parallel stream of the query results
+	 * @throws BlueDbException if the query fails
+	 */
+	Stream<V> parallelStream() throws BlueDbException;
+
+	/**
+	 * Executes the query and combines the matching values into a single result as they are read, without loading them
+	 * all into memory. See {@link Aggregators} for common aggregations such as sums and group-bys. The collection can be
+	 * aggregated a segment at a time in parallel, so the aggregator's functions must be safe to call from more than one
+	 * thread at a time.
+	 * @param <A> the type of the result
+	 * @param aggregator combines the values
+	 * @return the result of the aggregation
+	 * @throws BlueDbException if the query fails
+	 */
+	public <A> A aggregate(Aggregator<V, A> aggregator) throws BlueDbException;
+
 	/**
 	 * Executes the query and returns the number of values matching the query
 	 * @return the number of values matching the query
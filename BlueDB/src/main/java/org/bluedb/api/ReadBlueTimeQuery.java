@@ -1,6 +1,7 @@
 package org.bluedb.api;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.datastructures.BlueSimpleSet;
@@ -28,6 +29,21 @@ public interface ReadBlueTimeQuery<V extends Serializable> extends ReadBlueQuery
 	@Override
 	ReadBlueTimeQuery<V> whereKeyIsIn(BlueSimpleSet<BlueKey> keys);
 	
+	@Override
+	ReadBlueTimeQuery<V> limit(int maxResults);
+	
+	@Override
+	ReadBlueTimeQuery<V> offset(int resultsToSkip);
+	
+	@Override
+	ReadBlueTimeQuery<V> startAfter(String cursor);
+	
+	@Override
+	ReadBlueTimeQuery<V> descending();
+	
+	@Override
+	ReadBlueTimeQuery<V> orderBy(Comparator<V> comparator);
+	
 	/**
 	 * In collections (version 2+) this will add a condition that the key must be of type {@link ActiveTimeKey},
 	 * meaning that it represents a value that is considered active.
@@ -1,6 +1,8 @@
 package org.bluedb.api;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.index.BlueIndex;
@@ -50,6 +52,16 @@ public interface ReadableBlueCollection<V extends Serializable> {
 	 */
 	public V get(BlueKey key) throws BlueDbException;
 
+	/**
+	 * Returns the values to which the specified keys are mapped. The keys are looked up in the order they are stored in, so
+	 * each chunk of the collection is read at most once no matter how many of the keys fall in it. This is much faster
+	 * than calling {@link #get(BlueKey)} for each key when there are a lot of them.
+	 * @param keys the keys for the desired values
+	 * @return a map of each key that is in the collection to its value. Keys that aren't in the collection are left out.
+	 * @throws BlueDbException if any of the keys are not the same type specified when the collection was created
+	 */
+	public Map<BlueKey, V> getAll(Collection<? extends BlueKey> keys) throws BlueDbException;
+
 	/**
 	 * Returns the key with the highest grouping number that exists in this collection
 	 * @return the key with the highest grouping number that exists in this collection
@@ -9,6 +9,12 @@ import org.bluedb.disk.config.ConfigurationService;
 import org.bluedb.disk.config.DefaultConfigurationService;
 import org.bluedb.disk.encryption.EncryptionService;
 import org.bluedb.disk.encryption.EncryptionUtils;
+import org.bluedb.disk.file.ChunkCache;
+import org.bluedb.disk.file.ChunkCacheEvictionPolicy;
+import org.bluedb.disk.file.DurabilityLevel;
+import org.bluedb.disk.file.FileSyncer;
+import org.bluedb.disk.file.IntegrityPolicy;
+import org.bluedb.disk.segment.ChunkDeltaPolicy;
 
 /**
  * A builder for the {@link ReadableDbOnDisk} and {@link ReadWriteDbOnDisk} classes
@@ -17,6 +23,15 @@ public class BlueDbOnDiskBuilder {
 	private Path path = Paths.get(".", "bluedb");
 	private ConfigurationService configurationService = new DefaultConfigurationService();
 	private EncryptionService encryptionService = null;
+	private ChunkDeltaPolicy chunkDeltaPolicy = ChunkDeltaPolicy.DISABLED;
+	private boolean writeAheadLogEnabled = false;
+	private DurabilityLevel durabilityLevel = DurabilityLevel.NONE;
+	private long groupFsyncWindowMillis = FileSyncer.DEFAULT_GROUP_FSYNC_WINDOW_MILLIS;
+	private int writeStripeCount = 1;
+	private int maxAsyncWritesInFlight = 0;
+	private IntegrityPolicy integrityPolicy = IntegrityPolicy.ROUND_TRIP;
+	private ChunkCache chunkCache = null;
+	private int scanParallelism = 1;
 
 	/**
 	 * Sets the path you wish to use for the BlueDB data
@@ -57,12 +72,178 @@ public class BlueDbOnDiskBuilder {
 		return this;
 	}
 	
+	/**
+	 * Turns on append-only chunk deltas. Small changes to large chunk files are appended to a delta file next to the
+	 * chunk rather than rewriting the whole chunk. Reads merge the deltas in and rollups fold them back into the chunk.
+	 * @param enabled true if small changes to large chunks should be appended as deltas
+	 * @return itself with chunk deltas enabled or disabled
+	 */
+	public BlueDbOnDiskBuilder withChunkDeltaWrites(boolean enabled) {
+		this.chunkDeltaPolicy = enabled ? ChunkDeltaPolicy.DEFAULT : ChunkDeltaPolicy.DISABLED;
+		return this;
+	}
+
+	/**
+	 * Sets exactly when changes are appended to chunks as deltas instead of rewriting the chunks
+	 * @param chunkDeltaPolicy the policy to use
+	 * @return itself with the chunk delta policy set
+	 */
+	public BlueDbOnDiskBuilder withChunkDeltaPolicy(ChunkDeltaPolicy chunkDeltaPolicy) {
+		if (chunkDeltaPolicy == null) {
+			throw new IllegalArgumentException("chunkDeltaPolicy cannot be null");
+		}
+		this.chunkDeltaPolicy = chunkDeltaPolicy;
+		return this;
+	}
+	
+	/**
+	 * Turns on the write ahead log. Changes are appended to a few recycled log segments in each collection's recovery folder
+	 * rather than each being saved to its own change file. Large mass changes are still saved to their own files.
+	 * @param enabled true if changes should be saved to the write ahead log
+	 * @return itself with the write ahead log enabled or disabled
+	 */
+	public BlueDbOnDiskBuilder withWriteAheadLog(boolean enabled) {
+		this.writeAheadLogEnabled = enabled;
+		return this;
+	}
+	
+	/**
+	 * Sets how hard BlueDB works to make sure that a change is on disk before the write that made it returns. Anything
+	 * other than {@link DurabilityLevel#NONE} syncs the write ahead log, chunk files and change files as they are written.
+	 * @param durabilityLevel the durability level to use
+	 * @return itself with the durability level set
+	 */
+	public BlueDbOnDiskBuilder withDurability(DurabilityLevel durabilityLevel) {
+		if (durabilityLevel == null) {
+			throw new IllegalArgumentException("durabilityLevel cannot be null");
+		}
+		this.durabilityLevel = durabilityLevel;
+		return this;
+	}
+
+	/**
+	 * Sets how long a {@link DurabilityLevel#GROUP_FSYNC} sync waits for other writes to join it before syncing
+	 * @param groupFsyncWindowMillis the number of milliseconds to wait
+	 * @return itself with the group fsync window set
+	 */
+	public BlueDbOnDiskBuilder withGroupFsyncWindow(long groupFsyncWindowMillis) {
+		if (groupFsyncWindowMillis < 0) {
+			throw new IllegalArgumentException("groupFsyncWindowMillis cannot be negative");
+		}
+		this.groupFsyncWindowMillis = groupFsyncWindowMillis;
+		return this;
+	}
+
+	/**
+	 * Splits each collection's single record changes into stripes by the segment that they change. Changes in different
+	 * stripes are committed at the same time, while changes in the same stripe and every other kind of write are still
+	 * run one at a time. The default of 1 runs all of a collection's writes one at a time.
+	 * @param writeStripeCount the number of stripes to split each collection's single record changes into
+	 * @return itself with the write stripe count set
+	 */
+	public BlueDbOnDiskBuilder withWriteStripes(int writeStripeCount) {
+		if (writeStripeCount < 1) {
+			throw new IllegalArgumentException("writeStripeCount must be at least 1");
+		}
+		this.writeStripeCount = writeStripeCount;
+		return this;
+	}
+
+	/**
+	 * Limits how many asynchronous writes, such as {@link org.bluedb.api.BlueCollection#insertAsync}, each collection will accept 
+	 * before they have finished. Once the limit is reached the next asynchronous write blocks until one of them finishes.
+	 * @param maxAsyncWritesInFlight the maximum number of unfinished asynchronous writes per collection, or 0 for no limit
+	 * @return itself with the limit set
+	 */
+	public BlueDbOnDiskBuilder withMaxAsyncWritesInFlight(int maxAsyncWritesInFlight) {
+		if (maxAsyncWritesInFlight < 0) {
+			throw new IllegalArgumentException("maxAsyncWritesInFlight cannot be negative");
+		}
+		this.maxAsyncWritesInFlight = maxAsyncWritesInFlight;
+		return this;
+	}
+
+	/**
+	 * Turns on record checksums. Files written from now on save a checksum with each record that is verified whenever the
+	 * record is read, so only a sample of the records need to be deserialized again to prove they were saved correctly.
+	 * @param enabled true if records should be saved with checksums
+	 * @return itself with record checksums enabled or disabled
+	 */
+	public BlueDbOnDiskBuilder withRecordChecksums(boolean enabled) {
+		this.integrityPolicy = enabled ? IntegrityPolicy.CHECKSUMS : IntegrityPolicy.ROUND_TRIP;
+		return this;
+	}
+
+	/**
+	 * Sets exactly how records are protected from corruption as they are written and read
+	 * @param integrityPolicy the policy to use
+	 * @return itself with the integrity policy set
+	 */
+	public BlueDbOnDiskBuilder withIntegrityPolicy(IntegrityPolicy integrityPolicy) {
+		if (integrityPolicy == null) {
+			throw new IllegalArgumentException("integrityPolicy cannot be null");
+		}
+		this.integrityPolicy = integrityPolicy;
+		return this;
+	}
+	
+	/**
+	 * Keeps the decrypted records of recently read chunk files in memory, shared by every collection in the database, so
+	 * that queries that keep reading the same chunks don't have to read them from disk again. Chunks are evicted least
+	 * recently used first.
+	 * @param maxBytes the most memory the cached chunks can take up
+	 * @return itself with the chunk cache set
+	 */
+	public BlueDbOnDiskBuilder withChunkCache(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		this.chunkCache = new ChunkCache(maxBytes);
+		return this;
+	}
+
+	/**
+	 * Keeps the decrypted records of recently read chunk files in memory, shared by every collection in the database, so
+	 * that queries that keep reading the same chunks don't have to read them from disk again.
+	 * @param maxBytes the most memory the cached chunks can take up
+	 * @param evictionPolicy decides which chunks are evicted to make room, such as a
+	 * {@link org.bluedb.disk.file.SegmentedLruChunkCacheEvictionPolicy} to keep large queries from pushing out chunks that
+	 * are read over and over. It can only be used by one database.
+	 * @return itself with the chunk cache set
+	 */
+	public BlueDbOnDiskBuilder withChunkCache(long maxBytes, ChunkCacheEvictionPolicy evictionPolicy) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		if (evictionPolicy == null) {
+			throw new IllegalArgumentException("evictionPolicy cannot be null");
+		}
+		this.chunkCache = new ChunkCache(maxBytes, evictionPolicy);
+		return this;
+	}
+
+	/**
+	 * Lets queries that cover more than one segment read upcoming segments on background threads while the results of
+	 * earlier segments are being consumed. Results still come back in the same order. Query conditions are called from
+	 * those threads, so they must be safe to call from more than one thread at a time.
+	 * @param scanParallelism the most segments a single query reads at once, or 1 to read them one at a time
+	 * @return itself with the scan parallelism set
+	 */
+	public BlueDbOnDiskBuilder withScanParallelism(int scanParallelism) {
+		if (scanParallelism < 1) {
+			throw new IllegalArgumentException("scanParallelism must be at least 1");
+		}
+		this.scanParallelism = scanParallelism;
+		return this;
+	}
+	
 	/**
 	 * Builds the {@link BlueDb} object
 	 * @return the {@link BlueDb} built
 	 */
 	public BlueDb build() {
-		return new ReadWriteDbOnDisk(path, configurationService, encryptionService);
+		FileSyncer fileSyncer = new FileSyncer(durabilityLevel, groupFsyncWindowMillis);
+		return new ReadWriteDbOnDisk(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, writeStripeCount, maxAsyncWritesInFlight, integrityPolicy, chunkCache, scanParallelism);
 	}
 
 	/**
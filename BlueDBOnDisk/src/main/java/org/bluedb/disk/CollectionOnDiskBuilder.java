@@ -10,6 +10,7 @@ import org.bluedb.api.BlueCollectionVersion;
 import org.bluedb.api.SegmentSize;
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.collection.ReadWriteCollectionOnDisk;
 import org.bluedb.disk.segment.SegmentSizeSetting;
 
 public class CollectionOnDiskBuilder<K extends BlueKey, T extends Serializable> implements BlueCollectionBuilder<K, T>{
@@ -20,6 +21,7 @@ public class CollectionOnDiskBuilder<K extends BlueKey, T extends Serializable>
 	protected final String name;
 	protected BlueCollectionVersion requestedVersion;
 	protected SegmentSizeSetting segmentSize;
+	protected Long entityCacheMaxBytes;
 	ArrayList<Class<? extends Serializable>> registeredClasses = new ArrayList<>();
 
 	protected CollectionOnDiskBuilder(ReadWriteDbOnDisk db, String name, Class<K> keyType, Class<T> valueType) {
@@ -47,8 +49,25 @@ public class CollectionOnDiskBuilder<K extends BlueKey, T extends Serializable>
 		return this;
 	}
 
+	@Override
+	public BlueCollectionBuilder<K, T> withEntityCache(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		this.entityCacheMaxBytes = maxBytes;
+		return this;
+	}
+
 	@Override
 	public BlueCollection<T> build() throws BlueDbException {
-		return db.initializeCollection(name, requestedVersion, requestedKeyType, valueType, registeredClasses, segmentSize);
+		BlueCollection<T> collection = db.initializeCollection(name, requestedVersion, requestedKeyType, valueType, registeredClasses, segmentSize);
+		applyEntityCacheSize(collection);
+		return collection;
+	}
+
+	protected void applyEntityCacheSize(BlueCollection<T> collection) {
+		if (entityCacheMaxBytes != null) {
+			((ReadWriteCollectionOnDisk<T>) collection).getEntityCache().setMaxBytes(entityCacheMaxBytes);
+		}
 	}
 }
@@ -25,7 +25,11 @@ import org.bluedb.disk.collection.ReadableCollectionOnDisk;
 import org.bluedb.disk.config.ConfigurationService;
 import org.bluedb.disk.encryption.EncryptionService;
 import org.bluedb.disk.executors.BlueExecutor;
+import org.bluedb.disk.file.FileSyncer;
 import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.file.ChunkCache;
+import org.bluedb.disk.file.IntegrityPolicy;
+import org.bluedb.disk.segment.ChunkDeltaPolicy;
 import org.bluedb.disk.segment.Range;
 import org.bluedb.disk.segment.SegmentSizeSetting;
 
@@ -33,13 +37,61 @@ public class ReadWriteDbOnDisk extends ReadableDbOnDisk implements BlueDb {
 
 	protected final BackupManager backupManager;
 	protected final BlueExecutor sharedExecutor;
+	protected final ChunkDeltaPolicy chunkDeltaPolicy;
+	protected final boolean writeAheadLogEnabled;
+	protected final FileSyncer fileSyncer;
+	protected final int writeStripeCount;
+	protected final int maxAsyncWritesInFlight;
+	protected final IntegrityPolicy integrityPolicy;
+	protected final ChunkCache chunkCache;
+	protected final int scanParallelism;
 	private final Map<String, ReadWriteCollectionOnDisk<? extends Serializable>> collections = new HashMap<>();
 
 
 	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService) {
+		this(path, configurationService, encryptionService, ChunkDeltaPolicy.DISABLED);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, false);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, FileSyncer.NONE);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, 1);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer, int writeStripeCount) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, writeStripeCount, 0);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer, int writeStripeCount, int maxAsyncWritesInFlight) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, writeStripeCount, maxAsyncWritesInFlight, IntegrityPolicy.ROUND_TRIP);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer, int writeStripeCount, int maxAsyncWritesInFlight, IntegrityPolicy integrityPolicy) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, writeStripeCount, maxAsyncWritesInFlight, integrityPolicy, null);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer, int writeStripeCount, int maxAsyncWritesInFlight, IntegrityPolicy integrityPolicy, ChunkCache chunkCache) {
+		this(path, configurationService, encryptionService, chunkDeltaPolicy, writeAheadLogEnabled, fileSyncer, writeStripeCount, maxAsyncWritesInFlight, integrityPolicy, chunkCache, 1);
+	}
+
+	public ReadWriteDbOnDisk(Path path, ConfigurationService configurationService, EncryptionService encryptionService, ChunkDeltaPolicy chunkDeltaPolicy, boolean writeAheadLogEnabled, FileSyncer fileSyncer, int writeStripeCount, int maxAsyncWritesInFlight, IntegrityPolicy integrityPolicy, ChunkCache chunkCache, int scanParallelism) {
 		super(path, configurationService, encryptionService);
 		this.backupManager = new BackupManager(this, this.encryptionService);
 		this.sharedExecutor = new BlueExecutor(path.getFileName().toString());
+		this.chunkDeltaPolicy = chunkDeltaPolicy;
+		this.writeAheadLogEnabled = writeAheadLogEnabled;
+		this.fileSyncer = fileSyncer;
+		this.writeStripeCount = writeStripeCount;
+		this.maxAsyncWritesInFlight = maxAsyncWritesInFlight;
+		this.integrityPolicy = integrityPolicy;
+		this.chunkCache = chunkCache;
+		this.scanParallelism = scanParallelism;
 	}
 
 	@Override
@@ -187,6 +239,44 @@ public class ReadWriteDbOnDisk extends ReadableDbOnDisk implements BlueDb {
 		return sharedExecutor;
 	}
 
+	public ChunkDeltaPolicy getChunkDeltaPolicy() {
+		return chunkDeltaPolicy;
+	}
+
+	public boolean isWriteAheadLogEnabled() {
+		return writeAheadLogEnabled;
+	}
+
+	public FileSyncer getFileSyncer() {
+		return fileSyncer;
+	}
+
+	public int getWriteStripeCount() {
+		return writeStripeCount;
+	}
+
+	public int getMaxAsyncWritesInFlight() {
+		return maxAsyncWritesInFlight;
+	}
+
+	public IntegrityPolicy getIntegrityPolicy() {
+		return integrityPolicy;
+	}
+
+	/**
+	 * @return the cache shared by every collection in the database, or null if chunks are always read from disk
+	 */
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	/**
+	 * @return the most segments a single query reads at once
+	 */
+	public int getScanParallelism() {
+		return scanParallelism;
+	}
+
 
 	@Override
 	public void shutdown() {
@@ -31,8 +31,15 @@ public class TimeCollectionOnDiskBuilder<K extends BlueKey, T extends Serializab
 		return (BlueTimeCollectionBuilder<K,T>) super.withCollectionVersion(version);
 	}
 
+	@Override
+	public BlueTimeCollectionBuilder<K, T> withEntityCache(long maxBytes) {
+		return (BlueTimeCollectionBuilder<K,T>) super.withEntityCache(maxBytes);
+	}
+
 	@Override
 	public BlueTimeCollection<T> build() throws BlueDbException {
-		return db.initializeTimeCollection(name, requestedVersion, requestedKeyType, valueType, registeredClasses, segmentSize);
+		BlueTimeCollection<T> collection = db.initializeTimeCollection(name, requestedVersion, requestedKeyType, valueType, registeredClasses, segmentSize);
+		applyEntityCacheSize(collection);
+		return collection;
 	}
 }
@@ -215,18 +215,26 @@ public class BackupManager {
 		destinationFolderPath.toFile().mkdirs();
 		for (File file : changesToCopy) {
 			Path destinationPath = Paths.get(destinationFolderPath.toString(), file.getName());
-			if (shouldFilterDataBasedOnTime(collection.isTimeBased(), includedTimeRange)) {
-				copyChangeAfterFilteringBasedOnTime(collection, includedTimeRange, recoveryManager, file, destinationPath);
-			} else {
-				copyChangeStraightOver(collection, recoveryManager, file, destinationPath);
-			}
+			Recoverable<?> change = recoveryManager.loadPendingChange(file);
+			copyChange(collection, includedTimeRange, recoveryManager, change, destinationPath);
+		}
+		for (Recoverable<?> change : recoveryManager.getLoggedChangeHistory(includedChangeTimes.getStart(), includedChangeTimes.getEnd())) {
+			Path destinationPath = Paths.get(destinationFolderPath.toString(), RecoveryManager.getCompletedFileName(change));
+			copyChange(collection, includedTimeRange, recoveryManager, change, destinationPath);
+		}
+	}
+
+	private void copyChange(ReadWriteCollectionOnDisk<?> collection, Range includedTimeRange, RecoveryManager<?> recoveryManager, Recoverable<?> change, Path destinationPath) throws BlueDbException {
+		if (shouldFilterDataBasedOnTime(collection.isTimeBased(), includedTimeRange)) {
+			copyChangeAfterFilteringBasedOnTime(includedTimeRange, recoveryManager, change, destinationPath);
+		} else {
+			copyChangeStraightOver(recoveryManager, change, destinationPath);
 		}
 	}
 
-	private void copyChangeAfterFilteringBasedOnTime(ReadWriteCollectionOnDisk<?> collection, Range includedTimeRange, RecoveryManager<?> recoveryManager, File file, Path destinationPath) throws BlueDbException {
-		Recoverable<?> change = collection.getRecoveryManager().loadPendingChange(file);
+	private void copyChangeAfterFilteringBasedOnTime(Range includedTimeRange, RecoveryManager<?> recoveryManager, Recoverable<?> change, Path destinationPath) throws BlueDbException {
 		if (change != null && shouldCopyChange(includedTimeRange, change)) {
-			collection.getRecoveryManager().copyChange(change, destinationPath, includedTimeRange);
+			recoveryManager.copyChange(change, destinationPath, includedTimeRange);
 			if(FileUtils.exists(destinationPath)) {
 				recoveryManager.markChangePending(destinationPath);
 			}
@@ -241,10 +249,9 @@ public class BackupManager {
 		return true; //We don't need to check rollups. Batch/Mass changes should filter themselves during the copy phase.
 	}
 
-	private void copyChangeStraightOver(ReadWriteCollectionOnDisk<?> collection, RecoveryManager<?> recoveryManager, File file, Path destinationPath) throws BlueDbException {
-		Recoverable<?> change = collection.getRecoveryManager().loadPendingChange(file);
+	private void copyChangeStraightOver(RecoveryManager<?> recoveryManager, Recoverable<?> change, Path destinationPath) throws BlueDbException {
 		if(change != null) {
-			collection.getRecoveryManager().copyChange(change, destinationPath, Range.createMaxRange());
+			recoveryManager.copyChange(change, destinationPath, Range.createMaxRange());
 			if(FileUtils.exists(destinationPath)) {
 				recoveryManager.markChangePending(destinationPath);
 			}
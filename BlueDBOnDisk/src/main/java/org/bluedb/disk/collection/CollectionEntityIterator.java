@@ -1,18 +1,30 @@
 package org.bluedb.disk.collection;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import org.bluedb.api.Aggregator;
 import org.bluedb.api.CloseableIterator;
 import org.bluedb.api.Condition;
+import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.Blutils;
 import org.bluedb.disk.StreamUtils;
 import org.bluedb.disk.collection.index.conditions.IncludedSegmentRangeInfo;
 import org.bluedb.disk.collection.index.conditions.OnDiskIndexCondition;
+import org.bluedb.disk.executors.BlueExecutor;
 import org.bluedb.disk.query.QueryIndexConditionGroup;
 import org.bluedb.disk.segment.Range;
 import org.bluedb.disk.segment.ReadableSegment;
@@ -26,11 +38,21 @@ public class CollectionEntityIterator<T extends Serializable> implements Closeab
 	final private Range range;
 	private long endGroupingValueOfCompletedSegments;
 	private SegmentEntityIterator<T> segmentIterator;
+	private final BlueExecutor scanTaskExecutor;
+	private final int scanParallelism;
+	private ParallelSegmentScanner<T> parallelScanner; //null when reading one segment at a time
 	private BlueEntity<T> next;
 	private final List<QueryIndexConditionGroup<T>> indexConditionGroups;
 	private final List<Condition<T>> conditions;
 	private final List<Condition<BlueKey>> keyConditions;
+	private final List<QueryIndexConditionGroup<T>> keyIndexConditionGroups;
+	private final List<QueryIndexConditionGroup<T>> valueIndexConditionGroups;
 	private final Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfoAfterApplyingIndexConditions;
+	private boolean keysOnly = false;
+	private BlueKey startAfterKey = null;
+	private boolean descending = false;
+	private long remainingOffset = 0;
+	private long remainingLimit = Long.MAX_VALUE;
 	
 	private AtomicBoolean hasClosed = new AtomicBoolean(false);
 
@@ -43,6 +65,244 @@ public class CollectionEntityIterator<T extends Serializable> implements Closeab
 		Collections.sort(segments);
 		this.conditions = objectConditions;
 		this.keyConditions = keyConditions;
+		this.keyIndexConditionGroups = StreamUtils.stream(indexConditionGroups).filter(QueryIndexConditionGroup::testsKeyOnly).collect(Collectors.toList());
+		this.valueIndexConditionGroups = StreamUtils.stream(indexConditionGroups).filter(group -> !group.testsKeyOnly()).collect(Collectors.toList());
+		this.scanTaskExecutor = segmentManager.getScanTaskExecutor();
+		this.scanParallelism = segmentManager.getScanParallelism();
+	}
+
+	/**
+	 * Lets the entities be returned without their values. If the query only has conditions on keys then the values are
+	 * never deserialized. Otherwise they still have to be deserialized to test the conditions, but only for records whose
+	 * keys pass the key conditions. This has to be set before anything is read.
+	 * @param keysOnly true if only the keys of the entities are going to be used
+	 */
+	public synchronized void setKeysOnly(boolean keysOnly) {
+		this.keysOnly = keysOnly;
+	}
+
+	/**
+	 * Starts after a key instead of at the start of the range. Records are read in key order, so the segments before the
+	 * key's grouping number are never opened. When reading in descending order the segments after it aren't opened
+	 * instead. This has to be set before anything is read.
+	 * @param startAfterKey the key of the last record that was already returned, or null to start at the beginning
+	 */
+	public synchronized void setStartAfterKey(BlueKey startAfterKey) {
+		this.startAfterKey = startAfterKey;
+		if (startAfterKey != null && descending) {
+			ReadableSegment<T> firstSegment = segments.isEmpty() ? null : segments.get(0); // its pre-segment chunk can have records from before the range
+			segments.removeIf(segment -> segment != firstSegment && segment.getRange().getStart() > startAfterKey.getGroupingNumber());
+		} else if (startAfterKey != null) {
+			segments.removeIf(segment -> segment.getRange().getEnd() < startAfterKey.getGroupingNumber());
+		}
+	}
+
+	/**
+	 * Returns the records in reverse key order. The segments are read from last to first and each one is read backwards
+	 * a block of records at a time. This has to be set before anything is read and before
+	 * {@link #setStartAfterKey(BlueKey)}.
+	 * @param descending true to return the records in reverse key order
+	 * @throws IllegalStateException if the key to start after has already been set
+	 */
+	public synchronized void setDescending(boolean descending) {
+		if (startAfterKey != null) {
+			throw new IllegalStateException("The direction has to be set before the key to start after");
+		}
+		this.descending = descending;
+	}
+
+	/**
+	 * Skips the first matching records. Records that only have to pass key conditions are skipped without their values
+	 * being deserialized. This has to be set before anything is read.
+	 * @param offset the number of matching records to skip
+	 */
+	public synchronized void setOffset(long offset) {
+		this.remainingOffset = offset;
+	}
+
+	/**
+	 * Stops returning records after the limit. The segment being read is closed as soon as the last one is returned, and
+	 * later segments are never opened. This has to be set before anything is read.
+	 * @param limit the most records to return
+	 */
+	public synchronized void setLimit(long limit) {
+		this.remainingLimit = limit;
+	}
+
+	/**
+	 * Hands the segments over to a spliterator that can split them up between threads. After this the iterator has
+	 * nothing left to return.
+	 * @return a spliterator over the same records
+	 * @throws IllegalStateException if the iterator has already started reading
+	 */
+	public synchronized CollectionEntitySpliterator<T> toSpliterator() {
+		if (segmentIterator != null || parallelScanner != null) {
+			throw new IllegalStateException("CollectionEntityIterator has already started reading");
+		}
+		if (isPaged()) {
+			throw new IllegalStateException("CollectionEntityIterator can't be split up once it has an offset or limit");
+		}
+		return new CollectionEntitySpliterator<>(removeRemainingSegmentIterators(), this::meetsValueConditions);
+	}
+
+	/**
+	 * Aggregates the records a segment at a time instead of returning them. Each segment gets its own accumulator, and
+	 * if parallel scans are turned on the segments are aggregated on the scan task threads. The accumulators are then
+	 * combined in segment order. If there is an offset or limit then the records are aggregated in order on this thread
+	 * instead. After this the iterator has nothing left to return.
+	 * @param <A> the type of the result
+	 * @param aggregator combines the values
+	 * @return the result of the aggregation
+	 * @throws BlueDbException if a segment couldn't be aggregated
+	 * @throws IllegalStateException if the iterator has already started reading
+	 */
+	public <A> A aggregate(Aggregator<T, A> aggregator) throws BlueDbException {
+		List<Supplier<SegmentEntityIterator<T>>> segmentIterators;
+		synchronized (this) {
+			if (segmentIterator != null || parallelScanner != null) {
+				throw new IllegalStateException("CollectionEntityIterator has already started reading");
+			}
+			if (isPaged()) {
+				return aggregatePage(aggregator);
+			}
+			segmentIterators = removeRemainingSegmentIterators();
+		}
+		if (scanTaskExecutor != null && scanParallelism > 1 && segmentIterators.size() > 1) {
+			return aggregateInParallel(segmentIterators, aggregator);
+		}
+		A accumulator = aggregator.createAccumulator();
+		for (Supplier<SegmentEntityIterator<T>> segmentIterator : segmentIterators) {
+			accumulator = aggregator.combine(accumulator, aggregateSegment(segmentIterator, aggregator));
+		}
+		return accumulator;
+	}
+
+	/*
+	 * Only scanParallelism segments are in flight at once. Anything still running when this returns could still be
+	 * holding a read lock, so a failure waits for the rest to stop before it is thrown.
+	 */
+	private <A> A aggregateInParallel(List<Supplier<SegmentEntityIterator<T>>> segmentIterators, Aggregator<T, A> aggregator) throws BlueDbException {
+		LinkedList<Supplier<SegmentEntityIterator<T>>> segmentsToAggregate = new LinkedList<>(segmentIterators);
+		LinkedList<Future<A>> segmentsInFlight = new LinkedList<>();
+		A accumulator = aggregator.createAccumulator();
+		try {
+			while (!segmentsToAggregate.isEmpty() || !segmentsInFlight.isEmpty()) {
+				while (segmentsInFlight.size() < scanParallelism && !segmentsToAggregate.isEmpty()) {
+					Supplier<SegmentEntityIterator<T>> segmentIterator = segmentsToAggregate.removeFirst();
+					try {
+						segmentsInFlight.add(scanTaskExecutor.submitScanTask(() -> aggregateSegment(segmentIterator, aggregator)));
+					} catch (RejectedExecutionException e) {
+						segmentsToAggregate.addFirst(segmentIterator); //The executor is shutting down so finish on this thread
+						break;
+					}
+				}
+				if (segmentsInFlight.isEmpty()) {
+					accumulator = aggregator.combine(accumulator, aggregateSegment(segmentsToAggregate.removeFirst(), aggregator));
+				} else {
+					accumulator = aggregator.combine(accumulator, segmentsInFlight.removeFirst().get());
+				}
+			}
+			return accumulator;
+		} catch (ExecutionException e) {
+			stopSegmentsInFlight(segmentsInFlight);
+			throw new BlueDbException("Failed to aggregate segment", e.getCause());
+		} catch (InterruptedException e) {
+			stopSegmentsInFlight(segmentsInFlight);
+			Thread.currentThread().interrupt();
+			throw new BlueDbException("Interrupted while aggregating segments", e);
+		} catch (RuntimeException | Error e) {
+			stopSegmentsInFlight(segmentsInFlight);
+			throw e;
+		}
+	}
+
+	private static void stopSegmentsInFlight(List<? extends Future<?>> segmentsInFlight) {
+		boolean wasInterrupted = false;
+		for (Future<?> future : segmentsInFlight) {
+			future.cancel(false);
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (ExecutionException | CancellationException e) {
+					break;
+				} catch (InterruptedException e) {
+					wasInterrupted = true;
+				}
+			}
+		}
+		if (wasInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <A> A aggregatePage(Aggregator<T, A> aggregator) {
+		keysOnly = keysOnly || !aggregator.needsValues();
+		A accumulator = aggregator.createAccumulator();
+		while (hasNext()) {
+			accumulator = aggregator.accumulate(accumulator, next().getValue());
+		}
+		return accumulator;
+	}
+
+	private <A> A aggregateSegment(Supplier<SegmentEntityIterator<T>> segmentIteratorSupplier, Aggregator<T, A> aggregator) {
+		A accumulator = aggregator.createAccumulator();
+		try (SegmentEntityIterator<T> segmentIterator = segmentIteratorSupplier.get()) {
+			if (canCountWithoutDeserializing(aggregator)) {
+				for (long remaining = segmentIterator.countRemaining(); remaining > 0; remaining--) {
+					accumulator = aggregator.accumulate(accumulator, null);
+				}
+				return accumulator;
+			}
+			while (segmentIterator.hasNext()) {
+				BlueEntity<T> result = segmentIterator.next();
+				if (meetsValueConditions(result)) {
+					accumulator = aggregator.accumulate(accumulator, result.getValue());
+				}
+			}
+		}
+		return accumulator;
+	}
+
+	/*
+	 * The segment iterators test the key conditions themselves, so the records can be counted by their keys
+	 */
+	private boolean canCountWithoutDeserializing(Aggregator<T, ?> aggregator) {
+		return !aggregator.needsValues() && !hasValueConditions();
+	}
+
+	private boolean hasValueConditions() {
+		return !conditions.isEmpty() || !valueIndexConditionGroups.isEmpty();
+	}
+
+	/*
+	 * A page is read one segment at a time so that nothing past the end of it is read ahead
+	 */
+	private boolean shouldStartParallelScan() {
+		return scanTaskExecutor != null && scanParallelism > 1 && segments.size() > 1 && segmentIterator == null && parallelScanner == null && !isPaged();
+	}
+
+	private boolean isPaged() {
+		return remainingOffset > 0 || remainingLimit < Long.MAX_VALUE;
+	}
+
+	/*
+	 * The completed grouping number handed to each segment only depends on the segment before it, so it can be worked out
+	 * up front and the segments read in any order without changing which records are returned.
+	 */
+	private List<Supplier<SegmentEntityIterator<T>>> removeRemainingSegmentIterators() {
+		List<Supplier<SegmentEntityIterator<T>>> segmentIterators = new ArrayList<>();
+		long highestGroupingNumberCompleted = endGroupingValueOfCompletedSegments;
+		for (ReadableSegment<T> segment : segments) {
+			long highestGroupingNumberCompletedBeforeSegment = highestGroupingNumberCompleted;
+			segmentIterators.add(() -> createSegmentIterator(segment, highestGroupingNumberCompletedBeforeSegment));
+			highestGroupingNumberCompleted = segment.getRange().getEnd();
+		}
+		segments.clear();
+		if (descending) {
+			Collections.reverse(segmentIterators);
+		}
+		return segmentIterators;
 	}
 
 	private long calculateEndGroupingValueOfCompletedSegments(Range range, boolean byStartTime) {
@@ -93,8 +353,13 @@ public class CollectionEntityIterator<T extends Serializable> implements Closeab
 
 	@Override
 	public synchronized void close() {
-		if(!hasClosed.getAndSet(true) && segmentIterator != null) {
-			segmentIterator.close();
+		if(!hasClosed.getAndSet(true)) {
+			if (segmentIterator != null) {
+				segmentIterator.close();
+			}
+			if (parallelScanner != null) {
+				parallelScanner.close();
+			}
 		}
 	}
 
@@ -137,13 +402,64 @@ public class CollectionEntityIterator<T extends Serializable> implements Closeab
 	}
 
 	private BlueEntity<T> nextFromSegment() {
+		if (remainingLimit <= 0) {
+			return null;
+		}
+		skipOffset();
+		BlueEntity<T> result = nextMatchFromSegments();
+		if (result != null && remainingLimit < Long.MAX_VALUE && --remainingLimit == 0) {
+			stopReading();
+		}
+		return result;
+	}
+
+	/*
+	 * Records that only have to pass key conditions are skipped by the segment iterators without being deserialized
+	 */
+	private void skipOffset() {
+		while (remainingOffset > 0) {
+			if (segmentIterator != null) {
+				if (hasValueConditions()) {
+					while (remainingOffset > 0 && segmentIterator.hasNext()) {
+						if (meetsValueConditions(segmentIterator.next())) {
+							remainingOffset--;
+						}
+					}
+				} else {
+					remainingOffset -= segmentIterator.skip(remainingOffset);
+				}
+				if (remainingOffset == 0) {
+					return;
+				}
+				segmentIterator.close();
+			}
+			segmentIterator = getNextSegmentIterator();
+			if (segmentIterator == null) {
+				return;
+			}
+		}
+	}
+
+	private void stopReading() {
+		if (segmentIterator != null) {
+			segmentIterator.close();
+			segmentIterator = null;
+		}
+		segments.clear();
+	}
+
+	private BlueEntity<T> nextMatchFromSegments() {
+		if (shouldStartParallelScan()) {
+			parallelScanner = new ParallelSegmentScanner<>(scanTaskExecutor, scanParallelism, removeRemainingSegmentIterators(), this::meetsValueConditions);
+		}
+		if (parallelScanner != null) {
+			return parallelScanner.next();
+		}
 		while (!segments.isEmpty() || segmentIterator != null) {
 			if (segmentIterator != null) {
 				while(segmentIterator.hasNext()) {
 					BlueEntity<T> result = segmentIterator.next();
-					if (Blutils.meetsConditions(conditions, result.getValue()) &&
-							Blutils.meetsConditions(keyConditions, result.getKey()) &&
-							Blutils.meetsIndexConditions(indexConditionGroups, result)) {
+					if (meetsValueConditions(result)) {
 						return result;
 					}
 				}
@@ -160,14 +476,44 @@ public class CollectionEntityIterator<T extends Serializable> implements Closeab
 		if (segments.isEmpty()) {
 			return null;
 		}
+		if (descending) {
+			ReadableSegment<T> segment = segments.remove(segments.size() - 1);
+			long endOfSegmentBefore = segments.isEmpty() ? endGroupingValueOfCompletedSegments : segments.get(segments.size() - 1).getRange().getEnd();
+			return createSegmentIterator(segment, endOfSegmentBefore);
+		}
 		if (segmentIterator != null) {
 			long endOfLastSegment =  segmentIterator.getSegment().getRange().getEnd();
 			endGroupingValueOfCompletedSegments = endOfLastSegment;
 		}
 		ReadableSegment<T> segment = segments.remove(0);
+		return createSegmentIterator(segment, endGroupingValueOfCompletedSegments);
+	}
+
+	private SegmentEntityIterator<T> createSegmentIterator(ReadableSegment<T> segment, long highestGroupingNumberCompleted) {
 		Optional<Range> segmentRangeToSearchAccordingToIncludedSegmentInfo = includedSegmentRangeInfoAfterApplyingIndexConditions.map(includedSegmentRangeInfo -> includedSegmentRangeInfo.getRangeForSegment(segment.getRange()));
 		Range segmentRangeToSearch = segmentRangeToSearchAccordingToIncludedSegmentInfo.orElse(range);
-		return segment.getIterator(endGroupingValueOfCompletedSegments, segmentRangeToSearch, segmentRangeToSearchAccordingToIncludedSegmentInfo.isPresent());
+		SegmentEntityIterator<T> segmentIterator = segment.getIterator(highestGroupingNumberCompleted, segmentRangeToSearch, segmentRangeToSearchAccordingToIncludedSegmentInfo.isPresent());
+		segmentIterator.setKeyFilter(createKeyFilter());
+		segmentIterator.setKeysOnly(keysOnly && !hasValueConditions());
+		segmentIterator.setDescending(descending);
+		segmentIterator.setStartAfterKey(startAfterKey);
+		return segmentIterator;
+	}
+
+	/*
+	 * The key conditions are tested by the segment iterators before the values are deserialized, which leaves the rest
+	 * of the conditions to be tested on the entities they return.
+	 */
+	private Predicate<BlueKey> createKeyFilter() {
+		if (keyConditions.isEmpty() && keyIndexConditionGroups.isEmpty()) {
+			return null;
+		}
+		return key -> Blutils.meetsConditions(keyConditions, key) && Blutils.meetsIndexConditions(keyIndexConditionGroups, new BlueEntity<>(key, null));
+	}
+
+	private boolean meetsValueConditions(BlueEntity<T> result) {
+		return Blutils.meetsConditions(conditions, result.getValue()) &&
+				Blutils.meetsIndexConditions(valueIndexConditionGroups, result);
 	}
 
 	@Override
@@ -0,0 +1,118 @@
+package org.bluedb.disk.collection;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.bluedb.disk.segment.SegmentEntityIterator;
+import org.bluedb.disk.serialization.BlueEntity;
+
+/**
+ * A spliterator over the records of a query that splits along segment boundaries, so that a parallel stream reads
+ * different segments on different threads. Each segment is read by only one of the spliterators.<br><br>
+ *
+ * A spliterator that stops part way through a segment, such as for a short-circuiting stream operation, keeps the
+ * read lock on the chunk it was reading until it is closed. Closing any of the spliterators split from the same query
+ * closes all of them, which is what the stream's close does.
+ */
+public class CollectionEntitySpliterator<T extends Serializable> implements Spliterator<BlueEntity<T>>, Closeable {
+
+	private final LinkedList<Supplier<SegmentEntityIterator<T>>> segmentsToRead;
+	private final Predicate<BlueEntity<T>> filter;
+	private final List<CollectionEntitySpliterator<T>> allSplits;
+	private SegmentEntityIterator<T> segmentIterator;
+	private boolean isClosed = false;
+
+	/**
+	 * @param segmentIterators opens the iterator for each segment, in the order the records should come back in
+	 * @param filter decides which records are returned
+	 */
+	public CollectionEntitySpliterator(List<Supplier<SegmentEntityIterator<T>>> segmentIterators, Predicate<BlueEntity<T>> filter) {
+		this(segmentIterators, filter, new ArrayList<>());
+	}
+
+	private CollectionEntitySpliterator(List<Supplier<SegmentEntityIterator<T>>> segmentIterators, Predicate<BlueEntity<T>> filter, List<CollectionEntitySpliterator<T>> allSplits) {
+		this.segmentsToRead = new LinkedList<>(segmentIterators);
+		this.filter = filter;
+		this.allSplits = allSplits;
+		synchronized (allSplits) {
+			allSplits.add(this);
+		}
+	}
+
+	@Override
+	public synchronized boolean tryAdvance(Consumer<? super BlueEntity<T>> action) {
+		while (!isClosed && (segmentIterator != null || !segmentsToRead.isEmpty())) {
+			if (segmentIterator == null) {
+				segmentIterator = segmentsToRead.removeFirst().get();
+			}
+			while (segmentIterator.hasNext()) {
+				BlueEntity<T> entity = segmentIterator.next();
+				if (filter.test(entity)) {
+					action.accept(entity);
+					return true;
+				}
+			}
+			segmentIterator.close();
+			segmentIterator = null;
+		}
+		return false;
+	}
+
+	/*
+	 * Only segments that haven't been started can be split off, and the split has to be the ones that come first. So
+	 * once a segment has been started nothing more can be split off.
+	 */
+	@Override
+	public synchronized Spliterator<BlueEntity<T>> trySplit() {
+		if (isClosed || segmentIterator != null || segmentsToRead.size() < 2) {
+			return null;
+		}
+		List<Supplier<SegmentEntityIterator<T>>> firstHalf = new ArrayList<>();
+		int splitSize = segmentsToRead.size() / 2;
+		for (int i = 0; i < splitSize; i++) {
+			firstHalf.add(segmentsToRead.removeFirst());
+		}
+		return new CollectionEntitySpliterator<>(firstHalf, filter, allSplits);
+	}
+
+	@Override
+	public synchronized long estimateSize() {
+		return segmentsToRead.isEmpty() && segmentIterator == null ? 0 : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Closes this spliterator and every one split from the same query, releasing the locks on any chunks they were part
+	 * way through reading
+	 */
+	@Override
+	public void close() {
+		List<CollectionEntitySpliterator<T>> splitsToClose;
+		synchronized (allSplits) {
+			splitsToClose = new ArrayList<>(allSplits);
+		}
+		for (CollectionEntitySpliterator<T> split : splitsToClose) {
+			split.closeThisSplit();
+		}
+	}
+
+	private synchronized void closeThisSplit() {
+		isClosed = true;
+		segmentsToRead.clear();
+		if (segmentIterator != null) {
+			segmentIterator.close();
+			segmentIterator = null;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.bluedb.disk.collection;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bluedb.api.CloseableIterator;
+import org.bluedb.api.Condition;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.collection.index.conditions.IncludedSegmentRangeInfo;
+import org.bluedb.disk.lock.AutoCloseCountdown;
+import org.bluedb.disk.query.QueryIndexConditionGroup;
+import org.bluedb.disk.segment.Range;
+import org.bluedb.disk.segment.ReadableSegmentManager;
+import org.bluedb.disk.serialization.BlueEntity;
+
+/**
+ * Iterates over the keys of the records that match a query. Values are only deserialized if the query has conditions
+ * that need them.
+ */
+public class CollectionKeyIterator<T extends Serializable> implements CloseableIterator<BlueKey> {
+
+	private final static long TIMEOUT_DEFAULT_MILLIS = 15_000;
+	private final CollectionEntityIterator<T> entityIterator;
+	private final AutoCloseCountdown timeoutCloser;
+
+	private AtomicBoolean hasClosed = new AtomicBoolean(false);
+
+	public CollectionKeyIterator(ReadableSegmentManager<T> segmentManager, Range range, boolean byStartTime, List<QueryIndexConditionGroup<T>> indexConditionGroups, List<Condition<T>> objectConditions, List<Condition<BlueKey>> keyConditions, Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfo) {
+		this(new CollectionEntityIterator<T>(segmentManager, range, byStartTime, indexConditionGroups, objectConditions, keyConditions, includedSegmentRangeInfo));
+	}
+
+	public CollectionKeyIterator(CollectionEntityIterator<T> entityIterator) {
+		this.entityIterator = entityIterator;
+		entityIterator.setKeysOnly(true);
+		timeoutCloser = new AutoCloseCountdown(this, TIMEOUT_DEFAULT_MILLIS);
+	}
+
+	@Override
+	public void close() {
+		if(!hasClosed.getAndSet(true)) {
+			entityIterator.close();
+			timeoutCloser.cancel();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (hasClosed.get()) {
+			throw new RuntimeException("CollectionKeyIterator has already been closed");
+		}
+
+		try {
+			timeoutCloser.setToWaitingOnBlueDb();
+			return entityIterator.hasNext();
+		} finally {
+			timeoutCloser.setToWaitingOnClient();
+		}
+	}
+
+	@Override
+	public BlueKey peek() {
+		if (hasClosed.get()) {
+			throw new RuntimeException("CollectionKeyIterator has already been closed");
+		}
+
+		try {
+			timeoutCloser.setToWaitingOnBlueDb();
+			BlueEntity<T> peekedEntity = entityIterator.peek();
+			if (peekedEntity == null) {
+				return null;
+			} else {
+				return peekedEntity.getKey();
+			}
+		} finally {
+			timeoutCloser.setToWaitingOnClient();
+		}
+	}
+
+	@Override
+	public BlueKey next() {
+		if (hasClosed.get()) {
+			throw new RuntimeException("CollectionKeyIterator has already been closed");
+		}
+
+		try {
+			timeoutCloser.setToWaitingOnBlueDb();
+			return entityIterator.next().getKey();
+		} finally {
+			timeoutCloser.setToWaitingOnClient();
+		}
+	}
+
+	@Override
+	public void keepAlive() {
+		timeoutCloser.snooze();
+	}
+}
@@ -24,12 +24,19 @@ public class CollectionValueIterator<T extends Serializable> implements Closeabl
 	private AtomicBoolean hasClosed = new AtomicBoolean(false);
 	
 	public CollectionValueIterator(ReadableSegmentManager<T> segmentManager, Range range, boolean byStartTime, List<QueryIndexConditionGroup<T>> indexConditionGroups, List<Condition<T>> objectConditions, List<Condition<BlueKey>> keyConditions, Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfo) {
-		entityIterator = new CollectionEntityIterator<T>(segmentManager, range, byStartTime, indexConditionGroups, objectConditions, keyConditions, includedSegmentRangeInfo);
-		timeoutCloser = new AutoCloseCountdown(this, TIMEOUT_DEFAULT_MILLIS);
+		this(segmentManager, range, TIMEOUT_DEFAULT_MILLIS, byStartTime, indexConditionGroups, objectConditions, keyConditions, includedSegmentRangeInfo);
 	}
 
 	public CollectionValueIterator(ReadableSegmentManager<T> segmentManager, Range range, long timeout, boolean byStartTime, List<QueryIndexConditionGroup<T>> indexConditionGroups, List<Condition<T>> objectConditions, List<Condition<BlueKey>> keyConditions, Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfo) {
-		entityIterator = new CollectionEntityIterator<T>(segmentManager, range, byStartTime, indexConditionGroups, objectConditions, keyConditions, includedSegmentRangeInfo);
+		this(new CollectionEntityIterator<T>(segmentManager, range, byStartTime, indexConditionGroups, objectConditions, keyConditions, includedSegmentRangeInfo), timeout);
+	}
+
+	public CollectionValueIterator(CollectionEntityIterator<T> entityIterator) {
+		this(entityIterator, TIMEOUT_DEFAULT_MILLIS);
+	}
+
+	public CollectionValueIterator(CollectionEntityIterator<T> entityIterator, long timeout) {
+		this.entityIterator = entityIterator;
 		timeoutCloser = new AutoCloseCountdown(this, timeout);
 	}
 
@@ -1,6 +1,9 @@
 package org.bluedb.disk.collection;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.bluedb.api.ReadBlueTimeQuery;
 import org.bluedb.api.ReadableBlueTimeCollection;
@@ -34,6 +37,11 @@ public class DummyReadOnlyCollectionOnDisk<T extends Serializable> implements Re
 		return null;
 	}
 
+	@Override
+	public Map<BlueKey, T> getAll(Collection<? extends BlueKey> keys) throws BlueDbException {
+		return new HashMap<>();
+	}
+
 	@Override
 	public BlueKey getLastKey() {
 		return null;
@@ -0,0 +1,223 @@
+package org.bluedb.disk.collection;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.bluedb.disk.recovery.SortedChangeIterator;
+import org.bluedb.disk.recovery.SortedChangeSupplier;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.BlueSerializer;
+
+/**
+ * A size bounded, least recently used cache of the entities that point reads have found in a collection. Entities are
+ * saved as serialized bytes so that a caller can't change a cached value by changing the value it was given, and keys
+ * that aren't in the collection are remembered too so that repeated contains checks don't go to disk.<br><br>
+ *
+ * Every change to the collection must invalidate the keys it touched after it is written. Each invalidation moves the
+ * cache to a new generation, and a value that was read from disk is only saved if no invalidation happened while it was
+ * being read, so a read that raced with a write can't leave the old value in the cache. Rollups and chunk compaction
+ * move records around without changing them, so they don't need to invalidate anything.
+ */
+public class EntityCache<T extends Serializable> {
+
+	public static final long ENTRY_OVERHEAD_BYTES = 64;
+
+	private static final byte[] ABSENT = new byte[0];
+
+	private final BlueSerializer serializer;
+	private final LinkedHashMap<BlueKey, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private volatile long maxBytes;
+	private long currentBytes = 0;
+	private long generation = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	public EntityCache(BlueSerializer serializer) {
+		this(serializer, 0);
+	}
+
+	/**
+	 * @param serializer the collection's serializer
+	 * @param maxBytes the most bytes the cached entities can take up, or 0 to disable the cache
+	 */
+	public EntityCache(BlueSerializer serializer, long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		this.serializer = serializer;
+		this.maxBytes = maxBytes;
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Changes the budget of the cache, dropping the least recently used entities that no longer fit.
+	 * @param maxBytes the most bytes the cached entities can take up, or 0 to disable the cache
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		this.maxBytes = maxBytes;
+		evictToFit();
+	}
+
+	/**
+	 * @param key the key being looked up
+	 * @param loader reads the entity from disk if it isn't cached
+	 * @return the entity for the key, or null if there isn't one
+	 * @throws BlueDbException if the loader fails
+	 */
+	public BlueEntity<T> get(BlueKey key, EntityLoader<T> loader) throws BlueDbException {
+		if (!isEnabled()) {
+			return loader.load(key);
+		}
+
+		byte[] cachedBytes;
+		long loadGeneration;
+		synchronized (this) {
+			cachedBytes = entries.get(key);
+			loadGeneration = generation;
+			if (cachedBytes != null) {
+				hitCount++;
+			} else {
+				missCount++;
+			}
+		}
+
+		if (cachedBytes == ABSENT) {
+			return null;
+		} else if (cachedBytes != null) {
+			BlueEntity<T> cachedEntity = toEntity(cachedBytes);
+			if (cachedEntity != null) {
+				return cachedEntity;
+			}
+			invalidate(key);
+			return loader.load(key);
+		}
+
+		BlueEntity<T> entity = loader.load(key);
+		put(key, entity, loadGeneration);
+		return entity;
+	}
+
+	/**
+	 * Drops the key from the cache. This must be called after a change to the key has been written.
+	 * @param key the key that was changed
+	 */
+	public synchronized void invalidate(BlueKey key) {
+		generation++;
+		remove(key);
+	}
+
+	/**
+	 * Drops every key that the changes touched. This must be called after the changes have been written.
+	 * @param sortedChangeSupplier the changes that were written
+	 * @throws BlueDbException if the changes can't be read
+	 */
+	public void invalidate(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+		synchronized (this) {
+			generation++;
+			if (entries.isEmpty()) {
+				return;
+			}
+		}
+		SortedChangeIterator<T> iterator = new SortedChangeIterator<>(sortedChangeSupplier);
+		while (iterator.hasNext()) {
+			IndividualChange<T> change = iterator.next();
+			if (change != null) {
+				invalidate(change.getKey());
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+		currentBytes = 0;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	private void put(BlueKey key, BlueEntity<T> entity, long loadGeneration) {
+		byte[] bytes;
+		try {
+			bytes = entity != null ? serializer.serializeObjectToByteArrayWithoutRoundTrip(entity) : ABSENT;
+		} catch (BlueDbException e) {
+			return; // The value still gets returned, it just isn't cached
+		}
+
+		synchronized (this) {
+			if (loadGeneration != generation || sizeOf(bytes) > maxBytes) {
+				return;
+			}
+			remove(key);
+			entries.put(key, bytes);
+			currentBytes += sizeOf(bytes);
+			evictToFit();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private BlueEntity<T> toEntity(byte[] bytes) {
+		try {
+			return (BlueEntity<T>) serializer.deserializeObjectFromByteArrayWithoutValidation(bytes);
+		} catch (Throwable t) {
+			t.printStackTrace();
+			return null;
+		}
+	}
+
+	private void remove(BlueKey key) {
+		byte[] removedBytes = entries.remove(key);
+		if (removedBytes != null) {
+			currentBytes -= sizeOf(removedBytes);
+		}
+	}
+
+	private void evictToFit() {
+		Iterator<byte[]> iterator = entries.values().iterator();
+		while (currentBytes > maxBytes && iterator.hasNext()) {
+			currentBytes -= sizeOf(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	private static long sizeOf(byte[] bytes) {
+		return bytes.length + ENTRY_OVERHEAD_BYTES;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "EntityCache [maxBytes=" + maxBytes + ", currentBytes=" + currentBytes + ", size=" + entries.size() + ", hitCount=" + hitCount + ", missCount=" + missCount + "]";
+	}
+
+	@FunctionalInterface
+	public static interface EntityLoader<T extends Serializable> {
+		public BlueEntity<T> load(BlueKey key) throws BlueDbException;
+	}
+}
@@ -1,6 +1,8 @@
 package org.bluedb.disk.collection;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 
 import org.bluedb.api.ReadBlueQuery;
 import org.bluedb.api.ReadableBlueCollection;
@@ -60,6 +62,11 @@ public class FacadeCollection<T extends Serializable> implements ReadableBlueCol
 		return getCollection().get(key);
 	}
 
+	@Override
+	public Map<BlueKey, T> getAll(Collection<? extends BlueKey> keys) throws BlueDbException {
+		return getCollection().getAll(keys);
+	}
+
 	@Override
 	public BlueKey getLastKey() {
 		return getCollection().getLastKey();
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
+import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.collection.index.ReadableIndexOnDisk;
 import org.bluedb.disk.segment.ReadableSegment;
 import org.bluedb.disk.segment.ReadableSegmentManager;
@@ -22,19 +23,30 @@ public class LastEntityFinder {
 		segmentManager = collection.getSegmentManager();
 	}
 
-	public BlueEntity<?> getLastEntity() {
+	/**
+	 * @return the key of the last entity, which is found in the statistics of the last chunk when they have it rather
+	 * than by reading the last segment backwards
+	 */
+	public BlueKey getLastKey() {
 		List<ReadableSegment<Serializable>> segments = getSegmentsInReverseOrder();
 		while (!segments.isEmpty()) {
-			BlueEntity<?> last = null;
 			ReadableSegment<?> segment = segments.remove(0);
-			try (SegmentEntityIterator<?> segmentIterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE)) {
-				while(segmentIterator.hasNext()) {
-					BlueEntity<?> blueEntity = segmentIterator.next();
-					if (blueEntity.getKey() != null && blueEntity.getValue() != null) {
-						last = blueEntity;
-					}
-				}
+			BlueKey lastKey = segment.getLastKeyFromStatistics();
+			if (lastKey == null) {
+				BlueEntity<?> last = getLastEntity(segment, true);
+				lastKey = last != null ? last.getKey() : null;
 			}
+			if (lastKey != null) {
+				return lastKey;
+			}
+		}
+		return null;
+	}
+
+	public BlueEntity<?> getLastEntity() {
+		List<ReadableSegment<Serializable>> segments = getSegmentsInReverseOrder();
+		while (!segments.isEmpty()) {
+			BlueEntity<?> last = getLastEntity(segments.remove(0), false);
 			if (last != null) {
 				return last;
 			}
@@ -42,6 +54,23 @@ public class LastEntityFinder {
 		return null;
 	}
 
+	/*
+	 * The segment is read backwards so only the block of records at the end of its last chunk has to be read
+	 */
+	private static BlueEntity<?> getLastEntity(ReadableSegment<?> segment, boolean keysOnly) {
+		try (SegmentEntityIterator<?> segmentIterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE)) {
+			segmentIterator.setDescending(true);
+			segmentIterator.setKeysOnly(keysOnly);
+			while(segmentIterator.hasNext()) {
+				BlueEntity<?> blueEntity = segmentIterator.next();
+				if (blueEntity.getKey() != null && (keysOnly || blueEntity.getValue() != null)) {
+					return blueEntity;
+				}
+			}
+		}
+		return null;
+	}
+
 	public List<ReadableSegment<Serializable>> getSegmentsInReverseOrder() {
 		List<?> existingSegmentsUntyped = segmentManager.getAllExistingSegments();
 		@SuppressWarnings("unchecked")
@@ -0,0 +1,247 @@
+package org.bluedb.disk.collection;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.bluedb.disk.executors.BlueExecutor;
+import org.bluedb.disk.segment.SegmentEntityIterator;
+import org.bluedb.disk.serialization.BlueEntity;
+
+/**
+ * Reads the segments of a query ahead of the thread consuming the results. Up to parallelism segments are read at once on
+ * the executor's scan task threads, and each one decodes and filters its records into its own bounded buffer. The
+ * buffers are handed out in segment order, so results come back in exactly the same order as reading one segment at a
+ * time.<br><br>
+ *
+ * A segment that is waiting on a full buffer keeps the read lock on the chunk it is reading until the consumer catches
+ * up or the scanner is closed, the same as a consumer that stops part way through a chunk.
+ */
+public class ParallelSegmentScanner<T extends Serializable> implements Closeable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+	private static final long WAIT_MILLIS = 100;
+	private static final Object END_OF_SEGMENT = new Object();
+
+	private final BlueExecutor executor;
+	private final int parallelism;
+	private final int bufferSize;
+	private final Predicate<BlueEntity<T>> filter;
+	private final LinkedList<Supplier<SegmentEntityIterator<T>>> segmentsToScan;
+	private final LinkedList<SegmentScan> scansInFlight = new LinkedList<>();
+	private volatile boolean isClosed = false;
+
+	/**
+	 * @param executor the executor whose scan task threads read the segments
+	 * @param parallelism the most segments to read at once
+	 * @param segmentIterators opens the iterator for each segment, in the order the results should come back in
+	 * @param filter decides which records are returned. It is called on the scan task threads.
+	 */
+	public ParallelSegmentScanner(BlueExecutor executor, int parallelism, List<Supplier<SegmentEntityIterator<T>>> segmentIterators, Predicate<BlueEntity<T>> filter) {
+		this(executor, parallelism, DEFAULT_BUFFER_SIZE, segmentIterators, filter);
+	}
+
+	public ParallelSegmentScanner(BlueExecutor executor, int parallelism, int bufferSize, List<Supplier<SegmentEntityIterator<T>>> segmentIterators, Predicate<BlueEntity<T>> filter) {
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.bufferSize = bufferSize;
+		this.filter = filter;
+		this.segmentsToScan = new LinkedList<>(segmentIterators);
+	}
+
+	/**
+	 * @return the next record that passed the filter, or null once every segment has been read
+	 */
+	public BlueEntity<T> next() {
+		startScans();
+		while (!scansInFlight.isEmpty()) {
+			BlueEntity<T> next = scansInFlight.getFirst().next();
+			if (next != null) {
+				return next;
+			}
+			scansInFlight.removeFirst();
+			startScans();
+		}
+		return null;
+	}
+
+	private void startScans() {
+		while (scansInFlight.size() < parallelism && !segmentsToScan.isEmpty()) {
+			SegmentScan scan = new SegmentScan(segmentsToScan.removeFirst());
+			scan.start();
+			scansInFlight.add(scan);
+		}
+	}
+
+	/*
+	 * Nothing may still be reading once this returns so that the read locks on the chunks have been released.
+	 */
+	@Override
+	public void close() {
+		isClosed = true;
+		segmentsToScan.clear();
+		boolean wasInterrupted = false;
+		for (SegmentScan scan : scansInFlight) {
+			wasInterrupted |= scan.waitUntilFinished();
+		}
+		scansInFlight.clear();
+		if (wasInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private class SegmentScan {
+		private final Supplier<SegmentEntityIterator<T>> segmentIteratorSupplier;
+		private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(bufferSize);
+		private Future<?> future;
+		private SegmentEntityIterator<T> iteratorOnConsumerThread;
+		private volatile Throwable failure;
+
+		public SegmentScan(Supplier<SegmentEntityIterator<T>> segmentIteratorSupplier) {
+			this.segmentIteratorSupplier = segmentIteratorSupplier;
+		}
+
+		public void start() {
+			try {
+				future = executor.submitScanTask(() -> {
+					scan();
+					return null;
+				});
+			} catch (RejectedExecutionException e) {
+				iteratorOnConsumerThread = segmentIteratorSupplier.get(); //The executor is shutting down so read this segment on the consumer's thread
+			}
+		}
+
+		private void scan() {
+			try (SegmentEntityIterator<T> iterator = segmentIteratorSupplier.get()) {
+				while (!isClosed && iterator.hasNext()) {
+					BlueEntity<T> entity = iterator.next();
+					if (filter.test(entity) && !put(entity)) {
+						return;
+					}
+				}
+			} catch (Throwable t) {
+				recordFailure(t);
+			} finally {
+				put(END_OF_SEGMENT);
+			}
+		}
+
+		/*
+		 * Returns false if the item couldn't be queued because the scanner was closed or this thread was interrupted. If the
+		 * thread was interrupted then the end of the segment can't be queued either, so the consumer finds out through the
+		 * recorded failure once the scan task has finished.
+		 */
+		private boolean put(Object item) {
+			try {
+				while (!isClosed) {
+					if (buffer.offer(item, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				recordFailure(e); //The executor is being shut down now
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		private void recordFailure(Throwable t) {
+			if (failure == null) {
+				failure = t;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		public BlueEntity<T> next() {
+			if (iteratorOnConsumerThread != null) {
+				return nextOnConsumerThread();
+			}
+			Object item = takeNextItem();
+			if (item == END_OF_SEGMENT) {
+				throwFailure();
+				return null;
+			}
+			return (BlueEntity<T>) item;
+		}
+
+		/*
+		 * Polls rather than blocking on take so that a scan task that stops without queuing the end of the segment can't
+		 * leave the consumer waiting forever.
+		 */
+		private Object takeNextItem() {
+			try {
+				while (true) {
+					Object item = buffer.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+					if (item != null) {
+						return item;
+					}
+					if (future.isDone()) {
+						item = buffer.poll(); //Anything queued before the task finished is in the buffer by now
+						if (item != null) {
+							return item;
+						}
+						throwFailure();
+						throw new RuntimeException("Segment scan stopped before the end of the segment was read");
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for the next segment to be read", e);
+			}
+		}
+
+		private BlueEntity<T> nextOnConsumerThread() {
+			while (iteratorOnConsumerThread.hasNext()) {
+				BlueEntity<T> entity = iteratorOnConsumerThread.next();
+				if (filter.test(entity)) {
+					return entity;
+				}
+			}
+			iteratorOnConsumerThread.close();
+			return null;
+		}
+
+		private void throwFailure() {
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw new RuntimeException("Failed to read segment", failure);
+			}
+		}
+
+		/*
+		 * Returns true if the calling thread was interrupted while waiting
+		 */
+		public boolean waitUntilFinished() {
+			if (iteratorOnConsumerThread != null) {
+				iteratorOnConsumerThread.close();
+				return false;
+			}
+			boolean wasInterrupted = false;
+			while (true) {
+				try {
+					future.get();
+					return wasInterrupted;
+				} catch (ExecutionException | CancellationException e) {
+					return wasInterrupted;
+				} catch (InterruptedException e) {
+					wasInterrupted = true;
+				}
+			}
+		}
+	}
+}
@@ -1,14 +1,21 @@
 package org.bluedb.disk.collection;
 
 import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 
 import org.bluedb.api.BlueCollection;
 import org.bluedb.api.BlueCollectionVersion;
@@ -22,7 +29,9 @@ import org.bluedb.api.index.BlueIndexInfo;
 import org.bluedb.api.index.KeyExtractor;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.api.keys.LongTimeKey;
+import org.bluedb.api.keys.TimeFrameKey;
 import org.bluedb.api.keys.ValueKey;
+import org.bluedb.disk.Blutils;
 import org.bluedb.disk.IteratorWrapper;
 import org.bluedb.disk.IteratorWrapper.IteratorWrapperMapper;
 import org.bluedb.disk.ReadWriteDbOnDisk;
@@ -32,9 +41,11 @@ import org.bluedb.disk.collection.index.extractors.ActiveRecordTimeKeyExtractor;
 import org.bluedb.disk.collection.index.extractors.OverlappingTimeSegmentsKeyExtractor;
 import org.bluedb.disk.collection.metadata.ReadWriteCollectionMetaData;
 import org.bluedb.disk.collection.task.BatchUpsertValuesTask;
+import org.bluedb.disk.collection.task.GroupCommitQueue;
 import org.bluedb.disk.collection.task.SingleRecordChangeTask;
 import org.bluedb.disk.collection.task.SingleRecordChangeTask.SingleRecordChangeMode;
 import org.bluedb.disk.executors.BlueExecutor;
+import org.bluedb.disk.file.FileUtils;
 import org.bluedb.disk.file.ReadWriteFileManager;
 import org.bluedb.disk.query.QueryOnDisk;
 import org.bluedb.disk.recovery.IndividualChange;
@@ -58,6 +69,13 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 	private final ReadWriteFileManager fileManager;
 	private final ReadWriteSegmentManager<T> segmentManager;
 	protected final ReadWriteIndexManager<T> indexManager;
+	private final GroupCommitQueue<T> groupCommitQueue;
+	private final List<GroupCommitQueue<T>> stripedGroupCommitQueues;
+	private final Object taskOrderLock = new Object();
+	private final LinkedList<OrderedTask> tasksWaitingOnEarlierTasks = new LinkedList<>();
+	private int stripedTasksSubmitted = 0;
+	private boolean isTaskThatRunsByItselfSubmitted = false;
+	private final Semaphore asyncWritePermits;
 
 	public ReadWriteCollectionOnDisk(ReadWriteDbOnDisk db, String name, BlueCollectionVersion requestedVersion, Class<? extends BlueKey> requestedKeyType, Class<T> valueType, List<Class<? extends Serializable>> additionalRegisteredClasses) throws BlueDbException {
 		this(db, name, requestedVersion, requestedKeyType, valueType, additionalRegisteredClasses, null);
@@ -65,16 +83,26 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 
 	public ReadWriteCollectionOnDisk(ReadWriteDbOnDisk db, String name, BlueCollectionVersion requestedVersion, Class<? extends BlueKey> requestedKeyType, Class<T> valueType, List<Class<? extends Serializable>> additionalRegisteredClasses, SegmentSizeSetting segmentSize) throws BlueDbException {
 		super(db, name, requestedVersion, requestedKeyType, valueType, additionalRegisteredClasses, segmentSize);
+		cleanupTempFiles();
 		sharedExecutor = db.getSharedExecutor();
 		collectionKey = getPath().toString();
+		groupCommitQueue = new GroupCommitQueue<T>(this);
+		stripedGroupCommitQueues = createStripedGroupCommitQueues(db.getWriteStripeCount());
+		asyncWritePermits = db.getMaxAsyncWritesInFlight() > 0 ? new Semaphore(db.getMaxAsyncWritesInFlight()) : null;
 		rollupScheduler = new RollupScheduler(this);
 		rollupScheduler.start();
-		fileManager = new ReadWriteFileManager(serializer, db.getEncryptionService());
+		fileManager = new ReadWriteFileManager(serializer, db.getEncryptionService(), db.getFileSyncer());
+		fileManager.setIntegrityPolicy(db.getIntegrityPolicy());
+		fileManager.setChunkCache(db.getChunkCache());
 		recoveryManager = new RecoveryManager<T>(this, getFileManager(), getSerializer());
 		Rollupable rollupable = this;
 		indexManager = new ReadWriteIndexManager<T>(this, collectionPath);
 		segmentManager = new ReadWriteSegmentManager<T>(collectionPath, fileManager, rollupable, segmentSizeSettings.getConfig(), !utilizesDefaultTimeIndex());
 		recoveryManager.recover();  // everything else has to be in place before running this
+		segmentManager.setChunkDeltaPolicy(db.getChunkDeltaPolicy());
+		segmentManager.setSegmentTaskExecutor(sharedExecutor);
+		segmentManager.setParallelScans(sharedExecutor, db.getScanParallelism());
+		recoveryManager.setWriteAheadLogEnabled(db.isWriteAheadLogEnabled());
 		
 		if(utilizesDefaultTimeIndex()) {
 			LinkedList<BlueIndexInfo<? extends ValueKey, T>> defaultIndices = new LinkedList<BlueIndexInfo<? extends ValueKey,T>>();
@@ -115,6 +143,19 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 
 	@Override
 	public void insert(BlueKey key, T value) throws BlueDbException {
+		executeTask(createInsertTask(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Void> insertAsync(BlueKey key, T value) {
+		try {
+			return executeTaskAsync(createInsertTask(key, value));
+		} catch(BlueDbException e) {
+			return createFailedFuture(e);
+		}
+	}
+
+	private Runnable createInsertTask(BlueKey key, T value) throws BlueDbException {
 		ensureCorrectKeyType(key);
 		if(configurationService.shouldValidateObjects()) {
 			ObjectValidation.validateFieldValueTypesForObject(value);
@@ -125,29 +166,57 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 		};
 		
 		String description = "Insert [key]" + key + " [value]" + value;
-		Runnable task = new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_DOES_NOT_ALREADY_EXIST);
-		executeTask(task);
+		return new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_DOES_NOT_ALREADY_EXIST);
 	}
 
 	@Override
 	public void batchUpsert(Map<BlueKey, T> values) throws BlueDbException {
+		executeTask(createBatchUpsertTask(values));
+	}
+
+	@Override
+	public CompletableFuture<Void> batchUpsertAsync(Map<BlueKey, T> values) {
+		return executeTaskAsync(createBatchUpsertTask(values));
+	}
+
+	private Runnable createBatchUpsertTask(Map<BlueKey, T> values) {
 		IteratorWrapperMapper<Entry<BlueKey, T>, BlueKeyValuePair<T>> mapper = entry -> new BlueKeyValuePair<T>(entry.getKey(), entry.getValue());
 		Iterator<BlueKeyValuePair<T>> keyValuePairIterator = new IteratorWrapper<>(values.entrySet().iterator(), mapper);
 		
 		String description = "BatchUpsert map of size " + values.size();
-		Runnable task = new BatchUpsertValuesTask<T>(description, this, keyValuePairIterator);
-		executeTask(task);
+		return new BatchUpsertValuesTask<T>(description, this, keyValuePairIterator);
 	}
 	
 	@Override
 	public void batchUpsert(Iterator<BlueKeyValuePair<T>> keyValuePairIterator) throws BlueDbException {
+		executeTask(createBatchUpsertTask(keyValuePairIterator));
+	}
+
+	@Override
+	public CompletableFuture<Void> batchUpsertAsync(Iterator<BlueKeyValuePair<T>> keyValuePairIterator) {
+		return executeTaskAsync(createBatchUpsertTask(keyValuePairIterator));
+	}
+
+	private Runnable createBatchUpsertTask(Iterator<BlueKeyValuePair<T>> keyValuePairIterator) {
 		String description = "BatchUpsert using an iterator of key value pairs";
-		Runnable task = new BatchUpsertValuesTask<T>(description, this, keyValuePairIterator);
-		executeTask(task);
+		return new BatchUpsertValuesTask<T>(description, this, keyValuePairIterator);
 	}
 
 	@Override
 	public void replace(BlueKey key, Mapper<T> mapper) throws BlueDbException {
+		executeTask(createReplaceTask(key, mapper));
+	}
+
+	@Override
+	public CompletableFuture<Void> replaceAsync(BlueKey key, Mapper<T> mapper) {
+		try {
+			return executeTaskAsync(createReplaceTask(key, mapper));
+		} catch(BlueDbException e) {
+			return createFailedFuture(e);
+		}
+	}
+
+	private Runnable createReplaceTask(BlueKey key, Mapper<T> mapper) throws BlueDbException {
 		ensureCorrectKeyType(key);
 		
 		KeyValueToChangeMapper<T> changeMapper = (originalKey, originalvalue) -> {
@@ -155,12 +224,24 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 		};
 		
 		String description = "Replace [key]" + key;
-		Runnable task = new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_ALREADY_EXISTS);
-		executeTask(task);
+		return new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_ALREADY_EXISTS);
 	}
 	
 	@Override
 	public void update(BlueKey key, Updater<T> updater) throws BlueDbException {
+		executeTask(createUpdateTask(key, updater));
+	}
+
+	@Override
+	public CompletableFuture<Void> updateAsync(BlueKey key, Updater<T> updater) {
+		try {
+			return executeTaskAsync(createUpdateTask(key, updater));
+		} catch(BlueDbException e) {
+			return createFailedFuture(e);
+		}
+	}
+
+	private Runnable createUpdateTask(BlueKey key, Updater<T> updater) throws BlueDbException {
 		ensureCorrectKeyType(key);
 		
 		KeyValueToChangeMapper<T> changeMapper = (originalKey, originalvalue) -> {
@@ -168,33 +249,131 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 		};
 		
 		String description = "Update [key]" + key;
-		Runnable task = new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_ALREADY_EXISTS);
-		executeTask(task);
+		return new SingleRecordChangeTask<>(description, this, key, changeMapper, SingleRecordChangeMode.REQUIRE_ALREADY_EXISTS);
 	}
 	
 	@Override
 	public void delete(BlueKey key) throws BlueDbException {
+		executeTask(createDeleteTask(key));
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(BlueKey key) {
+		try {
+			return executeTaskAsync(createDeleteTask(key));
+		} catch(BlueDbException e) {
+			return createFailedFuture(e);
+		}
+	}
+
+	private Runnable createDeleteTask(BlueKey key) throws BlueDbException {
 		ensureCorrectKeyType(key);
 		
 		String description = "Delete [key]" + key;
-		Runnable task = new SingleRecordChangeTask<T>(description, this, key, IndividualChange::createDeleteChange, SingleRecordChangeMode.NO_REQUIREMENTS);
-		executeTask(task);
+		return new SingleRecordChangeTask<T>(description, this, key, IndividualChange::createDeleteChange, SingleRecordChangeMode.NO_REQUIREMENTS);
 	}
 
 	public int getQueuedTaskCount() {
-		return sharedExecutor.getQueryQueueSize(collectionKey);
+		int queuedTaskCount = sharedExecutor.getQueryQueueSize(collectionKey) + groupCommitQueue.size();
+		for(GroupCommitQueue<T> stripedGroupCommitQueue : stripedGroupCommitQueues) {
+			queuedTaskCount += sharedExecutor.getQueryQueueSize(getStripeKey(stripedGroupCommitQueue.getStripe())) + stripedGroupCommitQueue.size();
+		}
+		return queuedTaskCount;
+	}
+
+	public boolean isWriteStriped() {
+		return !stripedGroupCommitQueues.isEmpty();
 	}
 
 	public BlueExecutor getSharedExecutor() {
 		return sharedExecutor;
 	}
 
+	/**
+	 * Submits a task that has to run by itself. When writes are striped it waits for every striped task submitted before
+	 * it to finish, and no striped task submitted after it starts until it is done.
+	 * @param task the task to run
+	 * @return the future for the task
+	 */
 	public Future<?> submitTask(Runnable task) {
-		return sharedExecutor.submitQueryTask(collectionKey, task);
+		if(!isWriteStriped()) {
+			return sharedExecutor.submitQueryTask(collectionKey, task);
+		}
+		return submitInOrder(new OrderedTask(collectionKey, true, task));
+	}
+
+	/**
+	 * Submits a task that only changes the segments in the given write stripe. It runs at the same time as the tasks for
+	 * the other stripes, but after any task from {@link #submitTask(Runnable)} that was submitted before it.
+	 * @param stripe the write stripe that the task changes
+	 * @param task the task to run
+	 * @return the future for the task
+	 */
+	public Future<?> submitStripedTask(int stripe, Runnable task) {
+		return submitInOrder(new OrderedTask(getStripeKey(stripe), false, task));
+	}
+
+	/*
+	 * The collection and each stripe have their own queue in the executor, so a task is only handed to the executor once
+	 * everything it has to wait on is done. Nothing waits in an executor thread, and a task that is never submitted
+	 * because the executor shut down doesn't hold anything up.
+	 */
+	private Future<?> submitInOrder(OrderedTask task) {
+		synchronized(taskOrderLock) {
+			tasksWaitingOnEarlierTasks.add(task);
+			submitTasksThatCanRun();
+		}
+		if(task.rejection != null) {
+			throw task.rejection;
+		}
+		return task;
+	}
+
+	private void submitTasksThatCanRun() {
+		synchronized(taskOrderLock) {
+			while(!tasksWaitingOnEarlierTasks.isEmpty()) {
+				OrderedTask task = tasksWaitingOnEarlierTasks.getFirst();
+				if(isTaskThatRunsByItselfSubmitted || (task.runsByItself && stripedTasksSubmitted > 0)) {
+					return;
+				}
+				tasksWaitingOnEarlierTasks.removeFirst();
+				task.isSubmitted = true;
+				if(task.runsByItself) {
+					isTaskThatRunsByItselfSubmitted = true;
+				} else {
+					stripedTasksSubmitted++;
+				}
+				try {
+					sharedExecutor.submitQueryTask(task.queueKey, task);
+				} catch(RuntimeException e) {
+					task.reject(e);
+				}
+			}
+		}
+	}
+
+	private void onOrderedTaskDone(OrderedTask task) {
+		synchronized(taskOrderLock) {
+			if(!task.isSubmitted) {
+				tasksWaitingOnEarlierTasks.remove(task);  // cancelled before it could run
+			} else if(task.runsByItself) {
+				isTaskThatRunsByItselfSubmitted = false;
+			} else {
+				stripedTasksSubmitted--;
+			}
+			submitTasksThatCanRun();
+		}
+	}
+
+	private void closePendingGroupCommits() {
+		groupCommitQueue.closePendingGroup();
+		for(GroupCommitQueue<T> stripedGroupCommitQueue : stripedGroupCommitQueues) {
+			stripedGroupCommitQueue.closePendingGroup();
+		}
 	}
 
 	public void executeTask(Runnable task) throws BlueDbException{
-		Future<?> future = sharedExecutor.submitQueryTask(collectionKey, task);
+		Future<?> future = submitForExecution(task);
 		try {
 			future.get();
 		} catch (InterruptedException | ExecutionException e) {
@@ -203,6 +382,125 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 		}
 	}
 
+	/**
+	 * Submits the task without waiting for it. If the number of asynchronous writes in flight is limited then this blocks
+	 * until there is room for the task.
+	 * @param task the write to run
+	 * @return a future that completes when the task is done, or completes exceptionally with the same 
+	 * {@link BlueDbException} that {@link #executeTask(Runnable)} would have thrown
+	 */
+	public CompletableFuture<Void> executeTaskAsync(Runnable task) {
+		if(asyncWritePermits != null) {
+			try {
+				asyncWritePermits.acquire();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return createFailedFuture(new BlueDbException("Interrupted while waiting to submit BlueDB task " + task.toString(), e));
+			}
+		}
+
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			submitForCompletion(task).whenComplete((ignored, t) -> {
+				if(asyncWritePermits != null) {
+					asyncWritePermits.release();
+				}
+				if(t == null) {
+					result.complete(null);
+				} else {
+					result.completeExceptionally(new BlueDbException("BlueDB task failed " + task.toString(), t));
+				}
+			});
+		} catch(RuntimeException e) {
+			if(asyncWritePermits != null) {
+				asyncWritePermits.release();
+			}
+			result.completeExceptionally(new BlueDbException("BlueDB task failed " + task.toString(), e));
+		}
+		return result;
+	}
+
+	private static CompletableFuture<Void> createFailedFuture(Throwable t) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		future.completeExceptionally(t);
+		return future;
+	}
+
+	/*
+	 * Single record changes are committed in groups so that concurrent writers share one recovery file and one pass
+	 * over the segments instead of each paying for their own.
+	 */
+	@SuppressWarnings("unchecked")
+	private Future<?> submitForExecution(Runnable task) {
+		if(task instanceof SingleRecordChangeTask) {
+			SingleRecordChangeTask<T> singleRecordChangeTask = (SingleRecordChangeTask<T>) task;
+			return getGroupCommitQueue(singleRecordChangeTask.getKey()).submit(singleRecordChangeTask);
+		}
+		closePendingGroupCommits();
+		return submitTask(task);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Void> submitForCompletion(Runnable task) {
+		if(task instanceof SingleRecordChangeTask) {
+			SingleRecordChangeTask<T> singleRecordChangeTask = (SingleRecordChangeTask<T>) task;
+			return getGroupCommitQueue(singleRecordChangeTask.getKey()).submit(singleRecordChangeTask);
+		}
+		CompletingTask completingTask = new CompletingTask(task);
+		closePendingGroupCommits();
+		submitTask(completingTask);
+		return completingTask.future;
+	}
+
+	private GroupCommitQueue<T> getGroupCommitQueue(BlueKey key) {
+		if(!isWriteStriped()) {
+			return groupCommitQueue;
+		}
+		int stripe = getWriteStripe(key);
+		return stripe == GroupCommitQueue.NO_STRIPE ? groupCommitQueue : stripedGroupCommitQueues.get(stripe);
+	}
+
+	/*
+	 * Neighboring segments are put in different stripes so that writes spread out across the stripes even when the keys
+	 * are close together. A time frame that is saved in every segment that it overlaps could be in more than one stripe,
+	 * so it is committed by itself instead.
+	 */
+	protected int getWriteStripe(BlueKey key) {
+		Range segmentRange = segmentManager.getSegmentRange(key.getGroupingNumber());
+		if(key instanceof TimeFrameKey && segmentManager.isSavingDuplicateRecordsInEachSegment() && ((TimeFrameKey) key).getEndTime() > segmentRange.getEnd()) {
+			return GroupCommitQueue.NO_STRIPE;
+		}
+		long segmentNumber = Math.floorDiv(segmentRange.getStart(), segmentManager.getSegmentSize());
+		return (int) Math.floorMod(segmentNumber, (long) stripedGroupCommitQueues.size());
+	}
+
+	/*
+	 * Sorted queries that don't fit in memory are sorted in temp directories in the collection folder. Any that are left
+	 * over from before the collection was opened belong to queries that are no longer running.
+	 */
+	protected void cleanupTempFiles() {
+		try(DirectoryStream<Path> tempFileStream = FileUtils.getTempFolderContentsAsStream(collectionPath.toFile(), file -> true)) {
+			tempFileStream.forEach(path -> Blutils.recursiveDelete(path.toFile()));
+		} catch (Throwable t) {
+			t.printStackTrace();
+		}
+	}
+
+	private List<GroupCommitQueue<T>> createStripedGroupCommitQueues(int writeStripeCount) {
+		if(writeStripeCount <= 1) {
+			return Collections.emptyList();
+		}
+		List<GroupCommitQueue<T>> queues = new ArrayList<>();
+		for(int stripe = 0; stripe < writeStripeCount; stripe++) {
+			queues.add(new GroupCommitQueue<T>(this, stripe));
+		}
+		return Collections.unmodifiableList(queues);
+	}
+
+	private String getStripeKey(int stripe) {
+		return collectionKey + "#write-stripe-" + stripe;
+	}
+
 	public RecoveryManager<T> getRecoveryManager() {
 		return recoveryManager;
 	}
@@ -259,4 +557,67 @@ public class ReadWriteCollectionOnDisk<T extends Serializable> extends ReadableC
 	public <I extends ValueKey> ReadWriteIndexOnDisk<I, T> getIndex(String indexName, Class<I> keyType) throws BlueDbException {
 		return indexManager.getIndex(indexName, keyType);
 	}
+
+	private static class CompletingTask implements Runnable {
+		private final Runnable task;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		public CompletingTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch(Throwable t) {
+				future.completeExceptionally(t);
+				throw t;
+			}
+			future.complete(null);
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+	}
+
+	private class OrderedTask extends FutureTask<Void> {
+		private final String queueKey;
+		private final boolean runsByItself;
+		private final Runnable task;
+		private boolean isSubmitted = false;
+		private RuntimeException rejection = null;
+
+		public OrderedTask(String queueKey, boolean runsByItself, Runnable task) {
+			super(task, null);
+			this.queueKey = queueKey;
+			this.runsByItself = runsByItself;
+			this.task = task;
+		}
+
+		private void reject(RuntimeException e) {
+			rejection = e;
+			setException(e);
+		}
+
+		@Override
+		protected void setException(Throwable t) {
+			if(t != rejection) {
+				t.printStackTrace();
+			}
+			super.setException(t);
+		}
+
+		@Override
+		protected void done() {
+			onOrderedTaskDone(this);
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+	}
 }
@@ -4,9 +4,13 @@ import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.bluedb.api.BlueCollectionVersion;
 import org.bluedb.api.Condition;
@@ -53,6 +57,7 @@ public abstract class ReadableCollectionOnDisk<T extends Serializable> implement
 	protected final SegmentSizeSetting segmentSizeSettings;
 	protected final BlueCollectionVersion version;
 	private final boolean utilizesDefaultTimeIndex;
+	protected final EntityCache<T> entityCache;
 
 	protected abstract ReadableCollectionMetadata getOrCreateMetadata();
 	protected abstract Class<? extends Serializable>[] getClassesToRegister(List<Class<? extends Serializable>> additionalRegisteredClasses) throws BlueDbException;
@@ -74,6 +79,7 @@ public abstract class ReadableCollectionOnDisk<T extends Serializable> implement
 		segmentSizeSettings = determineSegmentSize(metaData, keyType, segmentSize, isNewCollection);
 		version = determineCollectionVersion(metaData, requestedVersion, isNewCollection);
 		this.utilizesDefaultTimeIndex = isTimeBased() && version.utilizesDefaultTimeIndex();
+		entityCache = new EntityCache<>(serializer);
 	}
 
 	@Override
@@ -95,15 +101,64 @@ public abstract class ReadableCollectionOnDisk<T extends Serializable> implement
 
 	public BlueEntity<T> getEntity(BlueKey key) throws BlueDbException {
 		ensureCorrectKeyType(key);
+		return entityCache.get(key, this::readEntity);
+	}
+
+	@Override
+	public Map<BlueKey, T> getAll(Collection<? extends BlueKey> keys) throws BlueDbException {
+		Map<BlueKey, T> values = new HashMap<>();
+		for (BlueEntity<T> entity : getEntities(keys)) {
+			values.put(entity.getKey(), entity.getValue());
+		}
+		return values;
+	}
+
+	/**
+	 * Looks the keys up one segment at a time in key order. Each segment opens every chunk the keys fall in once.
+	 * @param keys the keys to look up
+	 * @return the entities for the keys that are in the collection, in key order
+	 * @throws BlueDbException if any of the keys are the wrong type or a chunk can't be read
+	 */
+	public List<BlueEntity<T>> getEntities(Collection<? extends BlueKey> keys) throws BlueDbException {
+		for (BlueKey key : keys) {
+			ensureCorrectKeyType(key);
+		}
+		List<BlueKey> sortedKeys = keys.stream()
+				.distinct()
+				.sorted()
+				.collect(Collectors.toList());
+
+		List<BlueEntity<T>> entities = new ArrayList<>();
+		int start = 0;
+		while (start < sortedKeys.size()) {
+			ReadableSegment<T> segment = getSegmentManager().getFirstSegment(sortedKeys.get(start));
+			int end = start + 1;
+			while (end < sortedKeys.size() && segment.getRange().containsInclusive(sortedKeys.get(end).getGroupingNumber())) {
+				end++;
+			}
+			entities.addAll(segment.getEntities(sortedKeys.subList(start, end)));
+			start = end;
+		}
+		return entities;
+	}
+
+	private BlueEntity<T> readEntity(BlueKey key) throws BlueDbException {
 		ReadableSegment<T> firstSegment = getSegmentManager().getFirstSegment(key);
 		return firstSegment.getEntity(key);
 	}
 
+	/**
+	 * @return the cache of point reads, which is disabled unless it is given a budget. Only read-write collections enable
+	 * it since they are the only ones that see every change to the collection.
+	 */
+	public EntityCache<T> getEntityCache() {
+		return entityCache;
+	}
+
 	@Override
 	public BlueKey getLastKey() {
 		LastEntityFinder lastFinder = new LastEntityFinder(this);
-		BlueEntity<?> lastEntity = lastFinder.getLastEntity();
-		return lastEntity == null ? null : lastEntity.getKey();
+		return lastFinder.getLastKey();
 	}
 
 	@Override
@@ -0,0 +1,203 @@
+package org.bluedb.disk.collection.index;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.ValueKey;
+import org.bluedb.disk.executors.BlueExecutor;
+import org.bluedb.disk.file.BlueObjectStreamSorter;
+import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.bluedb.disk.recovery.SortedChangeIterator;
+import org.bluedb.disk.recovery.SortedChangeSupplier;
+
+/**
+ * Indexes a batch of changes for several indexes at once. The changes are read one time and each index's changes are
+ * handed to its own sorter as they go by. Then every index sorts and applies its changes at the same time on the segment
+ * task threads. Just like in {@link MultiIndexCreator}, an index that fails is dropped from the rest of the work so that
+ * it can't stop the other indexes from being updated. The failures are reported once all of the other indexes are done.
+ */
+public class MultiIndexChangeApplier<T extends Serializable> {
+	private final List<IndexBeingUpdated<T>> indicesToUpdate = new LinkedList<>();
+	private final List<IndexBeingUpdated<T>> allIndices = new LinkedList<>();
+	private final BlueExecutor executor;
+
+	private final Set<String> failedIndexNames = new HashSet<>();
+
+	public MultiIndexChangeApplier(Collection<ReadWriteIndexOnDisk<ValueKey, T>> indices, BlueExecutor executor, int maxRecordsInInitialChunks) {
+		for(ReadWriteIndexOnDisk<ValueKey, T> index : indices) {
+			try {
+				indicesToUpdate.add(new IndexBeingUpdated<>(index, maxRecordsInInitialChunks));
+			} catch(Throwable t) {
+				handleIndexFailure(index.getIndexName(), t);
+			}
+		}
+		allIndices.addAll(indicesToUpdate);
+		this.executor = executor;
+	}
+
+	/**
+	 * @param sortedChangeSupplier the changes to the collection's values
+	 * @throws BlueDbException if the changes couldn't be read or if any of the indices failed to be updated. The indices
+	 * that didn't fail are still updated.
+	 */
+	public void indexChanges(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+		try {
+			queueIndexChangesForAllValueChanges(sortedChangeSupplier);
+			sortAndApplyAllIndexChanges();
+		} finally {
+			for(IndexBeingUpdated<T> index : allIndices) {
+				index.cleanupChangeFile();
+			}
+		}
+
+		if(!failedIndexNames.isEmpty()) {
+			throw new BlueDbException("Failed to index changes for " + failedIndexNames.size() + " indices. See corresponding exceptions for each above in the logs. Failed indices: " + failedIndexNames);
+		}
+	}
+
+	public Set<String> getFailedIndexNames() {
+		return failedIndexNames;
+	}
+
+	private void queueIndexChangesForAllValueChanges(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+		SortedChangeIterator<T> sortedChangeIterator = new SortedChangeIterator<>(sortedChangeSupplier);
+		while(sortedChangeIterator.hasNext()) {
+			IndividualChange<T> valueChange = sortedChangeIterator.next();
+
+			Iterator<IndexBeingUpdated<T>> it = indicesToUpdate.iterator();
+			while(it.hasNext()) {
+				IndexBeingUpdated<T> index = it.next();
+				try {
+					index.queueIndexChangesForValueChange(valueChange);
+				} catch(Throwable t) {
+					handleIndexFailure(index.getName(), t);
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/*
+	 * The first index is sorted and applied on this thread so that nothing has to wait on another thread unless there
+	 * really is more than one index to update. The segment tasks never wait on anything so they can't deadlock with
+	 * this thread, and the index segment managers apply their changes one segment at a time.
+	 */
+	private void sortAndApplyAllIndexChanges() {
+		List<IndexBeingUpdated<T>> indicesToSubmit = new ArrayList<>(indicesToUpdate);
+		IndexBeingUpdated<T> indexForThisThread = indicesToSubmit.isEmpty() ? null : indicesToSubmit.remove(0);
+
+		List<Future<?>> futures = new ArrayList<>();
+		List<IndexBeingUpdated<T>> submittedIndices = new ArrayList<>();
+		for(IndexBeingUpdated<T> index : indicesToSubmit) {
+			try {
+				futures.add(executor.submitSegmentTask(() -> {
+					index.sortAndApplyChanges();
+					return null;
+				}));
+				submittedIndices.add(index);
+			} catch(RejectedExecutionException e) {
+				sortAndApplyChangesNotingFailure(index); //The executor is shutting down so finish the work on this thread
+			}
+		}
+
+		if(indexForThisThread != null) {
+			sortAndApplyChangesNotingFailure(indexForThisThread);
+		}
+
+		for(int i = 0; i < futures.size(); i++) {
+			waitForNotingFailure(futures.get(i), submittedIndices.get(i));
+		}
+	}
+
+	private void sortAndApplyChangesNotingFailure(IndexBeingUpdated<T> index) {
+		try {
+			index.sortAndApplyChanges();
+		} catch(Throwable t) {
+			handleIndexFailure(index.getName(), t);
+		}
+	}
+
+	private void waitForNotingFailure(Future<?> future, IndexBeingUpdated<T> index) {
+		boolean wasInterrupted = false;
+		while(true) {
+			try {
+				future.get();
+				break;
+			} catch(ExecutionException e) {
+				handleIndexFailure(index.getName(), e.getCause());
+				break;
+			} catch(InterruptedException e) {
+				wasInterrupted = true; //The index is still being written to so it has to be waited on
+			}
+		}
+		if(wasInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void handleIndexFailure(String indexName, Throwable t) {
+		t.printStackTrace();
+		failedIndexNames.add(indexName);
+	}
+
+	private static class IndexBeingUpdated<T extends Serializable> {
+		private final ReadWriteIndexOnDisk<ValueKey, T> index;
+		private final List<IndividualChange<BlueKey>> queuedIndexChanges;
+		private final Path sortedIndexChangesPath;
+		private final BlueObjectStreamSorter<IndividualChange<BlueKey>> sorter;
+		private final int maxRecordsInInitialChunks;
+
+		public IndexBeingUpdated(ReadWriteIndexOnDisk<ValueKey, T> index, int maxRecordsInInitialChunks) throws BlueDbException {
+			this.index = index;
+			this.queuedIndexChanges = new LinkedList<>();
+			this.sortedIndexChangesPath = index.createNextIndexChangeStoragePath();
+			this.sorter = index.createBlueObjectStreamSorter(null, sortedIndexChangesPath);
+			this.maxRecordsInInitialChunks = maxRecordsInInitialChunks;
+		}
+
+		public String getName() {
+			return index.getIndexName();
+		}
+
+		public void queueIndexChangesForValueChange(IndividualChange<T> valueChange) throws BlueDbException {
+			queuedIndexChanges.addAll(index.getSortedIndexChangesForValueChange(valueChange));
+			if(queuedIndexChanges.size() >= maxRecordsInInitialChunks) {
+				flushQueuedIndexChanges();
+			}
+		}
+
+		private void flushQueuedIndexChanges() throws BlueDbException {
+			if(queuedIndexChanges.size() > 0) {
+				sorter.addBatchOfObjectsToBeSorted(queuedIndexChanges);
+				queuedIndexChanges.clear();
+			}
+		}
+
+		public void sortAndApplyChanges() throws BlueDbException {
+			flushQueuedIndexChanges();
+			sorter.sortAndWriteToFile();
+			index.applyIndexChanges(sortedIndexChangesPath);
+		}
+
+		public void cleanupChangeFile() {
+			try {
+				FileUtils.deleteIfExistsWithoutLock(sortedIndexChangesPath);
+			} catch(Throwable t) {
+				t.printStackTrace();
+			}
+		}
+	}
+}
@@ -31,6 +31,7 @@ public class ReadWriteIndexManager<T extends Serializable> extends ReadableIndex
 
 	private final ReadWriteCollectionOnDisk<T> collection;
 	private Map<String, ReadWriteIndexOnDisk<ValueKey, T>> indexesByName;
+	private final Object indexChangeLock = new Object(); // striped writes share the index segments so they take turns
 
 	public ReadWriteIndexManager(ReadWriteCollectionOnDisk<T> collection, Path collectionPath) throws BlueDbException {
 		this.collection = collection;
@@ -73,17 +74,31 @@ public class ReadWriteIndexManager<T extends Serializable> extends ReadableIndex
 	}
 
 	public void indexChange(BlueKey key, T oldValue, T newValue) throws BlueDbException {
-		for (ReadWriteIndexOnDisk<ValueKey, T> index: indexesByName.values()) {
-			index.indexChange(key, oldValue, newValue);
+		synchronized(indexChangeLock) {
+			for (ReadWriteIndexOnDisk<ValueKey, T> index: indexesByName.values()) {
+				index.indexChange(key, oldValue, newValue);
+			}
 		}
 	}
 
 	public void indexChanges(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
-		for (ReadWriteIndexOnDisk<ValueKey, T> index: indexesByName.values()) {
-			index.indexChanges(sortedChangeSupplier);
+		synchronized(indexChangeLock) {
+			indexChangesWhileLocked(sortedChangeSupplier);
 		}
 	}
 
+	private void indexChangesWhileLocked(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+		if (indexesByName.size() <= 1) {
+			for (ReadWriteIndexOnDisk<ValueKey, T> index: indexesByName.values()) {
+				index.indexChanges(sortedChangeSupplier);
+			}
+			return;
+		}
+		
+		MultiIndexChangeApplier<T> multiIndexChangeApplier = new MultiIndexChangeApplier<>(indexesByName.values(), collection.getSharedExecutor(), getMaxRecordsInInitializationChunks());
+		multiIndexChangeApplier.indexChanges(sortedChangeSupplier);
+	}
+
 	private Map<String, ReadWriteIndexOnDisk<ValueKey, T>> getIndexesFromDisk(ReadWriteCollectionOnDisk<T> collection, Path collectionPath) throws BlueDbException {
 		Map<String, ReadWriteIndexOnDisk<ValueKey, T>> map = new HashMap<>();
 		Path indexesPath = Paths.get(collectionPath.toString(), INDEXES_SUBFOLDER);
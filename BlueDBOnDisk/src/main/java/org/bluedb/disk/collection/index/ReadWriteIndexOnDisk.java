@@ -139,7 +139,7 @@ public class ReadWriteIndexOnDisk<I extends ValueKey, T extends Serializable> ex
 		Map<BlueFileMetadataKey, String> metadataEntries = new HashMap<>();
 		metadataEntries.put(BlueFileMetadataKey.SORTED_MASS_CHANGE_FILE, String.valueOf(true));
 		
-		return new BlueObjectStreamSorter<>(unsortedIndexChangeIterator, sortedIndexChangesPath, fileManager, metadataEntries, BlueObjectStreamSorterConfig.createDefault());
+		return BlueObjectStreamSorter.inNaturalOrder(unsortedIndexChangeIterator, sortedIndexChangesPath, fileManager, metadataEntries, BlueObjectStreamSorterConfig.createDefault());
 	}
 	
 	public void applyIndexChanges(Path sortedIndexChangesPath) throws BlueDbException {
@@ -85,6 +85,13 @@ public abstract class ReadableIndexOnDisk<I extends ValueKey, T extends Serializ
 		return SegmentSizeSetting.getOriginalDefaultSettingsFor(keyType);
 	}
 
+	/**
+	 * @return true if the index keys of a record only depend on its key, which is the case for the default time indices
+	 */
+	public boolean extractsIndexKeysFromKeyOnly() {
+		return keyExtractor instanceof DefaultTimeKeyExtractor;
+	}
+
 	public List<I> extractIndexKeys(BlueEntity<T> entity) {
 		return extractIndexKeys(entity.getKey(), entity.getValue());
 	}
@@ -137,12 +144,12 @@ public abstract class ReadableIndexOnDisk<I extends ValueKey, T extends Serializ
 	@Override
 	public I getLastKey() {
 		LastEntityFinder lastFinder = new LastEntityFinder(this);
-		BlueEntity<?> lastIndexEntity = lastFinder.getLastEntity();
-		if (lastIndexEntity == null) {
+		BlueKey lastIndexKey = lastFinder.getLastKey();
+		if (lastIndexKey == null) {
 			return null;
 		}
 		@SuppressWarnings("unchecked")
-		IndexCompositeKey<I> lastCompositeKey = (IndexCompositeKey<I>) lastIndexEntity.getKey();
+		IndexCompositeKey<I> lastCompositeKey = (IndexCompositeKey<I>) lastIndexKey;
 		return lastCompositeKey.getIndexKey();
 	}
 	
@@ -41,6 +41,11 @@ public class AllSegmentsInRangeAcceptingIndexCondition<I extends Serializable, T
 		return entity.getKey().overlapsRange(groupingNumberRangeToAccept.getStart(), groupingNumberRangeToAccept.getEnd());
 	}
 
+	@Override
+	public boolean testsKeyOnly() {
+		return true;
+	}
+
 	@Override
 	public BlueIndexCondition<I> isIn(Set<I> values) {
 		throw new UnsupportedOperationException();
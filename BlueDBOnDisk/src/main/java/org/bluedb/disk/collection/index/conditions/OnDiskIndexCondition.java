@@ -21,4 +21,12 @@ public interface OnDiskIndexCondition<I extends Serializable, T extends Serializ
 	
 	public boolean test(BlueEntity<T> entity);
 	
+	/**
+	 * @return true if {@link #test(BlueEntity)} only looks at the key of the entity, so that it can be tested before the
+	 * value is deserialized
+	 */
+	public default boolean testsKeyOnly() {
+		return false;
+	}
+	
 }
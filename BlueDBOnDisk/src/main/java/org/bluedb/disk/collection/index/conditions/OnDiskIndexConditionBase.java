@@ -218,4 +218,9 @@ public abstract class OnDiskIndexConditionBase<I extends Serializable, T extends
 	protected List<? extends ValueKey> extractIndexKeysFromEntity(BlueEntity<T> entity) {
 		return index.extractIndexKeys(entity);
 	}
+
+	@Override
+	public boolean testsKeyOnly() {
+		return index.extractsIndexKeysFromKeyOnly();
+	}
 }
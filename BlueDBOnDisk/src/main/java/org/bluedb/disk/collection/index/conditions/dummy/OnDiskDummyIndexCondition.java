@@ -34,6 +34,11 @@ public interface OnDiskDummyIndexCondition<I extends Serializable, T extends Ser
 		return false;
 	}
 
+	@Override
+	public default boolean testsKeyOnly() {
+		return true;
+	}
+
 	@Override
 	public default CloseableIterator<BlueKey> getMatchingValueKeysIterator() {
 		return new EmptyCloseableIterator<>();
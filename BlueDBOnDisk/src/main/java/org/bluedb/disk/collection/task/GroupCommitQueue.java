@@ -0,0 +1,184 @@
+package org.bluedb.disk.collection.task;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.collection.ReadWriteCollectionOnDisk;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.bluedb.disk.recovery.Recoverable;
+import org.bluedb.disk.recovery.RecoveryManager;
+import org.bluedb.disk.serialization.BlueEntity;
+
+/**
+ * Coalesces the single record changes that are waiting to run against a collection so that they can be saved and applied
+ * as one mass change. Each caller still gets its own result, so a duplicate key or a missing record only fails the caller
+ * that made that change.<br><br>
+ * 
+ * When the collection's writes are striped there is one queue per stripe, and each queue only ever holds changes to the
+ * segments in its stripe so that the queues can commit at the same time.<br><br>
+ * 
+ * Changes join the group that is waiting to run until it starts or is closed with {@link #closePendingGroup()}. Any
+ * other write to the collection closes it first, so that changes submitted after that write are committed after it.
+ */
+public class GroupCommitQueue<T extends Serializable> {
+
+	public static final int MAX_GROUP_SIZE = 1000;
+
+	public static final int NO_STRIPE = -1;
+
+	private final ReadWriteCollectionOnDisk<T> collection;
+	private final int stripe;
+	private final Object pendingGroupLock = new Object();
+	private GroupCommitTask pendingGroup = null;
+	private int queuedChangeCount = 0;
+
+	public GroupCommitQueue(ReadWriteCollectionOnDisk<T> collection) {
+		this(collection, NO_STRIPE);
+	}
+
+	/**
+	 * @param collection the collection to commit the changes to
+	 * @param stripe the write stripe that this queue's changes belong to, or {@link #NO_STRIPE} if the commits should run
+	 * as the collection's regular tasks
+	 */
+	public GroupCommitQueue(ReadWriteCollectionOnDisk<T> collection, int stripe) {
+		this.collection = collection;
+		this.stripe = stripe;
+	}
+
+	public int getStripe() {
+		return stripe;
+	}
+
+	/**
+	 * Queues the task to be committed with any other single record changes waiting on the collection
+	 * @param task the single record change to commit
+	 * @return a future that completes once the change has been applied, or fails with the same exception the task would
+	 * have failed with if it had run on its own
+	 */
+	public CompletableFuture<Void> submit(SingleRecordChangeTask<T> task) {
+		QueuedChange<T> queuedChange = new QueuedChange<>(task);
+		synchronized(pendingGroupLock) {
+			if(pendingGroup == null || pendingGroup.changes.size() >= MAX_GROUP_SIZE) {
+				pendingGroup = scheduleGroup();
+			}
+			pendingGroup.changes.add(queuedChange);
+			queuedChangeCount++;
+		}
+		return queuedChange.future;
+	}
+
+	/**
+	 * Stops any more changes from joining the group that is waiting to run, so that the next change starts a new group
+	 * that is submitted after anything else submitted to the collection in the meantime
+	 */
+	public void closePendingGroup() {
+		synchronized(pendingGroupLock) {
+			pendingGroup = null;
+		}
+	}
+
+	public int size() {
+		synchronized(pendingGroupLock) {
+			return queuedChangeCount;
+		}
+	}
+
+	private GroupCommitTask scheduleGroup() {
+		GroupCommitTask group = new GroupCommitTask();
+		if(stripe == NO_STRIPE) {
+			collection.submitTask(group);
+		} else {
+			collection.submitStripedTask(stripe, group);
+		}
+		return group;
+	}
+
+	private List<QueuedChange<T>> startGroup(GroupCommitTask group) {
+		synchronized(pendingGroupLock) {
+			if(pendingGroup == group) {
+				pendingGroup = null;
+			}
+			queuedChangeCount -= group.changes.size();
+			return group.changes;
+		}
+	}
+
+	private void commit(List<QueuedChange<T>> group) throws BlueDbException {
+		Map<BlueKey, IndividualChange<T>> changesByKey = new LinkedHashMap<>();
+		List<QueuedChange<T>> successfulChanges = new ArrayList<>();
+		for(QueuedChange<T> queuedChange : group) {
+			SingleRecordChangeTask<T> task = queuedChange.task;
+			try {
+				IndividualChange<T> previousChange = changesByKey.get(task.getKey());
+				BlueEntity<T> entity = previousChange != null ? previousChange.getNewEntity() : collection.getEntity(task.getKey());
+				IndividualChange<T> change = task.createChange(entity);
+				changesByKey.put(change.getKey(), previousChange != null ? previousChange.followedBy(change) : change);
+				successfulChanges.add(queuedChange);
+			} catch(BlueDbException e) {
+				queuedChange.future.completeExceptionally(task.toTaskFailure(e));
+			} catch(Throwable t) {
+				queuedChange.future.completeExceptionally(t);
+			}
+		}
+
+		if(successfulChanges.isEmpty()) {
+			return;
+		}
+
+		try {
+			RecoveryManager<T> recoveryManager = collection.getRecoveryManager();
+			Recoverable<T> changeBatch = recoveryManager.saveMassChangeForUnorderedChanges(changesByKey.values().iterator());
+			changeBatch.apply(collection);
+			recoveryManager.markComplete(changeBatch);
+		} catch(BlueDbException e) {
+			for(QueuedChange<T> queuedChange : successfulChanges) {
+				queuedChange.future.completeExceptionally(queuedChange.task.toTaskFailure(e));
+			}
+			throw e;
+		} catch(Throwable t) {
+			for(QueuedChange<T> queuedChange : successfulChanges) {
+				queuedChange.future.completeExceptionally(t);
+			}
+			throw t;
+		}
+
+		for(QueuedChange<T> queuedChange : successfulChanges) {
+			queuedChange.future.complete(null);
+		}
+	}
+
+	private static class QueuedChange<T extends Serializable> {
+		private final SingleRecordChangeTask<T> task;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private QueuedChange(SingleRecordChangeTask<T> task) {
+			this.task = task;
+		}
+	}
+
+	private class GroupCommitTask extends QueryTask {
+
+		private final List<QueuedChange<T>> changes = new ArrayList<>();
+
+		public GroupCommitTask() {
+			super("Group commit of single record changes");
+		}
+
+		@Override
+		public void execute() throws BlueDbException {
+			commit(startGroup(this));
+		}
+
+		@Override
+		public String toString() {
+			return "<" + getClass().getSimpleName() + " for " + collection.getPath() + ">";
+		}
+	}
+}
@@ -17,14 +17,19 @@ public abstract class QueryTask implements Runnable {
 	public void run() {
 		try {
 			execute();
-		} catch (DuplicateKeyException e) {
-			throw new RuntimeException("tried to insert duplicate key: " + e.getKey());
 		} catch (BlueDbException e) {
-			e.printStackTrace();
-			throw new RuntimeException("error executing " + this, e);
+			throw toTaskFailure(e);
 		}
 	}
 
+	protected RuntimeException toTaskFailure(BlueDbException e) {
+		if(e instanceof DuplicateKeyException) {
+			return new RuntimeException("tried to insert duplicate key: " + ((DuplicateKeyException) e).getKey());
+		}
+		e.printStackTrace();
+		return new RuntimeException("error executing " + this, e);
+	}
+
 	@Override
 	public String toString() {
 		return description;
@@ -11,7 +11,7 @@ import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.collection.ReadWriteCollectionOnDisk;
 import org.bluedb.disk.recovery.IndividualChange;
 import org.bluedb.disk.recovery.KeyValueToChangeMapper;
-import org.bluedb.disk.recovery.PendingMassChange;
+import org.bluedb.disk.recovery.Recoverable;
 import org.bluedb.disk.recovery.RecoveryManager;
 import org.bluedb.disk.serialization.BlueEntity;
 
@@ -34,6 +34,20 @@ public class SingleRecordChangeTask<T extends Serializable> extends QueryTask {
 		RecoveryManager<T> recoveryManager = collection.getRecoveryManager();
 		
 		BlueEntity<T> entity = collection.getEntity(key);
+		List<IndividualChange<T>> changeList = Arrays.asList(createChange(entity));
+		
+		Recoverable<T> changeBatch = recoveryManager.saveMassChangeForUnorderedChanges(changeList.iterator());
+		changeBatch.apply(collection);
+		recoveryManager.markComplete(changeBatch);
+	}
+
+	/**
+	 * Validates this task's requirements against the current entity and maps it to the change this task makes
+	 * @param entity the entity currently stored for this task's key, or null if there isn't one
+	 * @return the change this task makes
+	 * @throws BlueDbException if the entity doesn't meet this task's requirements or the change can't be created
+	 */
+	public IndividualChange<T> createChange(BlueEntity<T> entity) throws BlueDbException {
 		if(mode == SingleRecordChangeMode.REQUIRE_DOES_NOT_ALREADY_EXIST && entity != null) {
 			throw new DuplicateKeyException("Value for key " + key + " already exists", key);
 		} else if(mode == SingleRecordChangeMode.REQUIRE_ALREADY_EXISTS && entity == null) {
@@ -43,11 +57,11 @@ public class SingleRecordChangeTask<T extends Serializable> extends QueryTask {
 		BlueKey originalKey = entity != null ? entity.getKey() : key;
 		T originalValue = entity != null ? entity.getValue() : null;
 		
-		List<IndividualChange<T>> changeList = Arrays.asList(changeMapper.map(originalKey, originalValue));
-		
-		PendingMassChange<T> changeBatch = recoveryManager.saveMassChangeForUnorderedChanges(changeList.iterator());
-		changeBatch.apply(collection);
-		recoveryManager.markComplete(changeBatch);
+		return changeMapper.map(originalKey, originalValue);
+	}
+
+	public BlueKey getKey() {
+		return key;
 	}
 
 	@Override
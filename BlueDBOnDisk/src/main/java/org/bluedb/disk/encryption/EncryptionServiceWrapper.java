@@ -99,6 +99,20 @@ public class EncryptionServiceWrapper {
 		return bytes;
 	}
 
+	/**
+	 * Decrypts and returns the bytes using a given encryption version key.
+	 *
+	 * @param encryptionVersionKey the encryption version key the bytes were encrypted with.
+	 * @param bytes                the bytes to decrypt.
+	 * @return the decrypted bytes.
+	 */
+	public byte[] decryptOrThrow(String encryptionVersionKey, byte[] bytes) {
+		if (this.encryptionService != null) {
+			return this.decrypt(encryptionVersionKey, bytes);
+		}
+		throw new IllegalStateException("Unable to decrypt, encryption service not supplied");
+	}
+
 	private byte[] encrypt(String encryptionVersionKey, byte[] bytes) {
 		return encryptionService.encrypt(encryptionVersionKey, bytes);
 	}
@@ -1,16 +1,30 @@
 package org.bluedb.disk.executors;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class BlueExecutor {
 	private final GroupedThreadPool queryTaskExecutor;
 	private final ScheduledThreadPoolExecutor scheduledTaskExecutor;
+	private final ThreadPoolExecutor segmentTaskExecutor;
+	private final ExecutorService scanTaskExecutor;
 
 	public BlueExecutor(String name) {
+		this(name, Math.max(2, Runtime.getRuntime().availableProcessors()));
+	}
+
+	public BlueExecutor(String name, int segmentTaskThreadCount) {
 		queryTaskExecutor = GroupedThreadPool.createCachedPool(name + "-query-task-executor");
 		scheduledTaskExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(name + "-scheduled-task-executor"));
+		segmentTaskExecutor = new ThreadPoolExecutor(segmentTaskThreadCount, segmentTaskThreadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name + "-segment-task-executor"));
+		segmentTaskExecutor.allowCoreThreadTimeOut(true);
+		scanTaskExecutor = Executors.newCachedThreadPool(new NamedThreadFactory(name + "-scan-task-executor"));
 	}
 
 	public Future<?> submitQueryTask(String collectionName, Runnable task) {
@@ -22,6 +36,30 @@ public class BlueExecutor {
 		return queryTaskExecutor.getQueueSizeForGroup(collectionName);
 	}
 
+	/**
+	 * Submits work on a single segment that a query task has split off so that it can run alongside the work on other
+	 * segments. Segment tasks must never submit or wait on query tasks.
+	 * @param task the work to do on the segment
+	 * @return the future for the task
+	 */
+	public Future<?> submitSegmentTask(Callable<?> task) {
+		return segmentTaskExecutor.submit(task);
+	}
+
+	/**
+	 * Submits work that reads segments ahead of a query's consumer. A scan task can block for as long as the consumer
+	 * takes to catch up, so scan tasks get their own threads and never hold up query or segment tasks.
+	 * @param task the work reading ahead
+	 * @return the future for the task
+	 */
+	public <V> Future<V> submitScanTask(Callable<V> task) {
+		return scanTaskExecutor.submit(task);
+	}
+
+	public int getSegmentTaskThreadCount() {
+		return segmentTaskExecutor.getMaximumPoolSize();
+	}
+
 	public void scheduleTaskAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit timeUnit) {
 		scheduledTaskExecutor.scheduleAtFixedRate(task, initialDelay, period, timeUnit);
 	}
@@ -29,16 +67,25 @@ public class BlueExecutor {
 	public void shutdown() {
 		queryTaskExecutor.shutdown();
 		scheduledTaskExecutor.shutdown();
+		scanTaskExecutor.shutdown();
+		//The segment task executor stays up until the query tasks that are already queued have finished using it
 	}
 
 	public void shutdownNow() {
 		queryTaskExecutor.shutdownNow();
 		scheduledTaskExecutor.shutdownNow();
+		segmentTaskExecutor.shutdownNow();
+		scanTaskExecutor.shutdownNow();
 	}
 	
 	public boolean awaitTermination(long timeout, TimeUnit timeUnit) throws InterruptedException {
 		boolean queryExecutorTerminated = queryTaskExecutor.awaitTermination(timeout, timeUnit);
 		boolean scheduledExecutorTerminated = scheduledTaskExecutor.awaitTermination(timeout, timeUnit);
-		return queryExecutorTerminated && scheduledExecutorTerminated;
+		if (queryExecutorTerminated) {
+			segmentTaskExecutor.shutdown();
+		}
+		boolean segmentExecutorTerminated = queryExecutorTerminated && segmentTaskExecutor.awaitTermination(timeout, timeUnit);
+		boolean scanExecutorTerminated = scanTaskExecutor.awaitTermination(timeout, timeUnit);
+		return queryExecutorTerminated && scheduledExecutorTerminated && segmentExecutorTerminated && scanExecutorTerminated;
 	}
 }
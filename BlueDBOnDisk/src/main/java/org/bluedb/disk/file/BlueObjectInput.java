@@ -1,15 +1,27 @@
 package org.bluedb.disk.file;
 
 import java.io.Closeable;
+import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Optional;
 
 import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.encryption.EncryptionUtils;
+import org.bluedb.disk.file.ChunkCache.CachedChunk;
+import org.bluedb.disk.file.ChunkCache.CachedRecord;
+import org.bluedb.disk.file.ChunkCache.ChunkRecorder;
+import org.bluedb.disk.file.ChunkDeltas.ChunkDelta;
 import org.bluedb.disk.lock.BlueReadLock;
 import org.bluedb.disk.lock.LockManager;
 import org.bluedb.disk.metadata.BlueFileMetadata;
+import org.bluedb.disk.metadata.BlueFileMetadataKey;
+import org.bluedb.disk.serialization.BlueEntity;
 import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.KeyedRecordFormat;
 import org.bluedb.disk.serialization.validation.SerializationException;
 
 public class BlueObjectInput<T> implements Closeable, Iterator<T> {
@@ -20,17 +32,59 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 	private final EncryptionServiceWrapper encryptionService;
 	private final BlueInputStream blueInputStream;
 	private final BlueFileMetadata metadata;
+	private final ChunkDeltas deltas;
+	private final Iterator<CachedRecord> cachedRecords;
+	private ChunkRecorder chunkRecorder;
+	private IntegrityPolicy integrityPolicy = IntegrityPolicy.ROUND_TRIP;
 
 	private T next = null;
+	private BlueKey nextKey = null;
+	private BlueKey nextMergedKey = null;
+	private Object nextDecodedObject = null;
 	private byte[] nextRawBytes = null;
 	private byte[] lastRawBytes = null;
 	private byte[] nextUnencryptedBytes = null;
 	private byte[] lastUnencryptedBytes = null;
+	private BlueKey lastKey = null;
+	private boolean nextBytesHaveVerifiedChecksum = false;
+	private long[] blockPositions = null;
+	private int blocksLeft = 1;
+	private long blockEnd = Long.MAX_VALUE;
+
+	private boolean hasPendingFileRecord = false;
+	private byte[] pendingFileRawBytes = null;
+	private byte[] pendingFileUnencryptedBytes = null;
+	private boolean pendingFileHasVerifiedChecksum = false;
+	private BlueKey pendingFileKey = null;
+	private Object pendingFileObject = null;
 	
 	public BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService) throws BlueDbException {
 		this(readLock, serializer, encryptionService, createBlueInputStream(readLock));
 	}
 
+	public BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, ChunkDeltas deltas) throws BlueDbException {
+		this(readLock, serializer, encryptionService, createBlueInputStream(readLock), deltas);
+	}
+
+	/**
+	 * Reads the chunk's records from the cache if the current version of the file is cached. Otherwise the file is read
+	 * and its records are cached if all of them are read before the input is closed.
+	 * @param readLock a read lock on the chunk file
+	 * @param serializer the serializer for the records
+	 * @param encryptionService the encryption service for the records
+	 * @param deltas any deltas to merge in on top of the chunk, or null if there aren't any
+	 * @param chunkCache the cache to read the chunk from and save it to
+	 * @param cacheChunk false if the chunk is about to be replaced, so it shouldn't be cached if it is read from the file
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, ChunkDeltas deltas, ChunkCache chunkCache, boolean cacheChunk) throws BlueDbException {
+		this(readLock, serializer, encryptionService, deltas, chunkCache, chunkCache.get(readLock.getKey()), cacheChunk);
+	}
+
+	private BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, ChunkDeltas deltas, ChunkCache chunkCache, CachedChunk cachedChunk, boolean cacheChunk) throws BlueDbException {
+		this(readLock, serializer, encryptionService, cachedChunk == null ? createBlueInputStream(readLock) : null, deltas, cachedChunk, cachedChunk == null && cacheChunk ? chunkCache.startRecording(readLock.getKey()) : null);
+	}
+
 	private static BlueInputStream createBlueInputStream(BlueReadLock<Path> readLock) throws BlueDbException {
 		if(readLock != null && readLock.getKey() != null && readLock.getKey().toFile().exists()) {
 			return new BlueDataInputStream(readLock.getKey().toFile());
@@ -38,22 +92,51 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 		return null;
 	}
 
-	@SuppressWarnings("unchecked")
 	public BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueInputStream blueInputStream) throws BlueDbException {
+		this(readLock, serializer, encryptionService, blueInputStream, null);
+	}
+
+	private BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueInputStream blueInputStream, ChunkDeltas deltas) throws BlueDbException {
+		this(readLock, serializer, encryptionService, blueInputStream, deltas, null, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private BlueObjectInput(BlueReadLock<Path> readLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueInputStream blueInputStream, ChunkDeltas deltas, CachedChunk cachedChunk, ChunkRecorder chunkRecorder) throws BlueDbException {
 		try {
 			this.readLock = readLock;
 			this.serializer = serializer;
 			this.encryptionService = encryptionService;
 			this.blueInputStream = blueInputStream;
 			this.path = readLock.getKey();
+			this.deltas = deltas;
 
-			setNextBytesFromFile();
+			if (cachedChunk != null) {
+				this.cachedRecords = cachedChunk.getRecords().iterator();
+				this.metadata = cachedChunk.getMetadata() != null ? cachedChunk.getMetadata() : new BlueFileMetadata();
+				return;
+			}
+			this.cachedRecords = null;
+
+			readNextBytesFromFile();
 			if (nextRawBytes != null) {
-				Object firstObject = this.serializer.deserializeObjectFromByteArray(nextUnencryptedBytes);
+				Object firstObject = deserializeNextBytes();
+				if (chunkRecorder != null) {
+					if (firstObject instanceof BlueFileMetadata) {
+						chunkRecorder.setMetadata((BlueFileMetadata) firstObject);
+					} else {
+						chunkRecorder.record(nextRawBytes, nextUnencryptedBytes, false);
+					}
+					this.chunkRecorder = chunkRecorder.isAbandoned() ? null : chunkRecorder;
+				}
 				if (firstObject instanceof BlueFileMetadata) {
 					this.metadata = (BlueFileMetadata) firstObject;
 					nextRawBytes = null;
 					nextUnencryptedBytes = null;
+				} else if (deltas != null) {
+					this.metadata = new BlueFileMetadata();
+					holdFileRecordForMerge(getKey(firstObject), firstObject);
+					nextRawBytes = null;
+					nextUnencryptedBytes = null;
 				} else {
 					this.metadata = new BlueFileMetadata();
 					next = (T) firstObject;
@@ -62,6 +145,7 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 				this.metadata = new BlueFileMetadata();
 			}
 		} catch (Throwable t) {
+			abandonChunkRecording();
 			close();
 			throw new BlueDbException(t.getMessage(), t);
 		}
@@ -79,10 +163,23 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 		this.path = null;
 		this.blueInputStream = blueInputStream;
 		this.metadata = metadata;
+		this.deltas = null;
+		this.cachedRecords = null;
+	}
+
+	/**
+	 * Sets how records are validated as they are read. Records that have a verified checksum are only given full object
+	 * validation when the policy samples them.
+	 * @param integrityPolicy the integrity policy to use
+	 */
+	public void setIntegrityPolicy(IntegrityPolicy integrityPolicy) {
+		this.integrityPolicy = integrityPolicy;
 	}
 
 	@Override
 	public void close() {
+		abandonChunkRecording(); //A reader that stops early doesn't pay to read the rest of the chunk just to cache it
+
 		if (blueInputStream != null) {
 			blueInputStream.close();
 		}
@@ -106,6 +203,7 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 
 		lastRawBytes = nextRawBytes;
 		lastUnencryptedBytes = nextUnencryptedBytes;
+		lastKey = getKey(response);
 		next = null;
 		nextRawBytes = null;
 		nextUnencryptedBytes = null;
@@ -123,12 +221,19 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 	}
 
 	private void nextWithoutDeserializing() {
-		if (next == null) {
+		if (next == null && nextKey == null) {
 			setNextBytesFromFile();
 		}  // otherwise you've already peeked ahead
 		lastRawBytes = nextRawBytes;
 		lastUnencryptedBytes = nextUnencryptedBytes;
+		if (next != null) {
+			lastKey = getKey(next);
+		} else {
+			lastKey = nextKey != null ? nextKey : nextMergedKey;
+		}
 		next = null;
+		nextKey = null;
+		nextMergedKey = null;
 		nextRawBytes = null;
 		nextUnencryptedBytes = null;
 	}
@@ -140,6 +245,32 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 		return next;
 	}
 
+	/**
+	 * Reads the key of the next record without deserializing its value if the record is in the {@link KeyedRecordFormat}.
+	 * Any other record is deserialized whole and held for {@link #next()}. Either way the record can then be read with
+	 * {@link #next()} or skipped with {@link #nextRawBytesWithoutDeserializing()}. Records that can't be read are skipped,
+	 * so if the value of the record turns out to be corrupt then {@link #next()} returns the record after it.
+	 * @return the key of the next record, or null if there are no more records or the next one isn't an entity
+	 */
+	public BlueKey peekKey() {
+		while (next == null && nextKey == null) {
+			setNextBytesFromFile();
+			if (nextRawBytes == null) {
+				return null;
+			}
+			try {
+				if (nextDecodedObject == null && KeyedRecordFormat.isKeyedRecord(nextUnencryptedBytes)) {
+					nextKey = nextMergedKey != null ? nextMergedKey : deserializeNextKey();
+				} else {
+					next = nextFromCurrentBytes(null);
+				}
+			} catch (SerializationException t) {
+				t.printStackTrace(); // Object was corrupted. Print stack trace but try loading the next one
+			}
+		}
+		return next != null ? getKey(next) : nextKey;
+	}
+
 	private T nextValidObjectFromFile() {
 		while (true) {
 			try {
@@ -151,44 +282,408 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 	}
 
 	private T nextFromFile() throws SerializationException {
-		setNextBytesFromFile();
+		BlueKey peekedKey = nextKey;
+		nextKey = null;
+		if (peekedKey == null) {
+			setNextBytesFromFile();
+		}  // otherwise the bytes were read when the key was peeked at
 		if (nextRawBytes == null) {
 			return null;
 		}
-		Object object = serializer.deserializeObjectFromByteArray(nextUnencryptedBytes);
+		return nextFromCurrentBytes(peekedKey);
+	}
+
+	private T nextFromCurrentBytes(BlueKey key) throws SerializationException {
+		Object object = nextDecodedObject;
+		if (object == null) {
+			object = deserializeNextBytes(key != null ? key : nextMergedKey);
+		}
+		nextDecodedObject = null;
+		nextMergedKey = null;
 		@SuppressWarnings("unchecked")
 		T t = (T) object;
 		return t;
 	}
 
 	protected void setNextBytesFromFile() {
+		nextDecodedObject = null;
+		nextMergedKey = null;
+		if (deltas == null) {
+			readNextBytesFromFile();
+		} else {
+			setNextBytesMergingDeltas();
+		}
+	}
+
+	/*
+	 * Both the chunk and its deltas are sorted by key so we can merge them the same way that the BatchWriter merges a
+	 * chunk with a batch of changes. A delta replaces the record with an equal key and a tombstone removes it. Only the
+	 * keys of the records from the file are deserialized for the merge, so their values are left for whoever reads them.
+	 */
+	private void setNextBytesMergingDeltas() {
+		while (true) {
+			if (!hasPendingFileRecord) {
+				readNextBytesFromFile();
+				if (nextRawBytes != null) {
+					holdNextFileRecordForMerge();
+				}
+			}
+
+			ChunkDelta delta = deltas.peek();
+			BlueKey fileKey = hasPendingFileRecord ? pendingFileKey : null;
+			if (delta == null || (hasPendingFileRecord && (fileKey == null || (!fileKey.equals(delta.getKey()) && fileKey.compareTo(delta.getKey()) < 0)))) {
+				releasePendingFileRecord();
+				return;
+			}
+
+			if (fileKey != null && fileKey.equals(delta.getKey())) {
+				discardPendingFileRecord();
+			}
+			deltas.next();
+			if (!delta.isTombstone()) {
+				setNextBytesFromDelta(delta);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * A record in the KeyedRecordFormat only has its key deserialized. Any other record has to be deserialized whole to get
+	 * its key, so the object is held on to as well.
+	 */
+	private void holdNextFileRecordForMerge() {
+		BlueKey key = null;
+		Object object = null;
+		try {
+			if (KeyedRecordFormat.isKeyedRecord(nextUnencryptedBytes)) {
+				key = deserializeNextKey();
+			} else {
+				object = deserialize(nextUnencryptedBytes);
+				key = getKey(object);
+			}
+		} catch (SerializationException e) {
+			// Leave it to the normal read path to report and skip the corrupt record
+		}
+		holdFileRecordForMerge(key, object);
+	}
+
+	private void holdFileRecordForMerge(BlueKey key, Object object) {
+		hasPendingFileRecord = true;
+		pendingFileRawBytes = nextRawBytes;
+		pendingFileUnencryptedBytes = nextUnencryptedBytes;
+		pendingFileHasVerifiedChecksum = nextBytesHaveVerifiedChecksum;
+		pendingFileKey = key;
+		pendingFileObject = object;
+	}
+
+	private void releasePendingFileRecord() {
+		nextRawBytes = pendingFileRawBytes;
+		nextUnencryptedBytes = pendingFileUnencryptedBytes;
+		nextBytesHaveVerifiedChecksum = pendingFileHasVerifiedChecksum;
+		nextMergedKey = pendingFileKey;
+		nextDecodedObject = pendingFileObject;
+		discardPendingFileRecord();
+	}
+
+	private void discardPendingFileRecord() {
+		hasPendingFileRecord = false;
+		pendingFileRawBytes = null;
+		pendingFileUnencryptedBytes = null;
+		pendingFileHasVerifiedChecksum = false;
+		pendingFileKey = null;
+		pendingFileObject = null;
+	}
+
+	private void setNextBytesFromDelta(ChunkDelta delta) {
+		nextUnencryptedBytes = delta.getUnencryptedBytes();
+		nextMergedKey = delta.getKey();
+		nextDecodedObject = delta.getEntity();
+		nextBytesHaveVerifiedChecksum = false;
+		Optional<String> encryptionVersionKey = EncryptionUtils.getEncryptionVersionKey(metadata);
+		if (encryptionVersionKey.isPresent()) {
+			nextRawBytes = encryptionService.encryptOrThrow(encryptionVersionKey.get(), nextUnencryptedBytes); //Raw bytes have to match the encryption of the file the delta is merged into
+		} else {
+			nextRawBytes = nextUnencryptedBytes;
+		}
+	}
+
+	private Object deserializeNextBytes() throws SerializationException {
+		return deserializeNextBytes(null);
+	}
+
+	/*
+	 * A record in the KeyedRecordFormat is put back together into an entity. Its key is only deserialized if it wasn't
+	 * already read by peekKey.
+	 */
+	private Object deserializeNextBytes(BlueKey key) throws SerializationException {
+		if (!KeyedRecordFormat.isKeyedRecord(nextUnencryptedBytes)) {
+			return deserialize(nextUnencryptedBytes);
+		}
+		if (key == null) {
+			key = deserializeNextKey();
+		}
+		Object value = deserialize(KeyedRecordFormat.getValueBytes(nextUnencryptedBytes));
+		if (value != null && !(value instanceof Serializable)) {
+			throw new SerializationException("Keyed record has a value that isn't serializable: " + value.getClass());
+		}
+		return new BlueEntity<>(key, (Serializable) value);
+	}
+
+	private BlueKey deserializeNextKey() throws SerializationException {
+		if (!KeyedRecordFormat.isKeyedRecord(nextUnencryptedBytes)) {
+			return getKey(deserialize(nextUnencryptedBytes));
+		}
+		Object key = deserialize(KeyedRecordFormat.getKeyBytes(nextUnencryptedBytes));
+		if (!(key instanceof BlueKey)) {
+			throw new SerializationException("Keyed record has a key that isn't a BlueKey: " + (key != null ? key.getClass() : null));
+		}
+		return (BlueKey) key;
+	}
+
+	private Object deserialize(byte[] bytes) throws SerializationException {
+		if (nextBytesHaveVerifiedChecksum && !integrityPolicy.shouldValidateChecksummedRecord()) {
+			return serializer.deserializeObjectFromByteArrayWithoutValidation(bytes);
+		}
+		return serializer.deserializeObjectFromByteArray(bytes);
+	}
+
+	private static BlueKey getKey(Object object) {
+		return (object instanceof BlueEntity) ? ((BlueEntity<?>) object).getKey() : null;
+	}
+
+	private void readNextBytesFromFile() {
+		nextBytesHaveVerifiedChecksum = false;
+		if (cachedRecords != null) {
+			readNextCachedRecord();
+			return;
+		}
 		if (blueInputStream == null) {
 			nextRawBytes = null;
 			nextUnencryptedBytes = null;
 			return;
 		}
 		try {
-			blueInputStream.mark(Integer.MAX_VALUE);
-			Integer objectLength = blueInputStream.readNextFourBytesAsInt();
-			if (isInvalidObjectLength(objectLength)) {
-				if(objectLength != null) {
-					//Null just means end of file, not error
-					System.out.println("BlueDB Error: We just read in an object size of " + objectLength + " which doesn't make sense. We will skip this file since it must be corrupt: " + path);
-				}
+			if (isAtEndOfBlock()) {
 				nextRawBytes = null;
 				nextUnencryptedBytes = null;
-				this.blueInputStream.resetToLastMark();
 				return;
 			}
-			blueInputStream.mark(0); // Essentially removes the above mark, we don't want to tell the input stream to store more in it's buffer than is needed.
-			byte[] nextBytes = new byte[objectLength];
-			blueInputStream.readFully(nextBytes, 0, objectLength);
-			nextRawBytes = nextBytes;
-			nextUnencryptedBytes = encryptionService.decryptOrReturn(metadata, nextRawBytes);
+			while (true) {
+				blueInputStream.mark(Integer.MAX_VALUE);
+				Integer objectLength = blueInputStream.readNextFourBytesAsInt();
+				if (isInvalidObjectLength(objectLength)) {
+					if(objectLength != null && !isSparseKeyIndexFooter(objectLength)) {
+						//Null just means end of file, not error
+						System.out.println("BlueDB Error: We just read in an object size of " + objectLength + " which doesn't make sense. We will skip this file since it must be corrupt: " + path);
+						abandonChunkRecording();
+					}
+					finishChunkRecording();
+					nextRawBytes = null;
+					nextUnencryptedBytes = null;
+					this.blueInputStream.resetToLastMark();
+					return;
+				}
+				blueInputStream.mark(0); // Essentially removes the above mark, we don't want to tell the input stream to store more in it's buffer than is needed.
+				byte[] nextBytes = new byte[objectLength];
+				blueInputStream.readFully(nextBytes, 0, objectLength);
+				if (hasRecordChecksums()) {
+					Integer checksum = blueInputStream.readNextFourBytesAsInt();
+					if (checksum == null) {
+						//The record was never finished so treat it like the end of the file
+						abandonChunkRecording();
+						nextRawBytes = null;
+						nextUnencryptedBytes = null;
+						return;
+					}
+					if (checksum != BlueObjectOutput.calculateChecksum(nextBytes)) {
+						System.out.println("BlueDB Error: A record failed its checksum. We will skip it since it must be corrupt: " + path);
+						abandonChunkRecording();
+						continue;
+					}
+					nextBytesHaveVerifiedChecksum = true;
+				}
+				nextRawBytes = nextBytes;
+				nextUnencryptedBytes = encryptionService.decryptOrReturn(metadata, nextRawBytes);
+				if (chunkRecorder != null) {
+					chunkRecorder.record(nextRawBytes, nextUnencryptedBytes, nextBytesHaveVerifiedChecksum);
+					if (chunkRecorder.isAbandoned()) {
+						chunkRecorder = null;
+					}
+				}
+				return;
+			}
 		} catch (BlueDbException e) {
 			e.printStackTrace();
+			abandonChunkRecording();
+			nextRawBytes = null;
+			nextUnencryptedBytes = null;
+			nextBytesHaveVerifiedChecksum = false;
+		}
+	}
+
+	private void readNextCachedRecord() {
+		if (!cachedRecords.hasNext()) {
 			nextRawBytes = null;
 			nextUnencryptedBytes = null;
+			return;
+		}
+		CachedRecord record = cachedRecords.next();
+		nextRawBytes = record.getRawBytes();
+		nextUnencryptedBytes = record.getUnencryptedBytes();
+		nextBytesHaveVerifiedChecksum = record.isChecksumVerified();
+	}
+
+	/*
+	 * The chunk is only cached if every record in it was read without any problems. The read lock is still held here so
+	 * the file can't have been replaced since the recorder saw its version.
+	 */
+	private void finishChunkRecording() {
+		if (chunkRecorder != null) {
+			chunkRecorder.finish();
+			chunkRecorder = null;
+		}
+	}
+
+	private void abandonChunkRecording() {
+		if (chunkRecorder != null) {
+			chunkRecorder.abandon();
+			chunkRecorder = null;
+		}
+	}
+
+	/*
+	 * The metadata record at the front of the file never has a checksum because it is what says whether the rest of the
+	 * records have one.
+	 */
+	private boolean hasRecordChecksums() {
+		return metadata != null && metadata.containsKey(BlueFileMetadataKey.RECORD_CHECKSUMS);
+	}
+
+	private boolean isSparseKeyIndexFooter(int objectLength) {
+		return objectLength < 0 && metadata != null && metadata.containsKey(BlueFileMetadataKey.SPARSE_KEY_INDEX);
+	}
+
+	/**
+	 * Binary searches the records at the offsets in the chunk's sparse key index and moves to the last one that has a
+	 * lower grouping number. The records with the grouping number are somewhere in the next few records after it. Nothing
+	 * is skipped unless this is reading a seekable file without deltas and nothing has been read yet.
+	 * @param sparseKeyIndex the index from the end of the file being read
+	 * @param groupingNumber the grouping number being looked up
+	 * @throws BlueDbException if the file can't be read
+	 */
+	public void skipToGroupingNumber(SparseKeyIndex sparseKeyIndex, long groupingNumber) throws BlueDbException {
+		if (!(blueInputStream instanceof BlueSeekableInputStream) || deltas != null || next != null || sparseKeyIndex.size() == 0) {
+			return;
+		}
+		BlueSeekableInputStream seekableInputStream = (BlueSeekableInputStream) blueInputStream;
+		long firstRecordPosition = seekableInputStream.getCursorPosition();
+		long startPosition = firstRecordPosition;
+		int low = 0;
+		int high = sparseKeyIndex.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			BlueKey key = readKeyAt(seekableInputStream, sparseKeyIndex.getOffset(middle));
+			if (key == null) {
+				startPosition = firstRecordPosition; // Something is wrong with the index so just read the whole file
+				break;
+			}
+			if (key.getGroupingNumber() < groupingNumber) {
+				startPosition = sparseKeyIndex.getOffset(middle);
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		seekableInputStream.setCursorPosition(startPosition);
+	}
+
+	/**
+	 * Splits the records into blocks that start at the offsets in the chunk's sparse key index, so that the chunk can be
+	 * read backwards a block at a time with {@link #moveToPreviousBlock()}. The blocks at the end of the file that only
+	 * have records with grouping numbers above the maximum are left out. A file that can't be seeked in, or that has
+	 * deltas, is read as a single block.
+	 * @param sparseKeyIndex the index from the end of the file being read
+	 * @param maxGroupingNumber the highest grouping number that is going to be read
+	 * @throws BlueDbException if the file can't be read
+	 */
+	public void readBlocksBackwards(SparseKeyIndex sparseKeyIndex, long maxGroupingNumber) throws BlueDbException {
+		if (!(blueInputStream instanceof BlueSeekableInputStream) || deltas != null || next != null || sparseKeyIndex.size() == 0) {
+			return;
+		}
+		BlueSeekableInputStream seekableInputStream = (BlueSeekableInputStream) blueInputStream;
+		long firstRecordPosition = seekableInputStream.getCursorPosition();
+		int blockCount = 0;
+		int low = 0;
+		int high = sparseKeyIndex.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			BlueKey key = readKeyAt(seekableInputStream, sparseKeyIndex.getOffset(middle));
+			if (key == null) {
+				seekableInputStream.setCursorPosition(firstRecordPosition); // Something is wrong with the index so just read the whole file
+				return;
+			}
+			if (key.getGroupingNumber() <= maxGroupingNumber) {
+				blockCount = middle + 1;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		long[] positions = new long[blockCount + 2];
+		int positionCount = 0;
+		positions[positionCount++] = firstRecordPosition;
+		for (int entry = 0; entry <= blockCount && entry < sparseKeyIndex.size(); entry++) {
+			if (sparseKeyIndex.getOffset(entry) > positions[positionCount - 1]) {
+				positions[positionCount++] = sparseKeyIndex.getOffset(entry);
+			}
+		}
+		if (blockCount == sparseKeyIndex.size()) {
+			positions[positionCount++] = Long.MAX_VALUE; // The last block runs to the footer
+		}
+		blockPositions = Arrays.copyOf(positions, positionCount);
+		blocksLeft = positionCount - 1;
+	}
+
+	/**
+	 * Moves to the start of the block before the one that was read last, or to the start of the last block the first time
+	 * it is called. Reading then stops at the end of the block. Anything that was peeked at is dropped.
+	 * @return false if there are no blocks left
+	 * @throws BlueDbException if the file can't be read
+	 */
+	public boolean moveToPreviousBlock() throws BlueDbException {
+		if (blocksLeft == 0) {
+			return false;
+		}
+		blocksLeft--;
+		if (blockPositions != null) {
+			((BlueSeekableInputStream) blueInputStream).setCursorPosition(blockPositions[blocksLeft]);
+			blockEnd = blockPositions[blocksLeft + 1];
+			next = null;
+			nextKey = null;
+			nextMergedKey = null;
+			nextDecodedObject = null;
+			nextRawBytes = null;
+			nextUnencryptedBytes = null;
+		}
+		return true;
+	}
+
+	private boolean isAtEndOfBlock() throws BlueDbException {
+		return blockEnd != Long.MAX_VALUE && ((BlueSeekableInputStream) blueInputStream).getCursorPosition() >= blockEnd;
+	}
+
+	private BlueKey readKeyAt(BlueSeekableInputStream seekableInputStream, long position) throws BlueDbException {
+		seekableInputStream.setCursorPosition(position);
+		readNextBytesFromFile();
+		try {
+			return nextRawBytes != null ? deserializeNextKey() : null;
+		} catch (SerializationException e) {
+			return null;
+		} finally {
+			nextRawBytes = null;
+			nextUnencryptedBytes = null;
+			nextBytesHaveVerifiedChecksum = false;
 		}
 	}
 
@@ -221,6 +716,21 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 	public byte[] getLastUnencryptedBytes() {
 		return lastUnencryptedBytes;
 	}
+
+	/**
+	 * @return the key of the last record that was read, or null if it was read without being deserialized. Records that
+	 * were peeked at or merged with deltas have had their keys deserialized even if they were read as bytes.
+	 */
+	public BlueKey getLastKey() {
+		return lastKey;
+	}
+
+	/**
+	 * @return true if deltas are merged into the records from the file, so the file's footer doesn't describe them
+	 */
+	public boolean hasDeltas() {
+		return deltas != null;
+	}
 	
 	public static class BlueObjectInputState<T> {
 		public T next = null;
@@ -228,6 +738,7 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 		public byte[] lastRawBytes = null;
 		public byte[] nextUnencryptedBytes = null;
 		public byte[] lastUnencryptedBytes = null;
+		public BlueKey nextKey = null;
 		
 		public BlueObjectInputState(T next, byte[] nextRawBytes, byte[] lastRawBytes, byte[] nextUnencryptedBytes, byte[] lastUnencryptedBytes) {
 			this.next = next;
@@ -239,7 +750,9 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 	}
 	
 	public BlueObjectInputState<T> getState() {
-		return new BlueObjectInputState<>(next, nextRawBytes, lastRawBytes, nextUnencryptedBytes, lastUnencryptedBytes);
+		BlueObjectInputState<T> state = new BlueObjectInputState<>(next, nextRawBytes, lastRawBytes, nextUnencryptedBytes, lastUnencryptedBytes);
+		state.nextKey = nextKey;
+		return state;
 	}
 	
 	public void setState(BlueObjectInputState<T> state) {
@@ -248,6 +761,7 @@ public class BlueObjectInput<T> implements Closeable, Iterator<T> {
 		this.lastRawBytes = state.lastRawBytes;
 		this.nextUnencryptedBytes = state.nextUnencryptedBytes;
 		this.lastUnencryptedBytes = state.lastUnencryptedBytes;
+		this.nextKey = state.nextKey;
 	}
 
 }
\ No newline at end of file
@@ -5,18 +5,26 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.encryption.EncryptionUtils;
 import org.bluedb.disk.metadata.BlueFileMetadata;
 import org.bluedb.disk.metadata.BlueFileMetadataKey;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
 import org.bluedb.disk.lock.BlueWriteLock;
 import org.bluedb.disk.lock.LockManager;
+import org.bluedb.disk.serialization.BlueEntity;
 import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.KeyedRecordFormat;
+import org.bluedb.disk.serialization.validation.SerializationException;
 
 public class BlueObjectOutput<T> implements Closeable {
 
+	public static final String CHECKSUM_ALGORITHM = "CRC32";
+
 	private final BlueWriteLock<Path> lock;
 	private final Path path;
 	private final BlueSerializer serializer;
@@ -24,7 +32,13 @@ public class BlueObjectOutput<T> implements Closeable {
 	private final DataOutputStream dataOutputStream;
 	private final BlueFileMetadata metadata;
 
+	private IntegrityPolicy integrityPolicy = IntegrityPolicy.ROUND_TRIP;
+	private SparseKeyIndex.Builder sparseKeyIndexBuilder = null;
+	private ChunkStatistics.Builder statisticsBuilder = null;
+	private boolean keyedRecords = false;
+	private Consumer<? super T> writeListener = null;
 	private boolean hasBeenWrittenTo = false;
+	private long bytesWritten = 0;
 
 	public BlueObjectOutput(BlueWriteLock<Path> writeLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService) throws BlueDbException {
 		try {
@@ -67,6 +81,46 @@ public class BlueObjectOutput<T> implements Closeable {
 		}
 	}
 
+	/**
+	 * Creates an output that adds records to the end of an existing file rather than replacing it.
+	 * @param writeLock a write lock on the file to append to
+	 * @param existingMetadata the metadata already at the start of the file or null if the file is new or empty. Appended
+	 * records are encrypted according to this metadata so that the whole file can be read with it.
+	 * @return an output that appends to the file
+	 * @throws BlueDbException if the file can't be opened
+	 */
+	public static <T> BlueObjectOutput<T> createForAppend(BlueWriteLock<Path> writeLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueFileMetadata existingMetadata) throws BlueDbException {
+		return new BlueObjectOutput<>(writeLock, serializer, encryptionService, existingMetadata);
+	}
+
+	private BlueObjectOutput(BlueWriteLock<Path> writeLock, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueFileMetadata existingMetadata) throws BlueDbException {
+		try {
+			lock = writeLock;
+			path = lock.getKey();
+			this.serializer = serializer;
+			this.encryptionService = encryptionService;
+			File file = path.toFile();
+			FileUtils.ensureDirectoryExists(file);
+			dataOutputStream = FileUtils.openDataOutputStream(file, true);
+
+			if (existingMetadata != null && existingMetadata.containsKey(BlueFileMetadataKey.SPARSE_KEY_INDEX)) {
+				throw new BlueDbException("Cannot append to " + path + " because its sparse key index footer has to stay at the end of the file");
+			}
+			if (existingMetadata != null) {
+				metadata = existingMetadata;
+				hasBeenWrittenTo = true;
+			} else {
+				metadata = new BlueFileMetadata();
+				if (encryptionService.isEncryptionEnabled()) {
+					metadata.put(BlueFileMetadataKey.ENCRYPTION_VERSION_KEY, encryptionService.getCurrentEncryptionVersionKey());
+				}
+			}
+		} catch (Throwable t) {
+			close();
+			throw new BlueDbException(t.getMessage(), t);
+		}
+	}
+
 	public static <T> BlueObjectOutput<T> createWithoutLock(Path path, BlueSerializer serializer, EncryptionServiceWrapper encryptionService) throws BlueDbException {
 		return new BlueObjectOutput<>(path, serializer, encryptionService);
 	}
@@ -88,15 +142,87 @@ public class BlueObjectOutput<T> implements Closeable {
 		}
 	}
 
+	/**
+	 * Sets how the records written by this output are protected. A new file gets a checksum after each record if the
+	 * policy has checksums enabled. A file that already has records keeps the framing it was started with.
+	 * @param integrityPolicy the integrity policy to use
+	 */
+	public void setIntegrityPolicy(IntegrityPolicy integrityPolicy) {
+		this.integrityPolicy = integrityPolicy;
+		if (!hasBeenWrittenTo && integrityPolicy.isChecksumsEnabled()) {
+			metadata.put(BlueFileMetadataKey.RECORD_CHECKSUMS, CHECKSUM_ALGORITHM);
+		}
+	}
+
+	/**
+	 * Saves a {@link SparseKeyIndex} footer when this output is closed so that the file can be searched by grouping
+	 * number. The footer includes the {@link ChunkStatistics} of the records written. The records must be written in key
+	 * order. A file that already has records is left without a footer.
+	 * @param recordsPerEntry the number of records between each offset saved in the index
+	 */
+	public void enableSparseKeyIndex(int recordsPerEntry) {
+		if (!hasBeenWrittenTo) {
+			sparseKeyIndexBuilder = new SparseKeyIndex.Builder(recordsPerEntry);
+			statisticsBuilder = new ChunkStatistics.Builder();
+			metadata.put(BlueFileMetadataKey.SPARSE_KEY_INDEX, String.valueOf(recordsPerEntry));
+		}
+	}
+
+	/**
+	 * Saves each entity written with {@link #write(Object)} in the {@link KeyedRecordFormat} so that readers can check its
+	 * key without deserializing its value. Records that are copied as bytes are saved in whatever format they already have.
+	 */
+	public void enableKeyedRecords() {
+		keyedRecords = true;
+	}
+
+	/**
+	 * Saves a filter over the keys in the file with its {@link SparseKeyIndex} footer. It is ignored if the output isn't
+	 * saving a footer or if the file is encrypted, since the filter could be used to check whether a key is in the file.
+	 * The filter can be set or replaced any time before the output is closed.
+	 * @param bloomFilter a filter that includes every key written to the file, or null for none
+	 */
+	public void setBloomFilter(ChunkBloomFilter bloomFilter) {
+		if (sparseKeyIndexBuilder != null && !metadata.containsKey(BlueFileMetadataKey.ENCRYPTION_VERSION_KEY)) {
+			sparseKeyIndexBuilder.setBloomFilter(bloomFilter);
+		}
+	}
+
+	/**
+	 * @param writeListener called with each object after it is written with {@link #write(Object)}. Records that are
+	 * copied as bytes aren't reported.
+	 */
+	public void setWriteListener(Consumer<? super T> writeListener) {
+		this.writeListener = writeListener;
+	}
+
 	public void writeBytesAndAllowEncryption(byte[] unencryptedBytes) throws BlueDbException {
-		writeBytes(unencryptedBytes, false);
+		writeBytes(unencryptedBytes, null, false);
+	}
+
+	/**
+	 * @param unencryptedBytes the serialized record
+	 * @param key the key of the record if it is known, so that it is included in the file's {@link ChunkStatistics}
+	 * @throws BlueDbException if the record can't be written
+	 */
+	public void writeBytesAndAllowEncryption(byte[] unencryptedBytes, BlueKey key) throws BlueDbException {
+		writeBytes(unencryptedBytes, key, false);
 	}
 
 	public void writeBytesAndForceSkipEncryption(byte[] bytes) throws BlueDbException {
-		writeBytes(bytes, true);
+		writeBytes(bytes, null, true);
 	}
 
-	private void writeBytes(byte[] bytes, boolean forceSkipEncryption) throws BlueDbException {
+	/**
+	 * @param bytes the record exactly as it is saved in another file with the same encryption
+	 * @param key the key of the record if it is known, so that it is included in the file's {@link ChunkStatistics}
+	 * @throws BlueDbException if the record can't be written
+	 */
+	public void writeBytesAndForceSkipEncryption(byte[] bytes, BlueKey key) throws BlueDbException {
+		writeBytes(bytes, key, true);
+	}
+
+	private void writeBytes(byte[] bytes, BlueKey key, boolean forceSkipEncryption) throws BlueDbException {
 		if (!hasBeenWrittenTo) {
 			writeMetadata();
 			hasBeenWrittenTo = true;
@@ -107,9 +233,7 @@ public class BlueObjectOutput<T> implements Closeable {
 				bytes = encryptionService.encryptOrThrow(encryptionVersionKey, bytes);
 			}
 			FileUtils.validateBytes(bytes);
-			int len = bytes.length;
-			dataOutputStream.writeInt(len);
-			dataOutputStream.write(bytes);
+			writeRecord(bytes, key);
 		} catch (Throwable t) {
 			t.printStackTrace();
 			throw new BlueDbException("error writing to file " + path, t);
@@ -125,18 +249,62 @@ public class BlueObjectOutput<T> implements Closeable {
 			throw new BlueDbException("cannot write null to " + this.getClass().getSimpleName());
 		}
 		try {
-			byte[] bytes = serializer.serializeObjectToByteArray(value);
+			byte[] bytes = serialize(value);
 			if (metadata.containsKey(BlueFileMetadataKey.ENCRYPTION_VERSION_KEY)) {
 				String encryptionVersionKey = metadata.get(BlueFileMetadataKey.ENCRYPTION_VERSION_KEY).get();
 				bytes = encryptionService.encryptOrThrow(encryptionVersionKey, bytes);
 			}
-			int len = bytes.length;
-			dataOutputStream.writeInt(len);
-			dataOutputStream.write(bytes);
+			writeRecord(bytes, value instanceof BlueEntity ? ((BlueEntity<?>) value).getKey() : null);
 		} catch (Throwable t) {
 			t.printStackTrace();
 			throw new BlueDbException("error writing to file " + path, t);
 		}
+		if (writeListener != null) {
+			writeListener.accept(value);
+		}
+	}
+
+	private byte[] serialize(T value) throws SerializationException {
+		if (keyedRecords && value instanceof BlueEntity && ((BlueEntity<?>) value).getKey() != null) {
+			BlueEntity<?> entity = (BlueEntity<?>) value;
+			return KeyedRecordFormat.toBytes(serializeObject(entity.getKey()), serializeObject(entity.getValue()));
+		}
+		return serializeObject(value);
+	}
+
+	private byte[] serializeObject(Object value) throws SerializationException {
+		if (hasRecordChecksums() && !integrityPolicy.shouldValidateChecksummedRecord()) {
+			return serializer.serializeObjectToByteArrayWithoutRoundTrip(value);
+		}
+		return serializer.serializeObjectToByteArray(value);
+	}
+
+	private void writeRecord(byte[] bytes, BlueKey key) throws IOException {
+		if (sparseKeyIndexBuilder != null) {
+			sparseKeyIndexBuilder.recordWrittenAt(bytesWritten);
+			statisticsBuilder.recordWritten(key);
+		}
+		dataOutputStream.writeInt(bytes.length);
+		dataOutputStream.write(bytes);
+		bytesWritten += 4 + bytes.length;
+		if (hasRecordChecksums()) {
+			dataOutputStream.writeInt(calculateChecksum(bytes));
+			bytesWritten += 4;
+		}
+	}
+
+	private boolean hasRecordChecksums() {
+		return metadata.containsKey(BlueFileMetadataKey.RECORD_CHECKSUMS);
+	}
+
+	/*
+	 * The checksum covers the bytes exactly as they are saved, so a record can be checked before it is decrypted. Java 8
+	 * doesn't have CRC32C so this uses CRC32, which is just as good at catching torn writes and flipped bits.
+	 */
+	static int calculateChecksum(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
 	}
 
 	public void writeAll(BlueObjectInput<?> input) throws BlueDbException {
@@ -147,9 +315,9 @@ public class BlueObjectOutput<T> implements Closeable {
 		byte[] nextRawBytes = input.nextRawBytesWithoutDeserializing();
 		while (nextRawBytes != null && nextRawBytes.length > 0) {
 			if (shouldSkipEncryptionForUnchangedData) {
-				writeBytesAndForceSkipEncryption(input.getLastRawBytes());
+				writeBytesAndForceSkipEncryption(input.getLastRawBytes(), input.getLastKey());
 			} else {
-				writeBytesAndAllowEncryption(input.getLastUnencryptedBytes());
+				writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), input.getLastKey());
 			}
 			nextRawBytes = input.nextRawBytesWithoutDeserializing();
 		}
@@ -157,6 +325,16 @@ public class BlueObjectOutput<T> implements Closeable {
 
 	@Override
 	public void close() {
+		if (dataOutputStream != null && sparseKeyIndexBuilder != null && hasBeenWrittenTo) {
+			try {
+				sparseKeyIndexBuilder.setStatistics(statisticsBuilder.build(metadata.containsKey(BlueFileMetadataKey.ENCRYPTION_VERSION_KEY) ? null : serializer));
+				sparseKeyIndexBuilder.writeFooter(dataOutputStream, bytesWritten);
+			} catch (IOException e) {
+				e.printStackTrace(); // Readers ignore a partial footer and fall back to reading the whole file
+			}
+			sparseKeyIndexBuilder = null;
+		}
+
 		if (dataOutputStream != null) {
 			try {
 				dataOutputStream.close();
@@ -176,6 +354,7 @@ public class BlueObjectOutput<T> implements Closeable {
 			int len = bytes.length;
 			dataOutputStream.writeInt(len);
 			dataOutputStream.write(bytes);
+			bytesWritten += 4 + len;
 		} catch (Throwable t) {
 			t.printStackTrace();
 			throw new BlueDbException("error writing metadata to file " + path, t);
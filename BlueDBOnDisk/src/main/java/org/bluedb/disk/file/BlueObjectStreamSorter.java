@@ -1,5 +1,6 @@
 package org.bluedb.disk.file;
 
+import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -17,8 +18,9 @@ import org.bluedb.disk.StreamUtils;
 import org.bluedb.disk.lock.BlueReadLock;
 import org.bluedb.disk.metadata.BlueFileMetadataKey;
 
-public class BlueObjectStreamSorter<T extends ComparableAndSerializable<T>> {
+public class BlueObjectStreamSorter<T extends Serializable> {
 	private final BlueObjectStreamSorterConfig config;
+	private final Comparator<T> comparator;
 	
 	private final Path outputFilepath;
 	private final ReadWriteFileManager fileManager;
@@ -30,12 +32,22 @@ public class BlueObjectStreamSorter<T extends ComparableAndSerializable<T>> {
 	private final List<Path> largeSortedChunkFiles = new LinkedList<>();
 	private final List<Path> sortedChunkFiles = new LinkedList<>();
 	
-	public BlueObjectStreamSorter(Path outputFilepath, ReadWriteFileManager fileManager, Map<BlueFileMetadataKey, String> metadataEntries, BlueObjectStreamSorterConfig config) {
-		this(null, outputFilepath, fileManager, metadataEntries, config);
+	public static <T extends ComparableAndSerializable<T>> BlueObjectStreamSorter<T> inNaturalOrder(Path outputFilepath, ReadWriteFileManager fileManager, Map<BlueFileMetadataKey, String> metadataEntries, BlueObjectStreamSorterConfig config) {
+		return inNaturalOrder(null, outputFilepath, fileManager, metadataEntries, config);
 	}
 	
-	public BlueObjectStreamSorter(Iterator<T> input, Path outputFilepath, ReadWriteFileManager fileManager, Map<BlueFileMetadataKey, String> metadataEntries, BlueObjectStreamSorterConfig config) {
+	/**
+	 * Sorts the objects by their natural order. Use 
+	 * {@link #BlueObjectStreamSorter(Iterator, Comparator, Path, ReadWriteFileManager, Map, BlueObjectStreamSorterConfig)}
+	 * to sort by anything else.
+	 */
+	public static <T extends ComparableAndSerializable<T>> BlueObjectStreamSorter<T> inNaturalOrder(Iterator<T> input, Path outputFilepath, ReadWriteFileManager fileManager, Map<BlueFileMetadataKey, String> metadataEntries, BlueObjectStreamSorterConfig config) {
+		return new BlueObjectStreamSorter<>(input, Comparator.naturalOrder(), outputFilepath, fileManager, metadataEntries, config);
+	}
+	
+	public BlueObjectStreamSorter(Iterator<T> input, Comparator<T> comparator, Path outputFilepath, ReadWriteFileManager fileManager, Map<BlueFileMetadataKey, String> metadataEntries, BlueObjectStreamSorterConfig config) {
 		this.input = input;
+		this.comparator = Comparator.nullsFirst(comparator);
 		this.outputFilepath = outputFilepath;
 		this.fileManager = fileManager;
 		this.metadataEntries = metadataEntries;
@@ -44,7 +56,7 @@ public class BlueObjectStreamSorter<T extends ComparableAndSerializable<T>> {
 	
 	public void addBatchOfObjectsToBeSorted(List<T> batchToBeSorted) throws BlueDbException {
 		List<T> sortedChunk = StreamUtils.stream(batchToBeSorted)
-			.sorted(Comparator.nullsFirst(T::compareTo))
+			.sorted(comparator)
 			.collect(Collectors.toList());
 		writeSortedChunkToNextChunkFile(sortedChunk);
 	}
@@ -100,7 +112,7 @@ public class BlueObjectStreamSorter<T extends ComparableAndSerializable<T>> {
 		while(nextChunk.size() < config.maxRecordsInInitialChunks && inputExistsAndHasNext()) {
 			nextChunk.add(input.next());
 		}
-		Collections.sort(nextChunk, Comparator.nullsFirst(T::compareTo));
+		Collections.sort(nextChunk, comparator);
 		return nextChunk;
 	}
 	
@@ -216,7 +228,7 @@ public class BlueObjectStreamSorter<T extends ComparableAndSerializable<T>> {
 	private BlueObjectInput<T> getInputWithNextChange(List<BlueObjectInput<T>> nextSortedChunkFileInputsToCombine) {
 		BlueObjectInput<T> inputWithNextChange = StreamUtils.stream(nextSortedChunkFileInputsToCombine)
 			.filter(BlueObjectInput::hasNext)
-			.min(Comparator.comparing(BlueObjectInput::peek))
+			.min((first, second) -> comparator.compare(first.peek(), second.peek()))
 			.orElse(null);
 		return inputWithNextChange;
 	}
@@ -12,6 +12,7 @@ public class BlueSeekableInputStream implements BlueInputStream {
 	private long totalBytesInStream = -1;
 	
 	private long markedPosition = 0;
+	private final byte[] intBuffer = new byte[4];
 	
 	public BlueSeekableInputStream(RandomAccessFile randomAccessFile) throws BlueDbException {
 		try {
@@ -47,6 +48,26 @@ public class BlueSeekableInputStream implements BlueInputStream {
 		return totalBytesInStream;
 	}
 
+	/*
+	 * The default reads one byte at a time which is a separate read from the file each time since this isn't buffered
+	 */
+	@Override
+	public Integer readNextFourBytesAsInt() throws BlueDbException {
+		try {
+			int bytesRead = 0;
+			while (bytesRead < intBuffer.length) {
+				int count = randomAccessFile.read(intBuffer, bytesRead, intBuffer.length - bytesRead);
+				if (count < 0) {
+					return null;
+				}
+				bytesRead += count;
+			}
+			return ((intBuffer[0] & 0xFF) << 24) + ((intBuffer[1] & 0xFF) << 16) + ((intBuffer[2] & 0xFF) << 8) + (intBuffer[3] & 0xFF);
+		} catch (Throwable t) {
+			throw new BlueDbException("Failed to read the next four bytes from " + getDescription(), t);
+		}
+	}
+
 	@Override
 	public int readNextByteAsInt() throws BlueDbException {
 		try {
@@ -0,0 +1,179 @@
+package org.bluedb.disk.file;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+import org.bluedb.api.keys.BlueKey;
+
+/**
+ * A Bloom filter over the keys saved in a chunk. It is saved in the chunk's {@link SparseKeyIndex} footer so that a
+ * point lookup for a key that isn't in the chunk can be answered without reading any of the chunk's records, and so that
+ * it is always replaced along with the chunk. The filter may contain keys that are no longer in the chunk but it never
+ * leaves out a key that is in the chunk. It doesn't cover the chunk's deltas so it is only used when there are none.
+ */
+public class ChunkBloomFilter {
+
+	public static final int BITS_PER_KEY = 10;
+	public static final int HASH_COUNT = 7;
+
+	private static final int HEADER_LENGTH = 3 * 4;
+	private static final int MAX_OVERFILL_FACTOR = 2;
+
+	private final long[] words;
+	private final int hashCount;
+	private int keyCount;
+
+	protected ChunkBloomFilter(long[] words, int hashCount, int keyCount) {
+		this.words = words;
+		this.hashCount = hashCount;
+		this.keyCount = keyCount;
+	}
+
+	/**
+	 * @param expectedKeyCount the number of keys the filter is sized for
+	 * @return an empty filter with about {@link #BITS_PER_KEY} bits for each expected key
+	 */
+	public static ChunkBloomFilter create(int expectedKeyCount) {
+		long bitCount = Math.max(64, (long) Math.max(0, expectedKeyCount) * BITS_PER_KEY);
+		int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64);
+		return new ChunkBloomFilter(new long[wordCount], HASH_COUNT, 0);
+	}
+
+	public static ChunkBloomFilter create(Collection<? extends BlueKey> keys) {
+		ChunkBloomFilter filter = create(keys.size());
+		filter.addAll(keys);
+		return filter;
+	}
+
+	public void add(BlueKey key) {
+		long hash = hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		long bitCount = getBitCount();
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & 0xFFFFFFFFL) % bitCount;
+			words[(int) (bit >>> 6)] |= 1L << bit;
+		}
+		keyCount++;
+	}
+
+	public void addAll(Collection<? extends BlueKey> keys) {
+		for (BlueKey key : keys) {
+			add(key);
+		}
+	}
+
+	/**
+	 * @param key the key being looked up
+	 * @return false if the key is definitely not in the chunk
+	 */
+	public boolean mightContain(BlueKey key) {
+		long hash = hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		long bitCount = getBitCount();
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & 0xFFFFFFFFL) % bitCount;
+			if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getKeyCount() {
+		return keyCount;
+	}
+
+	public long getBitCount() {
+		return (long) words.length * 64;
+	}
+
+	/**
+	 * @return true if so many keys have been added since the filter was sized that it would rarely rule anything out
+	 */
+	public boolean isOverfilled() {
+		return (long) keyCount * BITS_PER_KEY > getBitCount() * MAX_OVERFILL_FACTOR;
+	}
+
+	/*
+	 * Uses the key's hash code and grouping number so that keys with colliding hash codes in different chunks still
+	 * spread out. The 64 bit mix is split into the two hashes used for double hashing.
+	 */
+	private static long hash(BlueKey key) {
+		long hash = key.hashCode() * 0x9E3779B97F4A7C15L + key.getGroupingNumber();
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * The caller is expected to hold a lock on the chunk so that it can't be replaced while the filter is being loaded.
+	 * @param chunkPath the path of the chunk
+	 * @return the filter saved in the chunk's footer or null if it doesn't have a valid one
+	 */
+	public static ChunkBloomFilter loadIfExists(Path chunkPath) {
+		if (!FileUtils.exists(chunkPath)) {
+			return null;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			return sparseKeyIndex != null ? sparseKeyIndex.getBloomFilter() : null;
+		} catch (Throwable t) {
+			t.printStackTrace(); // The chunk can still be read without its filter
+			return null;
+		}
+	}
+
+	/*
+	 * The filter is saved as [hash count][key count][word count][words][CRC32 of everything before it] so that a damaged
+	 * filter is thrown out rather than used to miss keys.
+	 */
+	static ChunkBloomFilter fromBytes(byte[] bytes) {
+		if (bytes.length < HEADER_LENGTH + 4) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int hashCount = buffer.getInt();
+		int keyCount = buffer.getInt();
+		int wordCount = buffer.getInt();
+		if (hashCount < 1 || keyCount < 0 || wordCount < 1 || bytes.length != HEADER_LENGTH + 8L * wordCount + 4) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 4);
+		if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+			return null;
+		}
+		long[] words = new long[wordCount];
+		for (int i = 0; i < wordCount; i++) {
+			words[i] = buffer.getLong();
+		}
+		return new ChunkBloomFilter(words, hashCount, keyCount);
+	}
+
+	byte[] toBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + 8 * words.length + 4);
+		buffer.putInt(hashCount);
+		buffer.putInt(keyCount);
+		buffer.putInt(words.length);
+		for (long word : words) {
+			buffer.putLong(word);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		return buffer.array();
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkBloomFilter [bitCount=" + getBitCount() + ", hashCount=" + hashCount + ", keyCount=" + keyCount + "]";
+	}
+}
@@ -0,0 +1,353 @@
+package org.bluedb.disk.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import org.bluedb.disk.metadata.BlueFileMetadata;
+
+/**
+ * A database wide cache of the records in recently read chunk files, saved after they have been checked against their
+ * checksums and decrypted. Queries that keep reading the same chunks, like a dashboard polling the last hour, read
+ * them from memory instead of opening, reading and decrypting the files again.<br><br>
+ *
+ * A chunk is cached under its path along with the version of the file it was read from, which is the file's identity,
+ * size and modification time. Chunks are always replaced by moving a new file into place, so a cached chunk is thrown out
+ * as soon as its file no longer matches. Moves and deletes made through the file manager also drop the chunk right away.
+ * Chunk deltas aren't cached since they are appended to rather than replaced, and they are merged in on top of the cached
+ * records the same way they are merged in on top of the file.<br><br>
+ *
+ * The cached byte arrays are shared by every reader so they must never be changed.
+ */
+public class ChunkCache {
+
+	public static final long RECORD_OVERHEAD_BYTES = 32;
+	public static final long CHUNK_OVERHEAD_BYTES = 256;
+	public static final int MAX_CHUNK_FRACTION = 4;
+
+	private final long maxBytes;
+	private final ChunkCacheEvictionPolicy evictionPolicy;
+	private final HashMap<Path, CachedChunk> chunks = new HashMap<>();
+	private long currentBytes = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	public ChunkCache(long maxBytes) {
+		this(maxBytes, new LruChunkCacheEvictionPolicy());
+	}
+
+	/**
+	 * @param maxBytes the most bytes the cached chunks can take up. A single chunk can't take up more than
+	 * 1/{@link #MAX_CHUNK_FRACTION} of it.
+	 * @param evictionPolicy decides which chunks are dropped to make room. It can't be shared with another cache.
+	 */
+	public ChunkCache(long maxBytes, ChunkCacheEvictionPolicy evictionPolicy) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		if (evictionPolicy == null) {
+			throw new IllegalArgumentException("evictionPolicy cannot be null");
+		}
+		this.maxBytes = maxBytes;
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * The caller is expected to hold a read lock on the chunk so that it can't be replaced while it is being read.
+	 * @param path the chunk file
+	 * @return the cached records of the chunk or null if the current version of the file isn't cached
+	 */
+	public CachedChunk get(Path path) {
+		ChunkVersion version = ChunkVersion.of(path);
+		synchronized (this) {
+			CachedChunk chunk = chunks.get(path);
+			if (chunk != null && chunk.getVersion().equals(version)) {
+				hitCount++;
+				evictionPolicy.recordAccess(path);
+				return chunk;
+			}
+			missCount++;
+			if (chunk != null) {
+				remove(path);
+			}
+			return null;
+		}
+	}
+
+	public boolean contains(Path path) {
+		ChunkVersion version = ChunkVersion.of(path);
+		synchronized (this) {
+			CachedChunk chunk = chunks.get(path);
+			return chunk != null && chunk.getVersion().equals(version);
+		}
+	}
+
+	/**
+	 * Starts collecting the records of a chunk as it is read from disk so that it can be cached once the whole file has
+	 * been read. The caller is expected to hold a read lock on the chunk until the recorder is finished.
+	 * @param path the chunk file that is about to be read
+	 * @return a recorder for the chunk or null if the file doesn't exist
+	 */
+	public ChunkRecorder startRecording(Path path) {
+		ChunkVersion version = ChunkVersion.of(path);
+		return version != null ? new ChunkRecorder(path, version) : null;
+	}
+
+	public synchronized void invalidate(Path path) {
+		if (chunks.containsKey(path)) {
+			remove(path);
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		for (Path path : new ArrayList<>(chunks.keySet())) {
+			remove(path);
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMaxChunkBytes() {
+		return maxBytes / MAX_CHUNK_FRACTION;
+	}
+
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	public synchronized int size() {
+		return chunks.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	private synchronized void put(CachedChunk chunk) {
+		if (chunk.getBytes() > getMaxChunkBytes()) {
+			return;
+		}
+		if (chunks.containsKey(chunk.getPath())) {
+			remove(chunk.getPath());
+		}
+		chunks.put(chunk.getPath(), chunk);
+		currentBytes += chunk.getBytes();
+		evictionPolicy.recordInsert(chunk.getPath(), chunk.getBytes());
+		while (currentBytes > maxBytes) {
+			Path victim = evictionPolicy.selectVictim();
+			if (victim == null || !chunks.containsKey(victim)) {
+				victim = chunks.keySet().iterator().next(); // The policy lost track of something so fall back to any chunk
+			}
+			remove(victim);
+			evictionCount++;
+		}
+	}
+
+	private void remove(Path path) {
+		CachedChunk removed = chunks.remove(path);
+		if (removed != null) {
+			currentBytes -= removed.getBytes();
+		}
+		evictionPolicy.recordRemoval(path);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ChunkCache [maxBytes=" + maxBytes + ", currentBytes=" + currentBytes + ", size=" + chunks.size() + ", hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount + "]";
+	}
+
+	/**
+	 * Collects the records of a chunk as it is read. If anything goes wrong with the read, or the chunk is too big to
+	 * cache, the recorder is abandoned and nothing is cached.
+	 */
+	public class ChunkRecorder {
+		private final Path path;
+		private final ChunkVersion version;
+		private BlueFileMetadata metadata = null;
+		private List<CachedRecord> records = new ArrayList<>();
+		private long bytes = CHUNK_OVERHEAD_BYTES;
+
+		private ChunkRecorder(Path path, ChunkVersion version) {
+			this.path = path;
+			this.version = version;
+		}
+
+		public void setMetadata(BlueFileMetadata metadata) {
+			this.metadata = metadata;
+		}
+
+		public void record(byte[] rawBytes, byte[] unencryptedBytes, boolean checksumVerified) {
+			if (records == null) {
+				return;
+			}
+			CachedRecord record = new CachedRecord(rawBytes, unencryptedBytes, checksumVerified);
+			bytes += record.getBytes();
+			if (bytes > getMaxChunkBytes()) {
+				abandon();
+				return;
+			}
+			records.add(record);
+		}
+
+		public void abandon() {
+			records = null;
+		}
+
+		public boolean isAbandoned() {
+			return records == null;
+		}
+
+		/**
+		 * Caches the records once the whole chunk has been read
+		 */
+		public void finish() {
+			if (records != null) {
+				put(new CachedChunk(path, version, metadata, records, bytes));
+				records = null;
+			}
+		}
+	}
+
+	public static class CachedChunk {
+		private final Path path;
+		private final ChunkVersion version;
+		private final BlueFileMetadata metadata;
+		private final List<CachedRecord> records;
+		private final long bytes;
+
+		private CachedChunk(Path path, ChunkVersion version, BlueFileMetadata metadata, List<CachedRecord> records, long bytes) {
+			this.path = path;
+			this.version = version;
+			this.metadata = metadata;
+			this.records = Collections.unmodifiableList(records);
+			this.bytes = bytes;
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		public ChunkVersion getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return the metadata at the front of the file, or null if it didn't have any
+		 */
+		public BlueFileMetadata getMetadata() {
+			return metadata;
+		}
+
+		public List<CachedRecord> getRecords() {
+			return records;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+	public static class CachedRecord {
+		private final byte[] rawBytes;
+		private final byte[] unencryptedBytes;
+		private final boolean checksumVerified;
+
+		public CachedRecord(byte[] rawBytes, byte[] unencryptedBytes, boolean checksumVerified) {
+			this.rawBytes = rawBytes;
+			this.unencryptedBytes = unencryptedBytes;
+			this.checksumVerified = checksumVerified;
+		}
+
+		public byte[] getRawBytes() {
+			return rawBytes;
+		}
+
+		public byte[] getUnencryptedBytes() {
+			return unencryptedBytes;
+		}
+
+		public boolean isChecksumVerified() {
+			return checksumVerified;
+		}
+
+		public long getBytes() {
+			long bytes = RECORD_OVERHEAD_BYTES + rawBytes.length;
+			return unencryptedBytes != rawBytes ? bytes + unencryptedBytes.length : bytes;
+		}
+	}
+
+	/**
+	 * Identifies one version of a file. Replacing a file by moving a new one into place changes its identity even if the
+	 * size and modification time happen to match.
+	 */
+	public static class ChunkVersion {
+		private final Object fileKey;
+		private final long size;
+		private final long lastModifiedMillis;
+
+		public ChunkVersion(Object fileKey, long size, long lastModifiedMillis) {
+			this.fileKey = fileKey;
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+		}
+
+		/**
+		 * @param path the file
+		 * @return the current version of the file or null if it doesn't exist or can't be read
+		 */
+		public static ChunkVersion of(Path path) {
+			if (path == null) {
+				return null;
+			}
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				return new ChunkVersion(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(fileKey, size, lastModifiedMillis);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ChunkVersion)) {
+				return false;
+			}
+			ChunkVersion other = (ChunkVersion) obj;
+			return Objects.equals(fileKey, other.fileKey) && size == other.size && lastModifiedMillis == other.lastModifiedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "ChunkVersion [fileKey=" + fileKey + ", size=" + size + ", lastModifiedMillis=" + lastModifiedMillis + "]";
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.bluedb.disk.file;
+
+import java.nio.file.Path;
+
+/**
+ * Decides which chunk a {@link ChunkCache} drops when it needs room. The cache calls these methods while holding its own
+ * lock, so implementations don't need to be thread safe, but each instance can only be used by one cache.
+ */
+public interface ChunkCacheEvictionPolicy {
+
+	/**
+	 * @param path the chunk that was added to the cache
+	 * @param bytes the number of bytes the chunk takes up in the cache
+	 */
+	public void recordInsert(Path path, long bytes);
+
+	/**
+	 * @param path the cached chunk that was just read
+	 */
+	public void recordAccess(Path path);
+
+	/**
+	 * @param path the chunk that was removed from the cache for any reason
+	 */
+	public void recordRemoval(Path path);
+
+	/**
+	 * @return the chunk that should be evicted next, or null if the policy isn't tracking any chunks
+	 */
+	public Path selectVictim();
+}
@@ -0,0 +1,137 @@
+package org.bluedb.disk.file;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.serialization.BlueEntity;
+
+/**
+ * The delta and tombstone records that have been appended to a chunk's delta file since the chunk was last rewritten.
+ * They are loaded into memory in key order so that {@link BlueObjectInput} can merge them into the chunk as it is read.
+ * Only the latest record for each key is kept. A record with a null value is a tombstone.
+ */
+public class ChunkDeltas {
+
+	private static final String DELTA_FILE_SUFFIX = ".delta";
+
+	private final List<ChunkDelta> deltas;
+	private int position = 0;
+
+	protected ChunkDeltas(List<ChunkDelta> deltas) {
+		this.deltas = deltas;
+	}
+
+	public static Path getDeltaPath(Path chunkPath) {
+		return Paths.get(chunkPath.toString() + DELTA_FILE_SUFFIX);
+	}
+
+	public static boolean isDeltaFile(File file) {
+		return file != null && file.getName().endsWith(DELTA_FILE_SUFFIX);
+	}
+
+	/**
+	 * The caller is expected to hold a lock on the chunk itself so that the delta file can't be appended to or folded
+	 * while it is being loaded.
+	 * @param fileManager the file manager used to read the delta file
+	 * @param chunkPath the path of the chunk (not the delta file)
+	 * @return the deltas for the chunk or null if it doesn't have a delta file
+	 * @throws BlueDbException if the delta file can't be read
+	 */
+	public static ChunkDeltas loadIfExists(ReadFileManager fileManager, Path chunkPath) throws BlueDbException {
+		return loadIfExists(fileManager, chunkPath, key -> true);
+	}
+
+	/**
+	 * Loads only the deltas for the given keys, for a lookup that doesn't need the rest of the chunk. The keys of the other
+	 * records are read so that they can be skipped, but their values are never deserialized or held in memory. Like
+	 * {@link #loadIfExists(ReadFileManager, Path)}, the caller is expected to hold a lock on the chunk itself.
+	 * @param fileManager the file manager used to read the delta file
+	 * @param chunkPath the path of the chunk (not the delta file)
+	 * @param keys the keys being looked up
+	 * @return the deltas for the keys, which is empty if none of them have any, or null if the chunk doesn't have a delta file
+	 * @throws BlueDbException if the delta file can't be read
+	 */
+	public static ChunkDeltas loadIfExists(ReadFileManager fileManager, Path chunkPath, Set<BlueKey> keys) throws BlueDbException {
+		return loadIfExists(fileManager, chunkPath, keys::contains);
+	}
+
+	private static ChunkDeltas loadIfExists(ReadFileManager fileManager, Path chunkPath, Predicate<BlueKey> isKeyNeeded) throws BlueDbException {
+		if (chunkPath == null) {
+			return null;
+		}
+		Path deltaPath = getDeltaPath(chunkPath);
+		if (!FileUtils.exists(deltaPath)) {
+			return null;
+		}
+
+		Map<BlueKey, ChunkDelta> latestDeltaByKey = new HashMap<>();
+		try (BlueObjectInput<BlueEntity<?>> input = fileManager.getBlueInputStream(fileManager.getLockManager().acquireReadLock(deltaPath))) {
+			BlueKey key;
+			while ((key = input.peekKey()) != null) {
+				if (!isKeyNeeded.test(key)) {
+					input.nextUnencryptedBytesWithoutDeserializing();
+					continue;
+				}
+				BlueEntity<?> entity = input.next();
+				if (entity != null && isKeyNeeded.test(entity.getKey())) { // A corrupt record is skipped by next()
+					latestDeltaByKey.put(entity.getKey(), new ChunkDelta(entity, input.getLastUnencryptedBytes()));
+				}
+			}
+		}
+
+		List<ChunkDelta> sortedDeltas = new ArrayList<>(latestDeltaByKey.values());
+		sortedDeltas.sort((d1, d2) -> d1.getKey().compareTo(d2.getKey()));
+		return new ChunkDeltas(sortedDeltas);
+	}
+
+	public ChunkDelta peek() {
+		return position < deltas.size() ? deltas.get(position) : null;
+	}
+
+	public ChunkDelta next() {
+		ChunkDelta next = peek();
+		if (next != null) {
+			position++;
+		}
+		return next;
+	}
+
+	public int size() {
+		return deltas.size();
+	}
+
+	public static class ChunkDelta {
+		private final BlueEntity<?> entity;
+		private final byte[] unencryptedBytes;
+
+		public ChunkDelta(BlueEntity<?> entity, byte[] unencryptedBytes) {
+			this.entity = entity;
+			this.unencryptedBytes = unencryptedBytes;
+		}
+
+		public BlueKey getKey() {
+			return entity.getKey();
+		}
+
+		public BlueEntity<?> getEntity() {
+			return entity;
+		}
+
+		public byte[] getUnencryptedBytes() {
+			return unencryptedBytes;
+		}
+
+		public boolean isTombstone() {
+			return entity.getValue() == null;
+		}
+	}
+}
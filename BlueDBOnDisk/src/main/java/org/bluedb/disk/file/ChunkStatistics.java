@@ -0,0 +1,273 @@
+package org.bluedb.disk.file;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.TimeFrameKey;
+import org.bluedb.disk.serialization.BlueSerializer;
+
+/**
+ * Facts about the records saved in a chunk. They are saved in the chunk's {@link SparseKeyIndex} footer so that a count
+ * or a query that only touches the edge of the chunk can be answered without reading its records. Like the
+ * {@link ChunkBloomFilter} they don't cover the chunk's deltas so they are only used when there are none.<br><br>
+ *
+ * The record count is always known. The rest is only known if the key of every record was known when it was written,
+ * which isn't the case for records that were copied as bytes without being deserialized. The smallest and largest keys
+ * aren't saved for encrypted chunks so that the footer doesn't give away any keys.
+ */
+public class ChunkStatistics {
+
+	private static final byte KEYS_KNOWN = 1;
+	private static final byte HAS_ACTIVE_TIME_KEYS = 2;
+	private static final byte HAS_SPANNING_TIME_FRAME_KEYS = 4;
+
+	private final long recordCount;
+	private final byte flags;
+	private final long minGroupingNumber;
+	private final long maxGroupingNumber;
+	private final byte[] minKeyBytes;
+	private final byte[] maxKeyBytes;
+
+	private ChunkStatistics(long recordCount, byte flags, long minGroupingNumber, long maxGroupingNumber, byte[] minKeyBytes, byte[] maxKeyBytes) {
+		this.recordCount = recordCount;
+		this.flags = flags;
+		this.minGroupingNumber = minGroupingNumber;
+		this.maxGroupingNumber = maxGroupingNumber;
+		this.minKeyBytes = minKeyBytes;
+		this.maxKeyBytes = maxKeyBytes;
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return true if the key of every record was known when the chunk was written. The other statistics can only be
+	 * used if this is true.
+	 */
+	public boolean areKeysKnown() {
+		return (flags & KEYS_KNOWN) != 0;
+	}
+
+	public long getMinGroupingNumber() {
+		return minGroupingNumber;
+	}
+
+	public long getMaxGroupingNumber() {
+		return maxGroupingNumber;
+	}
+
+	/**
+	 * @return true if the chunk has an {@link org.bluedb.api.keys.ActiveTimeKey}, which overlaps everything after it
+	 */
+	public boolean hasActiveTimeKeys() {
+		return (flags & HAS_ACTIVE_TIME_KEYS) != 0;
+	}
+
+	/**
+	 * @return true if the chunk has a {@link TimeFrameKey} that ends after it starts, which is how a record ends up in the
+	 * chunks of later segments than the one it starts in
+	 */
+	public boolean hasSpanningTimeFrameKeys() {
+		return (flags & HAS_SPANNING_TIME_FRAME_KEYS) != 0;
+	}
+
+	/**
+	 * @param min the start of a range
+	 * @return true if the statistics prove that none of the records overlap the range
+	 */
+	public boolean isEveryRecordBeforeRange(long min) {
+		if (!areKeysKnown()) {
+			return false;
+		}
+		return recordCount == 0 || (maxGroupingNumber < min && !hasActiveTimeKeys() && !hasSpanningTimeFrameKeys());
+	}
+
+	/**
+	 * @param groupingNumber the grouping number to compare to
+	 * @return true if the statistics prove that none of the records have a grouping number after it
+	 */
+	public boolean isEveryGroupingNumberAtOrBefore(long groupingNumber) {
+		return areKeysKnown() && (recordCount == 0 || maxGroupingNumber <= groupingNumber);
+	}
+
+	/**
+	 * @param max the end of a range
+	 * @return true if the statistics prove that every record is after the range
+	 */
+	public boolean isEveryRecordAfterRange(long max) {
+		return areKeysKnown() && recordCount > 0 && minGroupingNumber > max;
+	}
+
+	/**
+	 * @param serializer the serializer the chunk was written with
+	 * @return the smallest key in the chunk or null if it wasn't saved
+	 */
+	public BlueKey getMinKey(BlueSerializer serializer) {
+		return deserializeKey(serializer, minKeyBytes);
+	}
+
+	/**
+	 * @param serializer the serializer the chunk was written with
+	 * @return the largest key in the chunk, which is the key of its last record, or null if it wasn't saved
+	 */
+	public BlueKey getMaxKey(BlueSerializer serializer) {
+		return deserializeKey(serializer, maxKeyBytes);
+	}
+
+	private static BlueKey deserializeKey(BlueSerializer serializer, byte[] keyBytes) {
+		if (keyBytes.length == 0) {
+			return null;
+		}
+		try {
+			Object key = serializer.deserializeObjectFromByteArray(keyBytes);
+			return key instanceof BlueKey ? (BlueKey) key : null;
+		} catch (Throwable t) {
+			t.printStackTrace(); // The records can still be read to find the key
+			return null;
+		}
+	}
+
+	/**
+	 * The caller is expected to hold a lock on the chunk so that it can't be replaced while the statistics are being
+	 * loaded.
+	 * @param chunkPath the path of the chunk
+	 * @return the statistics saved in the chunk's footer or null if it doesn't have valid ones
+	 */
+	public static ChunkStatistics loadIfExists(Path chunkPath) {
+		if (chunkPath == null || !FileUtils.exists(chunkPath)) {
+			return null;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			return sparseKeyIndex != null ? sparseKeyIndex.getStatistics() : null;
+		} catch (Throwable t) {
+			t.printStackTrace(); // The chunk can still be read without its statistics
+			return null;
+		}
+	}
+
+	/*
+	 * The statistics are saved as [record count][flags][min grouping number][max grouping number][min key length][min key]
+	 * [max key length][max key][CRC32 of everything before it] so that damaged statistics are thrown out rather than used.
+	 */
+	static ChunkStatistics fromBytes(byte[] bytes) {
+		if (bytes.length < 8 + 1 + 8 + 8 + 4 + 4 + 4) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 4);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if ((int) crc.getValue() != buffer.getInt(bytes.length - 4)) {
+			return null;
+		}
+		long recordCount = buffer.getLong();
+		byte flags = buffer.get();
+		long minGroupingNumber = buffer.getLong();
+		long maxGroupingNumber = buffer.getLong();
+		byte[] minKeyBytes = readKeyBytes(buffer, bytes.length - 4);
+		byte[] maxKeyBytes = minKeyBytes != null ? readKeyBytes(buffer, bytes.length - 4) : null;
+		if (recordCount < 0 || maxKeyBytes == null || buffer.position() != bytes.length - 4) {
+			return null;
+		}
+		return new ChunkStatistics(recordCount, flags, minGroupingNumber, maxGroupingNumber, minKeyBytes, maxKeyBytes);
+	}
+
+	private static byte[] readKeyBytes(ByteBuffer buffer, int limit) {
+		if (buffer.position() + 4 > limit) {
+			return null;
+		}
+		int length = buffer.getInt();
+		if (length < 0 || buffer.position() + length > limit) {
+			return null;
+		}
+		byte[] keyBytes = new byte[length];
+		buffer.get(keyBytes);
+		return keyBytes;
+	}
+
+	byte[] toBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 1 + 8 + 8 + 4 + minKeyBytes.length + 4 + maxKeyBytes.length + 4);
+		buffer.putLong(recordCount);
+		buffer.put(flags);
+		buffer.putLong(minGroupingNumber);
+		buffer.putLong(maxGroupingNumber);
+		buffer.putInt(minKeyBytes.length);
+		buffer.put(minKeyBytes);
+		buffer.putInt(maxKeyBytes.length);
+		buffer.put(maxKeyBytes);
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		return buffer.array();
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkStatistics [recordCount=" + recordCount + ", keysKnown=" + areKeysKnown() + ", minGroupingNumber=" + minGroupingNumber + ", maxGroupingNumber=" + maxGroupingNumber + ", hasActiveTimeKeys=" + hasActiveTimeKeys() + ", hasSpanningTimeFrameKeys=" + hasSpanningTimeFrameKeys() + "]";
+	}
+
+	/**
+	 * Collects the statistics as records are written to a chunk.
+	 */
+	public static class Builder {
+		private long recordCount = 0;
+		private boolean keysKnown = true;
+		private boolean hasActiveTimeKeys = false;
+		private boolean hasSpanningTimeFrameKeys = false;
+		private BlueKey minKey = null;
+		private BlueKey maxKey = null;
+
+		/**
+		 * @param key the key of the record that was written, or null if it isn't known
+		 */
+		public void recordWritten(BlueKey key) {
+			recordCount++;
+			if (key == null) {
+				keysKnown = false;
+				return;
+			}
+			if (minKey == null || key.compareTo(minKey) < 0) {
+				minKey = key;
+			}
+			if (maxKey == null || key.compareTo(maxKey) > 0) {
+				maxKey = key;
+			}
+			hasActiveTimeKeys |= key.isActiveTimeKey();
+			hasSpanningTimeFrameKeys |= key instanceof TimeFrameKey && ((TimeFrameKey) key).getEndTime() > ((TimeFrameKey) key).getStartTime();
+		}
+
+		public long getRecordCount() {
+			return recordCount;
+		}
+
+		/**
+		 * @param serializer used to save the smallest and largest keys, or null to leave them out
+		 * @return the statistics of the records written so far
+		 */
+		public ChunkStatistics build(BlueSerializer serializer) {
+			if (!keysKnown || recordCount == 0) {
+				return new ChunkStatistics(recordCount, keysKnown ? KEYS_KNOWN : 0, 0, 0, new byte[0], new byte[0]);
+			}
+			byte flags = KEYS_KNOWN;
+			flags |= hasActiveTimeKeys ? HAS_ACTIVE_TIME_KEYS : 0;
+			flags |= hasSpanningTimeFrameKeys ? HAS_SPANNING_TIME_FRAME_KEYS : 0;
+			return new ChunkStatistics(recordCount, flags, minKey.getGroupingNumber(), maxKey.getGroupingNumber(), serializeKey(serializer, minKey), serializeKey(serializer, maxKey));
+		}
+
+		private static byte[] serializeKey(BlueSerializer serializer, BlueKey key) {
+			if (serializer == null) {
+				return new byte[0];
+			}
+			try {
+				return serializer.serializeObjectToByteArray(key);
+			} catch (Throwable t) {
+				t.printStackTrace(); // The rest of the statistics are still good without the key
+				return new byte[0];
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.bluedb.disk.file;
+
+/**
+ * How hard BlueDB works to make sure that a change is on disk before the write that made it returns
+ */
+public enum DurabilityLevel {
+	/**
+	 * Files are written and renamed but never synced. The operating system decides when the data reaches the disk, so a
+	 * power failure can lose recent changes or leave recovery files that don't match the data.
+	 */
+	NONE,
+	/**
+	 * Every recovery file, chunk file and rename is synced to disk as part of the write that made it.
+	 */
+	FLUSH_ON_COMMIT,
+	/**
+	 * Like {@link #FLUSH_ON_COMMIT} but syncs requested by concurrent writes within a short window are coalesced so that
+	 * each file and directory is only synced once per window.
+	 */
+	GROUP_FSYNC,
+}
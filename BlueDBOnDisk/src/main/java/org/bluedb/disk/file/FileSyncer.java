@@ -0,0 +1,177 @@
+package org.bluedb.disk.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bluedb.api.exceptions.BlueDbException;
+
+/**
+ * Syncs files and directories to disk according to a {@link DurabilityLevel}. With {@link DurabilityLevel#GROUP_FSYNC}
+ * the first thread to request a sync waits for the group window, then syncs everything that was requested in the
+ * meantime while the other requesting threads wait for it to finish.
+ */
+public class FileSyncer {
+
+	public static final long DEFAULT_GROUP_FSYNC_WINDOW_MILLIS = 5;
+
+	public static final FileSyncer NONE = new FileSyncer(DurabilityLevel.NONE, 0);
+
+	private final DurabilityLevel durabilityLevel;
+	private final long groupFsyncWindowMillis;
+
+	private final Object groupLock = new Object();
+	private Map<Path, Boolean> pathsWaitingForSync = new LinkedHashMap<>();
+	private long openGroup = 1;
+	private long lastCompletedGroup = 0;
+	private long lastFailedGroup = 0;
+	private IOException lastFailure;
+	private boolean isGroupSyncInProgress = false;
+
+	public FileSyncer(DurabilityLevel durabilityLevel, long groupFsyncWindowMillis) {
+		this.durabilityLevel = durabilityLevel;
+		this.groupFsyncWindowMillis = groupFsyncWindowMillis;
+	}
+
+	public DurabilityLevel getDurabilityLevel() {
+		return durabilityLevel;
+	}
+
+	public long getGroupFsyncWindowMillis() {
+		return groupFsyncWindowMillis;
+	}
+
+	public long getCompletedGroupCount() {
+		synchronized (groupLock) {
+			return lastCompletedGroup;
+		}
+	}
+
+	public void syncFile(Path path) throws BlueDbException {
+		sync(path, false);
+	}
+
+	public void syncDirectory(Path path) throws BlueDbException {
+		if (path != null) {
+			sync(path, true);
+		}
+	}
+
+	private void sync(Path path, boolean isDirectory) throws BlueDbException {
+		try {
+			switch (durabilityLevel) {
+			case FLUSH_ON_COMMIT:
+				force(path, isDirectory);
+				break;
+			case GROUP_FSYNC:
+				syncWithGroup(path, isDirectory);
+				break;
+			default:
+				break;
+			}
+		} catch (IOException e) {
+			throw new BlueDbException("Unable to sync " + path + " to disk", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BlueDbException("Interrupted while waiting to sync " + path + " to disk", e);
+		}
+	}
+
+	private void syncWithGroup(Path path, boolean isDirectory) throws IOException, InterruptedException {
+		long group;
+		synchronized (groupLock) {
+			pathsWaitingForSync.putIfAbsent(path, isDirectory);
+			group = openGroup;
+		}
+
+		while (true) {
+			synchronized (groupLock) {
+				while (lastCompletedGroup < group && isGroupSyncInProgress) {
+					groupLock.wait();
+				}
+				if (lastCompletedGroup >= group) {
+					if (lastFailedGroup == group) {
+						throw lastFailure;
+					}
+					return;
+				}
+				isGroupSyncInProgress = true;
+			}
+			syncNextGroup();
+		}
+	}
+
+	private void syncNextGroup() {
+		if (groupFsyncWindowMillis > 0) {
+			try {
+				Thread.sleep(groupFsyncWindowMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); //The threads waiting on this group still need it synced
+			}
+		}
+
+		Map<Path, Boolean> pathsToSync;
+		long group;
+		synchronized (groupLock) {
+			pathsToSync = pathsWaitingForSync;
+			pathsWaitingForSync = new LinkedHashMap<>();
+			group = openGroup++;
+		}
+
+		IOException failure = null;
+		for (Map.Entry<Path, Boolean> pathToSync : pathsToSync.entrySet()) {
+			try {
+				force(pathToSync.getKey(), pathToSync.getValue());
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+
+		synchronized (groupLock) {
+			if (failure != null) {
+				lastFailedGroup = group;
+				lastFailure = failure;
+			}
+			lastCompletedGroup = group;
+			isGroupSyncInProgress = false;
+			groupLock.notifyAll();
+		}
+	}
+
+	private static void force(Path path, boolean isDirectory) throws IOException {
+		boolean wasInterrupted = Thread.interrupted(); //An interrupt would close the channel before it could be synced
+		try {
+			forceChannel(path, isDirectory);
+		} finally {
+			if (wasInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void forceChannel(Path path, boolean isDirectory) throws IOException {
+		if (isDirectory) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				channel.force(true);
+			} catch (IOException e) {
+				//Some platforms, like Windows, don't allow directories to be opened and synced
+			}
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		} catch (NoSuchFileException e) {
+			//It has already been moved or deleted so there is nothing left to sync
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FileSyncer [durabilityLevel=" + durabilityLevel + ", groupFsyncWindowMillis=" + groupFsyncWindowMillis + "]";
+	}
+}
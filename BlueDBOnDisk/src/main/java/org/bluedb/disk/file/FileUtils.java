@@ -7,6 +7,7 @@ import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.DirectoryStream;
 import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.Files;
@@ -240,6 +241,18 @@ public class FileUtils {
 	public static DataOutputStream openDataOutputStream(File file) throws IOException {
 		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
 	}
+
+	public static DataOutputStream openDataOutputStream(File file, boolean append) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+	}
+
+	public static void truncateWithoutLock(Path path, long length) throws BlueDbException {
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.setLength(length);
+		} catch (IOException e) {
+			throw new BlueDbException("Failed to truncate file " + path + " to " + length + " bytes", e);
+		}
+	}
 	
 	public static void validateFileBytes(Path file) throws BlueDbException {
 		try(FileInputStream fis = new FileInputStream(file.toFile())) {
@@ -0,0 +1,53 @@
+package org.bluedb.disk.file;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how records in BlueDB files are protected from corruption. By default every record that is written is
+ * deserialized again to prove that its bytes are good, and every record that is read is validated if object validation
+ * is turned on. With checksums enabled each record is saved with a checksum that is verified whenever it is read. Then
+ * only a sample of the records get the full round trip and object validation.
+ */
+public class IntegrityPolicy {
+
+	public static final int DEFAULT_ROUND_TRIP_SAMPLE_RATE = 64;
+
+	public static final IntegrityPolicy ROUND_TRIP = new IntegrityPolicy(false, 1);
+	public static final IntegrityPolicy CHECKSUMS = new IntegrityPolicy(true, DEFAULT_ROUND_TRIP_SAMPLE_RATE);
+
+	private final boolean checksumsEnabled;
+	private final int roundTripSampleRate;
+
+	/**
+	 * @param checksumsEnabled true if new files should save a checksum with each record
+	 * @param roundTripSampleRate one out of this many checksummed records still gets the full round trip and object
+	 * validation. 1 validates every record.
+	 */
+	public IntegrityPolicy(boolean checksumsEnabled, int roundTripSampleRate) {
+		if (roundTripSampleRate < 1) {
+			throw new IllegalArgumentException("roundTripSampleRate must be at least 1");
+		}
+		this.checksumsEnabled = checksumsEnabled;
+		this.roundTripSampleRate = roundTripSampleRate;
+	}
+
+	public boolean isChecksumsEnabled() {
+		return checksumsEnabled;
+	}
+
+	public int getRoundTripSampleRate() {
+		return roundTripSampleRate;
+	}
+
+	/**
+	 * @return true if the next checksummed record should still be fully validated
+	 */
+	public boolean shouldValidateChecksummedRecord() {
+		return !checksumsEnabled || roundTripSampleRate == 1 || ThreadLocalRandom.current().nextInt(roundTripSampleRate) == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "IntegrityPolicy [checksumsEnabled=" + checksumsEnabled + ", roundTripSampleRate=" + roundTripSampleRate + "]";
+	}
+}
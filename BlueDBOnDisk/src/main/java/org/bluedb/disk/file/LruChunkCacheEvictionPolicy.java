@@ -0,0 +1,37 @@
+package org.bluedb.disk.file;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Evicts the chunk that was read least recently
+ */
+public class LruChunkCacheEvictionPolicy implements ChunkCacheEvictionPolicy {
+
+	private final LinkedHashSet<Path> paths = new LinkedHashSet<>();
+
+	@Override
+	public void recordInsert(Path path, long bytes) {
+		paths.remove(path);
+		paths.add(path);
+	}
+
+	@Override
+	public void recordAccess(Path path) {
+		if (paths.remove(path)) {
+			paths.add(path);
+		}
+	}
+
+	@Override
+	public void recordRemoval(Path path) {
+		paths.remove(path);
+	}
+
+	@Override
+	public Path selectVictim() {
+		Iterator<Path> iterator = paths.iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+}
@@ -17,7 +17,7 @@ public class RangeNamedFiles {
 		long min = range.getStart();
 		long max = range.getEnd();
 		File segmentFolder = segmentPath.toFile();
-		FileFilter filter = (f) -> isFileNameRangeEnclosed(f, min, max);
+		FileFilter filter = (f) -> !ChunkDeltas.isDeltaFile(f) && isFileNameRangeEnclosed(f, min, max);
 		List<File> filesInFolder = FileUtils.getFolderContentsExcludingTempFiles(segmentFolder, filter);
 		sortByRange(filesInFolder);
 		return filesInFolder;
@@ -72,7 +72,7 @@ public class RangeNamedFiles {
 		long min = range.getStart();
 		long max = range.getEnd();
 		File segmentFolder = segmentPath.toFile();
-		FileFilter filter = (f) -> doesfileNameRangeOverlap(f, min, max);
+		FileFilter filter = (f) -> !ChunkDeltas.isDeltaFile(f) && doesfileNameRangeOverlap(f, min, max);
 		List<File> filesInFolder = FileUtils.getFolderContentsExcludingTempFiles(segmentFolder, filter);
 		sortByRange(filesInFolder);
 		return filesInFolder;
@@ -2,11 +2,16 @@ package org.bluedb.disk.file;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 
 import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
 import org.bluedb.disk.lock.BlueReadLock;
 import org.bluedb.disk.lock.LockManager;
@@ -21,6 +26,8 @@ public class ReadFileManager {
 	protected final BlueSerializer serializer;
 	protected final EncryptionServiceWrapper encryptionService;
 	protected final LockManager<Path> lockManager;
+	protected volatile IntegrityPolicy integrityPolicy = IntegrityPolicy.ROUND_TRIP;
+	protected volatile ChunkCache chunkCache = null;
 
 	public ReadFileManager(BlueSerializer serializer, EncryptionServiceWrapper encryptionService) {
 		this.serializer = serializer;
@@ -28,6 +35,10 @@ public class ReadFileManager {
 		this.lockManager = new LockManager<>();
 	}
 
+	public BlueSerializer getSerializer() {
+		return serializer;
+	}
+
 	public Object loadObject(BlueReadLock<Path> readLock) throws BlueDbException {
 		byte[] fileData = readBytes(readLock);
 		if (fileData == null || fileData.length == 0) {
@@ -68,11 +79,245 @@ public class ReadFileManager {
 	}
 
 	public <T> BlueObjectInput<T> getBlueInputStream(BlueReadLock<Path> readLock) throws BlueDbException {
-		return new BlueObjectInput<T>(readLock, serializer, encryptionService);
+		BlueObjectInput<T> input = new BlueObjectInput<T>(readLock, serializer, encryptionService);
+		input.setIntegrityPolicy(integrityPolicy);
+		return input;
+	}
+
+	/**
+	 * Opens a chunk file with any deltas that have been appended to it since it was last rewritten merged in.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @return an input that reads the chunk as if its deltas had already been folded into it
+	 * @throws BlueDbException if the chunk or its deltas can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStream(BlueReadLock<Path> readLock) throws BlueDbException {
+		return getChunkInputStream(readLock, true);
+	}
+
+	/**
+	 * Opens a chunk file that is about to be rewritten. It is read from the {@link ChunkCache} if it is there, but it
+	 * isn't added to the cache since it is about to be replaced.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @return an input that reads the chunk as if its deltas had already been folded into it
+	 * @throws BlueDbException if the chunk or its deltas can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStreamForRewrite(BlueReadLock<Path> readLock) throws BlueDbException {
+		return getChunkInputStream(readLock, false);
+	}
+
+	private <T> BlueObjectInput<T> getChunkInputStream(BlueReadLock<Path> readLock, boolean cacheChunk) throws BlueDbException {
+		ChunkDeltas deltas;
+		try {
+			deltas = ChunkDeltas.loadIfExists(this, readLock.getKey());
+		} catch (Throwable t) {
+			readLock.release();
+			throw new BlueDbException("Failed to load the deltas for chunk " + readLock.getKey(), t);
+		}
+		return getChunkInputStream(readLock, deltas, cacheChunk);
+	}
+
+	private <T> BlueObjectInput<T> getChunkInputStream(BlueReadLock<Path> readLock, ChunkDeltas deltas, boolean cacheChunk) throws BlueDbException {
+		ChunkCache chunkCache = this.chunkCache;
+		BlueObjectInput<T> input;
+		if (chunkCache != null) {
+			input = new BlueObjectInput<T>(readLock, serializer, encryptionService, deltas, chunkCache, cacheChunk);
+		} else {
+			input = new BlueObjectInput<T>(readLock, serializer, encryptionService, deltas);
+		}
+		input.setIntegrityPolicy(integrityPolicy);
+		return input;
+	}
+
+	/**
+	 * Opens a chunk file to look up a key. Only the chunk's deltas for the key are loaded, and if there aren't any then
+	 * the chunk is read as if it had no deltas. A chunk in the {@link ChunkCache} is read from memory. Otherwise the
+	 * {@link ChunkBloomFilter} in its footer can rule the key out without any records being read, and its
+	 * {@link SparseKeyIndex} lets the input start a few records before the key's grouping number rather than at the start
+	 * of the chunk.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @param key the key being looked up
+	 * @return an input positioned at or before the first record that could have the key
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStreamFor(BlueReadLock<Path> readLock, BlueKey key) throws BlueDbException {
+		return getChunkInputStreamFor(readLock, Collections.singletonList(key));
+	}
+
+	/**
+	 * Opens a chunk file to look up several keys the same way as {@link #getChunkInputStreamFor(BlueReadLock, BlueKey)}.
+	 * The bloom filter only rules the chunk out if it rules out every key, and the input starts before the first key
+	 * that the filter doesn't rule out.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @param sortedKeys the keys being looked up, in key order
+	 * @return an input positioned at or before the first record that could have one of the keys
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStreamFor(BlueReadLock<Path> readLock, List<BlueKey> sortedKeys) throws BlueDbException {
+		Path path = readLock.getKey();
+		ChunkDeltas deltas;
+		try {
+			deltas = ChunkDeltas.loadIfExists(this, path, new HashSet<>(sortedKeys));
+		} catch (Throwable t) {
+			readLock.release();
+			throw new BlueDbException("Failed to load the deltas for chunk " + path, t);
+		}
+		if (deltas != null && deltas.size() > 0) {
+			return getChunkInputStream(readLock, deltas, true);
+		}
+
+		ChunkCache chunkCache = this.chunkCache;
+		if (path == null || !FileUtils.exists(path) || (chunkCache != null && chunkCache.contains(path))) {
+			return getChunkInputStream(readLock, null, true);
+		}
+
+		RandomAccessFile file = openFileToSeek(path);
+		SparseKeyIndex sparseKeyIndex = readSparseKeyIndex(file);
+		BlueKey firstKey = sortedKeys.get(0);
+		if (sparseKeyIndex != null && sparseKeyIndex.getBloomFilter() != null) {
+			ChunkBloomFilter bloomFilter = sparseKeyIndex.getBloomFilter();
+			firstKey = sortedKeys.stream().filter(bloomFilter::mightContain).findFirst().orElse(null);
+		}
+		if (firstKey == null) {
+			closeQuietly(file);
+			return getBlueInputStream(readLock, (BlueInputStream) null); // None of the keys are in the chunk
+		}
+		if (sparseKeyIndex == null || sparseKeyIndex.size() <= 1) {
+			closeQuietly(file);
+			return getChunkInputStream(readLock, null, true); // Reading the whole chunk through a buffer is cheaper than seeking
+		}
+		return getInputStartingAt(readLock, file, sparseKeyIndex, firstKey.getGroupingNumber());
+	}
+
+	/**
+	 * Opens a chunk file to read the records from a grouping number onwards, such as when a query resumes partway
+	 * through a chunk. Like {@link #getChunkInputStreamFor(BlueReadLock, BlueKey)}, the {@link SparseKeyIndex} lets the
+	 * input start a few records before the grouping number, but nothing is ruled out by the bloom filter.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @param groupingNumber the grouping number to start reading from
+	 * @return an input positioned at or before the first record with the grouping number or a higher one
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStreamStartingAt(BlueReadLock<Path> readLock, long groupingNumber) throws BlueDbException {
+		Path path = readLock.getKey();
+		ChunkCache chunkCache = this.chunkCache;
+		if (path == null || !FileUtils.exists(path) || FileUtils.exists(ChunkDeltas.getDeltaPath(path)) || (chunkCache != null && chunkCache.contains(path))) {
+			return getChunkInputStream(readLock);
+		}
+
+		RandomAccessFile file = openFileToSeek(path);
+		SparseKeyIndex sparseKeyIndex = readSparseKeyIndex(file);
+		if (sparseKeyIndex == null || sparseKeyIndex.size() <= 1) {
+			closeQuietly(file);
+			return getChunkInputStream(readLock);
+		}
+		return getInputStartingAt(readLock, file, sparseKeyIndex, groupingNumber);
+	}
+
+	/**
+	 * Opens a chunk file to be read backwards a block at a time, as described in
+	 * {@link BlueObjectInput#readBlocksBackwards(SparseKeyIndex, long)}. A chunk without a {@link SparseKeyIndex}, or with
+	 * deltas, or in the {@link ChunkCache}, is opened the normal way and read as a single block.
+	 * @param readLock a read lock on the chunk file. It will be released if opening the input fails.
+	 * @param maxGroupingNumber the highest grouping number that is going to be read
+	 * @return an input that reads the chunk a block at a time after {@link BlueObjectInput#moveToPreviousBlock()}
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public <T> BlueObjectInput<T> getChunkInputStreamReadingBackwards(BlueReadLock<Path> readLock, long maxGroupingNumber) throws BlueDbException {
+		Path path = readLock.getKey();
+		ChunkCache chunkCache = this.chunkCache;
+		if (path == null || !FileUtils.exists(path) || FileUtils.exists(ChunkDeltas.getDeltaPath(path)) || (chunkCache != null && chunkCache.contains(path))) {
+			return getChunkInputStream(readLock);
+		}
+
+		RandomAccessFile file = openFileToSeek(path);
+		SparseKeyIndex sparseKeyIndex = readSparseKeyIndex(file);
+		if (sparseKeyIndex == null || sparseKeyIndex.size() <= 1) {
+			closeQuietly(file);
+			return getChunkInputStream(readLock);
+		}
+		BlueObjectInput<T> input = openSeekableInput(readLock, file);
+		try {
+			input.readBlocksBackwards(sparseKeyIndex, maxGroupingNumber);
+		} catch (Throwable t) {
+			input.close();
+			throw new BlueDbException("Failed to split chunk " + path + " into blocks", t);
+		}
+		return input;
+	}
+
+	private static RandomAccessFile openFileToSeek(Path path) {
+		try {
+			return new RandomAccessFile(path.toFile(), "r");
+		} catch (Throwable t) {
+			t.printStackTrace(); // The chunk can still be read the normal way
+			return null;
+		}
+	}
+
+	private static SparseKeyIndex readSparseKeyIndex(RandomAccessFile file) {
+		if (file == null) {
+			return null;
+		}
+		try {
+			return SparseKeyIndex.readIfExists(file);
+		} catch (Throwable t) {
+			t.printStackTrace(); // A bad footer shouldn't stop the chunk from being read the normal way
+			return null;
+		}
+	}
+
+	private <T> BlueObjectInput<T> getInputStartingAt(BlueReadLock<Path> readLock, RandomAccessFile file, SparseKeyIndex sparseKeyIndex, long groupingNumber) throws BlueDbException {
+		Path path = readLock.getKey();
+		BlueObjectInput<T> input = openSeekableInput(readLock, file);
+		try {
+			input.skipToGroupingNumber(sparseKeyIndex, groupingNumber);
+		} catch (Throwable t) {
+			input.close();
+			throw new BlueDbException("Failed to skip to grouping number " + groupingNumber + " in chunk " + path, t);
+		}
+		return input;
+	}
+
+	private <T> BlueObjectInput<T> openSeekableInput(BlueReadLock<Path> readLock, RandomAccessFile file) throws BlueDbException {
+		BlueInputStream seekableInputStream;
+		try {
+			file.seek(0);
+			seekableInputStream = new BlueSeekableInputStream(file);
+		} catch (Throwable t) {
+			closeQuietly(file);
+			readLock.release();
+			throw new BlueDbException("Failed to open chunk " + readLock.getKey(), t);
+		}
+		return getBlueInputStream(readLock, seekableInputStream);
+	}
+
+	/**
+	 * @param readLock a read lock on the chunk file
+	 * @return the {@link ChunkStatistics} saved in the chunk's footer, or null if it doesn't have any or if it has deltas,
+	 * which the statistics don't cover
+	 */
+	public ChunkStatistics getChunkStatistics(BlueReadLock<Path> readLock) {
+		Path path = readLock.getKey();
+		if (path == null || FileUtils.exists(ChunkDeltas.getDeltaPath(path))) {
+			return null;
+		}
+		return ChunkStatistics.loadIfExists(path);
+	}
+
+	private static void closeQuietly(RandomAccessFile file) {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	public <T> BlueObjectInput<T> getBlueInputStream(BlueReadLock<Path> readLock, BlueInputStream blueInputStream) throws BlueDbException {
-		return new BlueObjectInput<T>(readLock, serializer, encryptionService, blueInputStream);
+		BlueObjectInput<T> input = new BlueObjectInput<T>(readLock, serializer, encryptionService, blueInputStream);
+		input.setIntegrityPolicy(integrityPolicy);
+		return input;
 	}
 
 	public BlueReadLock<Path> getReadLockIfFileExists(Path path) throws BlueDbException {
@@ -93,6 +338,29 @@ public class ReadFileManager {
 		return path.toFile().exists();
 	}
 
+	public IntegrityPolicy getIntegrityPolicy() {
+		return integrityPolicy;
+	}
+
+	public void setIntegrityPolicy(IntegrityPolicy integrityPolicy) {
+		this.integrityPolicy = integrityPolicy;
+	}
+
+	/**
+	 * @return the cache that chunks are read through, or null if they are always read from disk
+	 */
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	public void setChunkCache(ChunkCache chunkCache) {
+		this.chunkCache = chunkCache;
+	}
+
+	public EncryptionServiceWrapper getEncryptionService() {
+		return encryptionService;
+	}
+
 	public LockManager<Path> getLockManager() {
 		return lockManager;
 	}
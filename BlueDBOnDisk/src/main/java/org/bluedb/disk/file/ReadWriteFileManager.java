@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.Optional;
 
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
@@ -16,8 +17,19 @@ import org.bluedb.disk.serialization.BlueSerializer;
 
 public class ReadWriteFileManager extends ReadFileManager {
 
+	private final FileSyncer fileSyncer;
+
 	public ReadWriteFileManager(BlueSerializer serializer, EncryptionServiceWrapper encryptionService) {
+		this(serializer, encryptionService, FileSyncer.NONE);
+	}
+
+	public ReadWriteFileManager(BlueSerializer serializer, EncryptionServiceWrapper encryptionService, FileSyncer fileSyncer) {
 		super(serializer, encryptionService);
+		this.fileSyncer = fileSyncer;
+	}
+
+	public FileSyncer getFileSyncer() {
+		return fileSyncer;
 	}
 
 	public void saveObject(Path path, Object o) throws BlueDbException {
@@ -27,7 +39,7 @@ public class ReadWriteFileManager extends ReadFileManager {
 		try (BlueWriteLock<Path> tempFileLock = lockManager.acquireWriteLock(tmpPath)) {
 			writeBytes(tempFileLock, bytes, false);
 			try (BlueWriteLock<Path> targetFileLock = lockManager.acquireWriteLock(path)) {
-				FileUtils.moveFile(tmpPath, targetFileLock);
+				moveFile(tmpPath, targetFileLock);
 			}
 		}
 	}
@@ -41,23 +53,112 @@ public class ReadWriteFileManager extends ReadFileManager {
 
 	public void lockMoveFileUnlock(Path src, Path dst) throws BlueDbException {
 		try (BlueWriteLock<Path> lock = lockManager.acquireWriteLock(dst)) {
+			moveFile(src, lock);
+		}
+	}
+
+	/**
+	 * Moves a finished file into place, syncing the file before the move and its directory after the move as required
+	 * by the durability level
+	 * @param src the finished file
+	 * @param lock the write lock on the destination
+	 * @throws BlueDbException if the file can't be moved or synced
+	 */
+	public void moveFile(Path src, BlueWriteLock<Path> lock) throws BlueDbException {
+		fileSyncer.syncFile(src);
+		try {
 			FileUtils.moveFile(src, lock);
+		} finally {
+			invalidateCachedChunk(lock.getKey());
 		}
+		fileSyncer.syncDirectory(lock.getKey().toAbsolutePath().getParent());
+	}
+
+	public void moveWithoutLock(Path src, Path dst) throws BlueDbException {
+		fileSyncer.syncFile(src);
+		FileUtils.moveWithoutLock(src, dst);
+		fileSyncer.syncDirectory(dst.toAbsolutePath().getParent());
 	}
 
 	public void lockDeleteUnlock(File file) {
 		Path path = file.toPath();
 		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(path)) {
 			FileUtils.deleteFile(writeLock);
+			invalidateCachedChunk(path);
+		}
+	}
+
+	/**
+	 * Drops a file from the {@link ChunkCache} once it has been replaced or deleted. A cached chunk whose file has changed
+	 * is never read anyway, but this frees up its memory right away.
+	 * @param path the file that changed
+	 */
+	public void invalidateCachedChunk(Path path) {
+		ChunkCache chunkCache = this.chunkCache;
+		if (chunkCache != null) {
+			chunkCache.invalidate(path);
 		}
 	}
 
 	public <T> BlueObjectOutput<T> getBlueOutputStream(BlueWriteLock<Path> writeLock) throws BlueDbException {
-		return new BlueObjectOutput<>(writeLock, serializer, encryptionService);
+		BlueObjectOutput<T> output = new BlueObjectOutput<>(writeLock, serializer, encryptionService);
+		output.setIntegrityPolicy(integrityPolicy);
+		return output;
+	}
+
+	/**
+	 * Opens an output for a new chunk file. The records have to be written in key order since the chunk is saved with a
+	 * {@link SparseKeyIndex} footer. Entities are saved in the
+	 * {@link org.bluedb.disk.serialization.KeyedRecordFormat} so that queries can check their keys without deserializing
+	 * their values.
+	 * @param writeLock a write lock on the chunk file
+	 * @return an output for the chunk
+	 * @throws BlueDbException if the file can't be opened
+	 */
+	public <T> BlueObjectOutput<T> getChunkOutputStream(BlueWriteLock<Path> writeLock) throws BlueDbException {
+		BlueObjectOutput<T> output = getBlueOutputStream(writeLock);
+		output.enableSparseKeyIndex(SparseKeyIndex.DEFAULT_RECORDS_PER_ENTRY);
+		output.enableKeyedRecords();
+		return output;
+	}
+
+	public <T> BlueObjectOutput<T> getBlueOutputStreamForAppend(BlueWriteLock<Path> writeLock) throws BlueDbException {
+		BlueObjectOutput<T> output = BlueObjectOutput.createForAppend(writeLock, serializer, encryptionService, readMetadataIfExists(writeLock.getKey()));
+		output.setIntegrityPolicy(integrityPolicy);
+		return output;
+	}
+
+	/**
+	 * @param path the file that is going to be appended to
+	 * @return true if records appended to the file now would be encrypted the same way as everything else written now.
+	 * False if the file was started with a different encryption version and should be rewritten instead.
+	 * @throws BlueDbException if the metadata of the file can't be read
+	 */
+	public boolean canAppendWithCurrentEncryption(Path path) throws BlueDbException {
+		if (FileUtils.isEmpty(path)) {
+			return true;
+		}
+		BlueFileMetadata metadata = readMetadataIfExists(path);
+		if (metadata == null) {
+			return false;
+		}
+		Optional<String> currentEncryptionVersionKey = encryptionService.isEncryptionEnabled() ? Optional.of(encryptionService.getCurrentEncryptionVersionKey()) : Optional.empty();
+		return EncryptionUtils.getEncryptionVersionKey(metadata).equals(currentEncryptionVersionKey);
+	}
+
+	private BlueFileMetadata readMetadataIfExists(Path path) throws BlueDbException {
+		if (FileUtils.isEmpty(path)) {
+			return null;
+		}
+		try (BlueInputStream bis = new BlueDataInputStream(path.toFile())) {
+			return readMetadata(bis);
+		}
 	}
 
 	public <T> BlueObjectOutput<T> getBlueOutputStreamWithoutLock(Path path) throws BlueDbException {
-		return BlueObjectOutput.createWithoutLock(path, serializer, encryptionService);
+		BlueObjectOutput<T> output = BlueObjectOutput.createWithoutLock(path, serializer, encryptionService);
+		output.setIntegrityPolicy(integrityPolicy);
+		return output;
 	}
 
 	protected void writeBytes(BlueWriteLock<Path> writeLock, byte[] bytes, boolean forceSkipEncryption) throws BlueDbException {
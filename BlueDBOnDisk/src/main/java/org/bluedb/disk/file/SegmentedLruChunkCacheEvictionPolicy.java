@@ -0,0 +1,93 @@
+package org.bluedb.disk.file;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * A scan resistant version of {@link LruChunkCacheEvictionPolicy}. New chunks start out on probation and are only
+ * protected once they have been read again, so one large query that reads every chunk in a collection once only pushes
+ * out other chunks on probation and leaves the chunks that keep getting read alone.
+ */
+public class SegmentedLruChunkCacheEvictionPolicy implements ChunkCacheEvictionPolicy {
+
+	public static final int DEFAULT_PROTECTED_PERCENT = 80;
+
+	private final int protectedPercent;
+	private final LinkedHashMap<Path, Long> probation = new LinkedHashMap<>();
+	private final LinkedHashMap<Path, Long> protectedChunks = new LinkedHashMap<>();
+	private long probationBytes = 0;
+	private long protectedBytes = 0;
+
+	public SegmentedLruChunkCacheEvictionPolicy() {
+		this(DEFAULT_PROTECTED_PERCENT);
+	}
+
+	/**
+	 * @param protectedPercent the most that protected chunks can make up of the bytes being tracked. Once there are more,
+	 * the least recently read protected chunks go back on probation.
+	 */
+	public SegmentedLruChunkCacheEvictionPolicy(int protectedPercent) {
+		if (protectedPercent < 0 || protectedPercent > 100) {
+			throw new IllegalArgumentException("protectedPercent must be between 0 and 100");
+		}
+		this.protectedPercent = protectedPercent;
+	}
+
+	@Override
+	public void recordInsert(Path path, long bytes) {
+		recordRemoval(path);
+		probation.put(path, bytes);
+		probationBytes += bytes;
+	}
+
+	@Override
+	public void recordAccess(Path path) {
+		Long bytes = protectedChunks.remove(path);
+		if (bytes != null) {
+			protectedChunks.put(path, bytes);
+			return;
+		}
+
+		bytes = probation.remove(path);
+		if (bytes != null) {
+			probationBytes -= bytes;
+			protectedChunks.put(path, bytes);
+			protectedBytes += bytes;
+			demoteProtectedChunksThatDontFit();
+		}
+	}
+
+	@Override
+	public void recordRemoval(Path path) {
+		Long bytes = probation.remove(path);
+		if (bytes != null) {
+			probationBytes -= bytes;
+		}
+		bytes = protectedChunks.remove(path);
+		if (bytes != null) {
+			protectedBytes -= bytes;
+		}
+	}
+
+	@Override
+	public Path selectVictim() {
+		if (!probation.isEmpty()) {
+			return probation.keySet().iterator().next();
+		}
+		return protectedChunks.isEmpty() ? null : protectedChunks.keySet().iterator().next();
+	}
+
+	private void demoteProtectedChunksThatDontFit() {
+		long maxProtectedBytes = (probationBytes + protectedBytes) * protectedPercent / 100;
+		Iterator<Entry<Path, Long>> iterator = protectedChunks.entrySet().iterator();
+		while (protectedBytes > maxProtectedBytes && protectedChunks.size() > 1 && iterator.hasNext()) {
+			Entry<Path, Long> leastRecentlyRead = iterator.next();
+			iterator.remove();
+			protectedBytes -= leastRecentlyRead.getValue();
+			probation.put(leastRecentlyRead.getKey(), leastRecentlyRead.getValue());
+			probationBytes += leastRecentlyRead.getValue();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package org.bluedb.disk.file;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * The byte offsets of every Nth record in a chunk file. It is saved as a footer at the end of the chunk so that a point
+ * lookup can binary search the records at these offsets by grouping number and then only read the few records after
+ * the closest one, rather than reading the whole chunk.<br><br>
+ *
+ * The footer starts with a negative record length so that anything reading the records in order treats it as the end of
+ * the file. The last 12 bytes of the file are the position of the footer and a marker so that the footer can be found
+ * without reading anything else. After the offsets the footer carries the chunk's {@link ChunkStatistics} and can also
+ * carry a {@link ChunkBloomFilter} over the chunk's keys.
+ */
+public class SparseKeyIndex {
+
+	public static final int DEFAULT_RECORDS_PER_ENTRY = 32;
+
+	private static final int FOOTER_MARKER = 0x424C5349; // "BLSI"
+	private static final int TRAILER_LENGTH = 8 + 4;
+
+	private final long[] offsets;
+	private final ChunkBloomFilter bloomFilter;
+	private final ChunkStatistics statistics;
+
+	public SparseKeyIndex(long[] offsets) {
+		this(offsets, null);
+	}
+
+	public SparseKeyIndex(long[] offsets, ChunkBloomFilter bloomFilter) {
+		this(offsets, bloomFilter, null);
+	}
+
+	public SparseKeyIndex(long[] offsets, ChunkBloomFilter bloomFilter, ChunkStatistics statistics) {
+		this.offsets = offsets;
+		this.bloomFilter = bloomFilter;
+		this.statistics = statistics;
+	}
+
+	public int size() {
+		return offsets.length;
+	}
+
+	public long getOffset(int entry) {
+		return offsets[entry];
+	}
+
+	/**
+	 * @return the filter saved with the index, or null if the chunk was written without one
+	 */
+	public ChunkBloomFilter getBloomFilter() {
+		return bloomFilter;
+	}
+
+	/**
+	 * @return the statistics saved with the index, or null if the chunk was written without them
+	 */
+	public ChunkStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param file the chunk file, positioned anywhere
+	 * @return the index saved at the end of the file, or null if the file doesn't end with a valid one
+	 * @throws IOException if the file can't be read
+	 */
+	public static SparseKeyIndex readIfExists(RandomAccessFile file) throws IOException {
+		long fileLength = file.length();
+		if (fileLength < 4 + 4 + TRAILER_LENGTH) {
+			return null;
+		}
+		file.seek(fileLength - TRAILER_LENGTH);
+		long footerPosition = file.readLong();
+		int marker = file.readInt();
+		if (marker != FOOTER_MARKER || footerPosition < 0 || footerPosition > fileLength - TRAILER_LENGTH - 8) {
+			return null;
+		}
+
+		file.seek(footerPosition);
+		long footerLength = -(long) file.readInt();
+		int entryCount = file.readInt();
+		if (footerPosition + 4 + footerLength + TRAILER_LENGTH != fileLength || entryCount < 0 || footerLength < 4 + 8L * entryCount) {
+			return null;
+		}
+
+		long[] offsets = new long[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			offsets[i] = file.readLong();
+			if (offsets[i] < 0 || offsets[i] >= footerPosition) {
+				return null;
+			}
+		}
+
+		long statisticsLength = 4 + (long) file.readInt();
+		if (statisticsLength < 4 || footerLength < 4 + 8L * entryCount + statisticsLength) {
+			return null;
+		}
+		byte[] statisticsBytes = new byte[(int) statisticsLength - 4];
+		file.readFully(statisticsBytes);
+		ChunkStatistics statistics = ChunkStatistics.fromBytes(statisticsBytes); // Bad statistics are left out rather than the index
+
+		ChunkBloomFilter bloomFilter = null;
+		int bloomFilterLength = (int) (footerLength - 4 - 8L * entryCount - statisticsLength);
+		if (bloomFilterLength > 0) {
+			byte[] bloomFilterBytes = new byte[bloomFilterLength];
+			file.readFully(bloomFilterBytes);
+			bloomFilter = ChunkBloomFilter.fromBytes(bloomFilterBytes); // A bad filter is left out rather than the index
+		}
+		return new SparseKeyIndex(offsets, bloomFilter, statistics);
+	}
+
+	@Override
+	public String toString() {
+		return "SparseKeyIndex [offsets=" + Arrays.toString(offsets) + ", bloomFilter=" + bloomFilter + ", statistics=" + statistics + "]";
+	}
+
+	/**
+	 * Collects the offsets of the records as they are written to a chunk and then saves them as the chunk's footer.
+	 */
+	public static class Builder {
+		private final int recordsPerEntry;
+		private long[] offsets = new long[16];
+		private int entryCount = 0;
+		private long recordCount = 0;
+		private ChunkBloomFilter bloomFilter = null;
+		private ChunkStatistics statistics = null;
+
+		public Builder(int recordsPerEntry) {
+			if (recordsPerEntry < 1) {
+				throw new IllegalArgumentException("recordsPerEntry must be at least 1");
+			}
+			this.recordsPerEntry = recordsPerEntry;
+		}
+
+		public int getRecordsPerEntry() {
+			return recordsPerEntry;
+		}
+
+		public void recordWrittenAt(long offset) {
+			if (recordCount % recordsPerEntry == 0) {
+				if (entryCount == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				}
+				offsets[entryCount++] = offset;
+			}
+			recordCount++;
+		}
+
+		/**
+		 * @param bloomFilter a filter over every key in the chunk to save in the footer, or null for none
+		 */
+		public void setBloomFilter(ChunkBloomFilter bloomFilter) {
+			this.bloomFilter = bloomFilter;
+		}
+
+		/**
+		 * @param statistics the statistics of the records in the chunk to save in the footer, or null for none
+		 */
+		public void setStatistics(ChunkStatistics statistics) {
+			this.statistics = statistics;
+		}
+
+		public SparseKeyIndex build() {
+			return new SparseKeyIndex(Arrays.copyOf(offsets, entryCount), bloomFilter, statistics);
+		}
+
+		/**
+		 * @param dataOutputStream the stream for the chunk, after its last record
+		 * @param footerPosition the number of bytes already written to the chunk
+		 * @throws IOException if the footer can't be written
+		 */
+		public void writeFooter(DataOutputStream dataOutputStream, long footerPosition) throws IOException {
+			byte[] bloomFilterBytes = bloomFilter != null ? bloomFilter.toBytes() : new byte[0];
+			byte[] statisticsBytes = statistics != null ? statistics.toBytes() : new byte[0];
+			dataOutputStream.writeInt(-(4 + 8 * entryCount + 4 + statisticsBytes.length + bloomFilterBytes.length));
+			dataOutputStream.writeInt(entryCount);
+			for (int i = 0; i < entryCount; i++) {
+				dataOutputStream.writeLong(offsets[i]);
+			}
+			dataOutputStream.writeInt(statisticsBytes.length);
+			dataOutputStream.write(statisticsBytes);
+			dataOutputStream.write(bloomFilterBytes);
+			dataOutputStream.writeLong(footerPosition);
+			dataOutputStream.writeInt(FOOTER_MARKER);
+		}
+	}
+}
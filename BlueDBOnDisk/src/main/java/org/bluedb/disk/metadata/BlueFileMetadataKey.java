@@ -3,4 +3,6 @@ package org.bluedb.disk.metadata;
 public enum BlueFileMetadataKey {
 	ENCRYPTION_VERSION_KEY,
 	SORTED_MASS_CHANGE_FILE,
+	RECORD_CHECKSUMS,
+	SPARSE_KEY_INDEX,
 }
\ No newline at end of file
@@ -2,9 +2,14 @@ package org.bluedb.disk.query;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
+import org.bluedb.api.Aggregator;
+import org.bluedb.api.BlueQueryPage;
 import org.bluedb.api.CloseableIterator;
 import org.bluedb.api.Condition;
 import org.bluedb.api.ReadBlueTimeQuery;
@@ -12,6 +17,7 @@ import org.bluedb.api.datastructures.BlueSimpleSet;
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.index.conditions.BlueIndexCondition;
 import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.collection.EmptyCloseableIterator;
 import org.bluedb.disk.serialization.BlueEntity;
 
 public class DummyQuery<T extends Serializable> extends ReadOnlyTimeQueryOnDisk<T> {
@@ -39,6 +45,41 @@ public class DummyQuery<T extends Serializable> extends ReadOnlyTimeQueryOnDisk<
 	public ReadBlueTimeQuery<T> whereKeyIsIn(BlueSimpleSet<BlueKey> keys) {
 		return this;
 	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> limit(int maxResults) {
+		return this;
+	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> offset(int resultsToSkip) {
+		return this;
+	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> startAfter(String cursor) {
+		return this;
+	}
+
+	@Override
+	public ReadBlueTimeQuery<T> descending() {
+		return this;
+	}
+
+	@Override
+	public ReadBlueTimeQuery<T> orderBy(Comparator<T> comparator) {
+		return this;
+	}
+
+	@Override
+	public Optional<T> getFirst() throws BlueDbException {
+		return Optional.empty();
+	}
+
+	@Override
+	public BlueQueryPage<T> getPage() throws BlueDbException {
+		return new BlueQueryPage<>(new ArrayList<>(), null);
+	}
 
 	@Override
 	public CloseableIterator<T> getIterator() throws BlueDbException {
@@ -71,8 +112,24 @@ public class DummyQuery<T extends Serializable> extends ReadOnlyTimeQueryOnDisk<
 		};
 	}
 
+	@Override
+	public CloseableIterator<BlueKey> getKeys() throws BlueDbException {
+		return new EmptyCloseableIterator<>();
+	}
+
+	@Override
+	public <A> A aggregate(Aggregator<T, A> aggregator) throws BlueDbException {
+		return aggregator.createAccumulator();
+	}
+
 	@Override
 	public List<BlueEntity<T>> getEntities() throws BlueDbException {
 		return new ArrayList<>();
 	}
+
+	@Override
+	public Stream<BlueEntity<T>> getEntityStream(boolean parallel) throws BlueDbException {
+		Stream<BlueEntity<T>> stream = Stream.empty();
+		return parallel ? stream.parallel() : stream;
+	}
 }
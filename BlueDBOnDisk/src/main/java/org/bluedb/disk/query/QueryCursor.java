@@ -0,0 +1,78 @@
+package org.bluedb.disk.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.bluedb.api.keys.BlueKey;
+
+/**
+ * Turns the key of the last result on a page into the opaque cursor returned by
+ * {@link org.bluedb.api.BlueQueryPage#getNextPageCursor()}, and back. The records of a collection are read in key order,
+ * so the key is all that is needed to find where to resume. The segment and chunk to start in are found from its
+ * grouping number, which keeps a cursor good even if the chunks are rolled up before it is used.<br><br>
+ *
+ * Cursors come back from clients, so they aren't read with the collection's serializer. They are read with java
+ * serialization limited to the key classes.
+ */
+final class QueryCursor {
+
+	private static final byte VERSION = 1;
+	private static final String KEY_PACKAGE = BlueKey.class.getPackage().getName() + ".";
+
+	private QueryCursor() {}
+
+	public static String toCursor(BlueKey lastKey) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(VERSION);
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(lastKey);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create a query cursor for " + lastKey, e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	public static BlueKey fromCursor(String cursor, Class<? extends BlueKey> keyType) {
+		Object key;
+		try {
+			byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+			if (bytes.length == 0 || bytes[0] != VERSION) {
+				throw new IllegalArgumentException("Unsupported query cursor: " + cursor);
+			}
+			try (ObjectInputStream input = new KeyObjectInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+				key = input.readObject();
+			}
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			throw new IllegalArgumentException("Invalid query cursor: " + cursor, e);
+		}
+		if (!keyType.isInstance(key)) {
+			throw new IllegalArgumentException("The query cursor isn't for a collection with " + keyType.getSimpleName() + " keys: " + cursor);
+		}
+		return (BlueKey) key;
+	}
+
+	private static class KeyObjectInputStream extends ObjectInputStream {
+
+		public KeyObjectInputStream(InputStream input) throws IOException {
+			super(input);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+			String className = description.getName();
+			if (className.startsWith(KEY_PACKAGE) || className.equals(String.class.getName()) || className.equals(Number.class.getName()) ||
+					className.equals(Long.class.getName()) || className.equals(Integer.class.getName()) || className.equals(UUID.class.getName())) {
+				return super.resolveClass(description);
+			}
+			throw new InvalidClassException(className, "Query cursors can only hold keys");
+		}
+	}
+}
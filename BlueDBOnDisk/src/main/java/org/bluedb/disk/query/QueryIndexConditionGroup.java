@@ -41,6 +41,14 @@ public class QueryIndexConditionGroup<T extends Serializable> {
 		return shouldAnd;
 	}
 
+	/**
+	 * @return true if every condition in the group only looks at the key, so the group can be tested with an entity that
+	 * doesn't have its value
+	 */
+	public boolean testsKeyOnly() {
+		return StreamUtils.stream(indexConditions).allMatch(OnDiskIndexCondition::testsKeyOnly);
+	}
+
 	public boolean test(BlueEntity<T> entityToTest) {
 		Stream<OnDiskIndexCondition<?, T>> conditionStream = StreamUtils.stream(indexConditions);
 		Predicate<? super OnDiskIndexCondition<?, T>> conditionTest = indexCondition -> indexCondition.test(entityToTest);
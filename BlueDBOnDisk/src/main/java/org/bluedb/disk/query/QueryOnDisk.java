@@ -1,6 +1,7 @@
 package org.bluedb.disk.query;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.BlueQuery;
@@ -48,6 +49,36 @@ public class QueryOnDisk<T extends Serializable> extends ReadOnlyQueryOnDisk<T>
 		super.whereKeyIsIn(keys);
 		return this;
 	}
+	
+	@Override
+	public BlueQuery<T> limit(int maxResults) {
+		super.limit(maxResults);
+		return this;
+	}
+	
+	@Override
+	public BlueQuery<T> offset(int resultsToSkip) {
+		super.offset(resultsToSkip);
+		return this;
+	}
+	
+	@Override
+	public BlueQuery<T> startAfter(String cursor) {
+		super.startAfter(cursor);
+		return this;
+	}
+
+	@Override
+	public BlueQuery<T> descending() {
+		super.descending();
+		return this;
+	}
+
+	@Override
+	public BlueQuery<T> orderBy(Comparator<T> comparator) {
+		super.orderBy(comparator);
+		return this;
+	}
 
 	@Override
 	public void delete() throws BlueDbException {
@@ -2,12 +2,21 @@ package org.bluedb.disk.query;
 
 import java.io.Serializable;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.bluedb.api.Aggregator;
+import org.bluedb.api.Aggregators;
+import org.bluedb.api.BlueQueryPage;
 import org.bluedb.api.CloseableIterator;
 import org.bluedb.api.Condition;
 import org.bluedb.api.ReadBlueQuery;
@@ -18,12 +27,18 @@ import org.bluedb.api.exceptions.UnsupportedIndexConditionTypeException;
 import org.bluedb.api.index.conditions.BlueIndexCondition;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.Blutils;
+import org.bluedb.disk.CloseableIteratorWrapper;
+import org.bluedb.disk.IteratorWrapper.IteratorWrapperMapper;
 import org.bluedb.disk.collection.CollectionEntityIterator;
+import org.bluedb.disk.collection.CollectionEntitySpliterator;
+import org.bluedb.disk.collection.CollectionKeyIterator;
 import org.bluedb.disk.collection.CollectionValueIterator;
 import org.bluedb.disk.collection.ReadableCollectionOnDisk;
 import org.bluedb.disk.collection.index.conditions.AllSegmentsInRangeAcceptingIndexCondition;
 import org.bluedb.disk.collection.index.conditions.IncludedSegmentRangeInfo;
 import org.bluedb.disk.collection.index.conditions.OnDiskIndexCondition;
+import org.bluedb.disk.file.BlueObjectStreamSorter.BlueObjectStreamSorterConfig;
+import org.bluedb.disk.file.ReadFileManager;
 import org.bluedb.disk.segment.Range;
 import org.bluedb.disk.segment.ReadableSegmentManager;
 import org.bluedb.disk.segment.path.SegmentPathManager;
@@ -40,6 +55,11 @@ public class ReadOnlyQueryOnDisk<T extends Serializable> implements ReadBlueQuer
 	protected long min = Long.MIN_VALUE;
 	protected boolean byStartTime = false;
 	protected TimeIncludeMode timeIncludeMode = TimeIncludeMode.INCLUDE_ALL;
+	protected long offset = 0;
+	protected long limit = Long.MAX_VALUE;
+	protected BlueKey startAfterKey = null;
+	protected boolean descending = false;
+	protected Comparator<T> sortComparator = null;
 
 	public ReadOnlyQueryOnDisk(ReadableCollectionOnDisk<T> collection) {
 		this.collection = collection;
@@ -73,16 +93,81 @@ public class ReadOnlyQueryOnDisk<T extends Serializable> implements ReadBlueQuer
 		return this;
 	}
 
+	@Override
+	public ReadBlueQuery<T> limit(int maxResults) {
+		if (maxResults < 0) {
+			throw new IllegalArgumentException("The limit of a query can't be negative: " + maxResults);
+		}
+		limit = maxResults;
+		return this;
+	}
+
+	@Override
+	public ReadBlueQuery<T> offset(int resultsToSkip) {
+		if (resultsToSkip < 0) {
+			throw new IllegalArgumentException("The offset of a query can't be negative: " + resultsToSkip);
+		}
+		offset = resultsToSkip;
+		return this;
+	}
+
+	@Override
+	public ReadBlueQuery<T> startAfter(String cursor) {
+		startAfterKey = cursor != null ? QueryCursor.fromCursor(cursor, collection.getKeyType()) : null;
+		return this;
+	}
+
+	@Override
+	public ReadBlueQuery<T> descending() {
+		descending = true;
+		return this;
+	}
+
+	@Override
+	public ReadBlueQuery<T> orderBy(Comparator<T> comparator) {
+		sortComparator = comparator;
+		return this;
+	}
+
 	@Override
 	public List<T> getList() throws BlueDbException {
 		return Blutils.map(getEntities(), (e) -> e.getValue());
 	}
+
+	@Override
+	public BlueQueryPage<T> getPage() throws BlueDbException {
+		if (sortComparator != null) {
+			throw new IllegalStateException("A query sorted with orderBy can't be paged with a cursor, use offset and limit instead");
+		}
+		List<T> values = new ArrayList<>();
+		BlueKey lastKey = null;
+		try (CollectionEntityIterator<T> iterator = createEntityIterator()) {
+			if (limit < Long.MAX_VALUE) {
+				iterator.setLimit(limit + 1); //Reading one more shows whether there is another page
+			}
+			while (values.size() < limit && iterator.hasNext()) {
+				BlueEntity<T> entity = iterator.next();
+				values.add(entity.getValue());
+				lastKey = entity.getKey();
+			}
+			boolean hasNextPage = lastKey != null && iterator.hasNext();
+			return new BlueQueryPage<>(values, hasNextPage ? QueryCursor.toCursor(lastKey) : null);
+		}
+	}
 	
 	@Override
 	public Optional<T> getFirst() throws BlueDbException {
-		try(CloseableIterator<T> queryIterator = getIterator()) {
+		CloseableIterator<BlueEntity<T>> entityIterator;
+		if (sortComparator != null) {
+			entityIterator = createSortedEntityIterator(offset, Math.min(limit, 1));
+		} else {
+			CollectionEntityIterator<T> collectionEntityIterator = createEntityIterator();
+			collectionEntityIterator.setLimit(Math.min(limit, 1)); //Nothing past the first result is read ahead
+			entityIterator = collectionEntityIterator;
+		}
+		try(CloseableIterator<BlueEntity<T>> queryIterator = entityIterator) {
 			if(queryIterator.hasNext()) {
-				return Optional.of(queryIterator.next());
+				return Optional.of(queryIterator.next().getValue());
 			}
 		}
 		return Optional.empty();
@@ -90,31 +175,157 @@ public class ReadOnlyQueryOnDisk<T extends Serializable> implements ReadBlueQuer
 
 	@Override
 	public CloseableIterator<T> getIterator() throws BlueDbException {
-		finalizeParametersBeforeExecution();
-		return new CollectionValueIterator<T>(collection.getSegmentManager(), getRange(), byStartTime, indexConditionGroups, objectConditions, keyConditions, getSegmentRangeInfoToInclude());
+		if (sortComparator != null) {
+			IteratorWrapperMapper<BlueEntity<T>, T> valueMapper = BlueEntity::getValue;
+			return new CloseableIteratorWrapper<>(createSortedEntityIterator(offset, limit), valueMapper);
+		}
+		return new CollectionValueIterator<T>(createEntityIterator());
 	}
 
 	@Override
 	public CloseableIterator<T> getIterator(long timeout, TimeUnit timeUnit) throws BlueDbException {
+		if (sortComparator != null) {
+			return getIterator(); //The sorted results are read before this returns, so nothing is locked while the client reads them
+		}
 		long timeoutInMillis = TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-		finalizeParametersBeforeExecution();
-		return new CollectionValueIterator<T>(collection.getSegmentManager(), getRange(), timeoutInMillis, byStartTime, indexConditionGroups, objectConditions, keyConditions, getSegmentRangeInfoToInclude());
+		return new CollectionValueIterator<T>(createEntityIterator(), timeoutInMillis);
+	}
+
+	@Override
+	public CloseableIterator<BlueKey> getKeys() throws BlueDbException {
+		if (sortComparator != null) {
+			IteratorWrapperMapper<BlueEntity<T>, BlueKey> keyMapper = BlueEntity::getKey;
+			return new CloseableIteratorWrapper<>(createSortedEntityIterator(offset, limit), keyMapper);
+		}
+		return new CollectionKeyIterator<T>(createEntityIterator());
+	}
+
+	@Override
+	public <A> A aggregate(Aggregator<T, A> aggregator) throws BlueDbException {
+		if (sortComparator != null && (offset > 0 || limit < Long.MAX_VALUE)) {
+			//The order decides which records are on the page
+			try (CloseableIterator<BlueEntity<T>> iterator = createSortedEntityIterator(offset, limit)) {
+				A accumulator = aggregator.createAccumulator();
+				while (iterator.hasNext()) {
+					accumulator = aggregator.accumulate(accumulator, iterator.next().getValue());
+				}
+				return accumulator;
+			}
+		}
+		try (CollectionEntityIterator<T> iterator = createEntityIterator()) {
+			return iterator.aggregate(aggregator);
+		}
 	}
 
 	@Override
 	public int count() throws BlueDbException {
-		CloseableIterator<T> iter = getIterator();
-		return iter.countRemainderAndClose();
+		return aggregate(Aggregators.<T>count()).intValue();
 	}
 	
+	@Override
+	public Stream<T> stream() throws BlueDbException {
+		return getEntityStream(false).map(BlueEntity::getValue);
+	}
+
+	@Override
+	public Stream<T> parallelStream() throws BlueDbException {
+		return getEntityStream(true).map(BlueEntity::getValue);
+	}
+
+	/*
+	 * An offset or limit depends on the order of the records, so a page can't be split up between threads
+	 */
+	public Stream<BlueEntity<T>> getEntityStream(boolean parallel) throws BlueDbException {
+		if (sortComparator != null) {
+			CloseableIterator<BlueEntity<T>> sortedIterator = createSortedEntityIterator(offset, limit);
+			Spliterator<BlueEntity<T>> spliterator = Spliterators.spliteratorUnknownSize(sortedIterator, Spliterator.ORDERED | Spliterator.NONNULL);
+			return StreamSupport.stream(spliterator, parallel).onClose(sortedIterator::close);
+		}
+		CollectionEntityIterator<T> iterator = createEntityIterator();
+		if (offset > 0 || limit < Long.MAX_VALUE) {
+			Spliterator<BlueEntity<T>> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+			return StreamSupport.stream(spliterator, parallel).onClose(iterator::close);
+		}
+		CollectionEntitySpliterator<T> spliterator = iterator.toSpliterator();
+		iterator.close();
+		return StreamSupport.stream(spliterator, parallel).onClose(spliterator::close);
+	}
+
 	public CloseableIterator<BlueEntity<T>> getEntityIterator() throws BlueDbException {
+		if (sortComparator != null) {
+			return createSortedEntityIterator(offset, limit);
+		}
+		return createEntityIterator();
+	}
+
+	/**
+	 * Returns the same entities as {@link #getEntityIterator()}, but always in key order, which is the order that changes
+	 * have to be saved in. The records that a descending query picks out are always a run of records in key order, so
+	 * the matches before its cursor are counted and then the run is read forwards. The records that a sorted query picks
+	 * out can be anywhere, so they are sorted again by key.
+	 * @return an iterator over the entities in key order
+	 * @throws BlueDbException if the query fails
+	 */
+	public CloseableIterator<BlueEntity<T>> getEntityIteratorInKeyOrder() throws BlueDbException {
+		if (sortComparator != null && (offset > 0 || limit < Long.MAX_VALUE)) {
+			try (CloseableIterator<BlueEntity<T>> selectedEntities = createSortedEntityIterator(offset, limit)) {
+				ReadFileManager fileManager = collection.getFileManager();
+				return SortedEntityIterator.sort(selectedEntities, Comparator.naturalOrder(), 0, Long.MAX_VALUE, collection.getPath(), fileManager.getSerializer(), fileManager.getEncryptionService(), BlueObjectStreamSorterConfig.createDefault());
+			}
+		}
 		finalizeParametersBeforeExecution();
-		return new CollectionEntityIterator<T>(collection.getSegmentManager(), getRange(), byStartTime, indexConditionGroups, objectConditions, keyConditions, getSegmentRangeInfoToInclude());
+		if (!descending) {
+			return createEntityIterator(false, startAfterKey, offset, limit);
+		}
+		long matchesBeforeCursor;
+		try (CollectionEntityIterator<T> iterator = createEntityIterator(true, startAfterKey, 0, Long.MAX_VALUE)) {
+			matchesBeforeCursor = iterator.aggregate(Aggregators.<T>count());
+		}
+		long end = Math.max(0, matchesBeforeCursor - offset);
+		long start = Math.max(0, end - limit);
+		return createEntityIterator(false, null, start, end - start);
 	}
 
 	public List<BlueEntity<T>> getEntities() throws BlueDbException {
+		List<BlueEntity<T>> results = new ArrayList<>();
+		try (CloseableIterator<BlueEntity<T>> iterator = getEntityIterator()) {
+			while (iterator.hasNext()) {
+				results.add(iterator.next());
+			}
+		}
+		return results;
+	}
+
+	private CollectionEntityIterator<T> createEntityIterator() throws BlueDbException {
 		finalizeParametersBeforeExecution();
-		return collection.findMatches(getRange(), indexConditionGroups, objectConditions, keyConditions, byStartTime, getSegmentRangeInfoToInclude());
+		return createEntityIterator(descending, startAfterKey, offset, limit);
+	}
+
+	/*
+	 * The collection is read to the end before this returns, so its read locks aren't held while the results are read
+	 */
+	private SortedEntityIterator<T> createSortedEntityIterator(long offset, long limit) throws BlueDbException {
+		if (startAfterKey != null) {
+			throw new IllegalStateException("A query sorted with orderBy can't start after a cursor, use offset and limit instead");
+		}
+		Comparator<BlueEntity<T>> comparator = Comparator.comparing(BlueEntity<T>::getValue, sortComparator).thenComparing(Comparator.naturalOrder());
+		if (descending) {
+			comparator = comparator.reversed();
+		}
+		finalizeParametersBeforeExecution();
+		try (CollectionEntityIterator<T> iterator = createEntityIterator(false, null, 0, Long.MAX_VALUE)) {
+			ReadFileManager fileManager = collection.getFileManager();
+			return SortedEntityIterator.sort(iterator, comparator, offset, limit, collection.getPath(), fileManager.getSerializer(), fileManager.getEncryptionService(), BlueObjectStreamSorterConfig.createDefault());
+		}
+	}
+
+	private CollectionEntityIterator<T> createEntityIterator(boolean descending, BlueKey startAfterKey, long offset, long limit) throws BlueDbException {
+		CollectionEntityIterator<T> iterator = new CollectionEntityIterator<T>(collection.getSegmentManager(), getRange(), byStartTime, indexConditionGroups, objectConditions, keyConditions, getSegmentRangeInfoToInclude());
+		iterator.setDescending(descending);
+		iterator.setStartAfterKey(startAfterKey);
+		iterator.setOffset(offset);
+		iterator.setLimit(limit);
+		return iterator;
 	}
 
 	private void finalizeParametersBeforeExecution() throws BlueDbException {
@@ -1,6 +1,7 @@
 package org.bluedb.disk.query;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.Condition;
@@ -39,6 +40,36 @@ public class ReadOnlyTimeQueryOnDisk<T extends Serializable> extends ReadOnlyQue
 		super.whereKeyIsIn(keys);
 		return this;
 	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> limit(int maxResults) {
+		super.limit(maxResults);
+		return this;
+	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> offset(int resultsToSkip) {
+		super.offset(resultsToSkip);
+		return this;
+	}
+	
+	@Override
+	public ReadBlueTimeQuery<T> startAfter(String cursor) {
+		super.startAfter(cursor);
+		return this;
+	}
+
+	@Override
+	public ReadBlueTimeQuery<T> descending() {
+		super.descending();
+		return this;
+	}
+
+	@Override
+	public ReadBlueTimeQuery<T> orderBy(Comparator<T> comparator) {
+		super.orderBy(comparator);
+		return this;
+	}
 
 	@Override
 	public ReadBlueTimeQuery<T> whereKeyIsActive() {
@@ -0,0 +1,181 @@
+package org.bluedb.disk.query;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import org.bluedb.api.CloseableIterator;
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.disk.Blutils;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.file.BlueObjectInput;
+import org.bluedb.disk.file.BlueObjectStreamSorter;
+import org.bluedb.disk.file.BlueObjectStreamSorter.BlueObjectStreamSorterConfig;
+import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.file.ReadWriteFileManager;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.BlueSerializer;
+
+/**
+ * Iterates over query results in an order other than the order they are stored in. The number of records held in memory
+ * is capped by {@link BlueObjectStreamSorterConfig#maxRecordsInInitialChunks}, no matter how many records there are.<br><br>
+ *
+ * If the offset and limit only need that many records, only the best ones are kept in a bounded heap. If everything fits
+ * in memory it is sorted there. Otherwise the records are sorted on disk with a {@link BlueObjectStreamSorter} in a temp
+ * directory in the collection's folder that is deleted when the iterator is closed.
+ * @param <T> the value type of the collection
+ */
+public class SortedEntityIterator<T extends Serializable> implements CloseableIterator<BlueEntity<T>> {
+
+	private final LinkedList<BlueEntity<T>> sortedEntities;
+	private final BlueObjectInput<BlueEntity<T>> sortedInput;
+	private final Path tempDirectory;
+	private long resultsLeft;
+	private boolean closed = false;
+
+	private SortedEntityIterator(LinkedList<BlueEntity<T>> sortedEntities, BlueObjectInput<BlueEntity<T>> sortedInput, Path tempDirectory, long limit) {
+		this.sortedEntities = sortedEntities;
+		this.sortedInput = sortedInput;
+		this.tempDirectory = tempDirectory;
+		this.resultsLeft = limit;
+	}
+
+	/**
+	 * Reads all of the entities and sorts them. The entities iterator isn't closed, but it has been read to the end when
+	 * this returns, so it can be closed right away to release its locks.
+	 * @param entities the entities to sort
+	 * @param comparator the order to return them in. Ties are returned in an unspecified order, so it should be a total order.
+	 * @param offset the number of sorted entities to skip
+	 * @param limit the max number of sorted entities to return
+	 * @param tempFolder the folder to create a temp directory in if the entities don't fit in memory
+	 * @param serializer the serializer to write entities to disk with if they don't fit in memory
+	 * @param encryptionService the encryption to write entities to disk with if they don't fit in memory
+	 * @param config the sorter config, which also caps the number of entities held in memory
+	 * @return an iterator over the sorted entities
+	 * @throws BlueDbException if the entities can't be saved to disk
+	 */
+	public static <T extends Serializable> SortedEntityIterator<T> sort(Iterator<BlueEntity<T>> entities, Comparator<BlueEntity<T>> comparator, long offset, long limit, Path tempFolder, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, BlueObjectStreamSorterConfig config) throws BlueDbException {
+		long resultsNeeded = limit < Long.MAX_VALUE - offset ? offset + limit : Long.MAX_VALUE;
+		if (resultsNeeded <= config.maxRecordsInInitialChunks) {
+			return createInMemory(getBest(entities, comparator, (int) resultsNeeded), offset, limit);
+		}
+
+		List<BlueEntity<T>> firstBatch = new ArrayList<>();
+		while (firstBatch.size() < config.maxRecordsInInitialChunks && entities.hasNext()) {
+			firstBatch.add(entities.next());
+		}
+		if (!entities.hasNext()) {
+			Collections.sort(firstBatch, comparator);
+			return createInMemory(firstBatch, offset, limit);
+		}
+		return sortOnDisk(firstBatch, entities, comparator, offset, limit, tempFolder, new ReadWriteFileManager(serializer, encryptionService), config);
+	}
+
+	private static <T extends Serializable> List<BlueEntity<T>> getBest(Iterator<BlueEntity<T>> entities, Comparator<BlueEntity<T>> comparator, int count) {
+		if (count == 0) {
+			return new ArrayList<>();
+		}
+		PriorityQueue<BlueEntity<T>> worstFirst = new PriorityQueue<>(count, comparator.reversed());
+		while (entities.hasNext()) {
+			BlueEntity<T> entity = entities.next();
+			if (worstFirst.size() < count) {
+				worstFirst.add(entity);
+			} else if (comparator.compare(entity, worstFirst.peek()) < 0) {
+				worstFirst.poll();
+				worstFirst.add(entity);
+			}
+		}
+		List<BlueEntity<T>> best = new ArrayList<>(worstFirst);
+		Collections.sort(best, comparator);
+		return best;
+	}
+
+	private static <T extends Serializable> SortedEntityIterator<T> createInMemory(List<BlueEntity<T>> sortedEntities, long offset, long limit) {
+		int start = (int) Math.min(offset, sortedEntities.size());
+		return new SortedEntityIterator<>(new LinkedList<>(sortedEntities.subList(start, sortedEntities.size())), null, null, limit);
+	}
+
+	private static <T extends Serializable> SortedEntityIterator<T> sortOnDisk(List<BlueEntity<T>> firstBatch, Iterator<BlueEntity<T>> entities, Comparator<BlueEntity<T>> comparator, long offset, long limit, Path tempFolder, ReadWriteFileManager fileManager, BlueObjectStreamSorterConfig config) throws BlueDbException {
+		Path tempDirectory = FileUtils.createTempFilePathInDirectory(tempFolder, "sorted-query-" + UUID.randomUUID());
+		try {
+			Files.createDirectories(tempDirectory);
+		} catch (IOException e) {
+			throw new BlueDbException("Failed to create a temp directory to sort query results in", e);
+		}
+
+		BlueObjectInput<BlueEntity<T>> sortedInput = null;
+		try {
+			Path sortedPath = tempDirectory.resolve("sorted");
+			BlueObjectStreamSorter<BlueEntity<T>> sorter = new BlueObjectStreamSorter<>(entities, comparator, sortedPath, fileManager, new HashMap<>(), config);
+			sorter.addBatchOfObjectsToBeSorted(firstBatch);
+			firstBatch.clear();
+			sorter.sortAndWriteToFile();
+
+			sortedInput = fileManager.getBlueInputStream(fileManager.getReadLockIfFileExists(sortedPath));
+			for (long skipped = 0; skipped < offset && sortedInput.hasNext(); skipped++) {
+				sortedInput.next();
+			}
+			return new SortedEntityIterator<>(null, sortedInput, tempDirectory, limit);
+		} catch (Throwable t) {
+			if (sortedInput != null) {
+				sortedInput.close();
+			}
+			Blutils.recursiveDelete(tempDirectory.toFile());
+			throw t;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			throw new IllegalStateException("SortedEntityIterator has already been closed");
+		}
+		if (resultsLeft <= 0) {
+			return false;
+		}
+		return sortedInput != null ? sortedInput.hasNext() : !sortedEntities.isEmpty();
+	}
+
+	@Override
+	public BlueEntity<T> peek() {
+		if (!hasNext()) {
+			return null;
+		}
+		return sortedInput != null ? sortedInput.peek() : sortedEntities.peek();
+	}
+
+	@Override
+	public BlueEntity<T> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		resultsLeft--;
+		return sortedInput != null ? sortedInput.next() : sortedEntities.poll();
+	}
+
+	@Override
+	public void keepAlive() {
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			if (sortedInput != null) {
+				sortedInput.close();
+				Blutils.recursiveDelete(tempDirectory.toFile());
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.bluedb.disk.query;
 
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Set;
 
 import org.bluedb.api.BlueTimeQuery;
@@ -45,6 +46,36 @@ public class TimeQueryOnDisk<T extends Serializable> extends QueryOnDisk<T> impl
 		super.whereKeyIsIn(keys);
 		return this;
 	}
+	
+	@Override
+	public BlueTimeQuery<T> limit(int maxResults) {
+		super.limit(maxResults);
+		return this;
+	}
+	
+	@Override
+	public BlueTimeQuery<T> offset(int resultsToSkip) {
+		super.offset(resultsToSkip);
+		return this;
+	}
+	
+	@Override
+	public BlueTimeQuery<T> startAfter(String cursor) {
+		super.startAfter(cursor);
+		return this;
+	}
+
+	@Override
+	public BlueTimeQuery<T> descending() {
+		super.descending();
+		return this;
+	}
+
+	@Override
+	public BlueTimeQuery<T> orderBy(Comparator<T> comparator) {
+		super.orderBy(comparator);
+		return this;
+	}
 
 	@Override
 	public BlueTimeQuery<T> whereKeyIsActive() {
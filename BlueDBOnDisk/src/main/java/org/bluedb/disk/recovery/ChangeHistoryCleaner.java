@@ -53,6 +53,7 @@ public class ChangeHistoryCleaner {
 		if (holdsOnHistoryCleanup.get() > 0) {
 			return;
 		}
+		recoveryManager.getWriteAheadLog().recycleSegments(completedChangeLimit);
 		try (DirectoryStream<Path> completedChangeFileStream = recoveryManager.getCompletedChangeFilesAsStream()){
 			Iterator<Path> completedChangeFilesIterator = completedChangeFileStream.iterator();
 			List<TimeStampedFile> timestampedFiles = new LinkedList<TimeStampedFile>();
@@ -24,6 +24,11 @@ public class InMemorySortedChangeSupplier<T extends Serializable> implements Sor
 		seekToNextChangeInRange(initialRangeToSeekTo);
 	}
 
+	private InMemorySortedChangeSupplier(ArrayList<IndividualChange<T>> sortedChanges, int currentIndex) {
+		this.sortedChanges = sortedChanges; //Never modified after construction so copies can share it
+		this.currentIndex = currentIndex;
+	}
+
 	@Override
 	public boolean seekToNextChangeInRange(Range range) {
 		for(int i = currentIndex + 1; i < sortedChanges.size(); i++) {
@@ -96,6 +101,11 @@ public class InMemorySortedChangeSupplier<T extends Serializable> implements Sor
 		lastCheckpointIndex = -1;
 	}
 
+	@Override
+	public SortedChangeSupplier<T> copyAtCursor() {
+		return new InMemorySortedChangeSupplier<>(sortedChanges, currentIndex);
+	}
+
 	@Override
 	public void close() { }
 }
@@ -51,8 +51,12 @@ public class IndividualChange <T extends Serializable> implements ComparableAndS
 		return createUpdateChange(entity.getKey(), entity.getValue(), updater, serializer);
 	}
 
+	/**
+	 * Creates the change for an update. The value must have just been read for this change, since it is kept as the old
+	 * value instead of being copied. Only the new value is cloned so that the updater can't touch the old value.
+	 */
 	public static <T extends Serializable> IndividualChange<T> createUpdateChange(BlueKey key, T value, Updater<T> updater, BlueSerializer serializer) throws SerializationException {
-		T oldValue = serializer.clone(value);
+		T oldValue = value;
 		T newValue = serializer.clone(oldValue);
 		updater.update(newValue);
 		
@@ -64,7 +68,7 @@ public class IndividualChange <T extends Serializable> implements ComparableAndS
 	}
 
 	public static <T extends Serializable> IndividualChange<T> createUpdateKeyAndValueChange(BlueKey originalKey, T originalValue, TimeEntityUpdater<T> updater, BlueSerializer serializer) throws BlueDbException {
-		T oldValue = serializer.clone(originalValue);
+		T oldValue = originalValue;
 		T newValue = serializer.clone(oldValue);
 		TimeKey newKey = updater.update(newValue);
 		
@@ -105,14 +109,18 @@ public class IndividualChange <T extends Serializable> implements ComparableAndS
 		return createReplaceChange(entity.getKey(), entity.getValue(), mapper, serializer);
 	}
 
+	/**
+	 * Creates the change for a replace. Just like {@link #createUpdateChange(BlueKey, Serializable, Updater, BlueSerializer)}
+	 * the value is kept as the old value and only the copy handed to the mapper is cloned.
+	 */
 	public static <T extends Serializable> IndividualChange<T> createReplaceChange(BlueKey key, T value, Mapper<T> mapper, BlueSerializer serializer) throws SerializationException {
-		T oldValue = serializer.clone(value);
+		T oldValue = value;
 		T newValue = mapper.update(serializer.clone(oldValue));
 		return new IndividualChange<T>(key, oldValue, newValue, Optional.empty());
 	}
 
 	public static <T extends Serializable> IndividualChange<T> createReplaceKeyAndValueChange(BlueKey originalKey, T originalValue, TimeEntityMapper<T> mapper, BlueSerializer serializer) throws BlueDbException {
-		T oldValue = (T) serializer.clone(originalValue);
+		T oldValue = originalValue;
 		
 		TimeKeyValuePair<T> newEntity = mapper.map(serializer.clone(oldValue));
 		if(!Objects.equals(originalKey, newEntity.getKey())) {
@@ -128,6 +136,16 @@ public class IndividualChange <T extends Serializable> implements ComparableAndS
 		return new IndividualChange<T>(key, oldValue, newValue, originalKeyIfDifferent);
 	}
 
+	/**
+	 * Combines this change with a change that was made to the same record after it so that both can be applied as one
+	 * @param nextChange a change that was created from the result of this change
+	 * @return a change from this change's original record to the next change's new record
+	 */
+	public IndividualChange<T> followedBy(IndividualChange<T> nextChange) {
+		Optional<BlueKey> originalKeyIfDifferent = getOriginalKeyIfChanged(getOriginalKey(), nextChange.getKey());
+		return new IndividualChange<T>(nextChange.getKey(), oldValue, nextChange.getNewValue(), originalKeyIfDifferent);
+	}
+
 	private IndividualChange(BlueKey key, T oldValue, T newValue, Optional<BlueKey> originalKeyIfDifferent) {
 		this.key = key;
 		this.oldValue = oldValue;
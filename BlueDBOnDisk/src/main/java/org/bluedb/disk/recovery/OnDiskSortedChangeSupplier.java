@@ -18,6 +18,7 @@ import org.bluedb.disk.segment.Range;
 
 public class OnDiskSortedChangeSupplier<T extends Serializable> implements SortedChangeSupplier<T> {
 	private ReadFileManager fileManager;
+	private Path changesFilePath;
 	private BlueReadLock<Path> changeFileReadLock;
 	
 	private BlueSeekableInputStream changesSeekableInputStream;
@@ -31,6 +32,7 @@ public class OnDiskSortedChangeSupplier<T extends Serializable> implements Sorte
 	public OnDiskSortedChangeSupplier(Path changesFilePath, ReadFileManager fileManager) throws BlueDbException {
 		try {
 			this.fileManager = fileManager;
+			this.changesFilePath = changesFilePath;
 			
 			changeFileReadLock = fileManager.getReadLockIfFileExists(changesFilePath);
 			changesSeekableInputStream = new BlueSeekableInputStream(changesFilePath);
@@ -154,6 +156,18 @@ public class OnDiskSortedChangeSupplier<T extends Serializable> implements Sorte
 		setCursorInfo(firstChangeCursorInfo, false);
 	}
 	
+	@Override
+	public SortedChangeSupplier<T> copyAtCursor() throws BlueDbException {
+		OnDiskSortedChangeSupplier<T> copy = new OnDiskSortedChangeSupplier<>(changesFilePath, fileManager);
+		try {
+			copy.setCursorInfo(getCurrentCursorInfo(), shouldSkipNextInSeek);
+			return copy;
+		} catch(Throwable t) {
+			copy.close();
+			throw t;
+		}
+	}
+	
 	@Override
 	public void close() {
 		if(changeFileReadLock != null) {
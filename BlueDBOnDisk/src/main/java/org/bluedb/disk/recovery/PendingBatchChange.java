@@ -30,10 +30,14 @@ public class PendingBatchChange<T extends Serializable> implements Serializable,
 
 	@Override
 	public void apply(ReadWriteCollectionOnDisk<T> collection) throws BlueDbException {
-		Collections.sort(sortedChanges); //PendingBatchChange instances don't get created anymore, so this just ensures that if someone updates from an old version of BlueDB that still has one of these in the recovery folder then it'll have any updated sorting.
+		Collections.sort(sortedChanges); //Ensures that batch changes saved by an old version of BlueDB get any updated sorting.
 		SortedChangeSupplier<T> sortedChangeSupplier = new InMemorySortedChangeSupplier<T>(sortedChanges);
 		ReadWriteSegmentManager<T> segmentManager = collection.getSegmentManager();
-		segmentManager.applyChanges(sortedChangeSupplier);
+		try {
+			segmentManager.applyChanges(sortedChangeSupplier);
+		} finally {
+			collection.getEntityCache().invalidate(sortedChangeSupplier);
+		}
 		collection.getIndexManager().indexChanges(sortedChangeSupplier);
 	}
 
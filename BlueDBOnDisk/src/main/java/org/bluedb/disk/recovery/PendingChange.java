@@ -68,8 +68,12 @@ public class PendingChange<T extends Serializable> implements Serializable, Reco
 	public void apply(ReadWriteCollectionOnDisk<T> collection) throws BlueDbException {
 		ReadWriteIndexManager<T> indexManager = collection.getIndexManager();
 		List<ReadWriteSegment<T>> segments = collection.getSegmentManager().getAllSegments(key);
-		for (ReadWriteSegment<T> segment: segments) {
-			applyChange(segment);
+		try {
+			for (ReadWriteSegment<T> segment: segments) {
+				applyChange(segment);
+			}
+		} finally {
+			collection.getEntityCache().invalidate(key);
 		}
 		indexManager.indexChange(key, oldValue, newValue);
 	}
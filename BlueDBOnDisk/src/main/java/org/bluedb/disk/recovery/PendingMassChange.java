@@ -30,7 +30,11 @@ public class PendingMassChange<T extends Serializable> implements Serializable,
 		
 		try(SortedChangeSupplier<T> sortedChangeSupplier = new OnDiskSortedChangeSupplier<>(changesFilePath, collection.getFileManager())) {
 			ReadWriteSegmentManager<T> segmentManager = collection.getSegmentManager();
-			segmentManager.applyChanges(sortedChangeSupplier);
+			try {
+				segmentManager.applyChanges(sortedChangeSupplier);
+			} finally {
+				collection.getEntityCache().invalidate(sortedChangeSupplier);
+			}
 			collection.getIndexManager().indexChanges(sortedChangeSupplier);
 		}
 	}
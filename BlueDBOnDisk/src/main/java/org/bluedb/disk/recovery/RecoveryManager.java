@@ -34,6 +34,8 @@ public class RecoveryManager<T extends Serializable> {
 	
 	protected static String RECOVERY_FOLDER = ".recovery";
 	protected static String HISTORY_SUBFOLDER = "changes_history";
+	protected static String LOG_SUBFOLDER = "wal";
+	protected static int MAX_CHANGES_PER_LOG_RECORD = 1000;
 	protected static String SUFFIX = ".chg";
 	protected static String SUFFIX_PENDING = ".pending.chg";
 	protected static String SUFFIX_COMPLETE = ".complete.chg";
@@ -44,6 +46,8 @@ public class RecoveryManager<T extends Serializable> {
 	private final ReadWriteFileManager fileManager;
 	private final AtomicLong lastRecoverableId;
 	private final ChangeHistoryCleaner cleaner;
+	private final WriteAheadLog writeAheadLog;
+	private volatile boolean writeAheadLogEnabled = false;
 
 	public RecoveryManager(ReadWriteCollectionOnDisk<T> collection, ReadWriteFileManager fileManager, BlueSerializer serializer) {
 		this.collection = collection;
@@ -51,11 +55,16 @@ public class RecoveryManager<T extends Serializable> {
 		this.recoveryPath = Paths.get(collection.getPath().toString(), RECOVERY_FOLDER);
 		this.historyFolderPath = Paths.get(recoveryPath.toString(), HISTORY_SUBFOLDER);
 		lastRecoverableId = new AtomicLong(0);
+		writeAheadLog = new WriteAheadLog(recoveryPath.resolve(LOG_SUBFOLDER), serializer, fileManager.getEncryptionService(), fileManager.getFileSyncer());
 		cleaner = new ChangeHistoryCleaner(this);
 	}
 
 	public void saveNewChange(Recoverable<?> change) throws BlueDbException {
 		change.setRecoverableId(getNewRecoverableId());
+		if(writeAheadLogEnabled) {
+			writeAheadLog.append(change);
+			return;
+		}
 		String filename = getPendingFileName(change);
 		Path historyPath = Paths.get(historyFolderPath.toString(), filename);
 		fileManager.saveObject(historyPath, change);
@@ -97,7 +106,7 @@ public class RecoveryManager<T extends Serializable> {
 		tmpPath.getParent().toFile().mkdirs();
 		
 		try(
-				CloseableIterator<BlueEntity<T>> entitiesToUpdateIterator = updateQuery.getEntityIterator();
+				CloseableIterator<BlueEntity<T>> entitiesToUpdateIterator = updateQuery.getEntityIteratorInKeyOrder();
 				BlueObjectOutput<IndividualChange<T>> output = fileManager.getBlueOutputStreamWithoutLock(tmpPath)) {
 			
 			output.setMetadataValue(BlueFileMetadataKey.SORTED_MASS_CHANGE_FILE, Boolean.toString(true));
@@ -118,7 +127,7 @@ public class RecoveryManager<T extends Serializable> {
 		}
 		
 		try {
-			FileUtils.moveWithoutLock(tmpPath, path);
+			fileManager.moveWithoutLock(tmpPath, path);
 			return new PendingMassChange<>(creationTime, recoverableId, path);
 		} finally {
 			tmpPath.toFile().delete();
@@ -151,15 +160,37 @@ public class RecoveryManager<T extends Serializable> {
 		}
 		
 		try {
-			FileUtils.moveWithoutLock(tmpPath, path);
+			fileManager.moveWithoutLock(tmpPath, path);
 			return new PendingMassChange<>(creationTime, recoverableId, path);
 		} finally {
 			tmpPath.toFile().delete();
 		}
 	}
 	
-	public PendingMassChange<T> saveMassChangeForUnorderedChanges(Iterator<IndividualChange<T>> changeIterator) throws BlueDbException {
-		return saveMassChangeForUnorderedChanges(changeIterator, false);
+	/**
+	 * Saves the changes so that they can be recovered if they aren't marked complete. When the write ahead log is enabled and
+	 * there aren't too many changes they are appended to the log, otherwise they are sorted into their own change file.
+	 * @param changeIterator the changes in any order
+	 * @return the saved change, ready to be applied
+	 * @throws BlueDbException if the changes can't be saved
+	 */
+	public Recoverable<T> saveMassChangeForUnorderedChanges(Iterator<IndividualChange<T>> changeIterator) throws BlueDbException {
+		if(!writeAheadLogEnabled) {
+			return saveMassChangeForUnorderedChanges(changeIterator, false);
+		}
+		
+		List<IndividualChange<T>> changes = new ArrayList<>();
+		while(changeIterator.hasNext() && changes.size() <= MAX_CHANGES_PER_LOG_RECORD) {
+			changes.add(changeIterator.next());
+		}
+		if(changes.size() > MAX_CHANGES_PER_LOG_RECORD) {
+			return saveMassChangeForUnorderedChanges(new ConcatenatingIterator<>(changes.iterator(), changeIterator), false);
+		}
+		
+		Collections.sort(changes);
+		PendingBatchChange<T> batchChange = PendingBatchChange.createBatchChange(changes);
+		saveNewChange(batchChange);
+		return batchChange;
 	}
 	
 	public PendingMassChange<T> saveTempMassChangeForUnorderedChanges(Iterator<IndividualChange<T>> changeIterator) throws BlueDbException {
@@ -180,10 +211,10 @@ public class RecoveryManager<T extends Serializable> {
 		metadataEntries.put(BlueFileMetadataKey.SORTED_MASS_CHANGE_FILE, String.valueOf(true));
 		
 		try {
-			BlueObjectStreamSorter<IndividualChange<T>> sorter = new BlueObjectStreamSorter<>(changeIterator, tmpPath, fileManager, metadataEntries, BlueObjectStreamSorterConfig.createDefault());
+			BlueObjectStreamSorter<IndividualChange<T>> sorter = BlueObjectStreamSorter.inNaturalOrder(changeIterator, tmpPath, fileManager, metadataEntries, BlueObjectStreamSorterConfig.createDefault());
 			sorter.sortAndWriteToFile();
 		
-			FileUtils.moveWithoutLock(tmpPath, path);
+			fileManager.moveWithoutLock(tmpPath, path);
 			return new PendingMassChange<>(creationTime, recoverableId, path);
 		} finally {
 			tmpPath.toFile().delete();
@@ -199,6 +230,9 @@ public class RecoveryManager<T extends Serializable> {
 	}
 
 	public void markComplete(Recoverable<?> change) throws BlueDbException {
+		if(writeAheadLog.commit(change)) {
+			return;
+		}
 		String pendingFileName = getPendingFileName(change);
 		String completedFileName = getCompletedFileName(change);
 		Path pendingPath = Paths.get(historyFolderPath.toString(), pendingFileName);
@@ -228,8 +262,29 @@ public class RecoveryManager<T extends Serializable> {
 		return Blutils.map(relevantTimeStampedFiles, (tsf) -> tsf.getFile() );
 	}
 
+	/**
+	 * Returns the changes in the write ahead log that were created in the given time range. Changes that were saved to
+	 * their own files are returned by {@link #getChangeHistory(long, long)}.
+	 * @param backupStartTime the start of the time range
+	 * @param backupEndTime the end of the time range
+	 * @return the logged changes in the order they were created, including the last one before the range
+	 * @throws BlueDbException if the log can't be read
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Recoverable<T>> getLoggedChangeHistory(long backupStartTime, long backupEndTime) throws BlueDbException {
+		List<Recoverable<T>> changes = new ArrayList<>();
+		for (Recoverable<?> change : writeAheadLog.getChangeHistory(backupStartTime, backupEndTime)) {
+			changes.add((Recoverable<T>) change);
+		}
+		return changes;
+	}
+
+	@SuppressWarnings("unchecked")
 	public List<Recoverable<T>> getPendingChanges() throws BlueDbException {
 		List<Recoverable<T>> changes = new ArrayList<>();
+		for (Recoverable<?> change : writeAheadLog.getPendingChanges()) {
+			changes.add((Recoverable<T>) change);
+		}
 		for (File file: getPendingChangeFiles()) {
 			Recoverable<T> change = loadPendingChange(file);
 			
@@ -282,6 +337,7 @@ public class RecoveryManager<T extends Serializable> {
 	}
 
 	public void recover() throws BlueDbException {
+		collection.getSegmentManager().getCatalog().reload(); //A crash could have left files the catalog doesn't know about
 		for (Recoverable<T> change: getPendingChanges()) {
 			change.apply(collection);
 			markComplete(change);
@@ -315,4 +371,36 @@ public class RecoveryManager<T extends Serializable> {
 	public ChangeHistoryCleaner getChangeHistoryCleaner() {
 		return cleaner;
 	}
+
+	public WriteAheadLog getWriteAheadLog() {
+		return writeAheadLog;
+	}
+
+	public boolean isWriteAheadLogEnabled() {
+		return writeAheadLogEnabled;
+	}
+
+	public void setWriteAheadLogEnabled(boolean writeAheadLogEnabled) {
+		this.writeAheadLogEnabled = writeAheadLogEnabled;
+	}
+
+	private static class ConcatenatingIterator<X> implements Iterator<X> {
+		private final Iterator<X> first;
+		private final Iterator<X> second;
+
+		private ConcatenatingIterator(Iterator<X> first, Iterator<X> second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return first.hasNext() || second.hasNext();
+		}
+
+		@Override
+		public X next() {
+			return first.hasNext() ? first.next() : second.next();
+		}
+	}
 }
@@ -84,6 +84,14 @@ public interface SortedChangeSupplier<T extends Serializable> extends Closeable
 	 * @throws BlueDbException if it fails
 	 */
 	public void setCursorToBeginning() throws BlueDbException;
+
+	/**
+	 * Creates a supplier for the same changes with its own cursor pointing where this supplier's cursor is pointing. The
+	 * copy can be moved and closed independently of this supplier, so it can be used by another thread.
+	 * @return a copy of this supplier starting at the current cursor location
+	 * @throws BlueDbException if it fails
+	 */
+	public SortedChangeSupplier<T> copyAtCursor() throws BlueDbException;
 	
 	@Override
 	public void close();
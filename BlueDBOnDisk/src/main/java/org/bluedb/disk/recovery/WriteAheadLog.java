@@ -0,0 +1,453 @@
+package org.bluedb.disk.recovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.disk.Blutils;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.file.FileSyncer;
+import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.serialization.BlueSerializer;
+
+/**
+ * A segmented log of {@link Recoverable} changes. Changes are appended to a preallocated segment file followed later by a
+ * commit marker once they have been applied. Segments whose changes have all been committed and which are no longer needed
+ * for change history are recycled as the next segment rather than deleted, so a busy collection only ever touches a few files.
+ * <br><br>
+ * Each record is framed as [body length][CRC32 of body][body] and the body starts with the sequence number of the segment
+ * that it was written to. Reading a segment stops at the first frame that is torn, corrupt, or left over from before the
+ * segment was recycled.
+ */
+public class WriteAheadLog {
+
+	protected static final String SEGMENT_SUFFIX = ".wal";
+	protected static final String SPARE_SEGMENT_SUFFIX = ".spare";
+	public static final long DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+	private static final int MAX_SPARE_SEGMENTS = 2;
+	private static final int FRAME_HEADER_SIZE = 8;
+	private static final byte RECORD_TYPE_CHANGE = 1;
+	private static final byte RECORD_TYPE_COMMIT = 2;
+
+	private final Path logFolderPath;
+	private final BlueSerializer serializer;
+	private final EncryptionServiceWrapper encryptionService;
+	private final long segmentSize;
+	private final FileSyncer fileSyncer;
+
+	private final TreeMap<Long, LogSegment> segments = new TreeMap<>();
+	private final Map<String, LogEntry> entriesByName = new HashMap<>();
+	private final LinkedList<Path> spareSegmentPaths = new LinkedList<>();
+	private FileChannel activeChannel;
+	private long writePosition;
+
+	public WriteAheadLog(Path logFolderPath, BlueSerializer serializer, EncryptionServiceWrapper encryptionService) {
+		this(logFolderPath, serializer, encryptionService, FileSyncer.NONE);
+	}
+
+	public WriteAheadLog(Path logFolderPath, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, FileSyncer fileSyncer) {
+		this(logFolderPath, serializer, encryptionService, fileSyncer, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public WriteAheadLog(Path logFolderPath, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, long segmentSize) {
+		this(logFolderPath, serializer, encryptionService, FileSyncer.NONE, segmentSize);
+	}
+
+	public WriteAheadLog(Path logFolderPath, BlueSerializer serializer, EncryptionServiceWrapper encryptionService, FileSyncer fileSyncer, long segmentSize) {
+		this.logFolderPath = logFolderPath;
+		this.serializer = serializer;
+		this.encryptionService = encryptionService;
+		this.fileSyncer = fileSyncer;
+		this.segmentSize = segmentSize;
+		loadSegments();
+	}
+
+	public Path getLogFolder() {
+		return logFolderPath;
+	}
+
+	public void append(Recoverable<?> change) throws BlueDbException {
+		byte[] payload = serializer.serializeObjectToByteArray(change);
+		String encryptionVersionKey = "";
+		if (encryptionService != null && encryptionService.isEncryptionEnabled()) {
+			encryptionVersionKey = encryptionService.getCurrentEncryptionVersionKey();
+			payload = encryptionService.encryptOrThrow(encryptionVersionKey, payload);
+		}
+
+		LogEntry entry = new LogEntry(change.getTimeCreated(), change.getRecoverableId());
+		synchronized (this) {
+			writeRecord(RECORD_TYPE_CHANGE, entry.timeCreated, entry.recoverableId, encryptionVersionKey, payload, entry);
+			entriesByName.put(entry.getName(), entry);
+		}
+		fileSyncer.syncFile(entry.segment.path); //Outside of the lock so that concurrent appends can share a group fsync
+	}
+
+	/**
+	 * Writes a commit marker for the change if it was appended to this log
+	 * @param change the change that has been applied
+	 * @return false if the change isn't a pending change in this log
+	 * @throws BlueDbException if the commit marker can't be written
+	 */
+	public synchronized boolean commit(Recoverable<?> change) throws BlueDbException {
+		LogEntry entry = entriesByName.get(getEntryName(change.getTimeCreated(), change.getRecoverableId()));
+		if (entry == null || entry.committed) {
+			return false;
+		}
+		writeRecord(RECORD_TYPE_COMMIT, entry.timeCreated, entry.recoverableId, null, null, null);
+		entry.committed = true;
+		return true;
+	}
+
+	public synchronized List<Recoverable<?>> getPendingChanges() throws BlueDbException {
+		List<Recoverable<?>> changes = new ArrayList<>();
+		for (LogEntry entry : getSortedEntries()) {
+			if (!entry.committed) {
+				Recoverable<?> change = readChange(entry);
+				if (change != null) {
+					changes.add(change);
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns the logged changes created in the given time range along with the last change before it, since that one
+	 * might not have been applied yet when the range started.
+	 * @param startTime the start of the time range
+	 * @param endTime the end of the time range
+	 * @return the changes in the order they were created
+	 * @throws BlueDbException if a change can't be read
+	 */
+	public synchronized List<Recoverable<?>> getChangeHistory(long startTime, long endTime) throws BlueDbException {
+		List<LogEntry> sortedEntries = getSortedEntries();
+		int lastChangeBeforeStart = Blutils.lastIndex(sortedEntries, (e) -> e.timeCreated < startTime);
+		int firstChangeToKeep = Math.max(0, lastChangeBeforeStart);
+		int lastChangeToKeep = Blutils.lastIndex(sortedEntries, (e) -> e.timeCreated <= endTime);
+
+		List<Recoverable<?>> changes = new ArrayList<>();
+		for (LogEntry entry : sortedEntries.subList(firstChangeToKeep, lastChangeToKeep + 1)) {
+			Recoverable<?> change = readChange(entry);
+			if (change != null) {
+				changes.add(change);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Recycles the oldest segments as long as every change in them has been committed and the newer segments still
+	 * contain at least the given number of committed changes.
+	 * @param completedChangesToRetain the number of committed changes to keep for change history
+	 */
+	public synchronized void recycleSegments(int completedChangesToRetain) {
+		int newerCompletedChanges = 0;
+		for (LogSegment segment : segments.values()) {
+			newerCompletedChanges += segment.countCommittedEntries();
+		}
+
+		Iterator<LogSegment> segmentIterator = segments.values().iterator();
+		while (segmentIterator.hasNext()) {
+			LogSegment segment = segmentIterator.next();
+			if (segment.sequence == segments.lastKey() || !segment.isFullyCommitted()) {
+				return;
+			}
+			newerCompletedChanges -= segment.countCommittedEntries();
+			if (newerCompletedChanges < completedChangesToRetain) {
+				return;
+			}
+
+			for (LogEntry entry : segment.entries) {
+				entriesByName.remove(entry.getName());
+			}
+			segmentIterator.remove();
+			recycle(segment.path);
+		}
+	}
+
+	protected synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	private List<LogEntry> getSortedEntries() {
+		List<LogEntry> sortedEntries = new ArrayList<>(entriesByName.values());
+		Collections.sort(sortedEntries);
+		return sortedEntries;
+	}
+
+	private Recoverable<?> readChange(LogEntry entry) throws BlueDbException {
+		try (RandomAccessFile file = new RandomAccessFile(entry.segment.path.toFile(), "r")) {
+			file.seek(entry.offset);
+			byte[] frame = new byte[entry.length];
+			file.readFully(frame);
+			DataInputStream body = new DataInputStream(new ByteArrayInputStream(frame, FRAME_HEADER_SIZE, frame.length - FRAME_HEADER_SIZE));
+			body.readLong(); //sequence
+			body.readByte(); //record type
+			body.readLong(); //time created
+			body.readLong(); //recoverable id
+			String encryptionVersionKey = body.readUTF();
+			byte[] payload = new byte[body.readInt()];
+			body.readFully(payload);
+			if (!encryptionVersionKey.isEmpty()) {
+				payload = encryptionService.decryptOrThrow(encryptionVersionKey, payload);
+			}
+			return (Recoverable<?>) serializer.deserializeObjectFromByteArray(payload);
+		} catch (IOException | RuntimeException e) {
+			System.out.println("BlueDB ignoring unreadable change " + entry.getName() + " in write ahead log " + entry.segment.path);
+			return null;
+		}
+	}
+
+	private void writeRecord(byte recordType, long timeCreated, long recoverableId, String encryptionVersionKey, byte[] payload, LogEntry entry) throws BlueDbException {
+		try {
+			ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+			DataOutputStream body = new DataOutputStream(bodyBytes);
+			body.writeLong(0); //sequence, filled in once the segment is known
+			body.writeByte(recordType);
+			body.writeLong(timeCreated);
+			body.writeLong(recoverableId);
+			if (payload != null) {
+				body.writeUTF(encryptionVersionKey);
+				body.writeInt(payload.length);
+				body.write(payload);
+			}
+			body.flush();
+
+			int frameLength = FRAME_HEADER_SIZE + bodyBytes.size();
+			LogSegment segment = getSegmentToWrite(frameLength);
+
+			ByteBuffer frame = ByteBuffer.allocate(frameLength);
+			frame.position(FRAME_HEADER_SIZE);
+			frame.put(bodyBytes.toByteArray());
+			frame.putLong(FRAME_HEADER_SIZE, segment.sequence);
+			CRC32 crc = new CRC32();
+			crc.update(frame.array(), FRAME_HEADER_SIZE, frameLength - FRAME_HEADER_SIZE);
+			frame.putInt(0, frameLength - FRAME_HEADER_SIZE);
+			frame.putInt(4, (int) crc.getValue());
+			frame.rewind();
+
+			long offset = writePosition;
+			while (frame.hasRemaining()) {
+				activeChannel.write(frame, writePosition + frame.position());
+			}
+			writePosition += frameLength;
+
+			if (entry != null) {
+				entry.segment = segment;
+				entry.offset = offset;
+				entry.length = frameLength;
+				segment.entries.add(entry);
+			}
+		} catch (IOException e) {
+			throw new BlueDbException("Unable to write to write ahead log " + logFolderPath, e);
+		}
+	}
+
+	private LogSegment getSegmentToWrite(int frameLength) throws IOException {
+		if (activeChannel == null || (writePosition > 0 && writePosition + frameLength > segmentSize)) {
+			long sequence = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+			openNewSegment(sequence);
+		}
+		return segments.lastEntry().getValue();
+	}
+
+	private void openNewSegment(long sequence) throws IOException {
+		closeActiveChannel();
+		logFolderPath.toFile().mkdirs();
+		Path segmentPath = logFolderPath.resolve(sequence + SEGMENT_SUFFIX);
+		Path sparePath = spareSegmentPaths.poll();
+		if (sparePath != null && !sparePath.toFile().renameTo(segmentPath.toFile())) {
+			sparePath.toFile().delete();
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(segmentPath.toFile(), "rw")) {
+			if (file.length() < segmentSize) {
+				file.setLength(segmentSize);
+			}
+		}
+		activeChannel = FileChannel.open(segmentPath, StandardOpenOption.WRITE);
+		writePosition = 0;
+		segments.put(sequence, new LogSegment(sequence, segmentPath));
+		syncDirectory();
+	}
+
+	private void syncDirectory() throws IOException {
+		try {
+			fileSyncer.syncDirectory(logFolderPath);
+		} catch (BlueDbException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void recycle(Path segmentPath) {
+		if (segmentPath.equals(getActiveSegmentPath())) {
+			closeActiveChannel();
+		}
+		Path sparePath = logFolderPath.resolve(segmentPath.getFileName().toString() + SPARE_SEGMENT_SUFFIX);
+		if (spareSegmentPaths.size() < MAX_SPARE_SEGMENTS && segmentPath.toFile().renameTo(sparePath.toFile())) {
+			spareSegmentPaths.add(sparePath);
+		} else {
+			segmentPath.toFile().delete();
+		}
+	}
+
+	private Path getActiveSegmentPath() {
+		return activeChannel != null && !segments.isEmpty() ? segments.lastEntry().getValue().path : null;
+	}
+
+	private void closeActiveChannel() {
+		if (activeChannel != null) {
+			try {
+				activeChannel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			activeChannel = null;
+		}
+	}
+
+	private void loadSegments() {
+		File[] files = logFolderPath.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			String fileName = file.getName();
+			if (fileName.endsWith(SPARE_SEGMENT_SUFFIX)) {
+				spareSegmentPaths.add(file.toPath());
+			} else if (fileName.endsWith(SEGMENT_SUFFIX) && !FileUtils.isTempFile(file)) {
+				try {
+					long sequence = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+					segments.put(sequence, new LogSegment(sequence, file.toPath()));
+				} catch (NumberFormatException e) {
+					System.out.println("BlueDB ignoring unexpected file in write ahead log: " + file.getAbsolutePath());
+				}
+			}
+		}
+
+		long lastSegmentEnd = 0;
+		for (LogSegment segment : segments.values()) {
+			lastSegmentEnd = readSegment(segment);
+		}
+
+		if (!segments.isEmpty()) {
+			try {
+				activeChannel = FileChannel.open(segments.lastEntry().getValue().path, StandardOpenOption.WRITE);
+				writePosition = lastSegmentEnd;
+			} catch (IOException e) {
+				e.printStackTrace(); //A new segment will be started on the next write
+			}
+		}
+	}
+
+	private long readSegment(LogSegment segment) {
+		long position = 0;
+		try (RandomAccessFile file = new RandomAccessFile(segment.path.toFile(), "r")) {
+			long fileLength = file.length();
+			while (position + FRAME_HEADER_SIZE <= fileLength) {
+				file.seek(position);
+				int bodyLength = file.readInt();
+				int expectedCrc = file.readInt();
+				if (bodyLength <= 0 || position + FRAME_HEADER_SIZE + bodyLength > fileLength) {
+					break;
+				}
+
+				byte[] bodyBytes = new byte[bodyLength];
+				file.readFully(bodyBytes);
+				CRC32 crc = new CRC32();
+				crc.update(bodyBytes);
+				DataInputStream body = new DataInputStream(new ByteArrayInputStream(bodyBytes));
+				if ((int) crc.getValue() != expectedCrc || body.readLong() != segment.sequence) {
+					break;
+				}
+
+				byte recordType = body.readByte();
+				long timeCreated = body.readLong();
+				long recoverableId = body.readLong();
+				String entryName = getEntryName(timeCreated, recoverableId);
+				if (recordType == RECORD_TYPE_CHANGE) {
+					LogEntry entry = new LogEntry(timeCreated, recoverableId);
+					entry.segment = segment;
+					entry.offset = position;
+					entry.length = FRAME_HEADER_SIZE + bodyLength;
+					segment.entries.add(entry);
+					entriesByName.put(entryName, entry);
+				} else if (recordType == RECORD_TYPE_COMMIT && entriesByName.containsKey(entryName)) {
+					entriesByName.get(entryName).committed = true;
+				}
+				position += FRAME_HEADER_SIZE + bodyLength;
+			}
+		} catch (IOException e) {
+			System.out.println("BlueDB stopped reading write ahead log segment " + segment.path + " at " + position + ": " + e.getMessage());
+		}
+		return position;
+	}
+
+	private static String getEntryName(long timeCreated, long recoverableId) {
+		return timeCreated + "." + recoverableId;
+	}
+
+	private static class LogSegment {
+		private final long sequence;
+		private final Path path;
+		private final List<LogEntry> entries = new ArrayList<>();
+
+		private LogSegment(long sequence, Path path) {
+			this.sequence = sequence;
+			this.path = path;
+		}
+
+		private boolean isFullyCommitted() {
+			return entries.stream().allMatch(entry -> entry.committed);
+		}
+
+		private int countCommittedEntries() {
+			return (int) entries.stream().filter(entry -> entry.committed).count();
+		}
+	}
+
+	private static class LogEntry implements Comparable<LogEntry> {
+		private final long timeCreated;
+		private final long recoverableId;
+		private LogSegment segment;
+		private long offset;
+		private int length;
+		private boolean committed = false;
+
+		private LogEntry(long timeCreated, long recoverableId) {
+			this.timeCreated = timeCreated;
+			this.recoverableId = recoverableId;
+		}
+
+		private String getName() {
+			return getEntryName(timeCreated, recoverableId);
+		}
+
+		@Override
+		public int compareTo(LogEntry other) {
+			if (timeCreated == other.timeCreated) {
+				return Long.compare(recoverableId, other.recoverableId);
+			}
+			return Long.compare(timeCreated, other.timeCreated);
+		}
+	}
+}
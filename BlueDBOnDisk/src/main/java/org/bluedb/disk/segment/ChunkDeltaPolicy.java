@@ -0,0 +1,44 @@
+package org.bluedb.disk.segment;
+
+/**
+ * Decides when changes to an existing chunk should be appended to the chunk's delta file instead of rewriting the whole
+ * chunk. Deltas are merged in whenever the chunk is read, and they are folded back into the chunk by the next rollup
+ * or full rewrite of the chunk. Small chunks are cheap to rewrite so they are always rewritten.
+ */
+public class ChunkDeltaPolicy {
+
+	public static final long DEFAULT_MINIMUM_CHUNK_SIZE = 64 * 1024;
+	public static final int DEFAULT_MAXIMUM_DELTA_PERCENT_OF_CHUNK = 25;
+
+	public static final ChunkDeltaPolicy DISABLED = new ChunkDeltaPolicy(false, Long.MAX_VALUE, 0);
+	public static final ChunkDeltaPolicy DEFAULT = new ChunkDeltaPolicy(true, DEFAULT_MINIMUM_CHUNK_SIZE, DEFAULT_MAXIMUM_DELTA_PERCENT_OF_CHUNK);
+
+	private final boolean enabled;
+	private final long minimumChunkSize;
+	private final int maximumDeltaPercentOfChunk;
+
+	/**
+	 * @param enabled false if chunks should always be rewritten
+	 * @param minimumChunkSize the smallest chunk file, in bytes, that changes will be appended to as deltas
+	 * @param maximumDeltaPercentOfChunk once the delta file is this large relative to its chunk the chunk is rewritten 
+	 * with the deltas folded in
+	 */
+	public ChunkDeltaPolicy(boolean enabled, long minimumChunkSize, int maximumDeltaPercentOfChunk) {
+		this.enabled = enabled;
+		this.minimumChunkSize = minimumChunkSize;
+		this.maximumDeltaPercentOfChunk = maximumDeltaPercentOfChunk;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean shouldAppendDeltas(long chunkSize, long deltaSize) {
+		return enabled && chunkSize > 0 && chunkSize >= minimumChunkSize && deltaSize * 100 < chunkSize * maximumDeltaPercentOfChunk;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkDeltaPolicy [enabled=" + enabled + ", minimumChunkSize=" + minimumChunkSize + ", maximumDeltaPercentOfChunk=" + maximumDeltaPercentOfChunk + "]";
+	}
+}
@@ -13,8 +13,11 @@ import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.Blutils;
 import org.bluedb.disk.Blutils.CheckedFunction;
+import org.bluedb.disk.encryption.EncryptionUtils;
 import org.bluedb.disk.file.BlueObjectInput;
 import org.bluedb.disk.file.BlueObjectOutput;
+import org.bluedb.disk.file.ChunkBloomFilter;
+import org.bluedb.disk.file.ChunkDeltas;
 import org.bluedb.disk.file.FileUtils;
 import org.bluedb.disk.file.ReadWriteFileManager;
 import org.bluedb.disk.lock.BlueReadLock;
@@ -25,6 +28,7 @@ import org.bluedb.disk.segment.rollup.RollupTarget;
 import org.bluedb.disk.segment.rollup.Rollupable;
 import org.bluedb.disk.segment.writer.BatchWriter;
 import org.bluedb.disk.segment.writer.DeleteWriter;
+import org.bluedb.disk.segment.writer.DeltaWriter;
 import org.bluedb.disk.segment.writer.InsertWriter;
 import org.bluedb.disk.segment.writer.StreamingWriter;
 import org.bluedb.disk.segment.writer.UpdateWriter;
@@ -34,17 +38,33 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 
 	private final Rollupable rollupable;
 	private final ReadWriteFileManager fileManager;
+	private final ChunkDeltaPolicy chunkDeltaPolicy;
+	private final SegmentCatalog catalog;
 
 	protected static <T extends Serializable> ReadWriteSegment<T> getTestSegment () {
 		return new ReadWriteSegment<T>();
 	}
 
-	protected ReadWriteSegment() {super(null, null, null); fileManager = null; rollupable=null; }
+	protected ReadWriteSegment() {super(null, null, null); fileManager = null; rollupable=null; chunkDeltaPolicy = ChunkDeltaPolicy.DISABLED; catalog = null; }
 
 	public ReadWriteSegment(Path segmentPath, Range segmentRange, Rollupable rollupable, ReadWriteFileManager fileManager, final List<Long> rollupLevels) {
+		this(segmentPath, segmentRange, rollupable, fileManager, rollupLevels, ChunkDeltaPolicy.DISABLED);
+	}
+
+	public ReadWriteSegment(Path segmentPath, Range segmentRange, Rollupable rollupable, ReadWriteFileManager fileManager, final List<Long> rollupLevels, ChunkDeltaPolicy chunkDeltaPolicy) {
+		this(segmentPath, segmentRange, rollupable, fileManager, rollupLevels, chunkDeltaPolicy, null);
+	}
+
+	/**
+	 * @param catalog the collection's catalog of chunk files, which queries use instead of listing the segment folder and
+	 * which this segment keeps up to date as it creates and deletes chunks. If it is null then the folder is listed.
+	 */
+	public ReadWriteSegment(Path segmentPath, Range segmentRange, Rollupable rollupable, ReadWriteFileManager fileManager, final List<Long> rollupLevels, ChunkDeltaPolicy chunkDeltaPolicy, SegmentCatalog catalog) {
 		super(segmentPath, segmentRange, rollupLevels);
 		this.rollupable = rollupable;
 		this.fileManager = fileManager;
+		this.chunkDeltaPolicy = chunkDeltaPolicy;
+		this.catalog = catalog;
 	}
 
 	@Override
@@ -69,16 +89,21 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 
 	public void modifyChunk(long groupingNumber, StreamingWriter<T> processor) throws BlueDbException {
 		Path targetPath, tmpPath;
-		try (BlueObjectInput<BlueEntity<T>> input = getObjectInputFor(groupingNumber)) {
+		List<BlueKey> writtenKeys = new ArrayList<>();
+		try (BlueObjectInput<BlueEntity<T>> input = getObjectInputForRewrite(groupingNumber)) {
 			targetPath = input.getPath();
 			tmpPath = FileUtils.createTempFilePath(targetPath);
 			try(BlueObjectOutput<BlueEntity<T>> output = getObjectOutputFor(tmpPath)) {
+				output.setWriteListener(entity -> writtenKeys.add(entity.getKey()));
 				processor.process(input, output);
+				output.setBloomFilter(extendBloomFilter(targetPath, writtenKeys));
 			}
 		}
 
 		try (BlueWriteLock<Path> targetFileLock = acquireWriteLock(targetPath)) {
-			FileUtils.moveFile(tmpPath, targetFileLock);
+			fileManager.moveFile(tmpPath, targetFileLock);
+			recordChunkAdded(targetPath);
+			deleteChunkDeltas(targetPath); //The deltas were merged into the input so they are part of the new file
 		}
 		reportWrite(targetPath);
 	}
@@ -92,6 +117,16 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 		}
 	}
 
+	protected void reportDeltaWrite(Path path) {
+		String fileName = path.toFile().getName();
+		Range targetRange = Range.fromUnderscoreDelmimitedString(fileName);
+		List<RollupTarget> rollupTargets = getRollupTargets(targetRange);
+		rollupTargets.add(toRollupTarget(targetRange)); //Folds the deltas back into the chunk even if it can't be rolled up any further
+		if (rollupable != null) {
+			rollupable.reportWrites(rollupTargets);
+		}
+	}
+
 	protected void tryReportRead(Path path) {
 		try {
 			String fileName = path.toFile().getName();
@@ -117,7 +152,11 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 		while(chunkRange.isPresent()) {
 			String fileName = chunkRange.get().toUnderscoreDelimitedString();
 			Path path = Paths.get(segmentPath.toString(), fileName);
-			modifyChunk(path, new BatchWriter<T>(sortedChangeSupplier, chunkRange.get()));
+			if(shouldAppendChunkDeltas(path)) {
+				appendChunkDeltas(path, new DeltaWriter<T>(sortedChangeSupplier, chunkRange.get()));
+			} else {
+				modifyChunk(path, new BatchWriter<T>(sortedChangeSupplier, chunkRange.get()));
+			}
 			chunkRange = determineNextChunkRange(segmentBatch, sortedChangeSupplier);
 		}
 	}
@@ -156,24 +195,116 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 	}
 
 	public void modifyChunk(Path targetPath, StreamingWriter<T> processor) throws BlueDbException {
+		modifyChunk(targetPath, processor, new ArrayList<>(), false);
+	}
+
+	/*
+	 * Keys written with BlueObjectOutput.write are added to writtenKeys as they go. If the processor adds every key in the
+	 * new file to writtenKeys then the chunk's bloom filter is rebuilt from them. Otherwise the keys are added to the old
+	 * filter, since the records that were copied as bytes are already in it.
+	 */
+	private void modifyChunk(Path targetPath, StreamingWriter<T> processor, List<BlueKey> writtenKeys, boolean writtenKeysAreComplete) throws BlueDbException {
 		Path tmpPath = FileUtils.createTempFilePath(targetPath);
 		BlueReadLock<Path> lock = acquireReadLock(targetPath);
-		try (BlueObjectInput<BlueEntity<T>> input = fileManager.getBlueInputStream(lock)) {
+		try (BlueObjectInput<BlueEntity<T>> input = fileManager.getChunkInputStreamForRewrite(lock)) {
 			try(BlueObjectOutput<BlueEntity<T>> output = getObjectOutputFor(tmpPath)) {
+				output.setWriteListener(entity -> writtenKeys.add(entity.getKey()));
 				processor.process(input, output);
+				output.setBloomFilter(writtenKeysAreComplete ? ChunkBloomFilter.create(writtenKeys) : extendBloomFilter(targetPath, writtenKeys));
 			}
 		}
+
 		try (BlueWriteLock<Path> targetFileLock = acquireWriteLock(targetPath)) {
 			if(!FileUtils.isEmpty(tmpPath)) {
-				FileUtils.moveFile(tmpPath, targetFileLock);
+				fileManager.moveFile(tmpPath, targetFileLock);
+				recordChunkAdded(targetPath);
+				deleteChunkDeltas(targetPath); //The deltas were merged into the input so they are part of the new file
 			} else {
 				FileUtils.deleteIfExistsWithoutLock(tmpPath);
+				deleteChunkDeltas(targetPath); //Deltas go first so they can never be applied to a future file with this name
 				FileUtils.deleteFile(targetFileLock);
+				fileManager.invalidateCachedChunk(targetPath);
+				recordChunkRemoved(targetPath);
 			}
 		}
 		reportWrite(targetPath);
 	}
 
+	/*
+	 * The caller holds a read lock on the old chunk. A chunk that existed without a filter, or that has deltas the filter
+	 * doesn't cover, doesn't get one until it is rebuilt by a rollup, since the keys that were copied into the new file as
+	 * bytes aren't known.
+	 */
+	private ChunkBloomFilter extendBloomFilter(Path targetPath, List<BlueKey> writtenKeys) throws BlueDbException {
+		if (FileUtils.exists(ChunkDeltas.getDeltaPath(targetPath))) {
+			return null;
+		}
+		if (FileUtils.isEmpty(targetPath)) {
+			return ChunkBloomFilter.create(writtenKeys);
+		}
+		ChunkBloomFilter bloomFilter = ChunkBloomFilter.loadIfExists(targetPath);
+		if (bloomFilter == null) {
+			return null;
+		}
+		bloomFilter.addAll(writtenKeys);
+		return bloomFilter.isOverfilled() ? null : bloomFilter;
+	}
+
+	protected boolean shouldAppendChunkDeltas(Path targetPath) throws BlueDbException {
+		if(!chunkDeltaPolicy.isEnabled()) {
+			return false;
+		}
+		Path deltaPath = ChunkDeltas.getDeltaPath(targetPath);
+		return chunkDeltaPolicy.shouldAppendDeltas(FileUtils.size(targetPath), FileUtils.size(deltaPath)) && fileManager.canAppendWithCurrentEncryption(deltaPath);
+	}
+
+	/*
+	 * Appends the changes to the chunk's delta file so that the cost of the write is proportional to the size of the
+	 * changes rather than the size of the chunk. Holding the write lock on the chunk keeps readers from merging a
+	 * partially written delta file. If the append fails then the delta file is truncated back to what it was so that
+	 * later appends aren't hidden behind a partial record.
+	 */
+	protected void appendChunkDeltas(Path targetPath, DeltaWriter<T> deltaWriter) throws BlueDbException {
+		Path deltaPath = ChunkDeltas.getDeltaPath(targetPath);
+		BlueWriteLock<Path> targetFileLock = acquireWriteLock(targetPath);
+		try {
+			long originalDeltaSize = FileUtils.size(deltaPath);
+			try (BlueObjectOutput<BlueEntity<T>> deltaOutput = fileManager.getBlueOutputStreamForAppend(acquireWriteLock(deltaPath))) {
+				deltaWriter.process(deltaOutput);
+			} catch (Throwable t) {
+				if (originalDeltaSize > 0) {
+					FileUtils.truncateWithoutLock(deltaPath, originalDeltaSize);
+				} else {
+					FileUtils.deleteIfExistsWithoutLock(deltaPath);
+				}
+				throw new BlueDbException("Failed to append deltas for chunk " + targetPath, t);
+			}
+			fileManager.getFileSyncer().syncFile(deltaPath);
+			if (originalDeltaSize == 0) {
+				fileManager.getFileSyncer().syncDirectory(targetPath.toAbsolutePath().getParent());
+			}
+		} finally {
+			targetFileLock.release();
+		}
+		reportDeltaWrite(targetPath);
+	}
+
+	/*
+	 * The caller must hold the write lock for the chunk.
+	 */
+	private void deleteChunkDeltas(Path chunkPath) throws BlueDbException {
+		FileUtils.deleteIfExistsWithoutLock(ChunkDeltas.getDeltaPath(chunkPath));
+	}
+
+	private boolean hasChunkDeltas(List<File> chunkFiles) {
+		return chunkFiles.stream().anyMatch(file -> FileUtils.exists(ChunkDeltas.getDeltaPath(file.toPath())));
+	}
+
+	protected void foldChunkDeltas(Path chunkPath) throws BlueDbException {
+		List<BlueKey> writtenKeys = new ArrayList<>();
+		modifyChunk(chunkPath, (input, output) -> copyCollectingKeys(input, output, writtenKeys), writtenKeys, true);
+	}
+
 	public void rollup(Range timeRange) throws BlueDbException {
 		rollup(timeRange, true);
 		FileUtils.deleteDirectoryAndParentsIfEmpty(segmentPath);
@@ -185,13 +316,15 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 		}
 		List<File> filesToRollup = getOrderedFilesEnclosedInRange(timeRange);
 		filesToRollup = filterAndDeleteEmptyFiles(filesToRollup);
-		if (abortIfOnlyOneFile && filesToRollup.size() < 2) {
+		if (abortIfOnlyOneFile && filesToRollup.size() < 2 && !hasChunkDeltas(filesToRollup)) {
 			return;  // no benefit to rolling up a single file
 		}
 		Path path = Paths.get(segmentPath.toString(), timeRange.toUnderscoreDelimitedString());
 		Path tmpPath = FileUtils.createTempFilePath(path);
 
-		if (path.toFile().exists()) { // we're recovering after a rollup failed while deleting the removed files
+		if (filesToRollup.size() == 1 && filesToRollup.get(0).equals(path.toFile())) {
+			foldChunkDeltas(path);
+		} else if (path.toFile().exists()) { // we're recovering after a rollup failed while deleting the removed files
 			filesToRollup = Blutils.filter(filesToRollup, (f) -> !f.equals(path.toFile()));  // don't delete the rolled up file
 			cleanupFiles(filesToRollup);
 		} else {
@@ -205,6 +338,7 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 		for (File file: orderedFiles) {
 			if (file.length() == 0) {
 				fileManager.lockDeleteUnlock(file);
+				recordChunkRemoved(file.toPath());
 			} else {
 				results.add(file);
 			}
@@ -223,19 +357,41 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 	}
 
 	void copy(Path destination, List<File> sources) throws BlueDbException {
+		List<BlueKey> copiedKeys = new ArrayList<>();
 		try(BlueObjectOutput<BlueEntity<T>> output = getObjectOutputFor(destination)) {
 			for (File file: sources) {
-				try(BlueObjectInput<BlueEntity<T>> inputStream = getObjectInputFor(file.toPath())) {
-					output.writeAll(inputStream);
+				try(BlueObjectInput<BlueEntity<T>> inputStream = getObjectInputForRewrite(file.toPath())) {
+					copyCollectingKeys(inputStream, output, copiedKeys);
 				}
 			}
+			output.setBloomFilter(ChunkBloomFilter.create(copiedKeys));
+		}
+	}
+
+	/*
+	 * Copies the records as bytes like BlueObjectOutput.writeAll, but each one is deserialized so that its key can be
+	 * added to the rebuilt bloom filter and the chunk's statistics.
+	 */
+	private static <T extends Serializable> void copyCollectingKeys(BlueObjectInput<BlueEntity<T>> input, BlueObjectOutput<BlueEntity<T>> output, List<BlueKey> copiedKeys) throws BlueDbException {
+		boolean shouldSkipEncryptionForUnchangedData = EncryptionUtils.shouldWriterSkipEncryptionForUnchangedDataUsingRawBytes(input.getMetadata(), output.getMetadata());
+		while (input.hasNext()) {
+			BlueKey key = input.next().getKey();
+			copiedKeys.add(key);
+			if (shouldSkipEncryptionForUnchangedData) {
+				output.writeBytesAndForceSkipEncryption(input.getLastRawBytes(), key);
+			} else {
+				output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), key);
+			}
 		}
 	}
 
 	private void cleanupFiles(List<File> filesToRollup) throws BlueDbException {
 		for (File file: filesToRollup) {
 			try (BlueWriteLock<Path> writeLock = acquireWriteLock(file.toPath())){
+				deleteChunkDeltas(file.toPath());
 				FileUtils.deleteFile(writeLock);
+				fileManager.invalidateCachedChunk(file.toPath());
+				recordChunkRemoved(file.toPath());
 			}
 		}
 	}
@@ -247,9 +403,14 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 				sourceFileWriteLocks.add(acquireWriteLock(file.toPath()));
 			}
 
-			FileUtils.moveFile(tempRolledupPath, targetFileLock);
+			deleteChunkDeltas(newRolledupPath);
+			fileManager.moveFile(tempRolledupPath, targetFileLock);
+			recordChunkAdded(newRolledupPath);
 			for (BlueWriteLock<Path> writeLock: sourceFileWriteLocks) {
+				deleteChunkDeltas(writeLock.getKey()); //The copy merged these deltas into the rolled up file
 				FileUtils.deleteFile(writeLock);
+				fileManager.invalidateCachedChunk(writeLock.getKey());
+				recordChunkRemoved(writeLock.getKey());
 			}
 		} finally {
 			for (BlueWriteLock<Path> lock: sourceFileWriteLocks) {
@@ -258,16 +419,87 @@ public class ReadWriteSegment <T extends Serializable> extends ReadableSegment<T
 		}
 	}
 
+	@Override
+	public List<Range> getOrderedChunkRangesInRange(Range range) {
+		if (catalog == null) {
+			return super.getOrderedChunkRangesInRange(range);
+		}
+		return catalog.getChunkRanges(segmentRange, range);
+	}
+
+	/**
+	 * Finds the chunk the same way as {@link ReadableSegment#getPathFor(long)}, but checks the catalog for each possible
+	 * chunk instead of checking whether its file exists.
+	 */
+	@Override
+	public Path getPathFor(long groupingNumber) throws BlueDbException {
+		if (catalog == null) {
+			return super.getPathFor(groupingNumber);
+		}
+		for (long rollupLevel: rollupLevels) {
+			Range chunkRange = Range.forValueAndRangeSize(groupingNumber, rollupLevel);
+			if (catalog.containsChunk(segmentRange, chunkRange)) {
+				return getPathFor(chunkRange);
+			}
+		}
+		if (groupingNumber < segmentRange.getStart() && catalog.containsChunk(segmentRange, preSegmentRange)) {
+			return getPathFor(preSegmentRange);
+		}
+		return getPathFor(groupingNumber, 1);
+	}
+
+	/*
+	 * The caller must hold the write lock for the chunk so that the catalog changes in the same order as the files.
+	 */
+	private void recordChunkAdded(Path chunkPath) {
+		if (catalog != null) {
+			catalog.addChunk(segmentRange, Range.fromFileWithUnderscoreDelmimitedName(chunkPath.toFile()));
+		}
+	}
+
+	private void recordChunkRemoved(Path chunkPath) {
+		if (catalog != null) {
+			catalog.removeChunk(segmentRange, Range.fromFileWithUnderscoreDelmimitedName(chunkPath.toFile()));
+		}
+	}
+
 	@Override
 	public BlueObjectInput<BlueEntity<T>> getObjectInputFor(long groupingNumber) throws BlueDbException {
 		BlueReadLock<Path> lock = getReadLockFor(groupingNumber);
 		tryReportRead(lock.getKey());
-		return fileManager.getBlueInputStream(lock);
+		return fileManager.getChunkInputStream(lock);
+	}
+
+	/*
+	 * Chunks that are about to be replaced are still read from the chunk cache, but they aren't added to it.
+	 */
+	private BlueObjectInput<BlueEntity<T>> getObjectInputForRewrite(long groupingNumber) throws BlueDbException {
+		BlueReadLock<Path> lock = getReadLockFor(groupingNumber);
+		tryReportRead(lock.getKey());
+		return fileManager.getChunkInputStreamForRewrite(lock);
+	}
+
+	private BlueObjectInput<BlueEntity<T>> getObjectInputForRewrite(Path path) throws BlueDbException {
+		BlueReadLock<Path> lock = acquireReadLock(path);
+		return fileManager.getChunkInputStreamForRewrite(lock);
+	}
+
+	@Override
+	protected BlueObjectInput<BlueEntity<T>> getObjectInputForLookup(BlueKey key) throws BlueDbException {
+		BlueReadLock<Path> lock = getReadLockFor(key.getGroupingNumber());
+		tryReportRead(lock.getKey());
+		return fileManager.getChunkInputStreamFor(lock, key);
+	}
+
+	@Override
+	protected BlueObjectInput<BlueEntity<T>> getObjectInputForLookup(BlueReadLock<Path> lock, List<BlueKey> sortedKeys) throws BlueDbException {
+		tryReportRead(lock.getKey());
+		return fileManager.getChunkInputStreamFor(lock, sortedKeys);
 	}
 
 	protected BlueObjectOutput<BlueEntity<T>> getObjectOutputFor(Path path) throws BlueDbException {
 		BlueWriteLock<Path> lock = acquireWriteLock(path);
-		return fileManager.getBlueOutputStream(lock);
+		return fileManager.getChunkOutputStream(lock);
 	}
 
 	protected List<RollupTarget> getRollupTargets(Range currentChunkRange) {
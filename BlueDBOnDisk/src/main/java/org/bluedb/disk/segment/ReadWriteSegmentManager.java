@@ -2,13 +2,18 @@ package org.bluedb.disk.segment;
 
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.collection.index.conditions.IncludedSegmentRangeInfo;
+import org.bluedb.disk.executors.BlueExecutor;
 import org.bluedb.disk.file.ReadWriteFileManager;
 import org.bluedb.disk.recovery.IndividualChange;
 import org.bluedb.disk.recovery.SortedChangeSupplier;
@@ -23,16 +28,57 @@ public class ReadWriteSegmentManager<T extends Serializable> extends ReadableSeg
 	
 	private final boolean saveDuplicateRecordsInEachSegment;
 
+	private final SegmentCatalog catalog;
+
+	private volatile ChunkDeltaPolicy chunkDeltaPolicy = ChunkDeltaPolicy.DISABLED;
+
+	private volatile BlueExecutor segmentTaskExecutor = null;
+
 	public ReadWriteSegmentManager(Path collectionPath, ReadWriteFileManager fileManager, Rollupable rollupable, SegmentSizeConfiguration sizeConfig, boolean saveDuplicateRecordsInEachSegment) {
 		super(collectionPath, sizeConfig);
 		this.fileManager = fileManager;
 		this.rollupable = rollupable;
 		this.saveDuplicateRecordsInEachSegment = saveDuplicateRecordsInEachSegment;
+		this.catalog = new SegmentCatalog(pathManager);
 	}
 
 	protected ReadWriteSegment<T> toSegment(Path path) {
 		Range range = toRange(path);
-		return new ReadWriteSegment<T>(path, range, rollupable, getFileManager(), pathManager.getRollupLevels());
+		return new ReadWriteSegment<T>(path, range, rollupable, getFileManager(), pathManager.getRollupLevels(), chunkDeltaPolicy, catalog);
+	}
+
+	public boolean isSavingDuplicateRecordsInEachSegment() {
+		return saveDuplicateRecordsInEachSegment;
+	}
+
+	public SegmentCatalog getCatalog() {
+		return catalog;
+	}
+
+	public ChunkDeltaPolicy getChunkDeltaPolicy() {
+		return chunkDeltaPolicy;
+	}
+
+	/**
+	 * Chunk deltas stay disabled until this is called so that changes replayed during recovery rewrite the chunks they
+	 * touch. That folds away anything a crash may have left half written at the end of a delta file.
+	 * @param chunkDeltaPolicy the policy used by segments created after this call
+	 */
+	public void setChunkDeltaPolicy(ChunkDeltaPolicy chunkDeltaPolicy) {
+		this.chunkDeltaPolicy = chunkDeltaPolicy;
+	}
+
+	public BlueExecutor getSegmentTaskExecutor() {
+		return segmentTaskExecutor;
+	}
+
+	/**
+	 * Changes are applied to one segment at a time until this is called. After that, each segment's changes are applied
+	 * on the executor's segment task threads while the next segment is found.
+	 * @param segmentTaskExecutor the executor used to apply changes to segments, or null to apply them one at a time
+	 */
+	public void setSegmentTaskExecutor(BlueExecutor segmentTaskExecutor) {
+		this.segmentTaskExecutor = segmentTaskExecutor;
 	}
 
 	public ReadWriteFileManager getFileManager() {
@@ -65,8 +111,8 @@ public class ReadWriteSegmentManager<T extends Serializable> extends ReadableSeg
 
 	@Override
 	public List<ReadWriteSegment<T>> getExistingSegments(Range range, Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfo) {
-		return pathManager.getExistingSegmentFiles(range).stream()
-				.map((f) -> (toSegment(f.toPath())))
+		return catalog.getSegmentRanges(range).stream()
+				.map((r) -> (toSegment(pathManager.getSegmentPath(r.getStart()))))
 				.filter(s -> !includedSegmentRangeInfo.isPresent() || includedSegmentRangeInfo.get().containsSegment(s.getRange()))
 				.sorted()
 				.collect(Collectors.toList());
@@ -74,14 +120,30 @@ public class ReadWriteSegmentManager<T extends Serializable> extends ReadableSeg
 
 	@Override
 	public List<Range> getExistingSegmentRanges(Range range, Optional<IncludedSegmentRangeInfo> includedSegmentRangeInfo) {
-		return pathManager.getExistingSegmentFiles(range).stream()
-				.map((f) -> (toRange(f.toPath())))
+		return catalog.getSegmentRanges(range).stream()
 				.filter(r -> !includedSegmentRangeInfo.isPresent() || includedSegmentRangeInfo.get().containsSegment(r))
 				.sorted()
 				.collect(Collectors.toList());
 	}
 
 	public void applyChanges(SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+		BlueExecutor executor = segmentTaskExecutor;
+		if(executor == null) {
+			applyChangesToEachSegment(sortedChangeSupplier, segment -> segment.applyChanges(sortedChangeSupplier));
+			return;
+		}
+		
+		try(ParallelSegmentApplier parallelApplier = new ParallelSegmentApplier(executor)) {
+			applyChangesToEachSegment(sortedChangeSupplier, segment -> parallelApplier.add(segment, sortedChangeSupplier));
+			parallelApplier.applyLastSegmentAndWait();
+		}
+	}
+
+	/*
+	 * The segment applier is handed each segment with the cursor pointing at its first change. It must leave the cursor
+	 * pointing at the first change after the ones that overlap the segment, the same as applying them would.
+	 */
+	private void applyChangesToEachSegment(SortedChangeSupplier<T> sortedChangeSupplier, SegmentApplier<T> segmentApplier) throws BlueDbException {
 		sortedChangeSupplier.setCursorToBeginning();
 		
 		Range range = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
@@ -98,7 +160,7 @@ public class ReadWriteSegmentManager<T extends Serializable> extends ReadableSeg
 			IndividualChange<T> change = sortedChangeSupplier.getNextChange().get();
 			ReadWriteSegment<T> segment = getSegment(Math.max(change.getGroupingNumber(), range.getStart()));
 			
-			segment.applyChanges(sortedChangeSupplier);
+			segmentApplier.apply(segment);
 			range = new Range(segment.getRange().getEnd() + 1, Long.MAX_VALUE); //Don't look at anything before this range
 			
 			if(saveDuplicateRecordsInEachSegment) {
@@ -106,4 +168,120 @@ public class ReadWriteSegmentManager<T extends Serializable> extends ReadableSeg
 			}
 		}
 	}
+
+	@FunctionalInterface
+	private static interface SegmentApplier<T extends Serializable> {
+		public void apply(ReadWriteSegment<T> segment) throws BlueDbException;
+	}
+
+	/**
+	 * Applies each segment's changes on a segment task thread using its own copy of the change supplier. Segments are
+	 * disjoint directories so they can be written at the same time. The last segment is applied on the calling thread so
+	 * that a change to a single segment never has to wait on another thread. The number of segments waiting to be
+	 * applied is bounded so that only a few copies of the supplier are open at a time.
+	 */
+	private class ParallelSegmentApplier implements AutoCloseable {
+		private final BlueExecutor executor;
+		private final int maxSegmentsInFlight;
+		private final LinkedList<Future<?>> segmentsInFlight = new LinkedList<>();
+		private ReadWriteSegment<T> lastSegment;
+		private SortedChangeSupplier<T> lastSegmentChanges;
+
+		public ParallelSegmentApplier(BlueExecutor executor) {
+			this.executor = executor;
+			this.maxSegmentsInFlight = executor.getSegmentTaskThreadCount() * 2;
+		}
+
+		public void add(ReadWriteSegment<T> segment, SortedChangeSupplier<T> sortedChangeSupplier) throws BlueDbException {
+			submitLastSegment();
+			lastSegmentChanges = sortedChangeSupplier.copyAtCursor();
+			lastSegment = segment;
+			
+			Range allValues = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+			while(sortedChangeSupplier.nextChangeOverlapsRange(segment.getRange())) {
+				sortedChangeSupplier.seekToNextChangeInRange(allValues); //The copy applies these so skip past them
+			}
+		}
+
+		private void submitLastSegment() throws BlueDbException {
+			if(lastSegment == null) {
+				return;
+			}
+			while(segmentsInFlight.size() >= maxSegmentsInFlight) {
+				waitFor(segmentsInFlight.removeFirst());
+			}
+
+			ReadWriteSegment<T> segment = lastSegment;
+			SortedChangeSupplier<T> changes = lastSegmentChanges;
+			lastSegment = null;
+			lastSegmentChanges = null;
+			try {
+				segmentsInFlight.add(executor.submitSegmentTask(() -> {
+					try(SortedChangeSupplier<T> changesToApply = changes) {
+						segment.applyChanges(changesToApply);
+					}
+					return null;
+				}));
+			} catch(RejectedExecutionException e) {
+				try(SortedChangeSupplier<T> changesToApply = changes) {
+					segment.applyChanges(changesToApply); //The executor is shutting down so finish the work on this thread
+				}
+			}
+		}
+
+		public void applyLastSegmentAndWait() throws BlueDbException {
+			if(lastSegment != null) {
+				try(SortedChangeSupplier<T> changesToApply = lastSegmentChanges) {
+					lastSegmentChanges = null;
+					lastSegment.applyChanges(changesToApply);
+				}
+				lastSegment = null;
+			}
+			while(!segmentsInFlight.isEmpty()) {
+				waitFor(segmentsInFlight.removeFirst());
+			}
+		}
+
+		private void waitFor(Future<?> future) throws BlueDbException {
+			try {
+				future.get();
+			} catch(ExecutionException e) {
+				if(e.getCause() instanceof BlueDbException) {
+					throw (BlueDbException) e.getCause();
+				}
+				throw new BlueDbException("Failed to apply changes to segment", e.getCause());
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new BlueDbException("Interrupted while applying changes to segments", e);
+			}
+		}
+
+		/*
+		 * Nothing may still be writing to the segments once applyChanges returns, even if it failed. Otherwise a retry or
+		 * recovery could be writing the same chunks at the same time.
+		 */
+		@Override
+		public void close() {
+			if(lastSegmentChanges != null) {
+				lastSegmentChanges.close();
+			}
+			boolean wasInterrupted = false;
+			for(Future<?> future : segmentsInFlight) {
+				while(true) {
+					try {
+						future.get();
+						break;
+					} catch(ExecutionException e) {
+						break; //Only the first failure is reported
+					} catch(InterruptedException e) {
+						wasInterrupted = true;
+					}
+				}
+			}
+			segmentsInFlight.clear();
+			if(wasInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
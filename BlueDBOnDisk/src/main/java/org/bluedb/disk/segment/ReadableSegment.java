@@ -4,13 +4,18 @@ import java.io.File;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.file.BlueObjectInput;
+import org.bluedb.disk.file.ChunkDeltas;
+import org.bluedb.disk.file.ChunkStatistics;
 import org.bluedb.disk.file.FileUtils;
 import org.bluedb.disk.file.RangeNamedFiles;
 import org.bluedb.disk.file.ReadFileManager;
@@ -48,12 +53,37 @@ public abstract class ReadableSegment <T extends Serializable> implements Compar
 	}
 	
 	public BlueEntity<T> getEntity(BlueKey key) throws BlueDbException {
-		long groupingNumber = key.getGroupingNumber();
-		try(BlueObjectInput<BlueEntity<T>> inputStream = getObjectInputFor(groupingNumber)) {
+		try(BlueObjectInput<BlueEntity<T>> inputStream = getObjectInputForLookup(key)) {
 			return getEntity(key, inputStream);
 		}
 	}
 
+	/**
+	 * Looks up keys that all have grouping numbers in this segment. Each chunk that the keys fall in is opened once, and
+	 * it is only read until the records are past the last of its keys.
+	 * @param sortedKeys the keys in key order
+	 * @return the entities for the keys that are in this segment, in key order
+	 * @throws BlueDbException if a chunk can't be read
+	 */
+	public List<BlueEntity<T>> getEntities(List<BlueKey> sortedKeys) throws BlueDbException {
+		List<BlueEntity<T>> entities = new ArrayList<>();
+		int start = 0;
+		while (start < sortedKeys.size()) {
+			BlueReadLock<Path> lock = getReadLockFor(sortedKeys.get(start).getGroupingNumber());
+			Range chunkRange = Range.fromFileWithUnderscoreDelmimitedName(lock.getKey().toFile());
+			int end = start + 1;
+			while (end < sortedKeys.size() && chunkRange != null && chunkRange.containsInclusive(sortedKeys.get(end).getGroupingNumber())) {
+				end++;
+			}
+			List<BlueKey> keysInChunk = sortedKeys.subList(start, end);
+			try(BlueObjectInput<BlueEntity<T>> inputStream = getObjectInputForLookup(lock, keysInChunk)) {
+				entities.addAll(getEntities(keysInChunk, inputStream));
+			}
+			start = end;
+		}
+		return entities;
+	}
+
 	public Range getRange() {
 		return segmentRange;
 	}
@@ -73,7 +103,7 @@ public abstract class ReadableSegment <T extends Serializable> implements Compar
 
 	public static List<Range> getAllFileRangesInOrder(Path segmentPath) {
 		File segmentFolder = segmentPath.toFile();
-		List<File> allFilesInSegment = FileUtils.getFolderContentsExcludingTempFiles(segmentFolder);
+		List<File> allFilesInSegment = FileUtils.getFolderContentsExcludingTempFiles(segmentFolder, file -> !ChunkDeltas.isDeltaFile(file));
 		return allFilesInSegment.stream()
 				.map( Range::fromFileWithUnderscoreDelmimitedName )
 				.filter( Objects::nonNull )
@@ -89,14 +119,81 @@ public abstract class ReadableSegment <T extends Serializable> implements Compar
 		return RangeNamedFiles.getOrderedFilesInRange(segmentPath, range);
 	}
 
+	/**
+	 * @param range the grouping numbers being read
+	 * @return the ranges of the chunks in this segment that overlap the range, in order
+	 */
+	public List<Range> getOrderedChunkRangesInRange(Range range) {
+		return getOrderedFilesInRange(range).stream()
+				.map( Range::fromFileWithUnderscoreDelmimitedName )
+				.collect(Collectors.toList());
+	}
+
 	protected BlueObjectInput<BlueEntity<T>> getObjectInputFor(Path path) throws BlueDbException {
 		BlueReadLock<Path> lock = acquireReadLock(path);
-		return getFileManager().getBlueInputStream(lock);
+		return getFileManager().getChunkInputStream(lock);
 	}
 
 	public BlueObjectInput<BlueEntity<T>> getObjectInputFor(long groupingNumber) throws BlueDbException {
 		BlueReadLock<Path> lock = getReadLockFor(groupingNumber);
-		return getFileManager().getBlueInputStream(lock);
+		return getFileManager().getChunkInputStream(lock);
+	}
+
+	/**
+	 * Opens the chunk that holds a grouping number, skipping ahead to a few records before it if the chunk's
+	 * {@link org.bluedb.disk.file.SparseKeyIndex} allows it.
+	 * @param groupingNumber the grouping number to start reading from
+	 * @return an input positioned at or before the first record with the grouping number or a higher one
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public BlueObjectInput<BlueEntity<T>> getObjectInputStartingAt(long groupingNumber) throws BlueDbException {
+		BlueReadLock<Path> lock = getReadLockFor(groupingNumber);
+		return getFileManager().getChunkInputStreamStartingAt(lock, groupingNumber);
+	}
+
+	/**
+	 * Opens the chunk that holds a grouping number to be read backwards a block at a time, leaving out the blocks at the
+	 * end of the chunk that only have records above the maximum grouping number.
+	 * @param groupingNumber a grouping number in the chunk
+	 * @param maxGroupingNumber the highest grouping number that is going to be read
+	 * @return an input that reads the chunk a block at a time after {@link BlueObjectInput#moveToPreviousBlock()}
+	 * @throws BlueDbException if the chunk can't be read
+	 */
+	public BlueObjectInput<BlueEntity<T>> getObjectInputReadingBackwards(long groupingNumber, long maxGroupingNumber) throws BlueDbException {
+		BlueReadLock<Path> lock = getReadLockFor(groupingNumber);
+		return getFileManager().getChunkInputStreamReadingBackwards(lock, maxGroupingNumber);
+	}
+
+	protected BlueObjectInput<BlueEntity<T>> getObjectInputForLookup(BlueKey key) throws BlueDbException {
+		BlueReadLock<Path> lock = getReadLockFor(key.getGroupingNumber());
+		return getFileManager().getChunkInputStreamFor(lock, key);
+	}
+
+	protected BlueObjectInput<BlueEntity<T>> getObjectInputForLookup(BlueReadLock<Path> lock, List<BlueKey> sortedKeys) throws BlueDbException {
+		return getFileManager().getChunkInputStreamFor(lock, sortedKeys);
+	}
+
+	/**
+	 * Looks up the key of the last record in the segment in the {@link ChunkStatistics} of its last chunk, so that none
+	 * of the records have to be read.
+	 * @return the key of the last record in the segment, or null if it can't be found without reading the records
+	 */
+	public BlueKey getLastKeyFromStatistics() {
+		List<Range> chunkRanges = getOrderedChunkRangesInRange(new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+		if (chunkRanges.isEmpty()) {
+			return null;
+		}
+		Range lastChunkRange = chunkRanges.get(chunkRanges.size() - 1);
+		if (chunkRanges.stream().anyMatch(range -> range.getEnd() > lastChunkRange.getEnd())) {
+			return null; // A rollup is part way through replacing the chunks
+		}
+		try (BlueReadLock<Path> lock = acquireReadLock(getPathFor(lastChunkRange))) {
+			ChunkStatistics statistics = getFileManager().getChunkStatistics(lock);
+			if (statistics == null || !statistics.areKeysKnown() || statistics.getRecordCount() == 0) {
+				return null;
+			}
+			return statistics.getMaxKey(getFileManager().getSerializer());
+		}
 	}
 
 	public BlueReadLock<Path> getReadLockFor(long groupingNumber) throws BlueDbException {
@@ -136,11 +233,11 @@ public abstract class ReadableSegment <T extends Serializable> implements Compar
 		return chunkRanges;
 	}
 
-	private Path getPathFor(Range range) {
+	protected Path getPathFor(Range range) {
 		return Paths.get(segmentPath.toString(), range.toUnderscoreDelimitedString());
 	}
 
-	private Path getPathFor(long groupingNumber, long rollupLevel) {
+	protected Path getPathFor(long groupingNumber, long rollupLevel) {
 		String fileName = RangeNamedFiles.getRangeFileName(groupingNumber, rollupLevel);
 		return Paths.get(segmentPath.toString(), fileName);
 	}
@@ -155,10 +252,28 @@ public abstract class ReadableSegment <T extends Serializable> implements Compar
 			if (next.getKey().equals(key)) {
 				return next;
 			}
+			if (next.getKey().getGroupingNumber() > key.getGroupingNumber()) {
+				return null; // Chunks are sorted by key so the key can't be any further along
+			}
 		}
 		return null;
 	}
 
+	protected static <T extends Serializable> List<BlueEntity<T>> getEntities(List<BlueKey> sortedKeys, BlueObjectInput<BlueEntity<T>> inputStream) {
+		List<BlueEntity<T>> entities = new ArrayList<>();
+		Set<BlueKey> keysLeft = new HashSet<>(sortedKeys);
+		long lastGroupingNumber = sortedKeys.get(sortedKeys.size() - 1).getGroupingNumber();
+		while(!keysLeft.isEmpty() && inputStream.hasNext()) {
+			BlueEntity<T> next = inputStream.next();
+			if (keysLeft.remove(next.getKey())) {
+				entities.add(next);
+			} else if (next.getKey().getGroupingNumber() > lastGroupingNumber) {
+				break; // Chunks are sorted by key so none of the keys can be any further along
+			}
+		}
+		return entities;
+	}
+
 	@Override
 	public int hashCode() {
 		return 31 + ((segmentPath == null) ? 0 : segmentPath.hashCode());
@@ -7,12 +7,15 @@ import java.util.Optional;
 
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.collection.index.conditions.IncludedSegmentRangeInfo;
+import org.bluedb.disk.executors.BlueExecutor;
 import org.bluedb.disk.segment.path.SegmentPathManager;
 import org.bluedb.disk.segment.path.SegmentSizeConfiguration;
 
 public abstract class ReadableSegmentManager<T extends Serializable> {
 
 	protected final SegmentPathManager pathManager;
+	private BlueExecutor scanTaskExecutor;
+	private int scanParallelism = 1;
 
 	public abstract ReadableSegment<T> getFirstSegment(BlueKey key);
 	public abstract ReadableSegment<T> getSegment(long groupingNumber);
@@ -44,6 +47,25 @@ public abstract class ReadableSegmentManager<T extends Serializable> {
 		return pathManager.getSegmentSize();
 	}
 
+	public BlueExecutor getScanTaskExecutor() {
+		return scanTaskExecutor;
+	}
+
+	public int getScanParallelism() {
+		return scanParallelism;
+	}
+
+	/**
+	 * Queries read one segment at a time until this is called with a parallelism above 1. After that, queries over more
+	 * than one segment read up to that many segments at once on the executor's scan task threads.
+	 * @param scanTaskExecutor the executor used to read segments ahead of the query, or null to read them one at a time
+	 * @param scanParallelism the most segments a query reads at once
+	 */
+	public void setParallelScans(BlueExecutor scanTaskExecutor, int scanParallelism) {
+		this.scanTaskExecutor = scanTaskExecutor;
+		this.scanParallelism = scanParallelism;
+	}
+
 	protected static SegmentPathManager createSegmentPathManager(SegmentSizeConfiguration sizeConfig, Path collectionPath) {
 		return new SegmentPathManager(collectionPath, sizeConfig);
 	}
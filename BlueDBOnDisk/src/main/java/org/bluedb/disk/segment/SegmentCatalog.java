@@ -0,0 +1,157 @@
+package org.bluedb.disk.segment;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.bluedb.disk.segment.path.SegmentPathManager;
+
+/**
+ * An in-memory list of the chunk files in each segment of a collection, so that queries don't have to walk the segment
+ * folders and list and parse every file in them. It is loaded from disk the first time it is used and after that it is
+ * kept up to date by the segments as they create and delete chunks. Segments without any chunks are left out.<br><br>
+ *
+ * Only a collection that can be written to has a catalog, since it has to see every change to its files. Chunk deltas
+ * and temp files aren't chunks and aren't tracked.
+ */
+public class SegmentCatalog {
+
+	private final SegmentPathManager pathManager;
+	private final TreeMap<Long, TreeSet<Range>> chunkRangesBySegmentNumber = new TreeMap<>();
+	private boolean isLoaded = false;
+
+	public SegmentCatalog(SegmentPathManager pathManager) {
+		this.pathManager = pathManager;
+	}
+
+	/**
+	 * @param range the grouping numbers being looked for
+	 * @return the ranges of the segments with chunks that the range falls in, in order. This matches the segment folders
+	 * found by {@link SegmentPathManager#getExistingSegmentFiles(Range)}.
+	 */
+	public synchronized List<Range> getSegmentRanges(Range range) {
+		loadIfNeeded();
+		long segmentSize = pathManager.getSegmentSize();
+		List<Range> segmentRanges = new ArrayList<>();
+		for (Long segmentNumber : chunkRangesBySegmentNumber.subMap(range.getStart() / segmentSize, true, range.getEnd() / segmentSize, true).keySet()) {
+			segmentRanges.add(toSegmentRange(segmentNumber));
+		}
+		return segmentRanges;
+	}
+
+	/**
+	 * @param segmentRange the segment to look in
+	 * @param range the grouping numbers being looked for
+	 * @return the ranges of the chunks in the segment that overlap the range, in order
+	 */
+	public synchronized List<Range> getChunkRanges(Range segmentRange, Range range) {
+		loadIfNeeded();
+		List<Range> chunkRanges = new ArrayList<>();
+		TreeSet<Range> chunkRangesInSegment = chunkRangesBySegmentNumber.get(toSegmentNumber(segmentRange));
+		if (chunkRangesInSegment == null) {
+			return chunkRanges;
+		}
+		for (Range chunkRange : chunkRangesInSegment.headSet(new Range(range.getEnd(), Long.MAX_VALUE), true)) {
+			if (chunkRange.overlaps(range)) {
+				chunkRanges.add(chunkRange);
+			}
+		}
+		return chunkRanges;
+	}
+
+	/**
+	 * @param segmentRange the segment to look in
+	 * @param chunkRange the range of the chunk
+	 * @return true if the segment has a chunk with exactly that range
+	 */
+	public synchronized boolean containsChunk(Range segmentRange, Range chunkRange) {
+		loadIfNeeded();
+		TreeSet<Range> chunkRangesInSegment = chunkRangesBySegmentNumber.get(toSegmentNumber(segmentRange));
+		return chunkRangesInSegment != null && chunkRangesInSegment.contains(chunkRange);
+	}
+
+	/**
+	 * Called once a chunk file has been moved into place. Does nothing until the catalog has been loaded since loading
+	 * it will find the file.
+	 */
+	public synchronized void addChunk(Range segmentRange, Range chunkRange) {
+		if (isLoaded && chunkRange != null) {
+			chunkRangesBySegmentNumber.computeIfAbsent(toSegmentNumber(segmentRange), n -> new TreeSet<>()).add(chunkRange);
+		}
+	}
+
+	/**
+	 * Called once a chunk file has been deleted
+	 */
+	public synchronized void removeChunk(Range segmentRange, Range chunkRange) {
+		if (!isLoaded || chunkRange == null) {
+			return;
+		}
+		Long segmentNumber = toSegmentNumber(segmentRange);
+		TreeSet<Range> chunkRangesInSegment = chunkRangesBySegmentNumber.get(segmentNumber);
+		if (chunkRangesInSegment != null) {
+			chunkRangesInSegment.remove(chunkRange);
+			if (chunkRangesInSegment.isEmpty()) {
+				chunkRangesBySegmentNumber.remove(segmentNumber);
+			}
+		}
+	}
+
+	/**
+	 * Throws out what is in memory so that the catalog is loaded from disk again the next time it is used. Only needed if
+	 * the files were changed by something other than the segments.
+	 */
+	public synchronized void reload() {
+		chunkRangesBySegmentNumber.clear();
+		isLoaded = false;
+	}
+
+	public synchronized boolean isLoaded() {
+		return isLoaded;
+	}
+
+	public synchronized int getSegmentCount() {
+		loadIfNeeded();
+		return chunkRangesBySegmentNumber.size();
+	}
+
+	public synchronized int getChunkCount() {
+		loadIfNeeded();
+		int chunkCount = 0;
+		for (Entry<Long, TreeSet<Range>> entry : chunkRangesBySegmentNumber.entrySet()) {
+			chunkCount += entry.getValue().size();
+		}
+		return chunkCount;
+	}
+
+	/*
+	 * The lock is held while the folders are walked so that a chunk added or removed part way through waits and is
+	 * applied on top of what was found.
+	 */
+	private void loadIfNeeded() {
+		if (isLoaded) {
+			return;
+		}
+		for (File segmentFolder : pathManager.getExistingSegmentFiles(Long.MIN_VALUE, Long.MAX_VALUE)) {
+			Path segmentPath = segmentFolder.toPath();
+			List<Range> chunkRanges = ReadableSegment.getAllFileRangesInOrder(segmentPath);
+			if (!chunkRanges.isEmpty()) {
+				chunkRangesBySegmentNumber.put(Long.valueOf(segmentFolder.getName()), new TreeSet<>(chunkRanges));
+			}
+		}
+		isLoaded = true;
+	}
+
+	private Long toSegmentNumber(Range segmentRange) {
+		return segmentRange.getStart() / pathManager.getSegmentSize();
+	}
+
+	private Range toSegmentRange(long segmentNumber) {
+		long segmentStart = segmentNumber * pathManager.getSegmentSize();
+		return new Range(segmentStart, segmentStart + pathManager.getSegmentSize() - 1);
+	}
+}
@@ -4,14 +4,17 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.file.BlueObjectInput;
+import org.bluedb.disk.file.ChunkStatistics;
 import org.bluedb.disk.serialization.BlueEntity;
 
 public class SegmentEntityIterator<T extends Serializable> implements Iterator<BlueEntity<T>>, Closeable {
@@ -23,6 +26,13 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 	final List<Range> timeRanges;
 	BlueObjectInput<BlueEntity<T>> currentInput;
 	BlueEntity<T> next = null;
+	boolean isPastRange = false;
+	private Predicate<BlueKey> keyFilter = null;
+	private boolean keysOnly = false;
+	private BlueKey startAfterKey = null;
+	private boolean descending = false;
+	long lowestGroupingNumberCompleted = Long.MAX_VALUE;
+	private final LinkedList<BlueEntity<T>> block = new LinkedList<>();
 	
 	private AtomicBoolean hasClosed = new AtomicBoolean(false);
 	
@@ -41,14 +51,62 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 		long timeRangeStart = enforceRangeStart ? Math.max(rangeMin, highestGroupingNumberCompleted) : highestGroupingNumberCompleted;
 		
 		Range timeRange = new Range(timeRangeStart, rangeMax);
-		List<File> relevantFiles = segment.getOrderedFilesInRange(timeRange);
-		timeRanges = filesToRanges(relevantFiles);
+		timeRanges = new LinkedList<>(segment.getOrderedChunkRangesInRange(timeRange));
 	}
 
 	public SegmentEntityIterator(final ReadableSegment<T> segment, final long rangeMin, final long rangeMax) {
 		this(segment, Long.MIN_VALUE, rangeMin, rangeMax, false);
 	}
 
+	/**
+	 * Skips the records whose keys don't pass the filter. The keys are checked before the values are deserialized, so
+	 * the values of records saved in the {@link org.bluedb.disk.serialization.KeyedRecordFormat} are only deserialized
+	 * if their keys pass. Set this before reading anything.
+	 * @param keyFilter the test that a key has to pass, or null to return every record in the range
+	 */
+	public void setKeyFilter(Predicate<BlueKey> keyFilter) {
+		this.keyFilter = keyFilter;
+	}
+
+	/**
+	 * Returns entities without their values, so the values of records saved in the
+	 * {@link org.bluedb.disk.serialization.KeyedRecordFormat} are never deserialized. Set this before reading anything.
+	 * @param keysOnly true to return entities that only have a key
+	 */
+	public void setKeysOnly(boolean keysOnly) {
+		this.keysOnly = keysOnly;
+	}
+
+	/**
+	 * Skips the records up to and including a key. Records are saved in key order, so the chunks before the key's
+	 * grouping number aren't opened and the chunk that has it is read from near the key. When reading in descending
+	 * order the records from the key onwards are skipped instead. Set this before reading anything.
+	 * @param startAfterKey the key to start after, or null to start at the beginning of the range
+	 */
+	public void setStartAfterKey(BlueKey startAfterKey) {
+		this.startAfterKey = startAfterKey;
+		if (!descending && startAfterKey != null && startAfterKey.getGroupingNumber() > Long.MIN_VALUE) {
+			highestGroupingNumberCompleted = Math.max(highestGroupingNumberCompleted, startAfterKey.getGroupingNumber() - 1);
+		}
+	}
+
+	/**
+	 * Returns the records in reverse key order. The chunks are read from last to first, and each chunk is read backwards
+	 * a block of records at a time using its {@link org.bluedb.disk.file.SparseKeyIndex}, so only one block is held in
+	 * memory at once. Set this before reading anything and before {@link #setStartAfterKey(BlueKey)}.
+	 * @param descending true to return the records in reverse key order
+	 * @throws IllegalStateException if the key to start after has already been set
+	 */
+	public void setDescending(boolean descending) {
+		if (startAfterKey != null) {
+			throw new IllegalStateException("The direction has to be set before the key to start after");
+		}
+		if (descending != this.descending) {
+			Collections.reverse(timeRanges);
+		}
+		this.descending = descending;
+	}
+
 	@Override
 	public synchronized void close() {
 		if (!hasClosed.getAndSet(true) && currentInput != null) {
@@ -86,23 +144,111 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 		return segment;
 	}
 
-	protected BlueEntity<T> nextFromFile() {
-		while (true) {
-			while (currentInput != null && currentInput.hasNext()) {
-				BlueEntity<T> next = currentInput.next();
-				BlueKey key = next.getKey();
-				if (key.getGroupingNumber() <= highestGroupingNumberCompleted) {
-					continue;
-				}
-				if (key.overlapsRange(rangeMin, rangeMax)) {
-					return next;
+	/**
+	 * Counts the records that are left and uses them up, the same way as {@link #skip(long)}.
+	 * @return the number of records that next would have returned
+	 */
+	public synchronized long countRemaining() {
+		return skip(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Skips records without returning them or deserializing their values. Every record in a chunk that falls entirely
+	 * inside the range matches unless there is a key filter, so those chunks are skipped using their
+	 * {@link ChunkStatistics} if all of their records are being skipped, or without deserializing their records if they
+	 * don't have any. Other records are skipped by their keys.
+	 * @param recordsToSkip the most records to skip
+	 * @return the number of records skipped, which is less than recordsToSkip if there weren't that many left
+	 */
+	public synchronized long skip(long recordsToSkip) {
+		if (hasClosed.get()) {
+			throw new RuntimeException("SegmentEntityIterator has already been closed");
+		}
+		
+		long skipped = 0;
+		if (next != null && recordsToSkip > 0) {
+			skipped++;
+			next = null;
+		}
+		if (descending) {
+			return skipped + skipBackwards(recordsToSkip - skipped);
+		}
+		while (skipped < recordsToSkip) {
+			if (currentInput != null) {
+				boolean isEveryRecordCounted = keyFilter == null && isEveryRecordInRange(currentInput);
+				ChunkStatistics statistics = isEveryRecordCounted ? loadStatistics(currentInput) : null;
+				if (statistics != null && statistics.getRecordCount() <= recordsToSkip - skipped) {
+					skipped += statistics.getRecordCount();
+				} else if (isEveryRecordCounted) {
+					while (skipped < recordsToSkip && currentInput.nextRawBytesWithoutDeserializing() != null) {
+						skipped++;
+					}
+					if (skipped == recordsToSkip) {
+						return skipped;
+					}
+				} else {
+					while (skipped < recordsToSkip && peekNextWantedKey() != null) {
+						currentInput.nextRawBytesWithoutDeserializing();
+						skipped++;
+					}
+					if (skipped == recordsToSkip || isPastRange) {
+						return skipped;
+					}
 				}
-				if (key.isAfterRange(rangeMin, rangeMax)) {
-					//If we know we're past the max range then there is nothing left to look for in this segment
-					return null;
+				highestGroupingNumberCompleted = extractMaxGroupingNumber(currentInput);
+				currentInput.close();
+			}
+			currentInput = getNextStream();
+			if (currentInput == null) {
+				return skipped;
+			}
+		}
+		return skipped;
+	}
+
+	/*
+	 * Whole chunks are skipped using their statistics the same way as when reading forwards. A chunk that has been
+	 * started is read a block at a time as usual.
+	 */
+	private long skipBackwards(long recordsToSkip) {
+		long skipped = 0;
+		while (skipped < recordsToSkip) {
+			if (!block.isEmpty()) {
+				block.removeLast();
+				skipped++;
+				continue;
+			}
+			if (currentInput != null) {
+				ChunkStatistics statistics = keyFilter == null && isEveryRecordInRange(currentInput) ? loadStatistics(currentInput) : null;
+				if (statistics == null || statistics.getRecordCount() > recordsToSkip - skipped) {
+					if (moveToPreviousBlock()) {
+						readBlock();
+						continue;
+					}
+				} else {
+					skipped += statistics.getRecordCount();
 				}
+				lowestGroupingNumberCompleted = extractMinGroupingNumber(currentInput);
+				currentInput.close();
+			}
+			currentInput = getPreviousStream();
+			if (currentInput == null) {
+				return skipped;
 			}
+		}
+		return skipped;
+	}
+
+	protected BlueEntity<T> nextFromFile() {
+		if (descending) {
+			return nextFromFileBackwards();
+		}
+		while (true) {
 			if (currentInput != null) {
+				BlueEntity<T> next = nextFromCurrentInput();
+				if (next != null || isPastRange) {
+					return next;
+				}
 				highestGroupingNumberCompleted = extractMaxGroupingNumber(currentInput);
 				currentInput.close();
 			}
@@ -113,6 +259,120 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 		}
 	}
 
+	private BlueEntity<T> nextFromFileBackwards() {
+		while (true) {
+			if (!block.isEmpty()) {
+				return block.removeLast();
+			}
+			if (currentInput != null) {
+				if (moveToPreviousBlock()) {
+					readBlock();
+					continue;
+				}
+				lowestGroupingNumberCompleted = extractMinGroupingNumber(currentInput);
+				currentInput.close();
+			}
+			currentInput = getPreviousStream();
+			if (currentInput == null) {
+				return null;
+			}
+		}
+	}
+
+	private boolean moveToPreviousBlock() {
+		try {
+			return currentInput.moveToPreviousBlock();
+		} catch (BlueDbException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/*
+	 * The block is read forwards and its records returned from the end. Passing the range only ends the block, since
+	 * the blocks before it can still have records in the range.
+	 */
+	private void readBlock() {
+		isPastRange = false;
+		BlueEntity<T> entity;
+		while ((entity = nextFromCurrentInput()) != null) {
+			block.add(entity);
+		}
+		isPastRange = false;
+	}
+
+	private BlueEntity<T> nextFromCurrentInput() {
+		BlueKey key;
+		while ((key = peekNextWantedKey()) != null) {
+			if (keysOnly) {
+				currentInput.nextRawBytesWithoutDeserializing();
+				return new BlueEntity<>(key, null);
+			}
+			BlueEntity<T> next = currentInput.next();
+			if (next != null && isWanted(next.getKey())) {
+				return next; //The key is checked again since the record after it is read instead if its value is corrupt
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Skips records by their keys until the next one is wanted, which is left for the caller to read
+	 */
+	private BlueKey peekNextWantedKey() {
+		while (!isPastRange) {
+			BlueKey key = currentInput.peekKey();
+			if (key == null || isWanted(key)) {
+				return key;
+			}
+			currentInput.nextRawBytesWithoutDeserializing();
+		}
+		return null;
+	}
+
+	private boolean isWanted(BlueKey key) {
+		if (key.getGroupingNumber() <= highestGroupingNumberCompleted) {
+			return false;
+		}
+		if (descending && (key.getGroupingNumber() >= lowestGroupingNumberCompleted || (startAfterKey != null && key.compareTo(startAfterKey) >= 0))) {
+			isPastRange = true; // the rest of the block comes after this key as well
+			return false;
+		}
+		if (!descending && startAfterKey != null && key.compareTo(startAfterKey) <= 0) {
+			return false;
+		}
+		if (key.overlapsRange(rangeMin, rangeMax)) {
+			return keyFilter == null || keyFilter.test(key);
+		}
+		if (key.isAfterRange(rangeMin, rangeMax)) {
+			//If we know we're past the max range then there is nothing left to look for in this segment
+			isPastRange = true;
+		}
+		return false;
+	}
+
+	/*
+	 * A chunk only holds records with grouping numbers in the range it is named for
+	 */
+	private boolean isEveryRecordInRange(BlueObjectInput<BlueEntity<T>> input) {
+		Range chunkRange = Range.fromUnderscoreDelmimitedString(input.getPath().getFileName().toString());
+		boolean isInRange = chunkRange.getStart() > highestGroupingNumberCompleted && chunkRange.getStart() >= rangeMin && chunkRange.getEnd() <= rangeMax;
+		if (descending) {
+			return isInRange && chunkRange.getEnd() < lowestGroupingNumberCompleted && (startAfterKey == null || chunkRange.getEnd() < startAfterKey.getGroupingNumber());
+		}
+		return isInRange && (startAfterKey == null || chunkRange.getStart() > startAfterKey.getGroupingNumber());
+	}
+
+	/*
+	 * The statistics only describe the chunk file, and only what is left to read if nothing has been read yet
+	 */
+	private static <X extends Serializable> ChunkStatistics loadStatistics(BlueObjectInput<BlueEntity<X>> input) {
+		if (input.getPath() == null || input.hasDeltas() || input.getLastRawBytes() != null) {
+			return null;
+		}
+		return ChunkStatistics.loadIfExists(input.getPath());
+	}
+
 	protected BlueObjectInput<BlueEntity<T>> getNextStream() {
 		Range range;
 		while (!timeRanges.isEmpty()) {
@@ -120,12 +380,67 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 			if (highestGroupingNumberCompleted >= range.getEnd()) {
 				continue;  // we've already read the rolled up file that includes this range
 			}
+			BlueObjectInput<BlueEntity<T>> input;
+			try {
+				if (startAfterKey != null && range.containsInclusive(startAfterKey.getGroupingNumber())) {
+					input = segment.getObjectInputStartingAt(startAfterKey.getGroupingNumber());
+				} else {
+					input = segment.getObjectInputFor(range.getStart());
+				}
+			} catch (BlueDbException e) {
+				e.printStackTrace();
+				return null;
+			}
+			if (isEveryRecordInRange(input)) {
+				return input;
+			}
+			ChunkStatistics statistics = loadStatistics(input);
+			if (statistics != null && statistics.isEveryRecordAfterRange(rangeMax)) {
+				isPastRange = true;  // the chunks are in order so none of the rest can have anything in the range either
+				return input;
+			}
+			if (statistics != null && (statistics.isEveryRecordBeforeRange(rangeMin) || statistics.isEveryGroupingNumberAtOrBefore(highestGroupingNumberCompleted))) {
+				highestGroupingNumberCompleted = extractMaxGroupingNumber(input);
+				input.close();
+				continue;  // the chunk's statistics show that none of its records would be returned
+			}
+			return input;
+		}
+		return null;
+	}
+
+	/*
+	 * The ranges are in reverse order. Nothing can be past the range for good since a record that starts before the range
+	 * can overlap it, so chunks that the statistics rule out are just skipped.
+	 */
+	private BlueObjectInput<BlueEntity<T>> getPreviousStream() {
+		Range range;
+		while (!timeRanges.isEmpty()) {
+			range = timeRanges.remove(0);
+			if (highestGroupingNumberCompleted >= range.getEnd() || range.getStart() >= lowestGroupingNumberCompleted) {
+				continue;  // the records in this range have already been read from a rolled up file or are out of range
+			}
+			if (startAfterKey != null && range.getStart() > startAfterKey.getGroupingNumber()) {
+				continue;
+			}
+			long maxGroupingNumber = Math.min(rangeMax, lowestGroupingNumberCompleted - 1);
+			if (startAfterKey != null) {
+				maxGroupingNumber = Math.min(maxGroupingNumber, startAfterKey.getGroupingNumber());
+			}
+			BlueObjectInput<BlueEntity<T>> input;
 			try {
-				return segment.getObjectInputFor(range.getStart());
+				input = segment.getObjectInputReadingBackwards(range.getStart(), maxGroupingNumber);
 			} catch (BlueDbException e) {
 				e.printStackTrace();
 				return null;
 			}
+			ChunkStatistics statistics = loadStatistics(input);
+			if (statistics != null && (statistics.isEveryRecordAfterRange(rangeMax) || statistics.isEveryRecordBeforeRange(rangeMin) || statistics.isEveryGroupingNumberAtOrBefore(highestGroupingNumberCompleted))) {
+				lowestGroupingNumberCompleted = extractMinGroupingNumber(input);
+				input.close();
+				continue;  // the chunk's statistics show that none of its records would be returned
+			}
+			return input;
 		}
 		return null;
 	}
@@ -148,6 +463,11 @@ public class SegmentEntityIterator<T extends Serializable> implements Iterator<B
 		return ranges;
 	}
 
+	protected static <X extends Serializable> long extractMinGroupingNumber(BlueObjectInput<BlueEntity<X>> input) {
+		String fileName = input.getPath().getFileName().toString();
+		return Range.fromUnderscoreDelmimitedString(fileName).getStart();
+	}
+
 	protected static <X extends Serializable> long extractMaxGroupingNumber(BlueObjectInput<BlueEntity<X>> input) {
 		Path path = input.getPath();
 		String fileName = path.getFileName().toString();
@@ -38,9 +38,9 @@ public class BatchWriter<T extends Serializable> implements StreamingWriter<T> {
 				writeNextChange(output);
 			} else {
 				if (shouldSkipEncryptionForUnchangedData) {
-					output.writeBytesAndForceSkipEncryption(input.nextRawBytesWithoutDeserializing());
+					output.writeBytesAndForceSkipEncryption(input.nextRawBytesWithoutDeserializing(), input.getLastKey());
 				} else {
-					output.writeBytesAndAllowEncryption(input.nextUnencryptedBytesWithoutDeserializing());
+					output.writeBytesAndAllowEncryption(input.nextUnencryptedBytesWithoutDeserializing(), input.getLastKey());
 				}
 			}
 		}
@@ -48,9 +48,9 @@ public class BatchWriter<T extends Serializable> implements StreamingWriter<T> {
 		// drain out the remaining items from whichever is not empty
 		while (input.hasNext()) {
 			if (shouldSkipEncryptionForUnchangedData) {
-				output.writeBytesAndForceSkipEncryption(input.nextRawBytesWithoutDeserializing());
+				output.writeBytesAndForceSkipEncryption(input.nextRawBytesWithoutDeserializing(), input.getLastKey());
 			} else {
-				output.writeBytesAndAllowEncryption(input.nextUnencryptedBytesWithoutDeserializing());
+				output.writeBytesAndAllowEncryption(input.nextUnencryptedBytesWithoutDeserializing(), input.getLastKey());
 			}
 		}
 		while (sortedChanges.nextChangeOverlapsRange(range)) {
@@ -75,9 +75,9 @@ public class BatchWriter<T extends Serializable> implements StreamingWriter<T> {
 				if (originalItemBytes != null) {
 					new BlueDbException("A BlueDB batch query was supposed to replace an object but the replacement object failed to serialize. The object will remain unchanged. Key: " + newEntity.getKey(), e).printStackTrace();
 					if (shouldSkipEncryptionForUnchangedData) {
-						output.writeBytesAndForceSkipEncryption(originalItemBytes);
+						output.writeBytesAndForceSkipEncryption(originalItemBytes, newEntity.getKey());
 					} else {
-						output.writeBytesAndAllowEncryption(originalItemBytes);
+						output.writeBytesAndAllowEncryption(originalItemBytes, newEntity.getKey());
 					}
 				} else {
 					new BlueDbException("A BlueDB batch query was supposed to insert an object but failed to serialize it. Key: " + newEntity.getKey(), e).printStackTrace();
@@ -23,9 +23,9 @@ public class DeleteWriter<T extends Serializable> implements StreamingWriter<T>
 			BlueEntity<T> entry = input.next();
 			if (!entry.getKey().equals(key)) {
 				if (shouldSkipEncryption) {
-					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes());
+					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes(), entry.getKey());
 				} else {
-					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes());
+					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), entry.getKey());
 				}
 			}
 		}
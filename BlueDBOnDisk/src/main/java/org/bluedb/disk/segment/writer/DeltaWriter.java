@@ -0,0 +1,46 @@
+package org.bluedb.disk.segment.writer;
+
+import java.io.Serializable;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.disk.file.BlueObjectOutput;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.bluedb.disk.recovery.SortedChangeSupplier;
+import org.bluedb.disk.segment.Range;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.validation.SerializationException;
+
+/**
+ * Writes the changes in a chunk range to the chunk's delta file instead of rewriting the chunk. Each change becomes the
+ * new entity for its key, or a tombstone (an entity with a null value) if the change removes the key.
+ */
+public class DeltaWriter<T extends Serializable> {
+
+	private final SortedChangeSupplier<T> sortedChanges; 
+	private final Range range;
+
+	public DeltaWriter(SortedChangeSupplier<T> sortedChanges, Range range) {
+		this.sortedChanges = sortedChanges;
+		this.range = range;
+	}
+
+	public void process(BlueObjectOutput<BlueEntity<T>> deltaOutput) throws BlueDbException {
+		while (sortedChanges.nextChangeOverlapsRange(range)) {
+			IndividualChange<T> change = sortedChanges.getNextChange().get();
+			sortedChanges.seekToNextChangeInRange(range);
+
+			BlueEntity<T> newEntity = change.getNewEntity();
+			if (newEntity != null) {
+				try {
+					deltaOutput.write(newEntity);
+				} catch (SerializationException e) {
+					//Don't let a single item failing to serialize stop the rest of the changes in the batch. Without a delta the chunk keeps the original.
+					new BlueDbException("A BlueDB batch query was supposed to write an object but it failed to serialize. The object will remain unchanged. Key: " + newEntity.getKey(), e).printStackTrace();
+				}
+			} else {
+				deltaOutput.write(new BlueEntity<T>(change.getKey(), null));
+			}
+		}
+	}
+
+}
@@ -32,15 +32,15 @@ public class InsertWriter<T extends Serializable> implements StreamingWriter<T>
 				output.write(newEntity);
 				toInsert = null;
 				if (shouldSkipEncryption) {
-					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes());
+					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes(), iterKey);
 				} else {
-					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes());
+					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), iterKey);
 				}
 			} else {
 				if (shouldSkipEncryption) {
-					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes());
+					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes(), iterKey);
 				} else {
-					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes());
+					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), iterKey);
 				}
 			}
 		}
@@ -30,9 +30,9 @@ public class UpdateWriter<T extends Serializable> implements StreamingWriter<T>
 				newEntity = null;
 			} else {
 				if (shouldSkipEncryption) {
-					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes());
+					output.writeBytesAndForceSkipEncryption(input.getLastRawBytes(), iterKey);
 				} else {
-					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes());
+					output.writeBytesAndAllowEncryption(input.getLastUnencryptedBytes(), iterKey);
 				}
 			}
 		}
@@ -8,7 +8,19 @@ public interface BlueSerializer {
 
 	public byte[] serializeObjectToByteArray(Object o) throws SerializationException;
 
+	/**
+	 * Serializes the object without deserializing the bytes again to make sure that they are good. Only use this when
+	 * the bytes are protected some other way, like a checksum that is saved with them.
+	 */
+	public byte[] serializeObjectToByteArrayWithoutRoundTrip(Object o) throws SerializationException;
+
 	public Object deserializeObjectFromByteArray(byte[] bytes) throws SerializationException;
 
+	/**
+	 * Deserializes the bytes without validating the resulting object. Only use this when the bytes have already been
+	 * verified some other way, like a checksum that was saved with them.
+	 */
+	public Object deserializeObjectFromByteArrayWithoutValidation(byte[] bytes) throws SerializationException;
+
 	public <T extends Serializable> T clone(T object) throws SerializationException;
 }
@@ -0,0 +1,59 @@
+package org.bluedb.disk.serialization;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.bluedb.disk.serialization.validation.SerializationException;
+
+/**
+ * A record format that saves the serialized key of a {@link BlueEntity} separately from its serialized value, so that
+ * the key can be read and checked without deserializing the value. A record is saved as [marker][key length][key bytes]
+ * [value bytes].<br><br>
+ *
+ * Every object serialized by FST starts with a tag that is zero or negative, so the positive marker tells these records
+ * apart from entities that were serialized whole. That means both kinds of record can be read from the same file, which
+ * happens when records from an older file are copied into a new one as bytes.
+ */
+public final class KeyedRecordFormat {
+
+	static final byte MARKER = 'K';
+	private static final int HEADER_LENGTH = 1 + 4;
+
+	private KeyedRecordFormat() {}
+
+	/**
+	 * @param unencryptedBytes the bytes of a record
+	 * @return true if the record was saved in this format rather than as a whole serialized object
+	 */
+	public static boolean isKeyedRecord(byte[] unencryptedBytes) {
+		return unencryptedBytes != null && unencryptedBytes.length > 0 && unencryptedBytes[0] == MARKER;
+	}
+
+	public static byte[] toBytes(byte[] keyBytes, byte[] valueBytes) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length + valueBytes.length);
+		buffer.put(MARKER);
+		buffer.putInt(keyBytes.length);
+		buffer.put(keyBytes);
+		buffer.put(valueBytes);
+		return buffer.array();
+	}
+
+	public static byte[] getKeyBytes(byte[] unencryptedBytes) throws SerializationException {
+		return Arrays.copyOfRange(unencryptedBytes, HEADER_LENGTH, HEADER_LENGTH + getKeyLength(unencryptedBytes));
+	}
+
+	public static byte[] getValueBytes(byte[] unencryptedBytes) throws SerializationException {
+		return Arrays.copyOfRange(unencryptedBytes, HEADER_LENGTH + getKeyLength(unencryptedBytes), unencryptedBytes.length);
+	}
+
+	private static int getKeyLength(byte[] unencryptedBytes) throws SerializationException {
+		if (!isKeyedRecord(unencryptedBytes) || unencryptedBytes.length < HEADER_LENGTH) {
+			throw new SerializationException("Record is not in the keyed record format");
+		}
+		int keyLength = ByteBuffer.wrap(unencryptedBytes, 1, 4).getInt();
+		if (keyLength <= 0 || keyLength >= unencryptedBytes.length - HEADER_LENGTH) {
+			throw new SerializationException("Keyed record has an invalid key length of " + keyLength + " in a record of " + unencryptedBytes.length + " bytes");
+		}
+		return keyLength;
+	}
+}
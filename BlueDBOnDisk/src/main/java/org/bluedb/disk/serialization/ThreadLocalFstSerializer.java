@@ -70,6 +70,16 @@ public class ThreadLocalFstSerializer extends ThreadLocal<DefaultCoder> implemen
 		return serializeValidObject(o);
 	}
 
+	@Override
+	public byte[] serializeObjectToByteArrayWithoutRoundTrip(Object o) throws SerializationException {
+		validateObjectBeforeSerializing(o);
+		try {
+			return get().toByteArray(o);
+		} catch(Throwable t) {
+			throw new SerializationException("Failed to serialize object", t);
+		}
+	}
+
 	protected byte[] serializeValidObject(Object o) throws SerializationException {
 		Throwable failureCause = null;
 		int retryCount = 0;
@@ -107,13 +117,22 @@ public class ThreadLocalFstSerializer extends ThreadLocal<DefaultCoder> implemen
 	
 	@Override
 	public Object deserializeObjectFromByteArray(byte[] bytes) throws SerializationException {
+		return deserializeObjectFromByteArray(bytes, true);
+	}
+
+	@Override
+	public Object deserializeObjectFromByteArrayWithoutValidation(byte[] bytes) throws SerializationException {
+		return deserializeObjectFromByteArray(bytes, false);
+	}
+
+	private Object deserializeObjectFromByteArray(byte[] bytes, boolean shouldValidate) throws SerializationException {
 		Throwable failureCause = null;
 		
 		int retryCount = 0;
 		while(retryCount < MAX_ATTEMPTS) {
 			try {
 				Object obj = toObject(bytes);
-				if(configurationService.shouldValidateObjects()) {
+				if(shouldValidate && configurationService.shouldValidateObjects()) {
 					ObjectValidation.validateFieldValueTypesForObject(obj);
 				}
 				return obj;
@@ -136,9 +155,29 @@ public class ThreadLocalFstSerializer extends ThreadLocal<DefaultCoder> implemen
 		}
 	}
 
+	/*
+	 * The bytes of a clone are never saved, so they aren't deserialized an extra time to validate them the way that
+	 * serializeObjectToByteArray does. Bytes that can't be deserialized into a valid object are retried the same way.
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Serializable> T clone(T object) throws SerializationException {
-		return (T) deserializeObjectFromByteArray(serializeObjectToByteArray(object));
+		validateObjectBeforeSerializing(object);
+		Throwable failureCause = null;
+		int retryCount = 0;
+		while(retryCount < MAX_ATTEMPTS) {
+			try {
+				Object clone = toObject(get().toByteArray(object));
+				if(configurationService.shouldValidateObjects()) {
+					ObjectValidation.validateFieldValueTypesForObject(clone);
+				}
+				return (T) clone;
+			} catch(Throwable t) {
+				failureCause = t;
+				retryCount++;
+			}
+		}
+		
+		throw new SerializationException("Failed to clone object since it keeps producing bytes that cannot be deserialized properly", failureCause);
 	}
 }
@@ -0,0 +1,91 @@
+package org.bluedb.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.bluedb.disk.TestValue;
+import org.junit.Test;
+
+public class AggregatorsTest {
+
+	private final TestValue joe = new TestValue("Joe", 3);
+	private final TestValue bob = new TestValue("Bob", 5);
+	private final TestValue sue = new TestValue("Sue", 3);
+	private final TestValue tim = new TestValue("Tim", 1);
+
+	@Test
+	public void test_count() {
+		Aggregator<TestValue, Long> count = Aggregators.count();
+		assertFalse(count.needsValues());
+		assertEquals(Long.valueOf(0), count.createAccumulator());
+		assertEquals(Long.valueOf(2), aggregate(count, joe, null));
+		assertEquals(Long.valueOf(4), aggregateInTwoParts(count));
+	}
+
+	@Test
+	public void test_sum() {
+		Aggregator<TestValue, Long> sum = Aggregators.sum(TestValue::getCupcakes);
+		assertTrue(sum.needsValues());
+		assertEquals(Long.valueOf(0), sum.createAccumulator());
+		assertEquals(Long.valueOf(12), aggregateInTwoParts(sum));
+
+		Aggregator<TestValue, Double> sumDouble = Aggregators.sumDouble(v -> v.getCupcakes() / 2.0);
+		assertEquals(Double.valueOf(0), sumDouble.createAccumulator());
+		assertEquals(6.0, aggregateInTwoParts(sumDouble), 0.0001);
+	}
+
+	@Test
+	public void test_min() {
+		Aggregator<TestValue, Optional<TestValue>> min = Aggregators.min(Comparator.comparing(TestValue::getCupcakes));
+		assertEquals(Optional.empty(), min.createAccumulator());
+		assertSame(tim, aggregateInTwoParts(min).get());
+		assertSame(joe, aggregate(min, joe, sue).get());  // ties keep the first
+		assertSame(joe, min.combine(Optional.of(joe), Optional.of(sue)).get());
+		assertSame(joe, min.combine(Optional.of(joe), Optional.empty()).get());
+		assertSame(joe, min.combine(Optional.empty(), Optional.of(joe)).get());
+	}
+
+	@Test
+	public void test_max() {
+		Aggregator<TestValue, Optional<TestValue>> max = Aggregators.max(Comparator.comparing(TestValue::getCupcakes));
+		assertEquals(Optional.empty(), max.createAccumulator());
+		assertSame(bob, aggregateInTwoParts(max).get());
+		assertSame(joe, aggregate(max, joe, sue).get());  // ties keep the first
+	}
+
+	@Test
+	public void test_groupBy() {
+		Aggregator<TestValue, Map<Integer, Long>> countByCupcakes = Aggregators.groupBy(TestValue::getCupcakes, Aggregators.count());
+		assertEquals(new HashMap<>(), countByCupcakes.createAccumulator());
+		Map<Integer, Long> expected = new HashMap<>();
+		expected.put(1, 1L);
+		expected.put(3, 2L);
+		expected.put(5, 1L);
+		assertEquals(expected, aggregateInTwoParts(countByCupcakes));
+
+		Aggregator<TestValue, Map<Integer, Map<String, Long>>> nested = Aggregators.groupBy(TestValue::getCupcakes, Aggregators.groupBy(TestValue::getName, Aggregators.count()));
+		Map<Integer, Map<String, Long>> nestedResult = aggregateInTwoParts(nested);
+		assertEquals(Long.valueOf(1), nestedResult.get(3).get("Joe"));
+		assertEquals(Long.valueOf(1), nestedResult.get(3).get("Sue"));
+		assertEquals(2, nestedResult.get(3).size());
+	}
+
+	private static <A> A aggregate(Aggregator<TestValue, A> aggregator, TestValue... values) {
+		A accumulator = aggregator.createAccumulator();
+		for (TestValue value : values) {
+			accumulator = aggregator.accumulate(accumulator, value);
+		}
+		return accumulator;
+	}
+
+	private <A> A aggregateInTwoParts(Aggregator<TestValue, A> aggregator) {
+		return aggregator.combine(aggregate(aggregator, joe, bob), aggregate(aggregator, sue, tim));
+	}
+}
@@ -2,6 +2,7 @@ package org.bluedb.disk;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
@@ -13,6 +14,12 @@ import java.nio.file.Path;
 import org.bluedb.disk.config.ConfigurationService;
 import org.bluedb.disk.encryption.EncryptionService;
 import org.bluedb.disk.encryption.EncryptionUtils;
+import org.bluedb.disk.file.ChunkCache;
+import org.bluedb.disk.file.DurabilityLevel;
+import org.bluedb.disk.file.FileSyncer;
+import org.bluedb.disk.file.IntegrityPolicy;
+import org.bluedb.disk.file.SegmentedLruChunkCacheEvictionPolicy;
+import org.bluedb.disk.segment.ChunkDeltaPolicy;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -127,4 +134,200 @@ public class BlueDbOnDiskBuilderTest {
 		assertTrue(db.getConfigurationService().shouldValidateObjects());
 	}
 
+	@Test
+	public void test_withChunkDeltaWrites() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(ChunkDeltaPolicy.DISABLED, db.getChunkDeltaPolicy());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withChunkDeltaWrites(true)
+				.build();
+		assertEquals(ChunkDeltaPolicy.DEFAULT, db.getChunkDeltaPolicy());
+	}
+
+	@Test
+	public void test_withWriteAheadLog() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertFalse(db.isWriteAheadLogEnabled());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withWriteAheadLog(true)
+				.build();
+		assertTrue(db.isWriteAheadLogEnabled());
+	}
+
+	@Test
+	public void test_withDurability() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(DurabilityLevel.NONE, db.getFileSyncer().getDurabilityLevel());
+		assertEquals(FileSyncer.DEFAULT_GROUP_FSYNC_WINDOW_MILLIS, db.getFileSyncer().getGroupFsyncWindowMillis());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withDurability(DurabilityLevel.GROUP_FSYNC)
+				.withGroupFsyncWindow(20)
+				.build();
+		assertEquals(DurabilityLevel.GROUP_FSYNC, db.getFileSyncer().getDurabilityLevel());
+		assertEquals(20, db.getFileSyncer().getGroupFsyncWindowMillis());
+	}
+
+	@Test
+	public void test_withDurability_invalidArgumentsThrowExceptions() {
+		try {
+			new BlueDbOnDiskBuilder().withDurability(null);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+		try {
+			new BlueDbOnDiskBuilder().withGroupFsyncWindow(-1);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withWriteStripes() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(1, db.getWriteStripeCount());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withWriteStripes(8)
+				.build();
+		assertEquals(8, db.getWriteStripeCount());
+
+		try {
+			new BlueDbOnDiskBuilder().withWriteStripes(0);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withMaxAsyncWritesInFlight() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(0, db.getMaxAsyncWritesInFlight());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withMaxAsyncWritesInFlight(100)
+				.build();
+		assertEquals(100, db.getMaxAsyncWritesInFlight());
+
+		try {
+			new BlueDbOnDiskBuilder().withMaxAsyncWritesInFlight(-1);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withRecordChecksums() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(IntegrityPolicy.ROUND_TRIP, db.getIntegrityPolicy());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withRecordChecksums(true)
+				.build();
+		assertEquals(IntegrityPolicy.CHECKSUMS, db.getIntegrityPolicy());
+
+		IntegrityPolicy integrityPolicy = new IntegrityPolicy(true, 8);
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withIntegrityPolicy(integrityPolicy)
+				.build();
+		assertEquals(integrityPolicy, db.getIntegrityPolicy());
+
+		try {
+			new BlueDbOnDiskBuilder().withIntegrityPolicy(null);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withChunkDeltaPolicy_nullThrowsException() {
+		try {
+			new BlueDbOnDiskBuilder().withChunkDeltaPolicy(null);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withChunkCache() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertNull(db.getChunkCache());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withChunkCache(1_000_000)
+				.build();
+		ChunkCache chunkCache = db.getChunkCache();
+		assertEquals(1_000_000, chunkCache.getMaxBytes());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withChunkCache(1_000_000, new SegmentedLruChunkCacheEvictionPolicy())
+				.build();
+		assertEquals(1_000_000, db.getChunkCache().getMaxBytes());
+
+		try {
+			new BlueDbOnDiskBuilder().withChunkCache(0);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+		try {
+			new BlueDbOnDiskBuilder().withChunkCache(1_000_000, null);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_withScanParallelism() {
+		ReadWriteDbOnDisk db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.build();
+		assertEquals(1, db.getScanParallelism());
+
+		db = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(tempDir.resolve("test-collection"))
+				.withScanParallelism(4)
+				.build();
+		assertEquals(4, db.getScanParallelism());
+
+		try {
+			new BlueDbOnDiskBuilder().withScanParallelism(0);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
 }
@@ -45,6 +45,30 @@ public class CollectionOnDiskBuilderTest extends BlueDbDiskTestBase {
 		assertEquals(BlueCollectionVersion.VERSION_2, version2Collection.getVersion());
 	}
 
+	@Test
+	public void test_withEntityCache() throws BlueDbException {
+		ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) db.getCollectionBuilder("cached", TimeKey.class, TestValue.class)
+				.build();
+		assertFalse(collection.getEntityCache().isEnabled());
+
+		collection = (ReadWriteCollectionOnDisk<TestValue>) db.getCollectionBuilder("cached", TimeKey.class, TestValue.class)
+				.withEntityCache(1_000_000)
+				.build();
+		assertEquals(1_000_000, collection.getEntityCache().getMaxBytes());
+
+		ReadWriteCollectionOnDisk<TestValue> timeCollection = (ReadWriteCollectionOnDisk<TestValue>) db.getTimeCollectionBuilder("cached-time", TimeKey.class, TestValue.class)
+				.withEntityCache(5000)
+				.build();
+		assertEquals(5000, timeCollection.getEntityCache().getMaxBytes());
+
+		try {
+			db.getCollectionBuilder("cached", TimeKey.class, TestValue.class).withEntityCache(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
     @Test
     public void test_differentSegmentSizes() throws Exception {
 		ReadWriteCollectionOnDisk<TestValue> hourCollection = (ReadWriteCollectionOnDisk<TestValue>) db.getCollectionBuilder("hours", TimeKey.class, TestValue.class)
@@ -10,21 +10,30 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.bluedb.TestUtils;
+import org.bluedb.api.Aggregators;
 import org.bluedb.api.BlueCollection;
 import org.bluedb.api.BlueCollectionVersion;
 import org.bluedb.api.BlueQuery;
+import org.bluedb.api.BlueQueryPage;
+import org.bluedb.api.CloseableIterator;
 import org.bluedb.api.Updater;
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.api.keys.HashGroupedKey;
+import org.bluedb.api.keys.LongKey;
 import org.bluedb.api.keys.StringKey;
 import org.bluedb.api.keys.TimeFrameKey;
 import org.bluedb.api.keys.TimeKey;
@@ -636,6 +645,345 @@ public class ReadableDbOnDiskTest extends BlueDbDiskTestBase {
         TestUtils.assertThrowable(RuntimeException.class, useIteratorAfterAutoClosedTask.getError());
 	}
 	
+	@Test
+	public void test_getKeys() throws Exception {
+        BlueKey keyJoe = insertAtTime(1, new TestValue("Joe"));
+        BlueKey keyBob = insertAtTime(2, new TestValue("Bob"));
+        BlueKey keySue = insertAtTime(3, new TestValue("Sue"));
+
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().getKeys()) {
+        	assertEquals(Arrays.asList(keyJoe, keyBob, keySue), toList(iter));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().whereKeyIsIn(new HashSet<>(Arrays.asList(keyJoe, keySue))).getKeys()) {
+        	assertEquals(Arrays.asList(keyJoe, keySue), toList(iter));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().where((v) -> v.getName().equals("Bob")).getKeys()) {
+        	assertEquals(Arrays.asList(keyBob), toList(iter));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().afterTime(1).beforeOrAtTime(2).getKeys()) {
+        	assertEquals(Arrays.asList(keyBob), toList(iter));
+        }
+	}
+	
+	@Test
+	public void test_limitAndOffset() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<TestValue> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+        	TestValue value = new TestValue("Value" + i, i);
+        	insertAtTime(segmentSize * i + 1, value);
+        	expected.add(value);
+        }
+
+        assertEquals(expected.subList(0, 3), getTimeCollection().query().limit(3).getList());
+        assertEquals(expected.subList(8, 10), getTimeCollection().query().offset(8).getList());
+        assertEquals(expected.subList(2, 5), getTimeCollection().query().offset(2).limit(3).getList());
+        assertEquals(Arrays.asList(), getTimeCollection().query().limit(0).getList());
+        assertEquals(Arrays.asList(expected.get(2), expected.get(4)), getTimeCollection().query().where((v) -> v.getCupcakes() % 2 == 0).offset(1).limit(2).getList());
+        assertEquals(expected.subList(4, 6), getTimeCollection().query().afterTime(segmentSize * 3).limit(2).offset(1).getList());
+        assertEquals(expected.get(3), getTimeCollection().query().offset(3).getFirst().get());
+        assertEquals(4, getTimeCollection().query().limit(4).count());
+        assertEquals(3, getTimeCollection().query().offset(7).count());
+        try (Stream<TestValue> stream = getTimeCollection().query().offset(1).limit(2).stream()) {
+        	assertEquals(expected.subList(1, 3), stream.collect(Collectors.toList()));
+        }
+        try (Stream<TestValue> stream = getTimeCollection().query().limit(5).parallelStream()) {
+        	assertEquals(expected.subList(0, 5), stream.collect(Collectors.toList()));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().limit(2).getKeys()) {
+        	assertEquals(2, toList(iter).size());
+        }
+
+        try {
+        	getTimeCollection().query().limit(-1);
+        	fail();
+        } catch (IllegalArgumentException e) {}
+        try {
+        	getTimeCollection().query().offset(-1);
+        	fail();
+        } catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void test_getPage() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<TestValue> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+        	TestValue value = new TestValue("Value" + i, i);
+        	insertAtTime(segmentSize * (i / 3) + i, value);
+        	expected.add(value);
+        }
+
+        List<TestValue> results = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+        	BlueQueryPage<TestValue> page = getTimeCollection().query().startAfter(cursor).limit(3).getPage();
+        	results.addAll(page.getValues());
+        	pageSizes.add(page.getValues().size());
+        	cursor = page.getNextPageCursor();
+        } while (cursor != null);
+        assertEquals(expected, results);
+        assertEquals(Arrays.asList(3, 3, 3, 1), pageSizes);
+
+        BlueQueryPage<TestValue> page = getTimeCollection().query().limit(5).getPage();
+        assertTrue(page.hasNextPage());
+        page = getTimeCollection().query().startAfter(page.getNextPageCursor()).limit(5).getPage();
+        assertEquals(expected.subList(5, 10), page.getValues());
+        assertFalse(page.hasNextPage());  // there isn't an empty page at the end
+
+        page = getTimeCollection().query().where((v) -> v.getCupcakes() % 2 == 1).afterOrAtTime(2).limit(2).getPage();
+        assertEquals(Arrays.asList(expected.get(3), expected.get(5)), page.getValues());
+        page = getTimeCollection().query().where((v) -> v.getCupcakes() % 2 == 1).afterOrAtTime(2).startAfter(page.getNextPageCursor()).offset(1).limit(2).getPage();
+        assertEquals(Arrays.asList(expected.get(9)), page.getValues());
+        assertFalse(page.hasNextPage());
+
+        page = getTimeCollection().query().getPage();
+        assertEquals(expected, page.getValues());
+        assertNull(page.getNextPageCursor());
+	}
+
+	@Test
+	public void test_getPage_collectionChangesBetweenPages() throws Exception {
+        List<BlueKey> keys = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+        	keys.add(insertAtTime(i, new TestValue("Value" + i, i)));
+        }
+
+        BlueQueryPage<TestValue> page = getTimeCollection().query().limit(2).getPage();
+        getTimeCollection().delete(keys.get(1));  // the last key on the page
+        getTimeCollection().delete(keys.get(2));
+        insertAtTime(0, new TestValue("Inserted before the cursor"));
+        page = getTimeCollection().query().startAfter(page.getNextPageCursor()).limit(2).getPage();
+        assertEquals(Arrays.asList(new TestValue("Value3", 3), new TestValue("Value4", 4)), page.getValues());
+	}
+
+	@Test
+	public void test_startAfter_invalidCursor() throws Exception {
+        insertAtTime(1, new TestValue("Joe"));
+        insertAtTime(2, new TestValue("Bob"));
+        assertEquals(2, getTimeCollection().query().startAfter(null).getList().size());
+        try {
+        	getTimeCollection().query().startAfter("not a cursor");
+        	fail();
+        } catch (IllegalArgumentException e) {}
+
+        getLongCollection().insert(new LongKey(1), new TestValue("one"));
+        getLongCollection().insert(new LongKey(2), new TestValue("two"));
+        String longCursor = getLongCollection().query().limit(1).getPage().getNextPageCursor();
+        assertEquals(Arrays.asList(new TestValue("two")), getLongCollection().query().startAfter(longCursor).getList());
+        try {
+        	getTimeCollection().query().startAfter(longCursor);
+        	fail();
+        } catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void test_delete_withLimit() throws Exception {
+        List<TestValue> values = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+        	TestValue value = new TestValue("Value" + i, i);
+        	insertAtTime(i, value);
+        	values.add(value);
+        }
+        getTimeCollection().query().offset(1).limit(2).delete();
+        assertEquals(Arrays.asList(values.get(0), values.get(3), values.get(4)), getTimeCollection().query().getList());
+	}
+
+	@Test
+	public void test_descending() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<BlueKey> keys = new ArrayList<>();
+        List<TestValue> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+        	TestValue value = new TestValue("Value" + i, i);
+        	keys.add(insertAtTime(segmentSize * (i / 3) + i, value));
+        	expected.add(value);
+        }
+        List<TestValue> reversed = new ArrayList<>(expected);
+        Collections.reverse(reversed);
+
+        assertEquals(reversed, getTimeCollection().query().descending().getList());
+        assertEquals(reversed.subList(0, 3), getTimeCollection().query().descending().limit(3).getList());
+        assertEquals(reversed.subList(2, 4), getTimeCollection().query().descending().offset(2).limit(2).getList());
+        assertEquals(expected.get(9), getTimeCollection().query().descending().getFirst().get());
+        assertEquals(Arrays.asList(expected.get(5), expected.get(4), expected.get(3)), getTimeCollection().query().afterOrAtTime(segmentSize).beforeTime(segmentSize * 2).descending().getList());
+        assertEquals(Arrays.asList(expected.get(8), expected.get(6)), getTimeCollection().query().where((v) -> v.getCupcakes() % 2 == 0).afterTime(segmentSize).descending().limit(2).getList());
+        assertEquals(4, getTimeCollection().query().descending().offset(6).count());
+        assertEquals(keys.get(9), getTimeCollection().getLastKey());
+        assertEquals(expected.get(9), getTimeCollection().getLastValue());
+        try (Stream<TestValue> stream = getTimeCollection().query().descending().limit(4).stream()) {
+        	assertEquals(reversed.subList(0, 4), stream.collect(Collectors.toList()));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().descending().getKeys()) {
+        	List<BlueKey> reversedKeys = new ArrayList<>(keys);
+        	Collections.reverse(reversedKeys);
+        	assertEquals(reversedKeys, toList(iter));
+        }
+
+        List<TestValue> results = new ArrayList<>();
+        String cursor = null;
+        do {
+        	BlueQueryPage<TestValue> page = getTimeCollection().query().descending().startAfter(cursor).limit(3).getPage();
+        	results.addAll(page.getValues());
+        	cursor = page.getNextPageCursor();
+        } while (cursor != null);
+        assertEquals(reversed, results);
+
+        getTimeCollection().query().descending().offset(1).limit(2).update((v) -> v.addCupcake());
+        assertEquals(9, getTimeCollection().get(keys.get(8)).getCupcakes());
+        assertEquals(8, getTimeCollection().get(keys.get(7)).getCupcakes());
+        assertEquals(9, getTimeCollection().get(keys.get(9)).getCupcakes());
+        assertEquals(6, getTimeCollection().get(keys.get(6)).getCupcakes());
+
+        getTimeCollection().query().descending().limit(2).delete();
+        List<String> expectedNames = expected.subList(0, 8).stream().map(TestValue::getName).collect(Collectors.toList());
+        assertEquals(expectedNames, getTimeCollection().query().getList().stream().map(TestValue::getName).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void test_orderBy() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<BlueKey> keys = new ArrayList<>();
+        List<TestValue> values = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+        	TestValue value = new TestValue("Value" + i, (i * 7) % 10);  // cupcakes 0, 7, 4, 1, 8, 5, 2, 9, 6, 3
+        	keys.add(insertAtTime(segmentSize * (i / 3) + i, value));
+        	values.add(value);
+        }
+        Comparator<TestValue> byCupcakes = Comparator.comparing(TestValue::getCupcakes);
+        List<TestValue> sorted = new ArrayList<>(values);
+        sorted.sort(byCupcakes);
+        List<TestValue> reversed = new ArrayList<>(sorted);
+        Collections.reverse(reversed);
+
+        assertEquals(sorted, getTimeCollection().query().orderBy(byCupcakes).getList());
+        assertEquals(sorted.subList(0, 3), getTimeCollection().query().orderBy(byCupcakes).limit(3).getList());
+        assertEquals(sorted.subList(2, 5), getTimeCollection().query().orderBy(byCupcakes).offset(2).limit(3).getList());
+        assertEquals(reversed.subList(0, 2), getTimeCollection().query().orderBy(byCupcakes).descending().limit(2).getList());
+        assertEquals(sorted.get(9), getTimeCollection().query().orderBy(byCupcakes).descending().getFirst().get());
+        assertEquals(Arrays.asList(values.get(3), values.get(6), values.get(5), values.get(8), values.get(4), values.get(7)), getTimeCollection().query().afterOrAtTime(segmentSize).beforeTime(segmentSize * 3).orderBy(byCupcakes).getList());
+        assertEquals(3, getTimeCollection().query().orderBy(byCupcakes).offset(7).count());
+        assertEquals(Long.valueOf(0 + 1 + 2), getTimeCollection().query().orderBy(byCupcakes).limit(3).aggregate(Aggregators.sum(TestValue::getCupcakes)));
+        try (Stream<TestValue> stream = getTimeCollection().query().orderBy(byCupcakes).limit(4).stream()) {
+        	assertEquals(sorted.subList(0, 4), stream.collect(Collectors.toList()));
+        }
+        try (CloseableIterator<BlueKey> iter = getTimeCollection().query().orderBy(byCupcakes).limit(2).getKeys()) {
+        	assertEquals(Arrays.asList(keys.get(0), keys.get(3)), toList(iter));
+        }
+        try (CloseableIterator<TestValue> iter = getTimeCollection().query().orderBy(byCupcakes).offset(8).getIterator()) {
+        	assertEquals(sorted.subList(8, 10), toList(iter));
+        }
+
+        Comparator<TestValue> byCupcakesOverFive = Comparator.comparing(value -> value.getCupcakes() > 5);
+        List<TestValue> tiesInKeyOrder = Arrays.asList(values.get(0), values.get(2), values.get(3), values.get(5), values.get(6), values.get(9), values.get(1), values.get(4), values.get(7), values.get(8));
+        assertEquals(tiesInKeyOrder, getTimeCollection().query().orderBy(byCupcakesOverFive).getList());
+
+        try {
+        	getTimeCollection().query().orderBy(byCupcakes).limit(2).getPage();
+        	fail();
+        } catch (IllegalStateException e) {}
+        try {
+        	String cursor = getTimeCollection().query().limit(2).getPage().getNextPageCursor();
+        	getTimeCollection().query().orderBy(byCupcakes).startAfter(cursor).getList();
+        	fail();
+        } catch (IllegalStateException e) {}
+
+        getTimeCollection().query().orderBy(byCupcakes).descending().limit(2).update((v) -> v.addCupcake());
+        assertEquals(10, getTimeCollection().get(keys.get(7)).getCupcakes());
+        assertEquals(9, getTimeCollection().get(keys.get(4)).getCupcakes());
+        assertEquals(7, getTimeCollection().get(keys.get(1)).getCupcakes());
+
+        getTimeCollection().query().orderBy(byCupcakes).limit(3).delete();
+        assertNull(getTimeCollection().get(keys.get(0)));
+        assertNull(getTimeCollection().get(keys.get(3)));
+        assertNull(getTimeCollection().get(keys.get(6)));
+        assertEquals(7, getTimeCollection().query().count());
+	}
+	
+	@Test
+	public void test_stream() throws Exception {
+        TestValue valueJoe = new TestValue("Joe");
+        TestValue valueBob = new TestValue("Bob");
+        insertAtTime(1, valueJoe);
+        insertAtTime(2, valueBob);
+
+        try (Stream<TestValue> stream = getTimeCollection().query().stream()) {
+        	assertFalse(stream.isParallel());
+        	assertEquals(Arrays.asList(valueJoe, valueBob), stream.collect(Collectors.toList()));
+        }
+        try (Stream<TestValue> stream = getTimeCollection().query().where((v) -> v.getName().equals("Bob")).stream()) {
+        	assertEquals(Arrays.asList(valueBob), stream.collect(Collectors.toList()));
+        }
+
+        try (Stream<TestValue> stream = getTimeCollection().query().stream()) {
+        	assertEquals(valueJoe, stream.findFirst().get());
+        }
+        getTimeCollection().insert(createKey(3, 1), new TestValue("Sue"));  // would block if the short-circuited stream still held its lock
+        assertEquals(3, getTimeCollection().query().getList().size());
+	}
+
+	@Test
+	public void test_parallelStream() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<TestValue> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+        	TestValue value = new TestValue("Value" + i, i);
+        	insertAtTime(segmentSize * i + 1, value);
+        	expected.add(value);
+        }
+
+        try (Stream<TestValue> stream = getTimeCollection().query().parallelStream()) {
+        	assertTrue(stream.isParallel());
+        	assertEquals(expected, stream.collect(Collectors.toList()));
+        }
+        try (Stream<TestValue> stream = getTimeCollection().query().where((v) -> v.getCupcakes() % 2 == 0).parallelStream()) {
+        	assertEquals(20, stream.mapToInt(TestValue::getCupcakes).sum());
+        }
+        try (Stream<TestValue> stream = getTimeCollection().query().afterTime(segmentSize * 3).beforeTime(segmentSize * 7).parallelStream()) {
+        	assertEquals(expected.subList(3, 7), stream.collect(Collectors.toList()));
+        }
+        try (Stream<TestValue> stream = getTimeCollection().query().parallelStream()) {
+        	assertTrue(stream.anyMatch(v -> v.getCupcakes() == 5));
+        }
+        getTimeCollection().insert(createKey(11, 1), new TestValue("Sue"));  // would block if the short-circuited stream still held its lock
+        assertEquals(11, getTimeCollection().query().count());
+	}
+
+	@Test
+	public void test_aggregate() throws Exception {
+        long segmentSize = getTimeSegmentManager().getSegmentSize();
+        List<TestValue> values = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+        	TestValue value = new TestValue("Value" + i, i % 4);
+        	insertAtTime(segmentSize * (i / 2) + i, value);
+        	values.add(value);
+        }
+        TestValue spanning = new TestValue("Spanning", 7);
+        insertAtTimeFrame(segmentSize - 1, segmentSize * 3 + 5, spanning);
+        values.add(spanning);
+
+        for (int scanParallelism : Arrays.asList(1, 3)) {
+        	getTimeSegmentManager().setParallelScans(db.getSharedExecutor(), scanParallelism);
+
+        	assertEquals(Long.valueOf(13), getTimeCollection().query().aggregate(Aggregators.count()));
+        	assertEquals(13, getTimeCollection().query().count());
+        	assertEquals(Long.valueOf(values.stream().mapToInt(TestValue::getCupcakes).sum()), getTimeCollection().query().aggregate(Aggregators.sum(TestValue::getCupcakes)));
+        	assertEquals(spanning, getTimeCollection().query().aggregate(Aggregators.max(Comparator.comparing(TestValue::getCupcakes))).get());
+        	assertEquals(values.get(0), getTimeCollection().query().aggregate(Aggregators.min(Comparator.comparing(TestValue::getCupcakes))).get());
+        	Map<Integer, Long> expectedGroups = values.stream().collect(Collectors.groupingBy(TestValue::getCupcakes, Collectors.counting()));
+        	assertEquals(expectedGroups, getTimeCollection().query().aggregate(Aggregators.groupBy(TestValue::getCupcakes, Aggregators.count())));
+
+        	BlueQuery<TestValue> evenCupcakes = getTimeCollection().query().where(v -> v.getCupcakes() % 2 == 0);
+        	assertEquals(Long.valueOf(6), evenCupcakes.aggregate(Aggregators.count()));
+        	assertEquals(getTimeCollection().query().afterTime(segmentSize * 2).getList().size(), getTimeCollection().query().afterTime(segmentSize * 2).count());
+        	assertEquals(getTimeCollection().query().afterTime(segmentSize * 2).beforeTime(segmentSize * 4).byStartTime().getList().size(), getTimeCollection().query().afterTime(segmentSize * 2).beforeTime(segmentSize * 4).byStartTime().count());
+        	assertEquals(getTimeCollection().query().beforeOrAtTime(segmentSize * 3 + 4).getList().size(), getTimeCollection().query().beforeOrAtTime(segmentSize * 3 + 4).count());
+        	assertEquals(Optional.empty(), getTimeCollection().query().where(v -> false).aggregate(Aggregators.max(Comparator.comparing(TestValue::getCupcakes))));
+        }
+        getTimeSegmentManager().setParallelScans(null, 1);
+	}
+
 	@Test
 	public void test_query_update() throws Exception {
         BlueKey keyJoe   = insertAtTimeFrame(1, 1, new TestValue("Joe", 0));
@@ -4,13 +4,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.bluedb.api.Aggregators;
 import org.bluedb.api.BlueCollectionVersion;
+import org.bluedb.api.Condition;
 import org.bluedb.api.keys.BlueKey;
 import org.bluedb.disk.BlueDbDiskTestBase;
 import org.bluedb.disk.StreamUtils;
@@ -153,6 +157,195 @@ public class CollectionEntityIteratorTest extends BlueDbDiskTestBase {
         assertEquals(2, iteratorContents.size());
 	}
 
+	@Test
+	public void test_setKeysOnly() throws Exception {
+		BlueKey key1 = createKey(1, 1);
+		BlueKey key2 = createKey(2, 2);
+		getTimeCollection().insert(key1, createValue("Anna"));
+		getTimeCollection().insert(key2, createValue("Bob"));
+
+		List<Condition<BlueKey>> keyConditions = Arrays.asList(key -> key.equals(key2));
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(0, 2), false, new ArrayList<>(), new ArrayList<>(), keyConditions, Optional.empty());
+		iterator.setKeysOnly(true);
+		List<BlueEntity<TestValue>> iteratorContents = toList(iterator);
+		iterator.close();
+		assertEquals(Arrays.asList(new BlueEntity<>(key2, null)), iteratorContents);
+
+		List<Condition<TestValue>> objectConditions = Arrays.asList(value -> value.getName().equals("Anna"));
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(0, 2), false, new ArrayList<>(), objectConditions, new ArrayList<>(), Optional.empty());
+		iterator.setKeysOnly(true);
+		iteratorContents = toList(iterator);
+		iterator.close();
+		assertEquals(1, iteratorContents.size());
+		assertEquals(key1, iteratorContents.get(0).getKey());
+		assertEquals(createValue("Anna"), iteratorContents.get(0).getValue());  // the value had to be read to test it
+	}
+
+	@Test
+	public void test_setStartAfterKey() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		List<BlueKey> keys = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			keys.add(insertAtTime(segmentSize * (i / 2) + i, createValue("Value" + i, i)));
+		}
+
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setStartAfterKey(keys.get(2));
+		assertEquals(keys.subList(3, 6), StreamUtils.stream(toList(iterator)).map(BlueEntity::getKey).collect(Collectors.toList()));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setStartAfterKey(keys.get(5));
+		assertFalse(iterator.hasNext());
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setStartAfterKey(keys.get(3));
+		List<BlueEntity<TestValue>> results = new ArrayList<>();
+		iterator.toSpliterator().forEachRemaining(results::add);
+		assertEquals(keys.subList(4, 6), StreamUtils.stream(results).map(BlueEntity::getKey).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void test_setOffsetAndLimit() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		List<TestValue> values = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			TestValue value = createValue("Value" + i, i);
+			insertAtTime(segmentSize * (i / 2) + i, value);
+			values.add(value);
+		}
+
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setOffset(3);
+		iterator.setLimit(4);
+		assertEquals(values.subList(3, 7), toValueList(iterator));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setOffset(20);
+		assertFalse(iterator.hasNext());
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setLimit(0);
+		assertFalse(iterator.hasNext());
+		iterator.close();
+
+		List<Condition<TestValue>> evenValues = Arrays.asList(value -> value.getCupcakes() % 2 == 0);
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), evenValues, new ArrayList<>(), Optional.empty());
+		iterator.setOffset(1);
+		iterator.setLimit(2);
+		assertEquals(Arrays.asList(values.get(2), values.get(4)), toValueList(iterator));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setLimit(1);
+		assertEquals(values.get(0), iterator.next().getValue());
+		getTimeCollection().insert(createKey(100, 0), createValue("Sue"));  // would block if the iterator still held a lock after its last record
+		assertFalse(iterator.hasNext());
+		iterator.close();
+	}
+
+	@Test
+	public void test_aggregate_withLimit() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		for (int i = 0; i < 8; i++) {
+			insertAtTime(segmentSize * (i / 2) + i, createValue("Value" + i, i));
+		}
+
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			iterator.setOffset(2);
+			iterator.setLimit(3);
+			assertEquals(Long.valueOf(2 + 3 + 4), iterator.aggregate(Aggregators.sum(TestValue::getCupcakes)));
+		}
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			iterator.setOffset(6);
+			iterator.setLimit(5);
+			assertEquals(Long.valueOf(2), iterator.aggregate(Aggregators.count()));
+		}
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			iterator.setLimit(5);
+			iterator.toSpliterator();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void test_setDescending() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		List<BlueKey> keys = new ArrayList<>();
+		List<TestValue> values = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			TestValue value = createValue("Value" + i, i);
+			keys.add(insertAtTime(segmentSize * (i / 2) + i, value));
+			values.add(value);
+		}
+		List<TestValue> reversedValues = new ArrayList<>(values);
+		Collections.reverse(reversedValues);
+
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setDescending(true);
+		assertEquals(reversedValues, toValueList(iterator));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(segmentSize, segmentSize * 3 - 1), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setDescending(true);
+		iterator.setOffset(1);
+		iterator.setLimit(2);
+		assertEquals(Arrays.asList(values.get(4), values.get(3)), toValueList(iterator));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setDescending(true);
+		iterator.setStartAfterKey(keys.get(5));
+		assertEquals(reversedValues.subList(3, 8), toValueList(iterator));
+		iterator.close();
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setDescending(true);
+		List<TestValue> results = new ArrayList<>();
+		iterator.toSpliterator().forEachRemaining(entity -> results.add(entity.getValue()));
+		assertEquals(reversedValues, results);
+
+		try (CollectionEntityIterator<TestValue> countingIterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			countingIterator.setDescending(true);
+			countingIterator.setStartAfterKey(keys.get(2));
+			assertEquals(Long.valueOf(2), countingIterator.aggregate(Aggregators.count()));
+		}
+
+		iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), Range.createMaxRange(), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		iterator.setStartAfterKey(keys.get(5));
+		try {
+			iterator.setDescending(true);
+			fail();
+		} catch (IllegalStateException e) {}
+		iterator.close();
+	}
+
+	@Test
+	public void test_setDescending_timeFrames() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		TestValue valueInFirstSegment = new TestValue("first");
+		TestValue valueInBothSegments = new TestValue("both");
+		TestValue valueInSecondSegment = new TestValue("second");
+		insertAtTimeFrame(0, 1, valueInFirstSegment);
+		BlueKey keyInBothSegments = insertAtTimeFrame(1, segmentSize, valueInBothSegments);
+		insertAtTimeFrame(segmentSize + 1, segmentSize + 1, valueInSecondSegment);
+		insertAtTimeFrame(segmentSize * 2, segmentSize * 2 + 1, new TestValue("after"));
+
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(0, segmentSize * 2 - 1), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			iterator.setDescending(true);
+			assertEquals(Arrays.asList(valueInSecondSegment, valueInBothSegments, valueInFirstSegment), toValueList(iterator));
+		}
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(0, segmentSize * 2 - 1), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			iterator.setDescending(true);
+			iterator.setStartAfterKey(keyInBothSegments);
+			assertEquals(Arrays.asList(valueInFirstSegment), toValueList(iterator));
+		}
+	}
+
 	@Test
 	public void test_getNext_multiple_time_frames() {
 		long segmentSize = getTimeCollection().getSegmentManager().getSegmentSize();
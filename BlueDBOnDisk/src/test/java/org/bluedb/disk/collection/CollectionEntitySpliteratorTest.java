@@ -0,0 +1,129 @@
+package org.bluedb.disk.collection;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.segment.Range;
+import org.bluedb.disk.segment.ReadWriteSegment;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.junit.Test;
+
+public class CollectionEntitySpliteratorTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_trySplit() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		for (int i = 0; i < 4; i++) {
+			insertAtTime(segmentSize * i + 1, createValue("Value" + i, i));
+		}
+		List<BlueEntity<TestValue>> expected = iterate(new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+
+		CollectionEntitySpliterator<TestValue> spliterator = createSpliterator(new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+		Spliterator<BlueEntity<TestValue>> firstHalf = spliterator.trySplit();
+		Spliterator<BlueEntity<TestValue>> firstQuarter = firstHalf.trySplit();
+		assertNull(firstQuarter.trySplit());
+		List<BlueEntity<TestValue>> results = new ArrayList<>();
+		firstQuarter.forEachRemaining(results::add);
+		firstHalf.forEachRemaining(results::add);
+		spliterator.forEachRemaining(results::add);
+		assertEquals(expected, results);
+		assertEquals(0, spliterator.estimateSize());
+		assertFalse(spliterator.tryAdvance(results::add));
+		spliterator.close();
+	}
+
+	@Test
+	public void test_trySplit_afterStarted() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(segmentSize + 1, createValue("Sue", 3));
+		insertAtTime(segmentSize * 2 + 1, createValue("Tim", 4));
+
+		CollectionEntitySpliterator<TestValue> spliterator = createSpliterator(new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+		List<BlueEntity<TestValue>> results = new ArrayList<>();
+		assertTrue(spliterator.tryAdvance(results::add));
+		assertNull(spliterator.trySplit());
+		spliterator.forEachRemaining(results::add);
+		assertEquals(iterate(new Range(Long.MIN_VALUE, Long.MAX_VALUE)), results);
+		spliterator.close();
+	}
+
+	@Test
+	public void test_close() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(1, createValue("Bob", 2));
+		insertAtTime(segmentSize + 1, createValue("Sue", 3));
+		insertAtTime(segmentSize + 1, createValue("Tim", 4));
+
+		CollectionEntitySpliterator<TestValue> spliterator = createSpliterator(new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+		Spliterator<BlueEntity<TestValue>> firstHalf = spliterator.trySplit();
+		assertTrue(firstHalf.tryAdvance(e -> {}));
+		assertTrue(spliterator.tryAdvance(e -> {}));
+		assertTrue(getLockManager().isLocked(getChunkPath(1)));
+		assertTrue(getLockManager().isLocked(getChunkPath(segmentSize + 1)));
+
+		spliterator.close();
+		assertFalse(getLockManager().isLocked(getChunkPath(1)));
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize + 1)));
+		assertFalse(firstHalf.tryAdvance(e -> {}));
+		assertFalse(spliterator.tryAdvance(e -> {}));
+	}
+
+	@Test
+	public void test_parallelStream() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		for (int i = 0; i < 8; i++) {
+			insertAtTime(segmentSize * i + 1, createValue("Value" + i, i));
+			insertAtTime(segmentSize * i + 2, createValue("Other" + i, i));
+		}
+		insertAtTimeFrame(segmentSize - 1, segmentSize * 3 + 5, createValue("Spanning", 10));
+
+		CollectionEntitySpliterator<TestValue> spliterator = createSpliterator(new Range(segmentSize, segmentSize * 6));
+		List<BlueEntity<TestValue>> results = StreamSupport.stream(spliterator, true).collect(Collectors.toList());
+		assertEquals(iterate(new Range(segmentSize, segmentSize * 6)), results);
+		spliterator.close();
+	}
+
+	@Test
+	public void test_toSpliterator_afterStarted() throws Exception {
+		insertAtTime(1, createValue("Joe", 1));
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(Long.MIN_VALUE, Long.MAX_VALUE), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		assertTrue(iterator.hasNext());
+		try {
+			iterator.toSpliterator();
+			fail();
+		} catch (IllegalStateException e) {
+			//Should be thrown
+		}
+		iterator.close();
+	}
+
+	private CollectionEntitySpliterator<TestValue> createSpliterator(Range range) {
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), range, false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		CollectionEntitySpliterator<TestValue> spliterator = iterator.toSpliterator();
+		assertFalse(iterator.hasNext());
+		iterator.close();
+		return spliterator;
+	}
+
+	private List<BlueEntity<TestValue>> iterate(Range range) {
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), range, false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			return toEntityList(iterator);
+		}
+	}
+
+	private Path getChunkPath(long groupingNumber) {
+		ReadWriteSegment<TestValue> segment = getSegment(groupingNumber);
+		return Paths.get(segment.getPath().toString(), new Range(groupingNumber, groupingNumber).toUnderscoreDelimitedString());
+	}
+}
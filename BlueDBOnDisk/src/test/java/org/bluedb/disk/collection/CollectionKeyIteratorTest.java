@@ -0,0 +1,87 @@
+package org.bluedb.disk.collection;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.segment.Range;
+import org.bluedb.disk.segment.ReadWriteSegment;
+import org.junit.Test;
+
+public class CollectionKeyIteratorTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_close() throws Exception {
+		BlueKey key = createKey(1, 1);
+		ReadWriteSegment<TestValue> segment = getTimeCollection().getSegmentManager().getFirstSegment(key);
+		Path chunkPath = Paths.get(segment.getPath().toString(), new Range(1, 1).toUnderscoreDelimitedString());
+
+		getTimeCollection().insert(key, createValue("Anna"));
+		CollectionKeyIterator<TestValue> iterator = (CollectionKeyIterator<TestValue>) getTimeCollection().query().afterOrAtTime(1).beforeOrAtTime(2).getKeys();
+		assertFalse(getLockManager().isLocked(chunkPath));
+		iterator.hasNext();  // force it to open the next file
+		assertTrue(getLockManager().isLocked(chunkPath));
+		iterator.close();
+		assertFalse(getLockManager().isLocked(chunkPath));
+
+		try {
+			iterator.hasNext();
+			fail();
+		} catch (Exception e) {}
+	}
+
+	@Test
+	public void test_hasNext() throws Exception {
+		getTimeCollection().insert(createKey(1, 1), createValue("Anna"));
+		getTimeCollection().insert(createKey(2, 2), createValue("Bob"));
+		CollectionKeyIterator<TestValue> iterator = (CollectionKeyIterator<TestValue>) getTimeCollection().query().afterOrAtTime(0).beforeOrAtTime(0).getKeys();
+		assertFalse(iterator.hasNext());
+		iterator.close();
+
+		iterator = (CollectionKeyIterator<TestValue>) getTimeCollection().query().afterOrAtTime(1).beforeOrAtTime(1).getKeys();
+		assertTrue(iterator.hasNext());
+		assertTrue(iterator.hasNext()); // make sure doing it twice doesn't break anything
+		iterator.next();
+		assertFalse(iterator.hasNext());
+		iterator.close();
+	}
+
+	@Test
+	public void test_peek() throws Exception {
+		BlueKey key1 = createKey(1, 1);
+		BlueKey key2 = createKey(2, 2);
+		getTimeCollection().insert(key1, createValue("Anna"));
+		getTimeCollection().insert(key2, createValue("Bob"));
+		CollectionKeyIterator<TestValue> iterator = (CollectionKeyIterator<TestValue>) getTimeCollection().query().afterOrAtTime(0).beforeOrAtTime(0).getKeys();
+		assertNull(iterator.peek());
+		iterator.close();
+
+		iterator = (CollectionKeyIterator<TestValue>) getTimeCollection().query().afterOrAtTime(1).beforeOrAtTime(2).getKeys();
+		assertEquals(key1, iterator.peek());
+		assertEquals(key1, iterator.peek()); // make sure doing it twice doesn't break anything
+		assertEquals(key1, iterator.next());
+		assertEquals(key2, iterator.peek());
+		assertEquals(key2, iterator.next());
+		assertNull(iterator.peek());
+		iterator.close();
+	}
+
+	@Test
+	public void test_next() throws Exception {
+		BlueKey key1 = createKey(1, 1);
+		BlueKey key2 = createKey(2, 2);
+		getTimeCollection().insert(key1, createValue("Anna"));
+		getTimeCollection().insert(key2, createValue("Bob"));
+
+		try (CollectionKeyIterator<TestValue> iterator = new CollectionKeyIterator<>(getTimeSegmentManager(), new Range(0, 2), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty())) {
+			List<BlueKey> iteratorContents = toList(iterator);
+			assertEquals(Arrays.asList(key1, key2), iteratorContents);
+		}
+	}
+}
@@ -9,6 +9,8 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.UUID;
 
+import org.bluedb.api.Aggregators;
+import org.bluedb.api.BlueQueryPage;
 import org.bluedb.api.CloseableIterator;
 import org.bluedb.api.ReadBlueTimeQuery;
 import org.bluedb.api.ReadableBlueCollection;
@@ -16,6 +18,7 @@ import org.bluedb.api.ReadableBlueTimeCollection;
 import org.bluedb.api.datastructures.BlueSimpleInMemorySet;
 import org.bluedb.api.exceptions.BlueDbException;
 import org.bluedb.api.index.BlueIndex;
+import org.bluedb.api.keys.BlueKey;
 import org.bluedb.api.keys.IntegerKey;
 import org.bluedb.api.keys.ValueKey;
 import org.bluedb.disk.TestValue;
@@ -80,6 +83,18 @@ public class DummyReadOnlyCollectionOnDiskTest {
 		dummyIterator.keepAlive();
 		dummyIterator.close();
 		
+		BlueQueryPage<TestValue> dummyPage = dummyCollection.query().startAfter("any cursor").offset(1).limit(2).getPage();
+		assertEquals(Arrays.asList(), dummyPage.getValues());
+		assertFalse(dummyPage.hasNextPage());
+		
+		CloseableIterator<BlueKey> dummyKeyIterator = dummyQuery.getKeys();
+		assertFalse(dummyKeyIterator.hasNext());
+		dummyKeyIterator.close();
+		
+		assertEquals(0, dummyQuery.stream().count());
+		assertEquals(0, dummyQuery.parallelStream().count());
+		assertEquals(Long.valueOf(0), dummyQuery.aggregate(Aggregators.count()));
+		
 		
 		dummyQuery = dummyCollection.query()
 				.afterOrAtTime(1)
@@ -0,0 +1,156 @@
+package org.bluedb.disk.collection;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.EntityCache.EntityLoader;
+import org.bluedb.disk.recovery.InMemorySortedChangeSupplier;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.junit.Test;
+
+public class EntityCacheTest extends BlueDbDiskTestBase {
+
+	private final AtomicInteger loadCount = new AtomicInteger();
+
+	@Test
+	public void test_get_disabled() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer());
+		assertFalse(cache.isEnabled());
+		BlueKey key = new LongKey(1);
+		assertEquals(new TestValue("Joe", 1), cache.get(key, loader("Joe")).getValue());
+		assertEquals(new TestValue("Joe", 1), cache.get(key, loader("Joe")).getValue());
+		assertEquals(2, loadCount.get());
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void test_get() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer(), 100_000);
+		BlueKey key = new LongKey(1);
+		BlueEntity<TestValue> entity = cache.get(key, loader("Joe"));
+		assertEquals(new TestValue("Joe", 1), entity.getValue());
+		assertEquals(1, loadCount.get());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		entity.getValue().setCupcakes(100);  // changing a returned value doesn't change the cached copy
+		BlueEntity<TestValue> cachedEntity = cache.get(key, loader("Bob"));
+		assertEquals(key, cachedEntity.getKey());
+		assertEquals(new TestValue("Joe", 1), cachedEntity.getValue());
+		assertNotSame(entity.getValue(), cachedEntity.getValue());
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void test_get_absent() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer(), 100_000);
+		BlueKey key = new LongKey(1);
+		assertNull(cache.get(key, loader(null)));
+		assertNull(cache.get(key, loader("Joe")));
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getHitCount());
+
+		cache.invalidate(key);
+		assertEquals(new TestValue("Joe", 1), cache.get(key, loader("Joe")).getValue());
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void test_invalidate() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer(), 100_000);
+		BlueKey key1 = new LongKey(1);
+		BlueKey key2 = new LongKey(2);
+		BlueKey key3 = new LongKey(3);
+		cache.get(key1, loader("Joe"));
+		cache.get(key2, loader("Bob"));
+		cache.get(key3, loader("Fred"));
+		assertEquals(3, cache.size());
+
+		cache.invalidate(key1);
+		assertEquals(2, cache.size());
+		assertEquals(new TestValue("Joey", 1), cache.get(key1, loader("Joey")).getValue());
+
+		cache.invalidate(new InMemorySortedChangeSupplier<>(Arrays.asList(
+				IndividualChange.createDeleteChange(key2, new TestValue("Bob", 1)),
+				IndividualChange.createInsertChange(key3, new TestValue("Freddy", 1)))));
+		assertEquals(1, cache.size());
+		assertNull(cache.get(key2, loader(null)));
+		assertEquals(new TestValue("Freddy", 1), cache.get(key3, loader("Freddy")).getValue());
+		assertEquals(new TestValue("Joey", 1), cache.get(key1, loader("Joe")).getValue());
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getCurrentBytes());
+	}
+
+	@Test
+	public void test_get_invalidatedWhileLoading() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer(), 100_000);
+		BlueKey key = new LongKey(1);
+		EntityLoader<TestValue> racingLoader = k -> {
+			BlueEntity<TestValue> oldEntity = new BlueEntity<>(k, new TestValue("Joe", 1));
+			cache.invalidate(k);  // a write lands after the old value was read
+			return oldEntity;
+		};
+		assertEquals(new TestValue("Joe", 1), cache.get(key, racingLoader).getValue());
+		assertEquals(0, cache.size());
+		assertEquals(new TestValue("Bob", 1), cache.get(key, loader("Bob")).getValue());
+	}
+
+	@Test
+	public void test_evictsLeastRecentlyUsed() throws BlueDbException {
+		EntityCache<TestValue> cache = new EntityCache<>(getSerializer(), 100_000);
+		cache.get(new LongKey(1), loader("Joe"));
+		long entryBytes = cache.getCurrentBytes();
+		cache.setMaxBytes(entryBytes * 2);
+		cache.get(new LongKey(2), loader("Bob"));
+		cache.get(new LongKey(1), loader("Joe"));
+		cache.get(new LongKey(3), loader("Sam"));
+		assertEquals(2, cache.size());
+		assertTrue(cache.getCurrentBytes() <= entryBytes * 2);
+
+		loadCount.set(0);
+		cache.get(new LongKey(1), loader("Joe"));
+		cache.get(new LongKey(3), loader("Sam"));
+		assertEquals(0, loadCount.get());
+		cache.get(new LongKey(2), loader("Bob"));
+		assertEquals(1, loadCount.get());
+
+		cache.setMaxBytes(0);
+		assertFalse(cache.isEnabled());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void test_invalidMaxBytes() {
+		try {
+			new EntityCache<TestValue>(getSerializer(), -1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new EntityCache<TestValue>(getSerializer()).setMaxBytes(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private EntityLoader<TestValue> loader(String name) {
+		return key -> {
+			loadCount.incrementAndGet();
+			return name != null ? new BlueEntity<>(key, new TestValue(name, 1)) : null;
+		};
+	}
+}
@@ -50,6 +50,25 @@ public class LastEntityFinderTest extends BlueDbDiskTestBase {
 		assertEquals(valueInFirstSegment, lastEntity.getValue());
 	}
 
+	@Test
+	public void test_getLastKey() throws Exception {
+		long segmentSize = getTimeCollection().getSegmentManager().getSegmentSize();
+		LastEntityFinder lastFinder = new LastEntityFinder(getTimeCollection());
+		assertNull(lastFinder.getLastKey());
+
+		BlueKey key1 = insertAtTimeFrame(0, 1, new TestValue("first"));
+		BlueKey key2 = insertAtTimeFrame(1, segmentSize, new TestValue("both"));
+		assertEquals(key2, lastFinder.getLastKey());
+
+		BlueKey key3 = insertAtTime(segmentSize * 2, new TestValue("after"));
+		assertEquals(key3, lastFinder.getLastKey());
+		assertEquals(lastFinder.getLastEntity().getKey(), lastFinder.getLastKey());
+
+		getTimeCollection().delete(key3);
+		getTimeCollection().delete(key2);
+		assertEquals(key1, lastFinder.getLastKey());
+	}
+
 	@Test
 	public void test_multipleSegments() {
 		long segmentSize = getTimeCollection().getSegmentManager().getSegmentSize();
@@ -0,0 +1,226 @@
+package org.bluedb.disk.collection;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.bluedb.api.Condition;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.executors.BlueExecutor;
+import org.bluedb.disk.segment.Range;
+import org.bluedb.disk.segment.ReadWriteSegment;
+import org.bluedb.disk.segment.SegmentEntityIterator;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.junit.Test;
+
+public class ParallelSegmentScannerTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_collectionEntityIterator_sameResultsAsSequential() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		for (int i = 0; i < 6; i++) {
+			insertAtTime(segmentSize * i + 1, createValue("Value" + i, i));
+			insertAtTime(segmentSize * i + 2, createValue("Other" + i, i));
+		}
+		insertAtTimeFrame(segmentSize - 1, segmentSize * 3 + 5, createValue("Spanning", 10));
+		insertAtTimeFrame(segmentSize * 2 + 5, segmentSize * 4, createValue("Spanning2", 11));
+
+		List<Condition<TestValue>> evenCupcakes = Arrays.asList(v -> v.getCupcakes() % 2 == 0);
+		List<Range> ranges = Arrays.asList(new Range(Long.MIN_VALUE, Long.MAX_VALUE), new Range(segmentSize, segmentSize * 4 + 1), new Range(segmentSize * 2 + 6, segmentSize * 5));
+		for (Range range : ranges) {
+			for (boolean byStartTime : Arrays.asList(false, true)) {
+				for (List<Condition<TestValue>> conditions : Arrays.asList(new ArrayList<Condition<TestValue>>(), evenCupcakes)) {
+					List<BlueEntity<TestValue>> expected = iterate(range, byStartTime, conditions);
+					assertFalse(expected.isEmpty());
+					getTimeSegmentManager().setParallelScans(db().getSharedExecutor(), 3);
+					try {
+						assertEquals(expected, iterate(range, byStartTime, conditions));
+					} finally {
+						getTimeSegmentManager().setParallelScans(null, 1);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test_collectionEntityIterator_close() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(segmentSize + 1, createValue("Bob", 2));
+		insertAtTime(segmentSize * 2 + 1, createValue("Sue", 3));
+		getTimeSegmentManager().setParallelScans(db().getSharedExecutor(), 2);
+
+		CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), new Range(Long.MIN_VALUE, Long.MAX_VALUE), false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), Optional.empty());
+		assertEquals(createValue("Joe", 1), iterator.next().getValue());
+		iterator.close();
+		assertFalse(getLockManager().isLocked(getChunkPath(1)));
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize + 1)));
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize * 2 + 1)));
+		try {
+			iterator.hasNext();
+			fail();
+		} catch(RuntimeException e) {
+			//Should be thrown
+		}
+	}
+
+	@Test
+	public void test_close_whileSegmentsAreWaitingOnFullBuffers() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		for (int i = 0; i < 3; i++) {
+			insertAtTime(segmentSize * i + 1, createValue("Joe" + i, i));
+			insertAtTime(segmentSize * i + 1, createValue("Bob" + i, i));
+			insertAtTime(segmentSize * i + 1, createValue("Sue" + i, i));
+		}
+
+		ParallelSegmentScanner<TestValue> scanner = new ParallelSegmentScanner<>(db().getSharedExecutor(), 3, 1, getSegmentIterators(0, segmentSize, segmentSize * 2), e -> true);
+		assertNotNull(scanner.next());
+		waitUntilLocked(getChunkPath(segmentSize * 2 + 1));
+		scanner.close();
+		assertFalse(getLockManager().isLocked(getChunkPath(1)));
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize + 1)));
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize * 2 + 1)));
+	}
+
+	@Test
+	public void test_next_smallBuffer() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		List<TestValue> expected = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 5; j++) {
+				TestValue value = createValue("Value" + i + "-" + j, j);
+				insertAtTime(segmentSize * i + j, value);
+				if (j != 2) {
+					expected.add(value);
+				}
+			}
+		}
+
+		ParallelSegmentScanner<TestValue> scanner = new ParallelSegmentScanner<>(db().getSharedExecutor(), 2, 1, getSegmentIterators(0, segmentSize, segmentSize * 2, segmentSize * 3), e -> e.getValue().getCupcakes() != 2);
+		assertEquals(expected, readAll(scanner));
+		assertNull(scanner.next());
+		scanner.close();
+	}
+
+	@Test
+	public void test_next_executorShutDown() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(segmentSize + 1, createValue("Bob", 2));
+		BlueExecutor executor = new BlueExecutor("parallel-segment-scanner-test");
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+		ParallelSegmentScanner<TestValue> scanner = new ParallelSegmentScanner<>(executor, 2, getSegmentIterators(0, segmentSize), e -> true);
+		assertEquals(Arrays.asList(createValue("Joe", 1), createValue("Bob", 2)), readAll(scanner));
+		scanner.close();
+		assertFalse(getLockManager().isLocked(getChunkPath(segmentSize + 1)));
+	}
+
+	@Test
+	public void test_next_segmentFails() throws Exception {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(segmentSize + 1, createValue("Bob", 2));
+
+		List<Supplier<SegmentEntityIterator<TestValue>>> segmentIterators = getSegmentIterators(0, segmentSize);
+		segmentIterators.add(() -> { throw new IllegalStateException("broken segment"); });
+		ParallelSegmentScanner<TestValue> scanner = new ParallelSegmentScanner<>(db().getSharedExecutor(), 3, segmentIterators, e -> true);
+		assertEquals(createValue("Joe", 1), scanner.next().getValue());
+		assertEquals(createValue("Bob", 2), scanner.next().getValue());
+		try {
+			scanner.next();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("broken segment", e.getMessage());
+		}
+		scanner.close();
+	}
+
+	@Test
+	public void test_next_scanThreadInterrupted() throws Exception {
+		insertAtTime(1, createValue("Joe", 1));
+
+		AtomicReference<Thread> scanThread = new AtomicReference<>();
+		Predicate<BlueEntity<TestValue>> waitForInterrupt = e -> {
+			scanThread.set(Thread.currentThread());
+			while (!Thread.currentThread().isInterrupted()) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+			}
+			return true;
+		};
+		ParallelSegmentScanner<TestValue> scanner = new ParallelSegmentScanner<>(db().getSharedExecutor(), 1, getSegmentIterators(0), waitForInterrupt);
+		ExecutorService consumer = Executors.newSingleThreadExecutor();
+		try {
+			Future<BlueEntity<TestValue>> next = consumer.submit(scanner::next);
+			long giveUpTime = System.currentTimeMillis() + 5000;
+			while (scanThread.get() == null && System.currentTimeMillis() < giveUpTime) {
+				Thread.sleep(10);
+			}
+			assertNotNull(scanThread.get());
+			scanThread.get().interrupt();
+			try {
+				next.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RuntimeException);
+				assertTrue(e.getCause().getCause() instanceof InterruptedException);
+			}
+		} finally {
+			consumer.shutdownNow();
+		}
+		scanner.close();
+		assertFalse(getLockManager().isLocked(getChunkPath(1)));
+	}
+
+	private List<BlueEntity<TestValue>> iterate(Range range, boolean byStartTime, List<Condition<TestValue>> conditions) {
+		try (CollectionEntityIterator<TestValue> iterator = new CollectionEntityIterator<>(getTimeSegmentManager(), range, byStartTime, new ArrayList<>(), conditions, new ArrayList<>(), Optional.empty())) {
+			return toEntityList(iterator);
+		}
+	}
+
+	private List<Supplier<SegmentEntityIterator<TestValue>>> getSegmentIterators(long... groupingNumbers) {
+		List<Supplier<SegmentEntityIterator<TestValue>>> segmentIterators = new ArrayList<>();
+		for (long groupingNumber : groupingNumbers) {
+			ReadWriteSegment<TestValue> segment = getSegment(groupingNumber);
+			segmentIterators.add(() -> segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE));
+		}
+		return segmentIterators;
+	}
+
+	private List<TestValue> readAll(ParallelSegmentScanner<TestValue> scanner) {
+		List<TestValue> values = new ArrayList<>();
+		BlueEntity<TestValue> next;
+		while ((next = scanner.next()) != null) {
+			values.add(next.getValue());
+		}
+		return values;
+	}
+
+	private Path getChunkPath(long groupingNumber) {
+		ReadWriteSegment<TestValue> segment = getSegment(groupingNumber);
+		return Paths.get(segment.getPath().toString(), new Range(groupingNumber, groupingNumber).toUnderscoreDelimitedString());
+	}
+
+	private void waitUntilLocked(Path path) throws InterruptedException {
+		long giveUpTime = System.currentTimeMillis() + 5000;
+		while (!getLockManager().isLocked(path) && System.currentTimeMillis() < giveUpTime) {
+			Thread.sleep(10);
+		}
+		assertTrue(getLockManager().isLocked(path));
+	}
+}
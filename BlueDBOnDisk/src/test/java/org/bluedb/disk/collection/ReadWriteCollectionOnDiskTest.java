@@ -6,6 +6,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,8 +19,14 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import org.bluedb.TestUtils;
 import org.bluedb.api.BlueCollectionVersion;
@@ -43,12 +51,14 @@ import org.bluedb.api.keys.TimeKey;
 import org.bluedb.disk.BlueDbDiskTestBase;
 import org.bluedb.disk.BlueDbOnDiskBuilder;
 import org.bluedb.disk.Blutils;
+import org.bluedb.disk.ReadWriteDbOnDisk;
 import org.bluedb.disk.ReadableDbOnDisk;
 import org.bluedb.disk.TestValue;
 import org.bluedb.disk.collection.index.TestRetrievalKeyExtractor;
 import org.bluedb.disk.collection.index.TestRetrievalLongKeyExtractor;
 import org.bluedb.disk.collection.index.conditions.dummy.DummyUUIDIndexCondition;
 import org.bluedb.disk.collection.metadata.ReadOnlyCollectionMetadata;
+import org.bluedb.disk.file.FileUtils;
 import org.bluedb.disk.models.calls.Call;
 import org.bluedb.disk.segment.Range;
 import org.bluedb.disk.segment.ReadWriteSegment;
@@ -137,6 +147,87 @@ public class ReadWriteCollectionOnDiskTest extends BlueDbDiskTestBase {
 		assertNotEquals(value, getLongCollection().get(differentKey));
 	}
 
+	@Test
+	public void test_getAll() throws Exception {
+		BlueTimeCollection<TestValue> collection = getTimeCollection();
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		Map<BlueKey, TestValue> values = new HashMap<>();
+		for (int i = 0; i < 300; i++) {
+			values.put(new TimeKey(i, (i % 3) * segmentSize + i * 7), new TestValue("Joe" + i, i));
+		}
+		collection.batchUpsert(values);
+
+		List<BlueKey> keysToGet = new ArrayList<>();
+		for (int i = 299; i >= 0; i -= 3) {
+			keysToGet.add(new TimeKey(i, (i % 3) * segmentSize + i * 7));
+		}
+		keysToGet.add(keysToGet.get(0));  // duplicates are only looked up once
+		keysToGet.add(new TimeKey(1000, 7));  // not in the collection
+		keysToGet.add(new TimeKey(1001, segmentSize * 10));
+
+		Map<BlueKey, TestValue> found = collection.getAll(keysToGet);
+		assertEquals(100, found.size());
+		for (BlueKey key : keysToGet) {
+			assertEquals(collection.get(key), found.get(key));
+		}
+		assertTrue(collection.getAll(new ArrayList<>()).isEmpty());
+		assertEquals(values, collection.getAll(values.keySet()));
+
+		try {
+			getLongCollection().getAll(Arrays.asList(new LongKey(1), new IntegerKey(1)));
+			fail();
+		} catch (BlueDbException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test_get_entityCache() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getLongCollection();
+		EntityCache<TestValue> cache = collection.getEntityCache();
+		cache.setMaxBytes(1_000_000);
+		BlueKey key = new LongKey(10);
+		BlueKey otherKey = new LongKey(20);
+
+		assertFalse(collection.contains(key));
+		assertFalse(collection.contains(key));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		collection.insert(key, new TestValue("Joe", 1));
+		collection.insert(otherKey, new TestValue("Bob", 1));
+		assertEquals(new TestValue("Joe", 1), collection.get(key));
+		collection.get(key).addCupcake();
+		assertEquals(new TestValue("Joe", 1), collection.get(key));
+		assertEquals(3, cache.getMissCount());
+		assertEquals(4, cache.getHitCount());  // the duplicate check when inserting the first key was answered by the cache
+
+		collection.update(key, value -> value.addCupcake());
+		assertEquals(new TestValue("Joe", 2), collection.get(key));
+		collection.replace(key, value -> new TestValue("Joey", 5));
+		assertEquals(new TestValue("Joey", 5), collection.get(key));
+		collection.query().where(value -> value.getName().equals("Joey")).update(value -> value.addCupcake());
+		assertEquals(new TestValue("Joey", 6), collection.get(key));
+		Map<BlueKey, TestValue> batch = new HashMap<>();
+		batch.put(key, new TestValue("Joe", 7));
+		collection.batchUpsert(batch);
+		assertEquals(new TestValue("Joe", 7), collection.get(key));
+
+		assertEquals(new TestValue("Bob", 1), collection.get(otherKey));
+		long segmentSize = collection.getSegmentManager().getSegmentSize();
+		long segmentStart = Blutils.roundDownToMultiple(key.getGroupingNumber(), segmentSize);
+		collection.rollup(new Range(segmentStart, segmentStart + segmentSize - 1));
+		long hitCount = cache.getHitCount();
+		assertEquals(new TestValue("Bob", 1), collection.get(otherKey));  // rollups don't change values so they stay cached
+		assertEquals(hitCount + 1, cache.getHitCount());
+
+		collection.query().where(value -> value.getName().equals("Bob")).delete();
+		assertFalse(collection.contains(otherKey));
+		collection.delete(key);
+		assertFalse(collection.contains(key));
+		assertNull(collection.get(key));
+	}
+
 	@Test
 	public void test_insert() {
 		TestValue value = new TestValue("Joe");
@@ -150,6 +241,333 @@ public class ReadWriteCollectionOnDiskTest extends BlueDbDiskTestBase {
 		}
 	}
 
+	@Test
+	public void test_singleRecordChanges_queuedChangesAreGroupCommitted() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getLongCollection();
+		BlueKey key1 = new LongKey(1);
+		BlueKey key2 = new LongKey(2);
+		BlueKey key3 = new LongKey(3);
+		TestValue value1 = new TestValue("Joe");
+		TestValue value3 = new TestValue("Bob");
+		int changeFileCountBefore = collection.getRecoveryManager().getChangeHistory(0, Long.MAX_VALUE).size();
+
+		CountDownLatch blockingTaskLatch = new CountDownLatch(1);
+		collection.submitTask(() -> {
+			try {
+				blockingTaskLatch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+
+		List<Thread> writers = new ArrayList<>();
+		Map<String, Throwable> failures = new ConcurrentHashMap<>();
+		writers.add(startWriterAndWaitUntilQueued(collection, failures, "insert1", () -> collection.insert(key1, value1)));
+		writers.add(startWriterAndWaitUntilQueued(collection, failures, "duplicateInsert1", () -> collection.insert(key1, new TestValue("Duplicate"))));
+		writers.add(startWriterAndWaitUntilQueued(collection, failures, "updateMissing2", () -> collection.update(key2, TestValue::addCupcake)));
+		writers.add(startWriterAndWaitUntilQueued(collection, failures, "insert3", () -> collection.insert(key3, value3)));
+		writers.add(startWriterAndWaitUntilQueued(collection, failures, "update3", () -> collection.update(key3, TestValue::addCupcake)));
+
+		blockingTaskLatch.countDown();
+		for(Thread writer : writers) {
+			writer.join(10_000);
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList("duplicateInsert1", "updateMissing2")), failures.keySet());
+		assertTrue(failures.get("duplicateInsert1") instanceof BlueDbException);
+		assertTrue(failures.get("updateMissing2") instanceof BlueDbException);
+		assertEquals(value1, collection.get(key1));
+		assertNull(collection.get(key2));
+		assertEquals(1, collection.get(key3).getCupcakes());
+		assertEquals(changeFileCountBefore + 1, collection.getRecoveryManager().getChangeHistory(0, Long.MAX_VALUE).size());
+	}
+
+	@Test
+	public void test_stripedWrites_differentStripesRunAtTheSameTime() throws Exception {
+		ReadWriteDbOnDisk stripedDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(createTempFolder().toPath())
+				.withWriteStripes(4)
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) stripedDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			assertTrue(collection.isWriteStriped());
+			BlueKey key1 = new LongKey(1);
+			BlueKey key2 = new LongKey(2);
+			while(collection.getWriteStripe(key2) == collection.getWriteStripe(key1)) {
+				key2 = new LongKey(key2.getLongIdIfPresent() + 1);
+			}
+
+			CountDownLatch blockingTaskLatch = new CountDownLatch(1);
+			collection.submitStripedTask(collection.getWriteStripe(key1), () -> {
+				try {
+					blockingTaskLatch.await();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			});
+
+			collection.insert(key2, new TestValue("Bob")); // would hang if it had to wait on the blocked stripe
+			assertEquals(new TestValue("Bob"), collection.get(key2));
+
+			AtomicBoolean exclusiveTaskRan = new AtomicBoolean(false);
+			Future<?> exclusiveTask = collection.submitTask(() -> exclusiveTaskRan.set(true));
+			Thread.sleep(50);
+			assertFalse(exclusiveTaskRan.get());
+
+			blockingTaskLatch.countDown();
+			exclusiveTask.get(10, TimeUnit.SECONDS);
+			assertTrue(exclusiveTaskRan.get());
+		} finally {
+			stripedDb.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test_stripedWrites_concurrentWritersAndIndex() throws Exception {
+		ReadWriteDbOnDisk stripedDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(createTempFolder().toPath())
+				.withWriteStripes(4)
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) stripedDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			collection.createIndex("cupcakes", IntegerKey.class, new TestRetrievalKeyExtractor());
+			long segmentSize = collection.getSegmentManager().getSegmentSize();
+
+			List<Thread> writers = new ArrayList<>();
+			Map<String, Throwable> failures = new ConcurrentHashMap<>();
+			for(int writer = 0; writer < 8; writer++) {
+				long firstKey = writer * segmentSize;
+				writers.add(new Thread(() -> {
+					try {
+						for(int i = 0; i < 10; i++) {
+							collection.insert(new LongKey(firstKey + i), new TestValue("Joe", i));
+							collection.update(new LongKey(firstKey + i), TestValue::addCupcake);
+						}
+					} catch (Throwable t) {
+						failures.put(String.valueOf(firstKey), t);
+					}
+				}));
+			}
+			for(Thread writer : writers) {
+				writer.start();
+			}
+			for(Thread writer : writers) {
+				writer.join(30_000);
+			}
+
+			assertEquals(new HashMap<>(), failures);
+			assertEquals(80, collection.query().getList().size());
+			for(int writer = 0; writer < 8; writer++) {
+				assertEquals(new TestValue("Joe", 4), collection.get(new LongKey(writer * segmentSize + 3)));
+			}
+			assertEquals(8, collection.getIndex("cupcakes", IntegerKey.class).getKeys(new IntegerKey(4)).size());
+			assertEquals(0, collection.getIndex("cupcakes", IntegerKey.class).getKeys(new IntegerKey(0)).size());
+		} finally {
+			stripedDb.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test_asyncWrites() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getLongCollection();
+		BlueKey key1 = new LongKey(1);
+		BlueKey key2 = new LongKey(2);
+		BlueKey key3 = new LongKey(3);
+
+		CompletableFuture<Void> insert = collection.insertAsync(key1, new TestValue("Joe"));
+		CompletableFuture<Void> update = collection.updateAsync(key1, TestValue::addCupcake);
+		CompletableFuture<Void> replace = collection.replaceAsync(key1, value -> new TestValue("Bob", value.getCupcakes()));
+		Map<BlueKey, TestValue> batch = new HashMap<>();
+		batch.put(key2, new TestValue("Ann"));
+		CompletableFuture<Void> batchUpsert = collection.batchUpsertAsync(batch);
+		CompletableFuture<Void> iteratorUpsert = collection.batchUpsertAsync(Arrays.asList(new BlueKeyValuePair<>(key3, new TestValue("Sue"))).iterator());
+		CompletableFuture.allOf(insert, update, replace, batchUpsert, iteratorUpsert).get(10, TimeUnit.SECONDS);
+		assertEquals(new TestValue("Bob", 1), collection.get(key1));
+		assertEquals(new TestValue("Ann"), collection.get(key2));
+		assertEquals(new TestValue("Sue"), collection.get(key3));
+
+		collection.deleteAsync(key2).get(10, TimeUnit.SECONDS);
+		assertNull(collection.get(key2));
+	}
+
+	@Test
+	public void test_cleanupTempFiles() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getTimeCollection();
+		Path leftoverSortDirectory = FileUtils.createTempFilePathInDirectory(collection.getPath(), "sorted-query-leftover");
+		FileUtils.ensureFileExists(leftoverSortDirectory.resolve("sorted"));
+		collection.cleanupTempFiles();
+		assertFalse(Files.exists(leftoverSortDirectory));
+		assertTrue(Files.exists(collection.getPath()));
+
+		Blutils.recursiveDelete(collection.getPath().toFile());
+		collection.cleanupTempFiles(); //Shouldn't throw an exception if the collection folder is gone
+	}
+
+	@Test
+	public void test_asyncWrites_runInSubmissionOrder() throws Exception {
+		assertAsyncWritesRunInSubmissionOrder(getLongCollection(), (collection, latch) -> collection.submitTask(latch));
+
+		ReadWriteDbOnDisk stripedDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(createTempFolder().toPath())
+				.withWriteStripes(4)
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) stripedDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			assertAsyncWritesRunInSubmissionOrder(collection, (stripedCollection, latch) -> stripedCollection.submitStripedTask(stripedCollection.getWriteStripe(new LongKey(1)), latch));
+		} finally {
+			stripedDb.shutdownNow();
+		}
+	}
+
+	private void assertAsyncWritesRunInSubmissionOrder(ReadWriteCollectionOnDisk<TestValue> collection, BiConsumer<ReadWriteCollectionOnDisk<TestValue>, Runnable> blockCollection) throws Exception {
+		BlueKey key = new LongKey(1);
+		Map<BlueKey, TestValue> batch = new HashMap<>();
+		batch.put(key, new TestValue("Bob"));
+
+		// Holding up the first change keeps its group open while the rest are submitted
+		CountDownLatch blockingTaskLatch = new CountDownLatch(1);
+		blockCollection.accept(collection, () -> awaitLatch(blockingTaskLatch));
+		CompletableFuture<Void> insert = collection.insertAsync(key, new TestValue("Joe"));
+		CompletableFuture<Void> batchUpsert = collection.batchUpsertAsync(batch);
+		CompletableFuture<Void> delete = collection.deleteAsync(key);
+		blockingTaskLatch.countDown();
+		CompletableFuture.allOf(insert, batchUpsert, delete).get(10, TimeUnit.SECONDS);
+		assertNull(collection.get(key));
+
+		CountDownLatch secondBlockingTaskLatch = new CountDownLatch(1);
+		blockCollection.accept(collection, () -> awaitLatch(secondBlockingTaskLatch));
+		insert = collection.insertAsync(key, new TestValue("Joe"));
+		CompletableFuture<Void> deleteBeforeBatch = collection.deleteAsync(key);
+		batchUpsert = collection.batchUpsertAsync(batch);
+		CompletableFuture<Void> update = collection.updateAsync(key, value -> value.addCupcake());
+		secondBlockingTaskLatch.countDown();
+		CompletableFuture.allOf(insert, deleteBeforeBatch, batchUpsert, update).get(10, TimeUnit.SECONDS);
+		assertEquals(new TestValue("Bob", 1), collection.get(key));
+	}
+
+	private static void awaitLatch(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void test_asyncWrites_failuresCompleteTheFuture() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getLongCollection();
+		collection.insert(new LongKey(1), new TestValue("Joe"));
+
+		assertAsyncWriteFails(collection.insertAsync(new LongKey(1), new TestValue("Duplicate")));
+		assertAsyncWriteFails(collection.updateAsync(new LongKey(2), TestValue::addCupcake));
+		assertAsyncWriteFails(collection.insertAsync(new IntegerKey(1), new TestValue("WrongKeyType")));
+		assertAsyncWriteFails(collection.deleteAsync(new IntegerKey(1)));
+		assertEquals(new TestValue("Joe"), collection.get(new LongKey(1)));
+	}
+
+	private void assertAsyncWriteFails(CompletableFuture<Void> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof BlueDbException);
+		}
+	}
+
+	@Test
+	public void test_asyncWrites_maxInFlight() throws Exception {
+		ReadWriteDbOnDisk limitedDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(createTempFolder().toPath())
+				.withMaxAsyncWritesInFlight(1)
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) limitedDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			CountDownLatch blockingTaskLatch = new CountDownLatch(1);
+			collection.submitTask(() -> {
+				try {
+					blockingTaskLatch.await();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			});
+
+			CompletableFuture<Void> firstInsert = collection.insertAsync(new LongKey(1), new TestValue("Joe"));
+			AtomicBoolean secondInsertSubmitted = new AtomicBoolean(false);
+			Thread secondWriter = new Thread(() -> {
+				collection.insertAsync(new LongKey(2), new TestValue("Bob"));
+				secondInsertSubmitted.set(true);
+			});
+			secondWriter.start();
+			Thread.sleep(50);
+			assertFalse(firstInsert.isDone());
+			assertFalse(secondInsertSubmitted.get());
+
+			blockingTaskLatch.countDown();
+			firstInsert.get(10, TimeUnit.SECONDS);
+			secondWriter.join(10_000);
+			assertTrue(secondInsertSubmitted.get());
+		} finally {
+			limitedDb.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test_recordChecksums() throws Exception {
+		File dbFolder = createTempFolder();
+		ReadWriteDbOnDisk checksumDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(dbFolder.toPath())
+				.withRecordChecksums(true)
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) checksumDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			Map<BlueKey, TestValue> values = new HashMap<>();
+			for (int i = 0; i < 100; i++) {
+				values.put(new LongKey(i), new TestValue("Joe" + i, i));
+			}
+			collection.batchUpsert(values);
+			collection.update(new LongKey(5), value -> value.setCupcakes(500));
+			collection.delete(new LongKey(6));
+
+			assertEquals(99, collection.query().getList().size());
+			assertEquals(500, collection.get(new LongKey(5)).getCupcakes());
+			assertNull(collection.get(new LongKey(6)));
+		} finally {
+			checksumDb.shutdownNow();
+		}
+
+		ReadWriteDbOnDisk reopenedDb = (ReadWriteDbOnDisk) new BlueDbOnDiskBuilder()
+				.withPath(dbFolder.toPath())
+				.build();
+		try {
+			ReadWriteCollectionOnDisk<TestValue> collection = (ReadWriteCollectionOnDisk<TestValue>) reopenedDb.getCollectionBuilder(LONG_COLLECTION_NAME, LongKey.class, TestValue.class).build();
+			assertEquals(99, collection.query().getList().size());
+			assertEquals(new TestValue("Joe7", 7), collection.get(new LongKey(7)));
+		} finally {
+			reopenedDb.shutdownNow();
+		}
+	}
+
+	private Thread startWriterAndWaitUntilQueued(ReadWriteCollectionOnDisk<TestValue> collection, Map<String, Throwable> failures, String name, Write write) throws InterruptedException {
+		int queuedTaskCountBefore = collection.getQueuedTaskCount();
+		Thread writer = new Thread(() -> {
+			try {
+				write.run();
+			} catch (Throwable t) {
+				failures.put(name, t);
+			}
+		});
+		writer.start();
+		long timeout = System.currentTimeMillis() + 10_000;
+		while(collection.getQueuedTaskCount() <= queuedTaskCountBefore && System.currentTimeMillis() < timeout) {
+			Thread.sleep(1);
+		}
+		return writer;
+	}
+
+	private interface Write {
+		void run() throws BlueDbException;
+	}
+
 	@Test
 	public void test_batchInsert() throws Exception {
 		TestValue value1 = new TestValue("Joe");
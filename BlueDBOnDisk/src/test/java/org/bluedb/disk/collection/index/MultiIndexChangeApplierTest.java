@@ -0,0 +1,100 @@
+package org.bluedb.disk.collection.index;
+
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.index.BlueIndexInfo;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.IntegerKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.api.keys.StringKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.api.keys.ValueKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.recovery.InMemorySortedChangeSupplier;
+import org.bluedb.disk.recovery.IndividualChange;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class MultiIndexChangeApplierTest extends BlueDbDiskTestBase {
+	private TestValue valueFred1 = new TestValue("Fred", 1);
+	private TestValue valueBob3 = new TestValue("Bob", 3);
+	private TestValue valueJoe3 = new TestValue("Joe", 3);
+	private TimeKey timeKeyFred1 = createTimeKey(1, valueFred1);
+	private TimeKey timeKeyBob3 = createTimeKey(2, valueBob3);
+	private TimeKey timeKeyJoe3 = createTimeKey(3, valueJoe3);
+
+	private Set<BlueKey> emptyList = new HashSet<>(Arrays.asList());
+	private Set<BlueKey> bobAndJoe = new HashSet<>(Arrays.asList(timeKeyBob3, timeKeyJoe3));
+	private Set<BlueKey> bobAndJoeAndFred = new HashSet<>(Arrays.asList(timeKeyBob3, timeKeyJoe3, timeKeyFred1));
+	private Set<BlueKey> justFred = new HashSet<>(Arrays.asList(timeKeyFred1));
+	private Set<BlueKey> justJoe = new HashSet<>(Arrays.asList(timeKeyJoe3));
+
+	private BlueIndexInfo<IntegerKey, TestValue> index1Info = new BlueIndexInfo<IntegerKey, TestValue>("index1", IntegerKey.class, new TestRetrievalKeyExtractor());
+	private BlueIndexInfo<LongKey, TestValue> index2Info = new BlueIndexInfo<LongKey, TestValue>("index2", LongKey.class, new TestMultiRetrievalLongKeyExtractor());
+	private BlueIndexInfo<StringKey, TestValue> index3Info = new BlueIndexInfo<StringKey, TestValue>("index3", StringKey.class, new TestRetrievalStringKeyExtractor());
+
+	@Test
+	public void test_indexChanges_multipleIndicesWork() throws BlueDbException {
+		getTimeCollection().createIndices(Arrays.asList(index1Info, index2Info, index3Info));
+
+		Map<BlueKey, TestValue> values = new HashMap<>();
+		values.put(timeKeyFred1, valueFred1);
+		values.put(timeKeyBob3, valueBob3);
+		values.put(timeKeyJoe3, valueJoe3);
+		getTimeCollection().batchUpsert(values);
+
+		ReadWriteIndexOnDisk<IntegerKey, TestValue> index1 = getTimeCollection().getIndexManager().getIndex(index1Info.getName(), IntegerKey.class);
+		ReadWriteIndexOnDisk<LongKey, TestValue> index2 = getTimeCollection().getIndexManager().getIndex(index2Info.getName(), LongKey.class);
+		ReadWriteIndexOnDisk<StringKey, TestValue> index3 = getTimeCollection().getIndexManager().getIndex(index3Info.getName(), StringKey.class);
+		assertEquals(justFred, index1.getKeys(new IntegerKey(1)));
+		assertEquals(bobAndJoe, index1.getKeys(new IntegerKey(3)));
+		assertEquals(justFred, index2.getKeys(new LongKey(1)));
+		assertEquals(bobAndJoeAndFred, index2.getKeys(new LongKey(3)));
+		assertEquals(bobAndJoe, index3.getKeys(new StringKey("3")));
+
+		getTimeCollection().query()
+			.where(value -> value.getName().equals("Bob"))
+			.delete();
+
+		assertEquals(justJoe, index1.getKeys(new IntegerKey(3)));
+		assertEquals(new HashSet<>(Arrays.asList(timeKeyJoe3, timeKeyFred1)), index2.getKeys(new LongKey(3)));
+		assertEquals(justJoe, index3.getKeys(new StringKey("3")));
+		assertEquals(emptyList, index3.getKeys(new StringKey("1000")));
+	}
+
+	@Test
+	public void test_indexChanges_oneBadIndexDoesNotStopTheOthers() throws BlueDbException {
+		getTimeCollection().createIndices(Arrays.asList(index1Info));
+		ReadWriteIndexOnDisk<ValueKey, TestValue> index1 = getTimeCollection().getIndexManager().lookupExistingIndexByName(index1Info.getName()).get();
+
+		@SuppressWarnings("unchecked")
+		ReadWriteIndexOnDisk<ValueKey, TestValue> badIndex = Mockito.mock(ReadWriteIndexOnDisk.class);
+		when(badIndex.getIndexName()).thenReturn("badIndex");
+
+		List<IndividualChange<TestValue>> changes = Arrays.asList(
+				IndividualChange.createInsertChange(timeKeyFred1, valueFred1),
+				IndividualChange.createInsertChange(timeKeyBob3, valueBob3),
+				IndividualChange.createInsertChange(timeKeyJoe3, valueJoe3));
+
+		MultiIndexChangeApplier<TestValue> applier = new MultiIndexChangeApplier<>(Arrays.asList(badIndex, index1), getTimeCollection().getSharedExecutor(), 2);
+		try {
+			applier.indexChanges(new InMemorySortedChangeSupplier<>(changes));
+			fail();
+		} catch(BlueDbException e) {
+			//Expected
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList("badIndex")), applier.getFailedIndexNames());
+		assertEquals(justFred, index1.getKeys(new IntegerKey(1)));
+		assertEquals(bobAndJoe, index1.getKeys(new IntegerKey(3)));
+	}
+}
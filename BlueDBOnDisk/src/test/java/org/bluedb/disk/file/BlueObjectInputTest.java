@@ -5,18 +5,23 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertArrayEquals;
 import org.bluedb.disk.metadata.BlueFileMetadata;
+import org.bluedb.disk.metadata.BlueFileMetadataKey;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.bluedb.TestUtils;
 import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.TimeKey;
 import org.bluedb.disk.Blutils;
 import org.bluedb.disk.TestValue;
 import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
@@ -25,8 +30,11 @@ import org.bluedb.disk.lock.BlueReadLock;
 import org.bluedb.disk.lock.BlueWriteLock;
 import org.bluedb.disk.lock.LockManager;
 import org.bluedb.disk.models.calls.Call;
+import org.bluedb.disk.serialization.BlueEntity;
 import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.KeyedRecordFormat;
 import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
+import org.bluedb.disk.serialization.validation.SerializationException;
 import junit.framework.TestCase;
 
 public class BlueObjectInputTest extends TestCase {
@@ -300,6 +308,255 @@ public class BlueObjectInputTest extends TestCase {
 		Mockito.verify(inputStream, Mockito.times(1)).close();
 	}
 
+	@Test
+	public void test_recordChecksums() throws Exception {
+		TestValue value1 = new TestValue("Joe");
+		TestValue value2 = new TestValue("Bob");
+		fileManager.setIntegrityPolicy(new IntegrityPolicy(true, 2));
+		writeValues(value1, value2);
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(BlueObjectOutput.CHECKSUM_ALGORITHM, inStream.getMetadata().get(BlueFileMetadataKey.RECORD_CHECKSUMS).get());
+				assertEquals(value1, inStream.next());
+				assertEquals(value2, inStream.next());
+				assertNull(inStream.next());
+			}
+		}
+
+		fileManager.setIntegrityPolicy(IntegrityPolicy.ROUND_TRIP);
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(value1, inStream.next());
+				assertEquals(value2, inStream.next());
+				assertNull(inStream.next());
+			}
+		}
+	}
+
+	@Test
+	public void test_recordChecksums_corruptRecordIsSkipped() throws Exception {
+		TestValue value1 = new TestValue("Joe");
+		TestValue value2 = new TestValue("Bob");
+		TestValue value3 = new TestValue("Fred");
+		fileManager.setIntegrityPolicy(IntegrityPolicy.CHECKSUMS);
+		writeValues(value1, value2, value3);
+
+		try (RandomAccessFile file = new RandomAccessFile(targetFilePath.toFile(), "rw")) {
+			file.seek(file.readInt() + 4); // skip the metadata
+			int firstRecordLength = file.readInt();
+			file.seek(file.getFilePointer() + firstRecordLength + 4 + 4 + 2); // skip the first record and its checksum then go into the second
+			int corruptByte = file.read() ^ 0xFF;
+			file.seek(file.getFilePointer() - 1);
+			file.write(corruptByte);
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(value1, inStream.next());
+				assertEquals(value3, inStream.next());
+				assertNull(inStream.next());
+			}
+		}
+	}
+
+	@Test
+	public void test_recordChecksums_tornRecordEndsTheFile() throws Exception {
+		TestValue value1 = new TestValue("Joe");
+		TestValue value2 = new TestValue("Bob");
+		fileManager.setIntegrityPolicy(IntegrityPolicy.CHECKSUMS);
+		writeValues(value1, value2);
+
+		try (RandomAccessFile file = new RandomAccessFile(targetFilePath.toFile(), "rw")) {
+			file.setLength(file.length() - 2);
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(value1, inStream.next());
+				assertNull(inStream.next());
+			}
+		}
+	}
+
+	@Test
+	public void test_peekKey() throws Exception {
+		BlueEntity<TestValue> entity1 = new BlueEntity<>(new TimeKey(1, 1), new TestValue("Joe"));
+		BlueEntity<TestValue> entity2 = new BlueEntity<>(new TimeKey(2, 2), new TestValue("Bob"));
+		BlueEntity<TestValue> entity3 = new BlueEntity<>(new TimeKey(3, 3), new TestValue("Fred"));
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> outStream = fileManager.getChunkOutputStream(writeLock)) {
+				outStream.write(entity1);
+				outStream.write(entity2);
+				outStream.write(entity3);
+			}
+		}
+
+		ValueCountingSerializer countingSerializer = new ValueCountingSerializer();
+		ReadFileManager countingFileManager = new ReadFileManager(countingSerializer, encryptionService);
+		try (BlueObjectInput<BlueEntity<TestValue>> inStream = countingFileManager.getBlueInputStream(countingFileManager.getLockManager().acquireReadLock(targetFilePath))) {
+			assertEquals(entity1.getKey(), inStream.peekKey());
+			assertEquals(entity1.getKey(), inStream.peekKey());  // just to make sure it works multiple times
+			assertNotNull(inStream.nextRawBytesWithoutDeserializing());
+			assertEquals(entity1.getKey(), inStream.getLastKey());
+			assertEquals(0, countingSerializer.valuesDeserialized.get());
+
+			assertEquals(entity2.getKey(), inStream.peekKey());
+			assertEquals(entity2, inStream.next());
+			assertEquals(entity2.getKey(), inStream.getLastKey());
+			assertEquals(1, countingSerializer.valuesDeserialized.get());
+
+			assertEquals(entity3, inStream.peek());
+			assertEquals(entity3.getKey(), inStream.peekKey());
+			assertEquals(entity3, inStream.next());
+			assertNull(inStream.peekKey());
+			assertNull(inStream.next());
+			assertEquals(2, countingSerializer.valuesDeserialized.get());
+		}
+	}
+
+	@Test
+	public void test_peekKey_mixedRecordFormats() throws Exception {
+		BlueEntity<TestValue> entity1 = new BlueEntity<>(new TimeKey(1, 1), new TestValue("Joe"));
+		BlueEntity<TestValue> entity2 = new BlueEntity<>(new TimeKey(2, 2), new TestValue("Bob"));
+		BlueEntity<TestValue> entity3 = new BlueEntity<>(new TimeKey(3, 3), null);
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> outStream = fileManager.getChunkOutputStream(writeLock)) {
+				outStream.write(entity1);
+				outStream.writeBytesAndAllowEncryption(serializer.serializeObjectToByteArray(entity2), entity2.getKey());  // copied from an older file
+				outStream.write(entity3);
+			}
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<BlueEntity<TestValue>> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(entity1, inStream.next());
+				assertEquals(entity2, inStream.next());
+				assertEquals(entity3, inStream.next());
+				assertNull(inStream.next());
+			}
+		}
+
+		ValueCountingSerializer countingSerializer = new ValueCountingSerializer();
+		ReadFileManager countingFileManager = new ReadFileManager(countingSerializer, encryptionService);
+		try (BlueObjectInput<BlueEntity<TestValue>> inStream = countingFileManager.getBlueInputStream(countingFileManager.getLockManager().acquireReadLock(targetFilePath))) {
+			assertEquals(entity1.getKey(), inStream.peekKey());
+			inStream.nextRawBytesWithoutDeserializing();
+			assertEquals(0, countingSerializer.valuesDeserialized.get());
+			assertEquals(entity2.getKey(), inStream.peekKey());
+			assertEquals(1, countingSerializer.valuesDeserialized.get());  // the whole record has to be deserialized to get its key
+			assertEquals(entity2, inStream.next());
+			assertEquals(1, countingSerializer.valuesDeserialized.get());
+		}
+	}
+
+	@Test
+	public void test_peekKey_corruptValueIsSkipped() throws Exception {
+		BlueEntity<TestValue> entity1 = new BlueEntity<>(new TimeKey(1, 1), new TestValue("Joe"));
+		BlueKey corruptKey = new TimeKey(2, 2);
+		BlueEntity<TestValue> entity3 = new BlueEntity<>(new TimeKey(3, 3), new TestValue("Fred"));
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> outStream = fileManager.getChunkOutputStream(writeLock)) {
+				outStream.write(entity1);
+				outStream.writeBytesAndAllowEncryption(KeyedRecordFormat.toBytes(serializer.serializeObjectToByteArray(corruptKey), new byte[] { 1, 2, 3 }), corruptKey);
+				outStream.write(entity3);
+			}
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<BlueEntity<TestValue>> inStream = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(entity1, inStream.next());
+				assertEquals(corruptKey, inStream.peekKey());
+				assertEquals(entity3, inStream.next());
+				assertNull(inStream.peekKey());
+			}
+		}
+	}
+
+	@Test
+	public void test_peekKey_chunkWithDeltas() throws Exception {
+		BlueEntity<TestValue> entity1 = new BlueEntity<>(new TimeKey(1, 1), new TestValue("Joe"));
+		BlueEntity<TestValue> entity2 = new BlueEntity<>(new TimeKey(2, 2), new TestValue("Bob"));
+		BlueEntity<TestValue> entity2Updated = new BlueEntity<>(new TimeKey(2, 2), new TestValue("Bob", 2));
+		BlueEntity<TestValue> entity3 = new BlueEntity<>(new TimeKey(3, 3), new TestValue("Fred"));
+		IntegrityPolicy checksumsWithoutSampling = new IntegrityPolicy(true, Integer.MAX_VALUE);
+		fileManager.setIntegrityPolicy(checksumsWithoutSampling);
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> outStream = fileManager.getChunkOutputStream(writeLock)) {
+				outStream.write(entity1);
+				outStream.write(entity2);
+				outStream.write(entity3);
+			}
+		}
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(ChunkDeltas.getDeltaPath(targetFilePath))) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> outStream = fileManager.getBlueOutputStreamForAppend(writeLock)) {
+				outStream.write(entity2Updated);
+			}
+		}
+
+		ValueCountingSerializer countingSerializer = new ValueCountingSerializer();
+		ReadFileManager countingFileManager = new ReadFileManager(countingSerializer, encryptionService);
+		countingFileManager.setIntegrityPolicy(checksumsWithoutSampling);
+		try (BlueObjectInput<BlueEntity<TestValue>> inStream = countingFileManager.getChunkInputStream(countingFileManager.getLockManager().acquireReadLock(targetFilePath))) {
+			assertTrue(inStream.hasDeltas());
+			assertTrue(inStream.getMetadata().containsKey(BlueFileMetadataKey.RECORD_CHECKSUMS));
+			int deltaValuesDeserialized = countingSerializer.valuesDeserialized.get();
+			int deltaValuesValidated = countingSerializer.valuesValidated.get();
+
+			assertEquals(entity1.getKey(), inStream.peekKey());
+			assertNotNull(inStream.nextRawBytesWithoutDeserializing());
+			assertEquals(entity1.getKey(), inStream.getLastKey());
+			assertEquals(entity2.getKey(), inStream.peekKey());
+			assertEquals(entity2Updated, inStream.next());
+			assertEquals(entity3.getKey(), inStream.peekKey());
+			assertEquals(deltaValuesDeserialized, countingSerializer.valuesDeserialized.get());  // only the keys of the file's records are read for the merge
+
+			assertEquals(entity3, inStream.next());
+			assertNull(inStream.peekKey());
+			assertEquals(deltaValuesDeserialized + 1, countingSerializer.valuesDeserialized.get());
+			assertEquals(deltaValuesValidated, countingSerializer.valuesValidated.get());  // the file's records keep their verified checksums
+		}
+	}
+
+	private static class ValueCountingSerializer extends ThreadLocalFstSerializer {
+		private final AtomicInteger valuesDeserialized = new AtomicInteger();
+		private final AtomicInteger valuesValidated = new AtomicInteger();
+
+		public ValueCountingSerializer() {
+			super(new TestDefaultConfigurationService(), new Class[]{});
+		}
+
+		@Override
+		public Object deserializeObjectFromByteArray(byte[] bytes) throws SerializationException {
+			Object object = count(super.deserializeObjectFromByteArray(bytes));
+			if (object instanceof TestValue || object instanceof BlueEntity) {
+				valuesValidated.incrementAndGet();
+			}
+			return object;
+		}
+
+		@Override
+		public Object deserializeObjectFromByteArrayWithoutValidation(byte[] bytes) throws SerializationException {
+			return count(super.deserializeObjectFromByteArrayWithoutValidation(bytes));
+		}
+
+		private Object count(Object object) {
+			if (object instanceof TestValue || object instanceof BlueEntity) {
+				valuesDeserialized.incrementAndGet();
+			}
+			return object;
+		}
+	}
+
+	private void writeValues(TestValue... values) throws BlueDbException {
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<TestValue> outStream = fileManager.getBlueOutputStream(writeLock)) {
+				for (TestValue value : values) {
+					outStream.write(value);
+				}
+			}
+		}
+	}
 
 	private File createEmptyFile(String filename) throws IOException {
 		File file = Paths.get(testingFolderPath.toString(), filename).toFile();
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -15,6 +16,7 @@ import org.bluedb.disk.metadata.BlueFileMetadataKey;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.LongKey;
 import org.bluedb.disk.Blutils;
 import org.bluedb.disk.TestValue;
 import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
@@ -23,6 +25,7 @@ import org.bluedb.disk.lock.BlueWriteLock;
 import org.bluedb.disk.lock.LockManager;
 import org.bluedb.disk.serialization.BlueEntity;
 import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.KeyedRecordFormat;
 import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
 import junit.framework.TestCase;
 import static org.mockito.Mockito.*;
@@ -75,6 +78,97 @@ public class BlueObjectOutputTest extends TestCase {
 		}
 	}
 
+	@Test
+	public void test_setIntegrityPolicy_appendKeepsTheFramingOfTheFile() throws BlueDbException {
+		TestValue value1 = new TestValue("Joe");
+		TestValue value2 = new TestValue("Bob");
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<TestValue> output = fileManager.getBlueOutputStream(writeLock)) {
+				output.write(value1);
+			}
+		}
+
+		fileManager.setIntegrityPolicy(IntegrityPolicy.CHECKSUMS);
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<TestValue> output = fileManager.getBlueOutputStreamForAppend(writeLock)) {
+				assertFalse(output.getMetadata().containsKey(BlueFileMetadataKey.RECORD_CHECKSUMS));
+				output.write(value2);
+			}
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> input = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(value1, input.next());
+				assertEquals(value2, input.next());
+				assertNull(input.next());
+			}
+		}
+	}
+
+	@Test
+	public void test_enableSparseKeyIndex() throws Exception {
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<TestValue> output = fileManager.getChunkOutputStream(writeLock)) {
+				for (int i = 0; i < 100; i++) {
+					output.write(new TestValue("Joe", i));
+				}
+			}
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(targetFilePath.toFile(), "r")) {
+			assertEquals(4, SparseKeyIndex.readIfExists(file).size());
+		}
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<TestValue> input = fileManager.getBlueInputStream(readLock)) {
+				for (int i = 0; i < 100; i++) {
+					assertEquals(new TestValue("Joe", i), input.next());
+				}
+				assertNull(input.next());
+			}
+		}
+
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			fileManager.getBlueOutputStreamForAppend(writeLock);
+			fail();
+		} catch (BlueDbException e) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_enableKeyedRecords() throws Exception {
+		BlueEntity<TestValue> entity = new BlueEntity<>(new LongKey(1), new TestValue("Joe"));
+		BlueEntity<TestValue> entityWithoutKey = new BlueEntity<>(null, new TestValue("Bob"));
+		TestValue value = new TestValue("Fred");
+		try (BlueWriteLock<Path> writeLock = lockManager.acquireWriteLock(targetFilePath)) {
+			try (BlueObjectOutput<Object> output = fileManager.getBlueOutputStream(writeLock)) {
+				output.write(entity);
+				output.enableKeyedRecords();
+				output.write(entity);
+				output.write(entityWithoutKey);
+				output.write(value);
+			}
+		}
+
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<Object> input = fileManager.getBlueInputStream(readLock)) {
+				assertFalse(KeyedRecordFormat.isKeyedRecord(input.nextUnencryptedBytesWithoutDeserializing()));
+				assertTrue(KeyedRecordFormat.isKeyedRecord(input.nextUnencryptedBytesWithoutDeserializing()));
+				assertFalse(KeyedRecordFormat.isKeyedRecord(input.nextUnencryptedBytesWithoutDeserializing()));
+				assertFalse(KeyedRecordFormat.isKeyedRecord(input.nextUnencryptedBytesWithoutDeserializing()));
+			}
+		}
+		try (BlueReadLock<Path> readLock = lockManager.acquireReadLock(targetFilePath)) {
+			try (BlueObjectInput<Object> input = fileManager.getBlueInputStream(readLock)) {
+				assertEquals(entity, input.next());
+				assertEquals(entity, input.next());
+				assertEquals(entityWithoutKey, input.next());
+				assertEquals(value, input.next());
+				assertNull(input.next());
+			}
+		}
+	}
+
 	@Test
 	public void test_getTestOutput_encryptionEnabled_createsMetadataProperly() {
 		// Arrange
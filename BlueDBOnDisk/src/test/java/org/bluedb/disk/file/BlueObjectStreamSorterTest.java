@@ -7,6 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -130,6 +131,26 @@ public class BlueObjectStreamSorterTest {
 		testUsingIteratorPlusBatch(11007, 13, -1);
 	}
 
+	@Test
+	public void test_sortWithComparator() throws BlueDbException {
+		List<TestValue> unsortedValues = new ArrayList<>();
+		for(int i = 0; i < 1007; i++) {
+			unsortedValues.add(new TestValue(String.valueOf(i), i));
+		}
+		Collections.shuffle(unsortedValues);
+
+		BlueObjectStreamSorterConfig config = new BlueObjectStreamSorterConfig(100, 10, 10, 5);
+		BlueObjectStreamSorter<TestValue> sorter = new BlueObjectStreamSorter<>(unsortedValues.iterator(), Comparator.comparing(TestValue::getCupcakes).reversed(), tmpPath, fileManager, metadataEntries, config);
+		sorter.sortAndWriteToFile();
+
+		try(BlueObjectInput<TestValue> input = fileManager.getBlueInputStream(fileManager.getReadLockIfFileExists(tmpPath))) {
+			for(int i = 1006; i >= 0; i--) {
+				assertEquals(i, input.next().getCupcakes());
+			}
+			assertFalse(input.hasNext());
+		}
+	}
+
 	private void testUsingIterator(int itemCount, int nullIndex) throws BlueDbException {
 		List<IndividualChange<TestValue>> unsortedChangesList = new ArrayList<>();
 		for(int i = 0; i < itemCount; i++) {
@@ -144,7 +165,7 @@ public class BlueObjectStreamSorterTest {
 		Collections.shuffle(unsortedChangesList);
 
 		BlueObjectStreamSorterConfig config = new BlueObjectStreamSorterConfig(100, 10, 10, 5);
-		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = new BlueObjectStreamSorter<>(unsortedChangesList.iterator(), tmpPath, fileManager, metadataEntries, config);
+		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = BlueObjectStreamSorter.inNaturalOrder(unsortedChangesList.iterator(), tmpPath, fileManager, metadataEntries, config);
 		sorter.sortAndWriteToFile();
 		
 		int expectedCount = (nullIndex >= 0) ? itemCount - 1 : itemCount;
@@ -179,7 +200,7 @@ public class BlueObjectStreamSorterTest {
 		Collections.shuffle(unsortedChangesList);
 		
 		BlueObjectStreamSorterConfig config = new BlueObjectStreamSorterConfig(100, 10, 10, 5);
-		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = new BlueObjectStreamSorter<>(unsortedChangesList.iterator(), tmpPath, fileManager, metadataEntries, config);
+		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = BlueObjectStreamSorter.inNaturalOrder(unsortedChangesList.iterator(), tmpPath, fileManager, metadataEntries, config);
 		sorter.addBatchOfObjectsToBeSorted(unsortedBatchChangesList);
 		sorter.sortAndWriteToFile();
 		
@@ -190,7 +211,7 @@ public class BlueObjectStreamSorterTest {
 
 	private void testWithoutIterator(int itemCount, int batchSize, int nullIndex) throws BlueDbException {
 		BlueObjectStreamSorterConfig config = new BlueObjectStreamSorterConfig(100, 10, 10, 5);
-		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = new BlueObjectStreamSorter<>(tmpPath, fileManager, metadataEntries, config);		
+		BlueObjectStreamSorter<IndividualChange<TestValue>> sorter = BlueObjectStreamSorter.inNaturalOrder(tmpPath, fileManager, metadataEntries, config);		
 		
 		List<IndividualChange<TestValue>> unsortedChangesList = new ArrayList<>();
 		for(int i = 0; i < itemCount; i++) {
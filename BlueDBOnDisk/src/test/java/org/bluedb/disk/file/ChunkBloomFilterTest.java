@@ -0,0 +1,166 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.api.keys.StringKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.Blutils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkBloomFilterTest {
+
+	private File testingFolder;
+	private Path chunkPath;
+
+	@Before
+	public void before() throws IOException {
+		testingFolder = Files.createTempDirectory(this.getClass().getSimpleName()).toFile();
+		chunkPath = new File(testingFolder, "0_99").toPath();
+	}
+
+	@After
+	public void after() {
+		Blutils.recursiveDelete(testingFolder);
+	}
+
+	@Test
+	public void test_mightContain() {
+		List<BlueKey> keys = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			keys.add(new TimeKey(i, i * 3));
+			keys.add(new StringKey("value " + i));
+		}
+		ChunkBloomFilter filter = ChunkBloomFilter.create(keys);
+		assertEquals(2000, filter.getKeyCount());
+		assertFalse(filter.isOverfilled());
+		for (BlueKey key : keys) {
+			assertTrue(filter.mightContain(key));
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (filter.mightContain(new TimeKey(i + 5000, i * 3))) {
+				falsePositives++;
+			}
+			if (filter.mightContain(new StringKey("other " + i))) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 60);  // about 1% is expected with 10 bits per key
+	}
+
+	@Test
+	public void test_create_empty() {
+		ChunkBloomFilter filter = ChunkBloomFilter.create(0);
+		assertEquals(64, filter.getBitCount());
+		assertFalse(filter.mightContain(new LongKey(1)));
+		filter.add(new LongKey(1));
+		assertTrue(filter.mightContain(new LongKey(1)));
+	}
+
+	@Test
+	public void test_isOverfilled() {
+		ChunkBloomFilter filter = ChunkBloomFilter.create(10);
+		assertEquals(128, filter.getBitCount());
+		for (int i = 0; i < 25; i++) {
+			filter.add(new LongKey(i));
+		}
+		assertFalse(filter.isOverfilled());
+		filter.add(new LongKey(25));
+		assertTrue(filter.isOverfilled());
+	}
+
+	@Test
+	public void test_toBytesAndFromBytes() {
+		ChunkBloomFilter filter = ChunkBloomFilter.create(100);
+		for (int i = 0; i < 100; i++) {
+			filter.add(new LongKey(i));
+		}
+		byte[] bytes = filter.toBytes();
+		ChunkBloomFilter loadedFilter = ChunkBloomFilter.fromBytes(bytes);
+		assertNotNull(loadedFilter);
+		assertEquals(filter.getKeyCount(), loadedFilter.getKeyCount());
+		assertEquals(filter.getBitCount(), loadedFilter.getBitCount());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(filter.mightContain(new LongKey(i)), loadedFilter.mightContain(new LongKey(i)));
+		}
+
+		bytes[20] = (byte) ~bytes[20];
+		assertNull(ChunkBloomFilter.fromBytes(bytes));
+		assertNull(ChunkBloomFilter.fromBytes(new byte[bytes.length - 8]));
+		assertNull(ChunkBloomFilter.fromBytes(new byte[0]));
+	}
+
+	@Test
+	public void test_loadIfExists() throws Exception {
+		assertNull(ChunkBloomFilter.loadIfExists(chunkPath));
+		assertNull(ChunkBloomFilter.loadIfExists(null));
+
+		writeChunk(null);
+		assertNull(ChunkBloomFilter.loadIfExists(chunkPath));
+
+		ChunkBloomFilter filter = ChunkBloomFilter.create(5);
+		for (int i = 0; i < 5; i++) {
+			filter.add(new LongKey(i));
+		}
+		writeChunk(filter);
+		ChunkBloomFilter loadedFilter = ChunkBloomFilter.loadIfExists(chunkPath);
+		assertNotNull(loadedFilter);
+		assertEquals(5, loadedFilter.getKeyCount());
+		for (int i = 0; i < 5; i++) {
+			assertTrue(loadedFilter.mightContain(new LongKey(i)));
+		}
+	}
+
+	@Test
+	public void test_loadIfExists_corruptFilter() throws Exception {
+		ChunkBloomFilter filter = ChunkBloomFilter.create(5);
+		filter.add(new LongKey(1));
+		writeChunk(filter);
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "rw")) {
+			long filterPosition = 40 + 4 + 4 + 8 * 3 + 4;  // after the offsets and the empty statistics
+			file.seek(filterPosition + 12);
+			int originalByte = file.read();
+			file.seek(filterPosition + 12);
+			file.write(~originalByte);
+		}
+		assertNull(ChunkBloomFilter.loadIfExists(chunkPath));
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			assertNotNull(sparseKeyIndex);  // the index is still good without its filter
+			assertEquals(3, sparseKeyIndex.size());
+			assertNull(sparseKeyIndex.getBloomFilter());
+		}
+	}
+
+	private void writeChunk(ChunkBloomFilter bloomFilter) throws IOException {
+		SparseKeyIndex.Builder builder = new SparseKeyIndex.Builder(2);
+		builder.setBloomFilter(bloomFilter);
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(chunkPath.toFile()))) {
+			for (int i = 0; i < 5; i++) {
+				builder.recordWrittenAt(i * 8);
+				output.writeInt(4);
+				output.writeInt(i);
+			}
+			builder.writeFooter(output, 40);
+		}
+	}
+}
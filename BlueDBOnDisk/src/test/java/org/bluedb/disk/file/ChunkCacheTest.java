@@ -0,0 +1,219 @@
+package org.bluedb.disk.file;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.lock.BlueReadLock;
+import org.bluedb.disk.metadata.BlueFileMetadata;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.junit.Test;
+
+public class ChunkCacheTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_constructor_invalid() {
+		try {
+			new ChunkCache(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ChunkCache(1000, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test_getChunkInputStream_cachesChunkOnceRead() throws Exception {
+		TestValue value1 = createValue("Joe", 1);
+		TestValue value2 = createValue("Bob", 2);
+		BlueKey key1 = insertAtTime(1, value1);
+		insertAtTime(1, value2);
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(1_000_000);
+		getFileManager().setChunkCache(chunkCache);
+
+		assertEquals(2, readValues(chunkPath).size());
+		assertEquals(1, chunkCache.size());
+		assertEquals(1, chunkCache.getMissCount());
+		assertEquals(0, chunkCache.getHitCount());
+		assertTrue(chunkCache.getCurrentBytes() > 0);
+
+		List<TestValue> values = readValues(chunkPath);
+		assertEquals(2, values.size());
+		assertTrue(values.contains(value1));
+		assertTrue(values.contains(value2));
+		assertEquals(1, chunkCache.getHitCount());
+		assertEquals(1, chunkCache.getMissCount());
+
+		assertEquals(value1, getTimeCollection().get(key1));  // lookups read cached chunks too
+		assertEquals(2, chunkCache.getHitCount());
+	}
+
+	@Test
+	public void test_getChunkInputStream_closedEarly() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(1, createValue("Bob", 2));
+		insertAtTime(1, createValue("Sue", 3));
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(1_000_000);
+		RecordCountingEncryptionService encryptionService = new RecordCountingEncryptionService();
+
+		BlueReadLock<Path> lock = getFileManager().getLockManager().acquireReadLock(chunkPath);
+		BlueObjectInput<BlueEntity<TestValue>> input = new BlueObjectInput<>(lock, getSerializer(), encryptionService, null, chunkCache, true);
+		input.next();  // stop after the first record
+		int recordsRead = encryptionService.recordsRead.get();
+		input.close();
+		assertEquals(recordsRead, encryptionService.recordsRead.get());  // the rest of the file isn't read just to cache it
+		assertEquals(0, chunkCache.size());
+
+		getFileManager().setChunkCache(chunkCache);
+		assertEquals(3, readValues(chunkPath).size());
+		assertEquals(1, chunkCache.size());
+		assertEquals(3, readValues(chunkPath).size());
+		assertEquals(1, chunkCache.getHitCount());
+	}
+
+	@Test
+	public void test_getChunkInputStream_replacedChunk() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(1_000_000);
+		getFileManager().setChunkCache(chunkCache);
+		readValues(chunkPath);
+		assertEquals(1, chunkCache.size());
+
+		getTimeCollection().update(key1, value -> value.setCupcakes(5));
+		assertEquals(0, chunkCache.size());  // moving the new chunk into place drops the old one
+		assertEquals(5, readValues(chunkPath).get(0).getCupcakes());
+		assertEquals(1, chunkCache.size());
+
+		getTimeCollection().delete(key1);
+		assertEquals(0, chunkCache.size());
+		assertEquals(0, readValues(chunkPath).size());
+	}
+
+	@Test
+	public void test_get_fileChangedWithoutInvalidating() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(1_000_000);
+		getFileManager().setChunkCache(chunkCache);
+		readValues(chunkPath);
+
+		getFileManager().setChunkCache(null);
+		getTimeCollection().update(key1, value -> value.setCupcakes(5));
+		getFileManager().setChunkCache(chunkCache);
+		assertEquals(1, chunkCache.size());
+
+		assertEquals(5, readValues(chunkPath).get(0).getCupcakes());  // the cached version no longer matches the file
+		assertEquals(0, chunkCache.getHitCount());
+	}
+
+	@Test
+	public void test_getChunkInputStreamForRewrite() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(1_000_000);
+		getFileManager().setChunkCache(chunkCache);
+
+		BlueReadLock<Path> lock = getFileManager().getLockManager().acquireReadLock(chunkPath);
+		try (BlueObjectInput<BlueEntity<TestValue>> input = getFileManager().getChunkInputStreamForRewrite(lock)) {
+			assertEquals(createValue("Joe", 1), input.next().getValue());
+		}
+		assertEquals(0, chunkCache.size());
+
+		readValues(chunkPath);
+		lock = getFileManager().getLockManager().acquireReadLock(chunkPath);
+		try (BlueObjectInput<BlueEntity<TestValue>> input = getFileManager().getChunkInputStreamForRewrite(lock)) {
+			assertEquals(createValue("Joe", 1), input.next().getValue());
+		}
+		assertEquals(1, chunkCache.getHitCount());
+	}
+
+	@Test
+	public void test_chunkTooBigToCache() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		Path chunkPath = getChunkPath(key1);
+		ChunkCache chunkCache = new ChunkCache(ChunkCache.CHUNK_OVERHEAD_BYTES * ChunkCache.MAX_CHUNK_FRACTION);
+		getFileManager().setChunkCache(chunkCache);
+		assertEquals(1, readValues(chunkPath).size());
+		assertEquals(0, chunkCache.size());
+		assertEquals(0, chunkCache.getCurrentBytes());
+	}
+
+	@Test
+	public void test_evictsLeastRecentlyReadChunk() throws Exception {
+		long segmentSize = getTimeCollection().getSegmentManager().getSegmentSize();
+		List<Path> chunkPaths = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			BlueKey key = insertAtTime(segmentSize * 2 * i, createValue("Joe", i));
+			chunkPaths.add(getChunkPath(key));
+		}
+		ChunkCache sizingCache = new ChunkCache(1_000_000);
+		getFileManager().setChunkCache(sizingCache);
+		readValues(chunkPaths.get(0));
+		long chunkBytes = sizingCache.getCurrentBytes();
+
+		ChunkCache chunkCache = new ChunkCache(chunkBytes * ChunkCache.MAX_CHUNK_FRACTION + chunkBytes / 2);
+		getFileManager().setChunkCache(chunkCache);
+		for (int i = 0; i < 4; i++) {
+			readValues(chunkPaths.get(i));
+		}
+		assertEquals(4, chunkCache.size());
+		readValues(chunkPaths.get(0));  // now the second chunk is the least recently read
+		readValues(chunkPaths.get(4));
+		assertEquals(4, chunkCache.size());
+		assertEquals(1, chunkCache.getEvictionCount());
+		assertTrue(chunkCache.getCurrentBytes() <= chunkCache.getMaxBytes());
+		assertTrue(chunkCache.contains(chunkPaths.get(0)));
+		assertFalse(chunkCache.contains(chunkPaths.get(1)));
+
+		chunkCache.invalidate(chunkPaths.get(0));
+		assertEquals(3, chunkCache.size());
+		chunkCache.invalidateAll();
+		assertEquals(0, chunkCache.size());
+		assertEquals(0, chunkCache.getCurrentBytes());
+	}
+
+	private Path getChunkPath(BlueKey key) throws BlueDbException {
+		try (BlueObjectInput<BlueEntity<TestValue>> input = getTimeCollection().getSegmentManager().getSegment(key.getGroupingNumber()).getObjectInputFor(key.getGroupingNumber())) {
+			return input.getPath();
+		}
+	}
+
+	private static class RecordCountingEncryptionService extends EncryptionServiceWrapper {
+		private final AtomicInteger recordsRead = new AtomicInteger();
+
+		public RecordCountingEncryptionService() {
+			super(null);
+		}
+
+		@Override
+		public byte[] decryptOrReturn(BlueFileMetadata fileMetadata, byte[] bytes) {
+			recordsRead.incrementAndGet();
+			return super.decryptOrReturn(fileMetadata, bytes);
+		}
+	}
+
+	private List<TestValue> readValues(Path chunkPath) throws BlueDbException {
+		List<TestValue> values = new ArrayList<>();
+		BlueReadLock<Path> lock = getFileManager().getLockManager().acquireReadLock(chunkPath);
+		try (BlueObjectInput<BlueEntity<TestValue>> input = getFileManager().getChunkInputStream(lock)) {
+			while (input.hasNext()) {
+				values.add(input.next().getValue());
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,151 @@
+package org.bluedb.disk.file;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.Blutils;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ChunkDeltasTest extends TestCase {
+
+	private ReadWriteFileManager fileManager;
+	private List<File> filesToDelete;
+	private Path testPath;
+
+	@Override
+	protected void setUp() throws Exception {
+		BlueSerializer serializer = new ThreadLocalFstSerializer(new TestDefaultConfigurationService(), new Class[] {});
+		fileManager = new ReadWriteFileManager(serializer, new EncryptionServiceWrapper(null));
+		filesToDelete = new ArrayList<>();
+		testPath = Files.createTempDirectory("test_" + this.getClass().getSimpleName());
+		filesToDelete.add(testPath.toFile());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : filesToDelete)
+			Blutils.recursiveDelete(file);
+	}
+
+	@Test
+	public void test_getDeltaPath() {
+		Path chunkPath = Paths.get(testPath.toString(), "0_9");
+		Path deltaPath = ChunkDeltas.getDeltaPath(chunkPath);
+		assertEquals(chunkPath.getParent(), deltaPath.getParent());
+		assertTrue(ChunkDeltas.isDeltaFile(deltaPath.toFile()));
+		assertFalse(ChunkDeltas.isDeltaFile(chunkPath.toFile()));
+		assertFalse(ChunkDeltas.isDeltaFile(null));
+		assertFalse(RangeNamedFiles.isFileNameRangeEnclosed(deltaPath.toFile(), 0, 9));  // delta files must never be mistaken for chunks
+	}
+
+	@Test
+	public void test_loadIfExists_noDeltaFile() throws Exception {
+		Path chunkPath = Paths.get(testPath.toString(), "0_9");
+		assertNull(ChunkDeltas.loadIfExists(fileManager, chunkPath));
+		assertNull(ChunkDeltas.loadIfExists(fileManager, null));
+	}
+
+	@Test
+	public void test_mergedIntoChunk() throws Exception {
+		Path chunkPath = Paths.get(testPath.toString(), "0_9");
+		BlueKey key1 = new TimeKey(1, 1);
+		BlueKey key2 = new TimeKey(2, 2);
+		BlueKey key3 = new TimeKey(3, 3);
+		BlueKey key4 = new TimeKey(4, 4);
+		writeEntities(chunkPath, false, entity(key1, "one"), entity(key2, "two"), entity(key3, "three"));
+		writeEntities(ChunkDeltas.getDeltaPath(chunkPath), true, entity(key2, "two updated"), entity(key4, "four"));
+		writeEntities(ChunkDeltas.getDeltaPath(chunkPath), true, entity(key1, null), entity(key2, "two updated again"));
+
+		ChunkDeltas deltas = ChunkDeltas.loadIfExists(fileManager, chunkPath);
+		assertEquals(3, deltas.size());
+		assertEquals(key1, deltas.peek().getKey());
+		assertTrue(deltas.peek().isTombstone());
+
+		List<BlueEntity<TestValue>> merged = new ArrayList<>();
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStream(fileManager.getLockManager().acquireReadLock(chunkPath))) {
+			input.forEachRemaining(merged::add);
+		}
+		List<BlueEntity<TestValue>> expected = new ArrayList<>();
+		expected.add(entity(key2, "two updated again"));
+		expected.add(entity(key3, "three"));
+		expected.add(entity(key4, "four"));
+		assertEquals(expected, merged);
+
+		Path copyPath = Paths.get(testPath.toString(), "copy");
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStream(fileManager.getLockManager().acquireReadLock(chunkPath));
+				BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getBlueOutputStreamWithoutLock(copyPath)) {
+			output.writeAll(input);
+		}
+		List<BlueEntity<TestValue>> copied = new ArrayList<>();
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getBlueInputStream(fileManager.getLockManager().acquireReadLock(copyPath))) {
+			input.forEachRemaining(copied::add);
+		}
+		assertEquals(expected, copied);
+	}
+
+	@Test
+	public void test_loadIfExists_onlyTheKeysBeingLookedUp() throws Exception {
+		Path chunkPath = Paths.get(testPath.toString(), "0_9");
+		BlueKey key1 = new TimeKey(1, 1);
+		BlueKey key2 = new TimeKey(2, 2);
+		BlueKey key3 = new TimeKey(3, 3);
+		BlueKey key4 = new TimeKey(4, 4);
+		writeEntities(chunkPath, false, entity(key1, "one"), entity(key2, "two"), entity(key3, "three"));
+		writeEntities(ChunkDeltas.getDeltaPath(chunkPath), true, entity(key2, "two updated"), entity(key4, "four"));
+		writeEntities(ChunkDeltas.getDeltaPath(chunkPath), true, entity(key1, null), entity(key2, "two updated again"));
+
+		ChunkDeltas deltas = ChunkDeltas.loadIfExists(fileManager, chunkPath, new HashSet<>(Arrays.asList(key2, key3)));
+		assertEquals(1, deltas.size());
+		assertEquals(entity(key2, "two updated again"), deltas.peek().getEntity());
+		assertEquals(0, ChunkDeltas.loadIfExists(fileManager, chunkPath, Collections.singleton(key3)).size());
+		assertNull(ChunkDeltas.loadIfExists(fileManager, Paths.get(testPath.toString(), "10_19"), Collections.singleton(key3)));
+
+		assertNull(lookUp(chunkPath, key1));
+		assertEquals(entity(key2, "two updated again"), lookUp(chunkPath, key2));
+		assertEquals(entity(key3, "three"), lookUp(chunkPath, key3));
+		assertEquals(entity(key4, "four"), lookUp(chunkPath, key4));
+		assertNull(lookUp(chunkPath, new TimeKey(5, 5)));
+	}
+
+	private BlueEntity<TestValue> lookUp(Path chunkPath, BlueKey key) throws Exception {
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamFor(fileManager.getLockManager().acquireReadLock(chunkPath), key)) {
+			while (input.hasNext()) {
+				BlueEntity<TestValue> entity = input.next();
+				if (entity.getKey().equals(key)) {
+					return entity;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static BlueEntity<TestValue> entity(BlueKey key, String name) {
+		return new BlueEntity<TestValue>(key, name == null ? null : new TestValue(name));
+	}
+
+	@SafeVarargs
+	private final void writeEntities(Path path, boolean append, BlueEntity<TestValue>...entities) throws Exception {
+		try (BlueObjectOutput<BlueEntity<TestValue>> output = append ? fileManager.getBlueOutputStreamForAppend(fileManager.getLockManager().acquireWriteLock(path)) : fileManager.getBlueOutputStreamWithoutLock(path)) {
+			for (BlueEntity<TestValue> entity : entities) {
+				output.write(entity);
+			}
+		}
+	}
+}
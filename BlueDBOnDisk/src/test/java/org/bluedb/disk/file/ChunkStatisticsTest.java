@@ -0,0 +1,229 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.ActiveTimeKey;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.TimeFrameKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.Blutils;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.lock.BlueWriteLock;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkStatisticsTest {
+
+	private BlueSerializer serializer;
+	private ReadWriteFileManager fileManager;
+	private Path testingFolderPath;
+	private Path chunkPath;
+
+	@Before
+	public void before() throws IOException {
+		testingFolderPath = Files.createTempDirectory(this.getClass().getSimpleName());
+		chunkPath = Paths.get(testingFolderPath.toString(), "0_99");
+		serializer = new ThreadLocalFstSerializer(new TestDefaultConfigurationService(), new Class[] {});
+		fileManager = new ReadWriteFileManager(serializer, new EncryptionServiceWrapper(null));
+	}
+
+	@After
+	public void after() {
+		Blutils.recursiveDelete(testingFolderPath.toFile());
+	}
+
+	@Test
+	public void test_builder() {
+		ChunkStatistics.Builder builder = new ChunkStatistics.Builder();
+		builder.recordWritten(new TimeKey(2, 5));
+		builder.recordWritten(new TimeKey(1, 3));
+		builder.recordWritten(new TimeKey(3, 9));
+		assertEquals(3, builder.getRecordCount());
+
+		ChunkStatistics statistics = builder.build(serializer);
+		assertEquals(3, statistics.getRecordCount());
+		assertTrue(statistics.areKeysKnown());
+		assertEquals(3, statistics.getMinGroupingNumber());
+		assertEquals(9, statistics.getMaxGroupingNumber());
+		assertEquals(new TimeKey(1, 3), statistics.getMinKey(serializer));
+		assertEquals(new TimeKey(3, 9), statistics.getMaxKey(serializer));
+		assertFalse(statistics.hasActiveTimeKeys());
+		assertFalse(statistics.hasSpanningTimeFrameKeys());
+
+		assertNull(builder.build(null).getMaxKey(serializer));
+	}
+
+	@Test
+	public void test_builder_timeKeys() {
+		ChunkStatistics.Builder builder = new ChunkStatistics.Builder();
+		builder.recordWritten(new TimeFrameKey(1, 3, 3));
+		ChunkStatistics statistics = builder.build(serializer);
+		assertFalse(statistics.hasActiveTimeKeys());
+		assertFalse(statistics.hasSpanningTimeFrameKeys());
+
+		builder.recordWritten(new TimeFrameKey(2, 4, 20));
+		statistics = builder.build(serializer);
+		assertFalse(statistics.hasActiveTimeKeys());
+		assertTrue(statistics.hasSpanningTimeFrameKeys());
+
+		builder.recordWritten(new ActiveTimeKey(3, 5));
+		statistics = builder.build(serializer);
+		assertTrue(statistics.hasActiveTimeKeys());
+		assertTrue(statistics.hasSpanningTimeFrameKeys());
+	}
+
+	@Test
+	public void test_builder_unknownKeys() {
+		ChunkStatistics.Builder builder = new ChunkStatistics.Builder();
+		builder.recordWritten(new TimeKey(1, 3));
+		builder.recordWritten(null);
+		ChunkStatistics statistics = builder.build(serializer);
+		assertEquals(2, statistics.getRecordCount());
+		assertFalse(statistics.areKeysKnown());
+		assertNull(statistics.getMaxKey(serializer));
+		assertFalse(statistics.isEveryRecordBeforeRange(100));
+		assertFalse(statistics.isEveryRecordAfterRange(0));
+		assertFalse(statistics.isEveryGroupingNumberAtOrBefore(100));
+	}
+
+	@Test
+	public void test_isEveryRecordBeforeRange() {
+		ChunkStatistics.Builder builder = new ChunkStatistics.Builder();
+		assertTrue(builder.build(serializer).isEveryRecordBeforeRange(0));  // empty
+
+		builder.recordWritten(new TimeKey(1, 3));
+		builder.recordWritten(new TimeKey(2, 5));
+		ChunkStatistics statistics = builder.build(serializer);
+		assertTrue(statistics.isEveryRecordBeforeRange(6));
+		assertFalse(statistics.isEveryRecordBeforeRange(5));
+		assertTrue(statistics.isEveryGroupingNumberAtOrBefore(5));
+		assertFalse(statistics.isEveryGroupingNumberAtOrBefore(4));
+		assertTrue(statistics.isEveryRecordAfterRange(2));
+		assertFalse(statistics.isEveryRecordAfterRange(3));
+
+		builder.recordWritten(new TimeFrameKey(3, 5, 50));
+		statistics = builder.build(serializer);
+		assertFalse(statistics.isEveryRecordBeforeRange(6));  // the time frame could overlap the range
+		assertTrue(statistics.isEveryGroupingNumberAtOrBefore(5));
+	}
+
+	@Test
+	public void test_toBytesAndFromBytes() {
+		ChunkStatistics.Builder builder = new ChunkStatistics.Builder();
+		builder.recordWritten(new TimeKey(1, 3));
+		builder.recordWritten(new ActiveTimeKey(2, 7));
+		byte[] bytes = builder.build(serializer).toBytes();
+
+		ChunkStatistics statistics = ChunkStatistics.fromBytes(bytes);
+		assertNotNull(statistics);
+		assertEquals(2, statistics.getRecordCount());
+		assertTrue(statistics.areKeysKnown());
+		assertEquals(3, statistics.getMinGroupingNumber());
+		assertEquals(7, statistics.getMaxGroupingNumber());
+		assertTrue(statistics.hasActiveTimeKeys());
+		assertEquals(new TimeKey(1, 3), statistics.getMinKey(serializer));
+		assertEquals(new ActiveTimeKey(2, 7), statistics.getMaxKey(serializer));
+
+		bytes[3] = (byte) ~bytes[3];
+		assertNull(ChunkStatistics.fromBytes(bytes));
+		assertNull(ChunkStatistics.fromBytes(new byte[bytes.length - 8]));
+		assertNull(ChunkStatistics.fromBytes(new byte[0]));
+	}
+
+	@Test
+	public void test_loadIfExists() throws BlueDbException {
+		assertNull(ChunkStatistics.loadIfExists(chunkPath));
+		assertNull(ChunkStatistics.loadIfExists(null));
+
+		try (BlueWriteLock<Path> writeLock = fileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getChunkOutputStream(writeLock)) {
+				for (int i = 0; i < 40; i++) {
+					output.write(new BlueEntity<>(new TimeKey(i, i + 10), new TestValue("Joe", i)));
+				}
+			}
+		}
+		ChunkStatistics statistics = ChunkStatistics.loadIfExists(chunkPath);
+		assertNotNull(statistics);
+		assertEquals(40, statistics.getRecordCount());
+		assertEquals(10, statistics.getMinGroupingNumber());
+		assertEquals(49, statistics.getMaxGroupingNumber());
+		assertEquals(new TimeKey(39, 49), statistics.getMaxKey(serializer));
+	}
+
+	@Test
+	public void test_loadIfExists_recordsCopiedAsBytes() throws BlueDbException {
+		try (BlueWriteLock<Path> writeLock = fileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getChunkOutputStream(writeLock)) {
+				output.write(new BlueEntity<>(new TimeKey(1, 10), new TestValue("Joe", 1)));
+				output.writeBytesAndAllowEncryption(serializer.serializeObjectToByteArray(new BlueEntity<>(new TimeKey(2, 20), new TestValue("Bob", 2))));
+				output.writeBytesAndAllowEncryption(serializer.serializeObjectToByteArray(new BlueEntity<>(new TimeKey(3, 30), new TestValue("Sue", 3))), new TimeKey(3, 30));
+			}
+		}
+		ChunkStatistics statistics = ChunkStatistics.loadIfExists(chunkPath);
+		assertEquals(3, statistics.getRecordCount());
+		assertFalse(statistics.areKeysKnown());  // the second record was written without its key
+	}
+
+	@Test
+	public void test_loadIfExists_corruptStatistics() throws Exception {
+		try (BlueWriteLock<Path> writeLock = fileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getChunkOutputStream(writeLock)) {
+				output.write(new BlueEntity<>(new TimeKey(1, 10), new TestValue("Joe", 1)));
+			}
+		}
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "rw")) {
+			file.seek(file.length() - 12);
+			long footerPosition = file.readLong();
+			long statisticsPosition = footerPosition + 4 + 4 + 8 + 4;
+			file.seek(statisticsPosition);
+			int originalByte = file.read();
+			file.seek(statisticsPosition);
+			file.write(~originalByte);
+		}
+		assertNull(ChunkStatistics.loadIfExists(chunkPath));
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			assertNotNull(sparseKeyIndex);  // the index is still good without its statistics
+			assertEquals(1, sparseKeyIndex.size());
+		}
+	}
+
+	@Test
+	public void test_getMaxKey_encrypted() throws BlueDbException {
+		BlueKey key = new TimeKey(1, 10);
+		EncryptionServiceWrapper encryptionService = mock(EncryptionServiceWrapper.class);
+		when(encryptionService.isEncryptionEnabled()).thenReturn(true);
+		when(encryptionService.getCurrentEncryptionVersionKey()).thenReturn("valid-key");
+		when(encryptionService.encryptOrThrow(any(), any())).thenAnswer(invocation -> invocation.getArguments()[1]);
+		ReadWriteFileManager encryptedFileManager = new ReadWriteFileManager(serializer, encryptionService);
+		try (BlueWriteLock<Path> writeLock = encryptedFileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = encryptedFileManager.getChunkOutputStream(writeLock)) {
+				output.write(new BlueEntity<>(key, new TestValue("Joe", 1)));
+			}
+		}
+		ChunkStatistics statistics = ChunkStatistics.loadIfExists(chunkPath);
+		assertEquals(1, statistics.getRecordCount());
+		assertEquals(10, statistics.getMaxGroupingNumber());
+		assertNull(statistics.getMaxKey(serializer));  // keys aren't saved in the footer of an encrypted chunk
+	}
+}
@@ -0,0 +1,113 @@
+package org.bluedb.disk.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.disk.Blutils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class FileSyncerTest extends TestCase {
+
+	private Path testPath;
+
+	@Override
+	protected void setUp() throws Exception {
+		testPath = Files.createTempDirectory(getClass().getSimpleName());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Blutils.recursiveDelete(testPath.toFile());
+	}
+
+	@Test
+	public void test_none() throws Exception {
+		FileSyncer.NONE.syncFile(testPath.resolve("does-not-exist"));
+		FileSyncer.NONE.syncDirectory(testPath);
+		assertEquals(DurabilityLevel.NONE, FileSyncer.NONE.getDurabilityLevel());
+	}
+
+	@Test
+	public void test_flushOnCommit() throws Exception {
+		FileSyncer fileSyncer = new FileSyncer(DurabilityLevel.FLUSH_ON_COMMIT, 0);
+		Path file = createFile("file");
+		fileSyncer.syncFile(file);
+		fileSyncer.syncDirectory(testPath);
+		fileSyncer.syncDirectory(null);
+		fileSyncer.syncFile(testPath.resolve("does-not-exist")); // already moved or deleted files are ignored
+		assertEquals(0, fileSyncer.getCompletedGroupCount());
+	}
+
+	@Test
+	public void test_groupFsync_concurrentSyncsShareAGroup() throws Exception {
+		FileSyncer fileSyncer = new FileSyncer(DurabilityLevel.GROUP_FSYNC, 200);
+		int threadCount = 8;
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			files.add(createFile("file" + i));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			CountDownLatch startLatch = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (Path file : files) {
+				futures.add(executor.submit(() -> {
+					startLatch.await();
+					fileSyncer.syncFile(file);
+					return null;
+				}));
+			}
+			startLatch.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		long groupCount = fileSyncer.getCompletedGroupCount();
+		assertTrue(groupCount >= 1);
+		assertTrue(groupCount < threadCount);
+	}
+
+	@Test
+	public void test_groupFsync_sequentialSyncs() throws Exception {
+		FileSyncer fileSyncer = new FileSyncer(DurabilityLevel.GROUP_FSYNC, 0);
+		fileSyncer.syncFile(createFile("file1"));
+		fileSyncer.syncDirectory(testPath);
+		fileSyncer.syncFile(testPath.resolve("does-not-exist"));
+		assertEquals(3, fileSyncer.getCompletedGroupCount());
+	}
+
+	@Test
+	public void test_interrupted() throws Exception {
+		FileSyncer fileSyncer = new FileSyncer(DurabilityLevel.GROUP_FSYNC, 0);
+		Path file = createFile("file");
+		Thread.currentThread().interrupt();
+		try {
+			fileSyncer.syncFile(file); // the group still gets synced, the interrupt is kept for the caller
+			assertTrue(Thread.currentThread().isInterrupted());
+		} catch (BlueDbException e) {
+			fail("An interrupt shouldn't fail the sync: " + e);
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	private Path createFile(String name) throws IOException {
+		Path file = testPath.resolve(name);
+		Files.write(file, new byte[] { 1, 2, 3 });
+		return file;
+	}
+}
@@ -0,0 +1,46 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class IntegrityPolicyTest {
+
+	@Test
+	public void test_constructor_invalidSampleRate() {
+		try {
+			new IntegrityPolicy(true, 0);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_shouldValidateChecksummedRecord() {
+		for (int i = 0; i < 100; i++) {
+			assertTrue(IntegrityPolicy.ROUND_TRIP.shouldValidateChecksummedRecord());
+			assertTrue(new IntegrityPolicy(true, 1).shouldValidateChecksummedRecord());
+		}
+
+		IntegrityPolicy integrityPolicy = new IntegrityPolicy(true, 4);
+		int validatedCount = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (integrityPolicy.shouldValidateChecksummedRecord()) {
+				validatedCount++;
+			}
+		}
+		assertTrue(validatedCount > 0);
+		assertTrue(validatedCount < 10000);
+	}
+
+	@Test
+	public void test_getters() {
+		assertFalse(IntegrityPolicy.ROUND_TRIP.isChecksumsEnabled());
+		assertTrue(IntegrityPolicy.CHECKSUMS.isChecksumsEnabled());
+		assertEquals(IntegrityPolicy.DEFAULT_ROUND_TRIP_SAMPLE_RATE, IntegrityPolicy.CHECKSUMS.getRoundTripSampleRate());
+	}
+}
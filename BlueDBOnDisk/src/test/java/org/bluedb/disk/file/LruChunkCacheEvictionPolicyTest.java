@@ -0,0 +1,38 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class LruChunkCacheEvictionPolicyTest {
+
+	private final Path path1 = Paths.get("1_1");
+	private final Path path2 = Paths.get("2_2");
+	private final Path path3 = Paths.get("3_3");
+
+	@Test
+	public void test_selectVictim() {
+		LruChunkCacheEvictionPolicy policy = new LruChunkCacheEvictionPolicy();
+		assertNull(policy.selectVictim());
+
+		policy.recordInsert(path1, 10);
+		policy.recordInsert(path2, 10);
+		policy.recordInsert(path3, 10);
+		assertEquals(path1, policy.selectVictim());
+
+		policy.recordAccess(path1);
+		assertEquals(path2, policy.selectVictim());
+
+		policy.recordRemoval(path2);
+		assertEquals(path3, policy.selectVictim());
+
+		policy.recordAccess(path2);  // not tracked anymore so it is ignored
+		policy.recordRemoval(path3);
+		policy.recordRemoval(path1);
+		assertNull(policy.selectVictim());
+	}
+}
@@ -105,10 +105,26 @@ public class RangeNamedFilesTest extends TestCase {
 		FileUtils.ensureFileExists(_12_15.toPath());
 		FileUtils.ensureFileExists(_2_3.toPath());
 		FileUtils.ensureFileExists(_100_101.toPath());
+		FileUtils.ensureFileExists(ChunkDeltas.getDeltaPath(_12_13.toPath()));
 		Range timeRange = new Range(0, 20);
 		assertEquals(expected, RangeNamedFiles.getOrderedFilesInRange(getPath(), timeRange));
 	}
 
+	@Test
+	public void test_getOrderedFilesEnclosedInRange() throws Exception {
+		File _12_13 = Paths.get(getPath().toString(), "12_13").toFile();
+		File _12_25 = Paths.get(getPath().toString(), "12_25").toFile();
+		File _2_3 = Paths.get(getPath().toString(), "2_3").toFile();
+		List<File> expected = Arrays.asList(_2_3, _12_13);
+
+		FileUtils.ensureFileExists(_12_13.toPath());
+		FileUtils.ensureFileExists(_12_25.toPath());
+		FileUtils.ensureFileExists(_2_3.toPath());
+		FileUtils.ensureFileExists(ChunkDeltas.getDeltaPath(_2_3.toPath()));
+		Range timeRange = new Range(0, 20);
+		assertEquals(expected, RangeNamedFiles.getOrderedFilesEnclosedInRange(getPath(), timeRange));
+	}
+
 	@Test
 	public void test_sortByRange() {
 		File _12_13 = Paths.get(getPath().toString(), "12_13").toFile();
@@ -4,12 +4,18 @@ import java.io.DataOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.bluedb.api.exceptions.BlueDbException;
+import org.bluedb.api.keys.TimeKey;
 import org.bluedb.disk.Blutils;
 import org.bluedb.disk.TestValue;
 import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
 import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.lock.BlueWriteLock;
 import org.bluedb.disk.metadata.BlueFileMetadata;
+import org.bluedb.disk.serialization.BlueEntity;
 import org.bluedb.disk.serialization.BlueSerializer;
 import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
 import org.junit.Test;
@@ -42,6 +48,96 @@ public class ReadFileManagerTest extends TestCase {
 		Blutils.recursiveDelete(testingFolderPath.toFile());
 	}
 
+	@Test
+	public void test_getChunkInputStreamStartingAt() throws Exception {
+		Path chunkPath = Paths.get(testingFolderPath.toString(), "0_199");
+		ReadWriteFileManager fileManager = new ReadWriteFileManager(serializer, new EncryptionServiceWrapper(null));
+		try (BlueWriteLock<Path> writeLock = fileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getChunkOutputStream(writeLock)) {
+				for (int i = 0; i < 200; i++) {
+					output.write(new BlueEntity<>(new TimeKey(i, i), new TestValue("Joe", i)));
+				}
+			}
+		}
+
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamStartingAt(fileManager.getLockManager().acquireReadLock(chunkPath), 150)) {
+			long firstGroupingNumber = input.next().getKey().getGroupingNumber();
+			assertTrue(firstGroupingNumber > 100);  // the records well before the grouping number were skipped
+			assertTrue(firstGroupingNumber <= 150);
+			long count = 1;
+			while (input.next() != null) {
+				count++;
+			}
+			assertEquals(200 - firstGroupingNumber, count);
+		}
+
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamStartingAt(fileManager.getLockManager().acquireReadLock(chunkPath), 0)) {
+			assertEquals(new TimeKey(0, 0), input.next().getKey());
+		}
+
+		Path missingPath = Paths.get(testingFolderPath.toString(), "200_399");
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamStartingAt(fileManager.getLockManager().acquireReadLock(missingPath), 250)) {
+			assertNull(input.next());
+		}
+	}
+
+	@Test
+	public void test_getChunkInputStreamReadingBackwards() throws Exception {
+		Path chunkPath = Paths.get(testingFolderPath.toString(), "0_199");
+		ReadWriteFileManager fileManager = new ReadWriteFileManager(serializer, new EncryptionServiceWrapper(null));
+		try (BlueWriteLock<Path> writeLock = fileManager.getLockManager().acquireWriteLock(chunkPath)) {
+			try (BlueObjectOutput<BlueEntity<TestValue>> output = fileManager.getChunkOutputStream(writeLock)) {
+				for (int i = 0; i < 200; i++) {
+					output.write(new BlueEntity<>(new TimeKey(i, i), new TestValue("Joe", i)));
+				}
+			}
+		}
+
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamReadingBackwards(fileManager.getLockManager().acquireReadLock(chunkPath), 150)) {
+			List<List<Long>> blocks = readBlocksBackwards(input);
+			assertTrue(blocks.size() > 1);
+			List<Long> lastBlock = blocks.get(0);
+			assertTrue(lastBlock.contains(150L));
+			assertTrue(lastBlock.get(lastBlock.size() - 1) < 199);  // the blocks after the max grouping number were left out
+			List<Long> groupingNumbers = new ArrayList<>();
+			for (int i = blocks.size() - 1; i >= 0; i--) {
+				groupingNumbers.addAll(blocks.get(i));
+			}
+			for (int i = 0; i < groupingNumbers.size(); i++) {
+				assertEquals(i, groupingNumbers.get(i).longValue());
+			}
+		}
+
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamReadingBackwards(fileManager.getLockManager().acquireReadLock(chunkPath), 500)) {
+			List<List<Long>> blocks = readBlocksBackwards(input);
+			assertEquals(Long.valueOf(199), blocks.get(0).get(blocks.get(0).size() - 1));
+			assertEquals(200, blocks.stream().mapToInt(List::size).sum());
+		}
+
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamReadingBackwards(fileManager.getLockManager().acquireReadLock(chunkPath), -1)) {
+			assertEquals(0, readBlocksBackwards(input).stream().mapToInt(List::size).sum());
+		}
+
+		Path missingPath = Paths.get(testingFolderPath.toString(), "200_399");
+		try (BlueObjectInput<BlueEntity<TestValue>> input = fileManager.getChunkInputStreamReadingBackwards(fileManager.getLockManager().acquireReadLock(missingPath), 250)) {
+			assertTrue(input.moveToPreviousBlock());  // read as a single empty block
+			assertNull(input.next());
+			assertFalse(input.moveToPreviousBlock());
+		}
+	}
+
+	private static List<List<Long>> readBlocksBackwards(BlueObjectInput<BlueEntity<TestValue>> input) throws BlueDbException {
+		List<List<Long>> blocks = new ArrayList<>();
+		while (input.moveToPreviousBlock()) {
+			List<Long> block = new ArrayList<>();
+			while (input.hasNext()) {
+				block.add(input.next().getKey().getGroupingNumber());
+			}
+			blocks.add(block);
+		}
+		return blocks;
+	}
+
 	@Test
 	public void test_readMetadata_objectSuccessfullyParsesIntoUnexpectedType_returnsNullAndResetsInputStream() throws Exception {
 		// Arrange
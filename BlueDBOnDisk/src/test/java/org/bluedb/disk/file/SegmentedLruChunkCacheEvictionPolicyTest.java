@@ -0,0 +1,69 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class SegmentedLruChunkCacheEvictionPolicyTest {
+
+	private final Path hotPath = Paths.get("0_0");
+	private final Path path1 = Paths.get("1_1");
+	private final Path path2 = Paths.get("2_2");
+	private final Path path3 = Paths.get("3_3");
+
+	@Test
+	public void test_selectVictim_scanDoesNotEvictProtectedChunks() {
+		SegmentedLruChunkCacheEvictionPolicy policy = new SegmentedLruChunkCacheEvictionPolicy();
+		assertNull(policy.selectVictim());
+
+		policy.recordInsert(hotPath, 10);
+		policy.recordAccess(hotPath);
+		policy.recordInsert(path1, 10);
+		policy.recordInsert(path2, 10);
+		policy.recordInsert(path3, 10);
+		assertEquals(path1, policy.selectVictim());  // the hot chunk was inserted first but it was read again
+
+		policy.recordRemoval(path1);
+		policy.recordRemoval(path2);
+		policy.recordRemoval(path3);
+		assertEquals(hotPath, policy.selectVictim());
+		policy.recordRemoval(hotPath);
+		assertNull(policy.selectVictim());
+	}
+
+	@Test
+	public void test_recordAccess_demotesProtectedChunksThatDontFit() {
+		SegmentedLruChunkCacheEvictionPolicy policy = new SegmentedLruChunkCacheEvictionPolicy(50);
+		policy.recordInsert(path1, 10);
+		policy.recordInsert(path2, 10);
+		policy.recordInsert(path3, 10);
+		policy.recordAccess(path1);
+		assertEquals(path2, policy.selectVictim());
+
+		policy.recordAccess(path2);  // both protected would be 2/3 of the bytes so path1 goes back on probation
+		assertEquals(path3, policy.selectVictim());
+		policy.recordRemoval(path3);
+		assertEquals(path1, policy.selectVictim());
+	}
+
+	@Test
+	public void test_constructor_invalid() {
+		try {
+			new SegmentedLruChunkCacheEvictionPolicy(101);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new SegmentedLruChunkCacheEvictionPolicy(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package org.bluedb.disk.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.Blutils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SparseKeyIndexTest {
+
+	private File testingFolder;
+	private File file;
+
+	@Before
+	public void before() throws IOException {
+		testingFolder = Files.createTempDirectory(this.getClass().getSimpleName()).toFile();
+		file = new File(testingFolder, "chunk");
+	}
+
+	@After
+	public void after() {
+		Blutils.recursiveDelete(testingFolder);
+	}
+
+	@Test
+	public void test_builder_invalidRecordsPerEntry() {
+		try {
+			new SparseKeyIndex.Builder(0);
+			fail("Expected exception was not thrown");
+		} catch (IllegalArgumentException ex) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void test_builder_savesEveryNthOffset() {
+		SparseKeyIndex.Builder builder = new SparseKeyIndex.Builder(3);
+		for (int i = 0; i < 100; i++) {
+			builder.recordWrittenAt(i * 10);
+		}
+		SparseKeyIndex sparseKeyIndex = builder.build();
+		assertEquals(34, sparseKeyIndex.size());
+		assertEquals(0, sparseKeyIndex.getOffset(0));
+		assertEquals(30, sparseKeyIndex.getOffset(1));
+		assertEquals(990, sparseKeyIndex.getOffset(33));
+	}
+
+	@Test
+	public void test_readIfExists() throws IOException {
+		SparseKeyIndex.Builder builder = new SparseKeyIndex.Builder(2);
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 5; i++) {
+				builder.recordWrittenAt(i * 8);
+				output.writeInt(4);
+				output.writeInt(i);
+			}
+			builder.writeFooter(output, 40);
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(randomAccessFile);
+			assertNotNull(sparseKeyIndex);
+			assertEquals(3, sparseKeyIndex.size());
+			assertEquals(0, sparseKeyIndex.getOffset(0));
+			assertEquals(16, sparseKeyIndex.getOffset(1));
+			assertEquals(32, sparseKeyIndex.getOffset(2));
+		}
+	}
+
+	@Test
+	public void test_readIfExists_withStatistics() throws IOException {
+		SparseKeyIndex.Builder builder = new SparseKeyIndex.Builder(2);
+		ChunkStatistics.Builder statisticsBuilder = new ChunkStatistics.Builder();
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 5; i++) {
+				builder.recordWrittenAt(i * 8);
+				statisticsBuilder.recordWritten(new TimeKey(i, i));
+				output.writeInt(4);
+				output.writeInt(i);
+			}
+			builder.setStatistics(statisticsBuilder.build(null));
+			builder.setBloomFilter(ChunkBloomFilter.create(5));
+			builder.writeFooter(output, 40);
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(randomAccessFile);
+			assertEquals(3, sparseKeyIndex.size());
+			assertEquals(5, sparseKeyIndex.getStatistics().getRecordCount());
+			assertEquals(4, sparseKeyIndex.getStatistics().getMaxGroupingNumber());
+			assertNotNull(sparseKeyIndex.getBloomFilter());
+		}
+	}
+
+	@Test
+	public void test_readIfExists_withoutFooter() throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 5; i++) {
+				output.writeInt(4);
+				output.writeInt(i);
+			}
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			assertNull(SparseKeyIndex.readIfExists(randomAccessFile));
+		}
+
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+			output.writeInt(4);
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			assertNull(SparseKeyIndex.readIfExists(randomAccessFile));
+		}
+	}
+
+	@Test
+	public void test_readIfExists_truncatedFooter() throws IOException {
+		SparseKeyIndex.Builder builder = new SparseKeyIndex.Builder(1);
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+			for (int i = 0; i < 5; i++) {
+				builder.recordWrittenAt(i * 8);
+				output.writeInt(4);
+				output.writeInt(i);
+			}
+			builder.writeFooter(output, 40);
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(randomAccessFile.length() - 1);
+			assertNull(SparseKeyIndex.readIfExists(randomAccessFile));
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.bluedb.disk.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import org.bluedb.api.keys.ActiveTimeKey;
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.IntegerKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.api.keys.StringKey;
+import org.bluedb.api.keys.TimeFrameKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.api.keys.UUIDKey;
+import org.junit.Test;
+
+public class QueryCursorTest {
+
+	@Test
+	public void test_toCursorAndFromCursor() {
+		for (BlueKey key : Arrays.asList(new TimeKey(1, 2), new TimeFrameKey(new StringKey("a"), 3, 4), new ActiveTimeKey(new UUIDKey(UUID.randomUUID()), 5), new LongKey(6), new IntegerKey(7), new StringKey("b"))) {
+			String cursor = QueryCursor.toCursor(key);
+			assertTrue(cursor.matches("[A-Za-z0-9_-]+"));  // safe to put in a url
+			assertEquals(key, QueryCursor.fromCursor(cursor, key.getClass()));
+		}
+		assertEquals(new TimeFrameKey(1, 2, 3), QueryCursor.fromCursor(QueryCursor.toCursor(new TimeFrameKey(1, 2, 3)), TimeKey.class));
+	}
+
+	@Test
+	public void test_fromCursor_invalid() throws IOException {
+		String cursor = QueryCursor.toCursor(new LongKey(1));
+		assertInvalid(cursor, StringKey.class);
+		assertInvalid(cursor.substring(0, cursor.length() - 4), LongKey.class);
+		assertInvalid("not a cursor", LongKey.class);
+		assertInvalid("", LongKey.class);
+
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		bytes[0] = 2;
+		assertInvalid(Base64.getUrlEncoder().encodeToString(bytes), LongKey.class);
+
+		ByteArrayOutputStream notAKey = new ByteArrayOutputStream();
+		notAKey.write(1);
+		try (ObjectOutputStream output = new ObjectOutputStream(notAKey)) {
+			output.writeObject(new Date());
+		}
+		assertInvalid(Base64.getUrlEncoder().encodeToString(notAKey.toByteArray()), BlueKey.class);  // only key classes are read
+	}
+
+	private static void assertInvalid(String cursor, Class<? extends BlueKey> keyType) {
+		try {
+			QueryCursor.fromCursor(cursor, keyType);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
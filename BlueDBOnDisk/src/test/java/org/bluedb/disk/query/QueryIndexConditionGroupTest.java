@@ -74,5 +74,19 @@ public class QueryIndexConditionGroupTest {
 		QueryIndexConditionGroup<TestValue> orConditionGroup = new QueryIndexConditionGroup<TestValue>(false, Arrays.asList(passingConditionMock, failingConditionMock));
 		assertTrue(orConditionGroup.test(entity));
 	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void test_testsKeyOnly() {
+		OnDiskIndexCondition<?, TestValue> keyConditionMock = (OnDiskIndexCondition<?, TestValue>) Mockito.mock(OnDiskIndexCondition.class);
+		Mockito.doReturn(true).when(keyConditionMock).testsKeyOnly();
+		
+		OnDiskIndexCondition<?, TestValue> valueConditionMock = (OnDiskIndexCondition<?, TestValue>) Mockito.mock(OnDiskIndexCondition.class);
+		Mockito.doReturn(false).when(valueConditionMock).testsKeyOnly();
+		
+		assertTrue(new QueryIndexConditionGroup<TestValue>(true, null).testsKeyOnly());
+		assertTrue(new QueryIndexConditionGroup<TestValue>(true, Arrays.asList(keyConditionMock, keyConditionMock)).testsKeyOnly());
+		assertFalse(new QueryIndexConditionGroup<TestValue>(false, Arrays.asList(keyConditionMock, valueConditionMock)).testsKeyOnly());
+	}
 
 }
@@ -0,0 +1,125 @@
+package org.bluedb.disk.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.Blutils;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.file.BlueObjectStreamSorter.BlueObjectStreamSorterConfig;
+import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.serialization.BlueEntity;
+import org.bluedb.disk.serialization.BlueSerializer;
+import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SortedEntityIteratorTest {
+
+	private final BlueSerializer serializer = new ThreadLocalFstSerializer(new TestDefaultConfigurationService());
+	private final EncryptionServiceWrapper encryptionService = new EncryptionServiceWrapper(null);
+	private final Comparator<BlueEntity<TestValue>> byCupcakes = Comparator.comparing(entity -> entity.getValue().getCupcakes());
+	private final BlueObjectStreamSorterConfig config = new BlueObjectStreamSorterConfig(100, 10, 10, 5);
+	private File tempFolder;
+
+	@Before
+	public void before() throws IOException {
+		tempFolder = Files.createTempDirectory(this.getClass().getSimpleName()).toFile();
+	}
+
+	@After
+	public void after() {
+		Blutils.recursiveDelete(tempFolder);
+	}
+
+	@Test
+	public void test_sort_bestOnly() throws Exception {
+		List<BlueEntity<TestValue>> entities = createShuffledEntities(1000);
+		try (SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(entities.iterator(), byCupcakes, 5, 10, tempFolder.toPath(), serializer, encryptionService, config)) {
+			assertEquals(range(5, 15), toCupcakes(iterator));
+		}
+		try (SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(entities.iterator(), byCupcakes.reversed(), 0, 1, tempFolder.toPath(), serializer, encryptionService, config)) {
+			assertEquals(range(999, 1000), toCupcakes(iterator));
+		}
+		try (SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(entities.iterator(), byCupcakes, 0, 0, tempFolder.toPath(), serializer, encryptionService, config)) {
+			assertFalse(iterator.hasNext());
+			assertNull(iterator.peek());
+		}
+		try (SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(createShuffledEntities(5).iterator(), byCupcakes, 3, 10, tempFolder.toPath(), serializer, encryptionService, config)) {
+			assertEquals(range(3, 5), toCupcakes(iterator));
+		}
+	}
+
+	@Test
+	public void test_sort_inMemory() throws Exception {
+		int tempDirectoriesBefore = countTempDirectories();
+		try (SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(createShuffledEntities(100).iterator(), byCupcakes, 2, Long.MAX_VALUE, tempFolder.toPath(), serializer, encryptionService, config)) {
+			assertEquals(tempDirectoriesBefore, countTempDirectories());
+			assertEquals(2, iterator.peek().getValue().getCupcakes());
+			assertEquals(range(2, 100), toCupcakes(iterator));
+		}
+	}
+
+	@Test
+	public void test_sort_onDisk() throws Exception {
+		int tempDirectoriesBefore = countTempDirectories();
+		SortedEntityIterator<TestValue> iterator = SortedEntityIterator.sort(createShuffledEntities(1007).iterator(), byCupcakes, 3, 500, tempFolder.toPath(), serializer, encryptionService, config);
+		assertEquals(tempDirectoriesBefore + 1, countTempDirectories());
+		assertEquals(range(3, 503), toCupcakes(iterator));
+		iterator.close();
+		assertEquals(tempDirectoriesBefore, countTempDirectories());
+
+		try (SortedEntityIterator<TestValue> unlimitedIterator = SortedEntityIterator.sort(createShuffledEntities(1007).iterator(), byCupcakes.reversed(), 0, Long.MAX_VALUE, tempFolder.toPath(), serializer, encryptionService, config)) {
+			List<Integer> expected = range(0, 1007);
+			Collections.reverse(expected);
+			assertEquals(expected, toCupcakes(unlimitedIterator));
+		}
+		assertEquals(tempDirectoriesBefore, countTempDirectories());
+
+		try {
+			iterator.hasNext();
+			fail();
+		} catch (IllegalStateException e) {}
+	}
+
+	private static List<BlueEntity<TestValue>> createShuffledEntities(int count) {
+		List<BlueEntity<TestValue>> entities = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			entities.add(new BlueEntity<>(new TimeKey(i, count - i), new TestValue(String.valueOf(i), i)));
+		}
+		Collections.shuffle(entities);
+		return entities;
+	}
+
+	private static List<Integer> toCupcakes(SortedEntityIterator<TestValue> iterator) {
+		List<Integer> cupcakes = new ArrayList<>();
+		while (iterator.hasNext()) {
+			cupcakes.add(iterator.next().getValue().getCupcakes());
+		}
+		return cupcakes;
+	}
+
+	private static List<Integer> range(int start, int end) {
+		return IntStream.range(start, end).boxed().collect(Collectors.toList());
+	}
+
+	private int countTempDirectories() {
+		File[] tempDirectories = tempFolder.listFiles(file -> file.isDirectory() && FileUtils.isTempFile(file));
+		return tempDirectories != null ? tempDirectories.length : 0;
+	}
+}
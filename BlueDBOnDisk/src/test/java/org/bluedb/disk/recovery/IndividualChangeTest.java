@@ -3,6 +3,7 @@ package org.bluedb.disk.recovery;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -34,6 +35,7 @@ import org.bluedb.disk.serialization.BlueSerializer;
 import org.bluedb.disk.serialization.ThreadLocalFstSerializer;
 import org.bluedb.disk.serialization.validation.SerializationException;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class IndividualChangeTest {
 	
@@ -268,6 +270,27 @@ public class IndividualChangeTest {
 		assertEquals(key, updateChange.getOriginalKey());
 	}
 	
+	@Test
+	public void test_createUpdateChange_onlyClonesTheNewValue() throws SerializationException {
+		BlueKey key = new LongKey(42);
+		TestValue oldValue = new TestValue("oldValue", 1);
+		BlueSerializer serializer = Mockito.spy(new ThreadLocalFstSerializer(new TestDefaultConfigurationService(), IndividualChange.class));
+		
+		IndividualChange<TestValue> updateChange = IndividualChange.createUpdateChange(key, oldValue, value -> value.addCupcake(), serializer);
+		IndividualChange<TestValue> replaceChange = IndividualChange.createReplaceChange(key, oldValue, value -> {
+			value.addCupcake();
+			return value;
+		}, serializer);
+		
+		Mockito.verify(serializer, Mockito.times(2)).clone(oldValue);
+		Mockito.verify(serializer, Mockito.never()).serializeObjectToByteArray(Mockito.any());
+		assertSame(oldValue, updateChange.getOldValue());
+		assertSame(oldValue, replaceChange.getOldValue());
+		assertEquals(new TestValue("oldValue", 1), oldValue);
+		assertEquals(new TestValue("oldValue", 2), updateChange.getNewValue());
+		assertEquals(new TestValue("oldValue", 2), replaceChange.getNewValue());
+	}
+	
 	@Test
 	public void test_createReplaceChange() throws SerializationException {
 		BlueKey key = new LongKey(42);
@@ -95,7 +95,7 @@ public class RecoveryManagerTest extends BlueDbDiskTestBase {
 		
 		@SuppressWarnings("unchecked")
 		QueryOnDisk<TestValue> mockedQuery = (QueryOnDisk<TestValue>) Mockito.mock(QueryOnDisk.class);
-		Mockito.doReturn(sortedEntitiesToUpdateIterator).when(mockedQuery).getEntityIterator();
+		Mockito.doReturn(sortedEntitiesToUpdateIterator).when(mockedQuery).getEntityIteratorInKeyOrder();
 		
 		EntityToChangeMapper<TestValue> entityToChangeMapper = entity -> {
 			return IndividualChange.createUpdateChange(entity.getKey(), entity.getValue(), value -> value.addCupcake(), serializer);
@@ -92,6 +92,28 @@ public abstract class SortedChangeSupplierTest {
 		assertEquals(null, sortedChangeSupplier.getNextChange().orElse(null));
 	}
 	
+	@Test
+	public void test_copyAtCursor() throws BlueDbException {
+		Range allInclusiveRange = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(sortedChangeSupplier.seekToNextChangeInRange(allInclusiveRange));
+		assertTrue(sortedChangeSupplier.seekToNextChangeInRange(allInclusiveRange));
+		
+		try(SortedChangeSupplier<? extends Serializable> copy = sortedChangeSupplier.copyAtCursor()) {
+			assertEquals(change2_10to60, copy.getNextChange().orElse(null));
+			assertTrue(copy.seekToNextChangeInRange(new Range(150, 200)));
+			assertEquals(change8_150to165, copy.getNextChange().orElse(null));
+			
+			//Moving the copy doesn't move the original
+			assertEquals(change2_10to60, sortedChangeSupplier.getNextChange().orElse(null));
+			assertTrue(sortedChangeSupplier.seekToNextChangeInRange(allInclusiveRange));
+			assertEquals(change3_10To50, sortedChangeSupplier.getNextChange().orElse(null));
+			assertEquals(change8_150to165, copy.getNextChange().orElse(null));
+		}
+		
+		assertTrue(sortedChangeSupplier.seekToNextChangeInRange(allInclusiveRange));
+		assertEquals(change4_15_to75, sortedChangeSupplier.getNextChange().orElse(null));
+	}
+	
 	@Test
 	public void test_iterationByRangeWorks() throws BlueDbException {
 		Range range = new Range(0, 9);
@@ -0,0 +1,151 @@
+package org.bluedb.disk.recovery;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.ReadWriteCollectionOnDisk;
+import org.bluedb.disk.file.DurabilityLevel;
+import org.bluedb.disk.file.FileSyncer;
+import org.junit.Test;
+
+public class WriteAheadLogTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_appendAndCommit_survivesReopening() throws Exception {
+		Path logPath = createTempFolder().toPath().resolve("wal");
+		WriteAheadLog log = new WriteAheadLog(logPath, getSerializer(), null);
+		TestRecoverable change1 = createChange(1, 1);
+		TestRecoverable change2 = createChange(2, 2);
+		log.append(change1);
+		log.append(change2);
+		assertEquals(2, log.getPendingChanges().size());
+
+		assertTrue(log.commit(change1));
+		assertFalse(log.commit(change1));
+		assertFalse(log.commit(createChange(3, 3)));
+
+		WriteAheadLog reopenedLog = new WriteAheadLog(logPath, getSerializer(), null);
+		List<Recoverable<?>> pendingChanges = reopenedLog.getPendingChanges();
+		assertEquals(1, pendingChanges.size());
+		assertEquals(change2.getTimeCreated(), pendingChanges.get(0).getTimeCreated());
+		assertEquals(change2.getRecoverableId(), pendingChanges.get(0).getRecoverableId());
+		assertEquals(2, reopenedLog.getChangeHistory(0, Long.MAX_VALUE).size());
+	}
+
+	@Test
+	public void test_append_withDurability() throws Exception {
+		Path logPath = createTempFolder().toPath().resolve("wal");
+		FileSyncer fileSyncer = new FileSyncer(DurabilityLevel.GROUP_FSYNC, 0);
+		WriteAheadLog log = new WriteAheadLog(logPath, getSerializer(), null, fileSyncer);
+		TestRecoverable change = createChange(1, 1);
+		log.append(change);
+		assertTrue(fileSyncer.getCompletedGroupCount() >= 2); // the new segment's folder and the append
+		assertTrue(log.commit(change));
+		assertEquals(0, new WriteAheadLog(logPath, getSerializer(), null).getPendingChanges().size());
+	}
+
+	@Test
+	public void test_reopening_ignoresTornRecord() throws Exception {
+		Path logPath = createTempFolder().toPath().resolve("wal");
+		WriteAheadLog log = new WriteAheadLog(logPath, getSerializer(), null);
+		log.append(createChange(1, 1));
+		long endOfFirstRecord = getEndOfFirstRecord(logPath);
+		log.append(createChange(2, 2));
+
+		File segmentFile = logPath.resolve("0" + WriteAheadLog.SEGMENT_SUFFIX).toFile();
+		try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+			file.seek(endOfFirstRecord + 20);
+			file.write(new byte[] { 7, 7, 7, 7 });
+		}
+
+		WriteAheadLog reopenedLog = new WriteAheadLog(logPath, getSerializer(), null);
+		List<Recoverable<?>> pendingChanges = reopenedLog.getPendingChanges();
+		assertEquals(1, pendingChanges.size());
+		assertEquals(1, pendingChanges.get(0).getTimeCreated());
+
+		TestRecoverable change3 = createChange(3, 3);
+		reopenedLog.append(change3);
+		assertEquals(2, new WriteAheadLog(logPath, getSerializer(), null).getPendingChanges().size());
+	}
+
+	@Test
+	public void test_recycleSegments() throws Exception {
+		Path logPath = createTempFolder().toPath().resolve("wal");
+		WriteAheadLog log = new WriteAheadLog(logPath, getSerializer(), null, 256);
+		for (int i = 0; i < 20; i++) {
+			TestRecoverable change = createChange(i, i);
+			log.append(change);
+			log.commit(change);
+		}
+		int segmentCount = log.getSegmentCount();
+		assertTrue(segmentCount > 3);
+
+		TestRecoverable pendingChange = createChange(100, 100);
+		log.append(pendingChange);
+		log.recycleSegments(2);
+		assertTrue(log.getSegmentCount() < segmentCount);
+		assertTrue(log.getChangeHistory(0, Long.MAX_VALUE).size() >= 3);
+		assertEquals(1, log.getPendingChanges().size());
+
+		int filesAfterRecycling = logPath.toFile().listFiles().length;
+		for (int i = 200; i < 220; i++) {
+			TestRecoverable change = createChange(i, i);
+			log.append(change);
+			log.commit(change);
+		}
+		log.commit(pendingChange);
+		log.recycleSegments(2);
+		assertTrue(logPath.toFile().listFiles().length <= filesAfterRecycling);
+
+		WriteAheadLog reopenedLog = new WriteAheadLog(logPath, getSerializer(), null, 256);
+		assertEquals(0, reopenedLog.getPendingChanges().size());
+		assertEquals(log.getChangeHistory(0, Long.MAX_VALUE).size(), reopenedLog.getChangeHistory(0, Long.MAX_VALUE).size());
+	}
+
+	@Test
+	public void test_recoveryManager_recoversLoggedChanges() throws Exception {
+		ReadWriteCollectionOnDisk<TestValue> collection = getLongCollection();
+		RecoveryManager<TestValue> recoveryManager = collection.getRecoveryManager();
+		recoveryManager.setWriteAheadLogEnabled(true);
+
+		BlueKey key = new LongKey(1);
+		TestValue value = new TestValue("Joe");
+		List<IndividualChange<TestValue>> changes = Arrays.asList(IndividualChange.createInsertChange(key, value));
+		Recoverable<TestValue> change = recoveryManager.saveMassChangeForUnorderedChanges(changes.iterator());
+		assertTrue(change instanceof PendingBatchChange);
+		assertEquals(0, recoveryManager.getPendingChangeFiles().size());
+		assertEquals(1, recoveryManager.getPendingChanges().size());
+		assertNull(collection.get(key));
+
+		recoveryManager.recover();
+		assertEquals(value, collection.get(key));
+		assertEquals(0, recoveryManager.getPendingChanges().size());
+		assertEquals(1, recoveryManager.getLoggedChangeHistory(0, Long.MAX_VALUE).size());
+
+		collection.insert(new LongKey(2), value);
+		assertEquals(value, collection.get(new LongKey(2)));
+		assertEquals(0, recoveryManager.getPendingChanges().size());
+		assertEquals(0, recoveryManager.getChangeHistory(0, Long.MAX_VALUE).size());
+		assertEquals(2, recoveryManager.getLoggedChangeHistory(0, Long.MAX_VALUE).size());
+	}
+
+	private long getEndOfFirstRecord(Path logPath) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(logPath.resolve("0" + WriteAheadLog.SEGMENT_SUFFIX).toFile(), "r")) {
+			int firstBodyLength = file.readInt();
+			return 8 + firstBodyLength;
+		}
+	}
+
+	private TestRecoverable createChange(long timeCreated, long recoverableId) {
+		TestRecoverable change = new TestRecoverable(timeCreated);
+		change.setRecoverableId(recoverableId);
+		return change;
+	}
+}
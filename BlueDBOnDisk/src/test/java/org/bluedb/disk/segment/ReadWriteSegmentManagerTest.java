@@ -1,7 +1,9 @@
 package org.bluedb.disk.segment;
 
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
@@ -35,6 +37,35 @@ public class ReadWriteSegmentManagerTest extends BlueDbDiskTestBase {
 		assertEquals(timePaths, segmentPaths);
 	}
 
+	@Test
+	public void test_applyChanges_inParallel() throws Exception {
+		assertNotNull(getSegmentManager().getSegmentTaskExecutor());
+		
+		long segmentSize = getSegmentManager().getSegmentSize();
+		int segmentCount = 20;
+		Map<BlueKey, TestValue> values = new HashMap<>();
+		for(int i = 0; i < segmentCount * 5; i++) {
+			long time = (i % segmentCount) * segmentSize + i;
+			values.put(new TimeKey(i, time), new TestValue("Joe" + i, i));
+		}
+		getTimeCollection().batchUpsert(values);
+		
+		assertEquals(segmentCount, getSegmentManager().getAllExistingSegments().size());
+		for(Map.Entry<BlueKey, TestValue> entry : values.entrySet()) {
+			assertEquals(entry.getValue(), getTimeCollection().get(entry.getKey()));
+		}
+		
+		getSegmentManager().setSegmentTaskExecutor(null);
+		Map<BlueKey, TestValue> updatedValues = new HashMap<>();
+		for(Map.Entry<BlueKey, TestValue> entry : values.entrySet()) {
+			updatedValues.put(entry.getKey(), entry.getValue().cloneWithNewCupcakeCount(1000));
+		}
+		getTimeCollection().batchUpsert(updatedValues);
+		for(Map.Entry<BlueKey, TestValue> entry : updatedValues.entrySet()) {
+			assertEquals(entry.getValue(), getTimeCollection().get(entry.getKey()));
+		}
+	}
+
 	@Test
 	public void test_getExistingSegments() throws InterruptedException {
 		long minTime = 0;
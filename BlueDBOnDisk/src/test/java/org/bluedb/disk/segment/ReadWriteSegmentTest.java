@@ -1,6 +1,7 @@
 package org.bluedb.disk.segment;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -8,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -20,8 +22,14 @@ import org.bluedb.api.keys.TimeKey;
 import org.bluedb.disk.BlueDbDiskTestBase;
 import org.bluedb.disk.TestValue;
 import org.bluedb.disk.collection.ReadWriteCollectionOnDisk;
+import org.bluedb.disk.encryption.EncryptionServiceWrapper;
+import org.bluedb.disk.file.BlueObjectOutput;
+import org.bluedb.disk.file.ChunkBloomFilter;
+import org.bluedb.disk.file.ChunkDeltas;
+import org.bluedb.disk.file.ChunkStatistics;
 import org.bluedb.disk.file.ReadWriteFileManager;
 import org.bluedb.disk.file.FileUtils;
+import org.bluedb.disk.file.SparseKeyIndex;
 import org.bluedb.disk.lock.BlueWriteLock;
 import org.bluedb.disk.recovery.InMemorySortedChangeSupplier;
 import org.bluedb.disk.recovery.IndividualChange;
@@ -29,6 +37,7 @@ import org.bluedb.disk.recovery.PendingRollup;
 import org.bluedb.disk.recovery.SortedChangeSupplier;
 import org.bluedb.disk.segment.rollup.RollupTarget;
 import org.bluedb.disk.segment.rollup.Rollupable;
+import org.bluedb.disk.serialization.BlueEntity;
 
 public class ReadWriteSegmentTest extends BlueDbDiskTestBase {
 
@@ -838,6 +847,296 @@ public class ReadWriteSegmentTest extends BlueDbDiskTestBase {
 		assertEquals(5, getTimeCollection().query().where(value -> "Weston".equals(value.getName())).getList().get(0).getCupcakes());
 	}
 
+	@Test
+	public void test_applyChanges_appendsChunkDeltas() throws Exception {
+		ReadWriteSegment<TestValue> baseSegment = getSegment();
+		Rollupable rollupable = Mockito.mock(ReadWriteCollectionOnDisk.class);
+		ChunkDeltaPolicy appendToAnyChunk = new ChunkDeltaPolicy(true, 1, 1000);
+		ReadWriteSegment<TestValue> segment = new ReadWriteSegment<>(baseSegment.getPath(), baseSegment.getRange(), rollupable, getFileManager(), baseSegment.rollupLevels, appendToAnyChunk);
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key2At1 = createKey(2, 1);
+		BlueKey key3At1 = createKey(3, 1);
+		TestValue value1 = createValue("Anna");
+		TestValue value2 = createValue("Bob");
+		TestValue value3 = createValue("Chuck");
+		TestValue value1Updated = createValue("Anna Updated");
+
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key1At1, value1), IndividualChange.createInsertChange(key2At1, value2)));
+		Path chunkPath = segment.getPathFor(1);
+		Path deltaPath = ChunkDeltas.getDeltaPath(chunkPath);
+		long chunkSize = FileUtils.size(chunkPath);
+		assertFalse(FileUtils.exists(deltaPath));
+
+		IndividualChange<TestValue> update1 = IndividualChange.manuallyCreateTestChange(key1At1, value1, value1Updated, Optional.empty());
+		IndividualChange<TestValue> delete2 = IndividualChange.manuallyCreateTestChange(key2At1, value2, null, Optional.empty());
+		segment.applyChanges(toSortedChanges(update1));
+		segment.applyChanges(toSortedChanges(delete2));
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key3At1, value3)));
+		assertTrue(FileUtils.exists(deltaPath));
+		assertEquals(chunkSize, FileUtils.size(chunkPath));
+		assertEquals(Arrays.asList(value1Updated, value3), getSegmentContents(segment));
+		assertEquals(value1Updated, segment.get(key1At1));
+		assertFalse(segment.contains(key2At1));
+		assertEquals(value3, segment.get(key3At1));
+		assertEquals(1, ReadWriteSegment.getAllFileRangesInOrder(segment.getPath()).size());
+		Mockito.verify(rollupable, Mockito.atLeastOnce()).reportWrites(Mockito.anyList());
+
+		Range chunkRange = Range.fromUnderscoreDelmimitedString(chunkPath.toFile().getName());
+		segment.rollup(chunkRange);
+		assertFalse(FileUtils.exists(deltaPath));
+		assertEquals(Arrays.asList(value1Updated, value3), getSegmentContents(segment));
+	}
+
+	@Test
+	public void test_applyChanges_chunkDeltasFoldedByFullRewrite() throws Exception {
+		ReadWriteSegment<TestValue> baseSegment = getSegment();
+		ChunkDeltaPolicy appendToAnyChunk = new ChunkDeltaPolicy(true, 1, 1000);
+		ReadWriteSegment<TestValue> deltaSegment = new ReadWriteSegment<>(baseSegment.getPath(), baseSegment.getRange(), null, getFileManager(), baseSegment.rollupLevels, appendToAnyChunk);
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key2At1 = createKey(2, 1);
+		TestValue value1 = createValue("Anna");
+		TestValue value2 = createValue("Bob");
+
+		deltaSegment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key1At1, value1)));
+		deltaSegment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key2At1, value2)));
+		Path deltaPath = ChunkDeltas.getDeltaPath(deltaSegment.getPathFor(1));
+		assertTrue(FileUtils.exists(deltaPath));
+
+		IndividualChange<TestValue> delete1 = IndividualChange.manuallyCreateTestChange(key1At1, value1, null, Optional.empty());
+		baseSegment.applyChanges(toSortedChanges(delete1));
+		assertFalse(FileUtils.exists(deltaPath));
+		assertEquals(Arrays.asList(value2), getSegmentContents(baseSegment));
+	}
+
+	@Test
+	public void test_getEntity_sparseKeyIndex() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		List<IndividualChange<TestValue>> changes = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			changes.add(IndividualChange.createInsertChange(createKey(i, i * 2), createValue("Value " + i)));
+		}
+		segment.applyChanges(new InMemorySortedChangeSupplier<TestValue>(changes, new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+
+		Path chunkPath = segment.getPathFor(0);
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			assertNotNull(sparseKeyIndex);
+			assertTrue(sparseKeyIndex.size() > 1);
+		}
+
+		for (int i = 0; i < 200; i++) {
+			assertEquals(createValue("Value " + i), segment.get(createKey(i, i * 2)));
+			assertNull(segment.get(createKey(1000 + i, i * 2 + 1)));
+			assertNull(segment.get(createKey(1000 + i, i * 2)));
+		}
+		assertNull(segment.get(createKey(1000, -1)));
+		assertEquals(200, getSegmentContents(segment).size());
+	}
+
+	@Test
+	public void test_getEntities_sparseKeyIndex() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		List<IndividualChange<TestValue>> changes = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			changes.add(IndividualChange.createInsertChange(createKey(i, i * 2), createValue("Value " + i)));
+		}
+		segment.applyChanges(new InMemorySortedChangeSupplier<TestValue>(changes, new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+
+		List<BlueKey> keys = Arrays.asList(createKey(1000, -1), createKey(150, 300), createKey(1001, 301), createKey(160, 320), createKey(199, 398));
+		List<BlueEntity<TestValue>> entities = segment.getEntities(keys);
+		assertEquals(3, entities.size());
+		assertEquals(createValue("Value 150"), entities.get(0).getValue());
+		assertEquals(createValue("Value 160"), entities.get(1).getValue());
+		assertEquals(createValue("Value 199"), entities.get(2).getValue());
+
+		assertEquals(0, segment.getEntities(Arrays.asList(createKey(1000, 2), createKey(1001, 3))).size());
+		assertEquals(0, segment.getEntities(new ArrayList<>()).size());
+	}
+
+	@Test
+	public void test_getEntity_chunkWithoutSparseKeyIndex() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		Path chunkPath = Paths.get(segment.getPath().toString(), segment.getRange().toUnderscoreDelimitedString());
+		try (BlueObjectOutput<BlueEntity<TestValue>> output = getFileManager().getBlueOutputStream(getFileManager().getLockManager().acquireWriteLock(chunkPath))) {
+			for (int i = 0; i < 100; i++) {
+				output.write(new BlueEntity<TestValue>(createKey(i, i), createValue("Value " + i)));
+			}
+		}
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			assertNull(SparseKeyIndex.readIfExists(file));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(createValue("Value " + i), segment.get(createKey(i, i)));
+		}
+		assertNull(segment.get(createKey(1000, 50)));
+
+		segment.insert(createKey(1000, 50), createValue("Inserted"));
+		assertNull(ChunkBloomFilter.loadIfExists(chunkPath));  // the copied keys aren't known
+		assertEquals(createValue("Inserted"), segment.get(createKey(1000, 50)));
+		assertEquals(createValue("Value 50"), segment.get(createKey(50, 50)));
+	}
+
+	@Test
+	public void test_getEntity_bloomFilter() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		List<IndividualChange<TestValue>> changes = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			changes.add(IndividualChange.createInsertChange(createKey(i, i), createValue("Value " + i)));
+		}
+		segment.applyChanges(new InMemorySortedChangeSupplier<TestValue>(changes, new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+
+		Path chunkPath = segment.getPathFor(0);
+		ChunkBloomFilter bloomFilter = ChunkBloomFilter.loadIfExists(chunkPath);
+		assertNotNull(bloomFilter);
+		assertEquals(50, bloomFilter.getKeyCount());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(createValue("Value " + i), segment.get(createKey(i, i)));
+			assertNull(segment.get(createKey(1000 + i, i)));
+		}
+
+		segment.insert(createKey(1000, 10), createValue("Inserted"));
+		assertEquals(51, ChunkBloomFilter.loadIfExists(chunkPath).getKeyCount());
+		assertEquals(createValue("Inserted"), segment.get(createKey(1000, 10)));
+
+		try (BlueObjectOutput<BlueEntity<TestValue>> output = getFileManager().getChunkOutputStream(getFileManager().getLockManager().acquireWriteLock(chunkPath))) {
+			output.write(new BlueEntity<TestValue>(createKey(10, 10), createValue("Value 10")));
+			output.setBloomFilter(ChunkBloomFilter.create(0));
+		}
+		assertNull(segment.get(createKey(10, 10)));  // proves that the filter is what answers the lookup
+		assertEquals(Arrays.asList(createValue("Value 10")), getSegmentContents(segment));
+	}
+
+	@Test
+	public void test_rollup_rebuildsBloomFilter() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key3At3 = createKey(3, 3);
+		segment.insert(key1At1, createValue("Anna"));
+		segment.insert(key3At3, createValue("Chuck"));
+		assertEquals(1, ChunkBloomFilter.loadIfExists(segment.getPathFor(1)).getKeyCount());
+		assertEquals(1, ChunkBloomFilter.loadIfExists(segment.getPathFor(3)).getKeyCount());
+
+		Range rollupRange = new Range(0, getTimeCollection().getSegmentManager().getSegmentSize() - 1);
+		segment.rollup(rollupRange);
+		assertEquals(1, countFiles(segment));
+		Path rolledUpPath = Paths.get(segment.getPath().toString(), rollupRange.toUnderscoreDelimitedString());
+		ChunkBloomFilter bloomFilter = ChunkBloomFilter.loadIfExists(rolledUpPath);
+		assertNotNull(bloomFilter);
+		assertEquals(2, bloomFilter.getKeyCount());
+		assertTrue(bloomFilter.mightContain(key1At1));
+		assertTrue(bloomFilter.mightContain(key3At3));
+		assertEquals(createValue("Anna"), segment.get(key1At1));
+		assertEquals(createValue("Chuck"), segment.get(key3At3));
+		assertNull(segment.get(createKey(2, 2)));
+	}
+
+	@Test
+	public void test_applyChanges_chunkDeltasBypassBloomFilter() throws Exception {
+		ReadWriteSegment<TestValue> baseSegment = getSegment();
+		ChunkDeltaPolicy appendToAnyChunk = new ChunkDeltaPolicy(true, 1, 1000);
+		ReadWriteSegment<TestValue> segment = new ReadWriteSegment<>(baseSegment.getPath(), baseSegment.getRange(), null, getFileManager(), baseSegment.rollupLevels, appendToAnyChunk);
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key2At1 = createKey(2, 1);
+		TestValue value1 = createValue("Anna");
+		TestValue value2 = createValue("Bob");
+
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key1At1, value1)));
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key2At1, value2)));
+		Path chunkPath = segment.getPathFor(1);
+		assertTrue(FileUtils.exists(ChunkDeltas.getDeltaPath(chunkPath)));
+		assertEquals(1, ChunkBloomFilter.loadIfExists(chunkPath).getKeyCount());  // the filter doesn't cover the deltas
+		assertEquals(value2, segment.get(key2At1));
+
+		segment.rollup(Range.fromUnderscoreDelmimitedString(chunkPath.toFile().getName()));
+		assertFalse(FileUtils.exists(ChunkDeltas.getDeltaPath(chunkPath)));
+		assertEquals(2, ChunkBloomFilter.loadIfExists(chunkPath).getKeyCount());
+		assertEquals(value1, segment.get(key1At1));
+		assertEquals(value2, segment.get(key2At1));
+	}
+
+	@Test
+	public void test_applyChanges_encryptedChunksHaveNoBloomFilter() throws Exception {
+		EncryptionServiceWrapper encryptionService = Mockito.mock(EncryptionServiceWrapper.class);
+		Mockito.when(encryptionService.isEncryptionEnabled()).thenReturn(true);
+		Mockito.when(encryptionService.getCurrentEncryptionVersionKey()).thenReturn("valid-key");
+		Mockito.when(encryptionService.encryptOrThrow(Mockito.any(), Mockito.any())).thenAnswer(invocation -> invocation.getArguments()[1]);
+		Mockito.when(encryptionService.decryptOrThrow(Mockito.any(), Mockito.any())).thenAnswer(invocation -> invocation.getArguments()[1]);
+		Mockito.when(encryptionService.decryptOrReturn(Mockito.any(), Mockito.any())).thenAnswer(invocation -> invocation.getArguments()[1]);
+		ReadWriteFileManager encryptedFileManager = new ReadWriteFileManager(getSerializer(), encryptionService);
+		ReadWriteSegment<TestValue> baseSegment = getSegment();
+		ReadWriteSegment<TestValue> segment = new ReadWriteSegment<>(baseSegment.getPath(), baseSegment.getRange(), null, encryptedFileManager, baseSegment.rollupLevels);
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key2At1 = createKey(2, 1);
+		BlueKey key3At3 = createKey(3, 3);
+
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key1At1, createValue("Anna"))));
+		segment.insert(key2At1, createValue("Bob"));
+		segment.insert(key3At3, createValue("Chuck"));
+		assertNoBloomFilter(segment.getPathFor(1));
+		assertNoBloomFilter(segment.getPathFor(3));
+
+		Range rollupRange = new Range(0, getTimeCollection().getSegmentManager().getSegmentSize() - 1);
+		segment.rollup(rollupRange);
+		assertNoBloomFilter(Paths.get(segment.getPath().toString(), rollupRange.toUnderscoreDelimitedString()));
+		assertEquals(createValue("Anna"), segment.get(key1At1));
+		assertEquals(createValue("Bob"), segment.get(key2At1));
+		assertNull(segment.get(createKey(4, 1)));
+	}
+
+	private void assertNoBloomFilter(Path chunkPath) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(chunkPath.toFile(), "r")) {
+			SparseKeyIndex sparseKeyIndex = SparseKeyIndex.readIfExists(file);
+			assertNotNull(sparseKeyIndex);
+			assertNull(sparseKeyIndex.getBloomFilter());  // the filter would give away which keys are in an encrypted chunk
+		}
+	}
+
+	@Test
+	public void test_rollup_savesChunkStatistics() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment();
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key3At3 = createKey(3, 3);
+		assertNull(segment.getLastKeyFromStatistics());
+		segment.insert(key1At1, createValue("Anna"));
+		segment.insert(key3At3, createValue("Chuck"));
+		assertEquals(1, ChunkStatistics.loadIfExists(segment.getPathFor(3)).getRecordCount());
+		assertEquals(key3At3, segment.getLastKeyFromStatistics());
+
+		Range rollupRange = new Range(0, getTimeCollection().getSegmentManager().getSegmentSize() - 1);
+		segment.rollup(rollupRange);
+		ChunkStatistics statistics = ChunkStatistics.loadIfExists(Paths.get(segment.getPath().toString(), rollupRange.toUnderscoreDelimitedString()));
+		assertEquals(2, statistics.getRecordCount());
+		assertTrue(statistics.areKeysKnown());
+		assertEquals(1, statistics.getMinGroupingNumber());
+		assertEquals(3, statistics.getMaxGroupingNumber());
+		assertEquals(key3At3, segment.getLastKeyFromStatistics());
+	}
+
+	@Test
+	public void test_applyChanges_chunkDeltasBypassChunkStatistics() throws Exception {
+		ReadWriteSegment<TestValue> baseSegment = getSegment();
+		ChunkDeltaPolicy appendToAnyChunk = new ChunkDeltaPolicy(true, 1, 1000);
+		ReadWriteSegment<TestValue> segment = new ReadWriteSegment<>(baseSegment.getPath(), baseSegment.getRange(), null, getFileManager(), baseSegment.rollupLevels, appendToAnyChunk);
+		BlueKey key1At1 = createKey(1, 1);
+		BlueKey key2At1 = createKey(2, 1);
+
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key1At1, createValue("Anna"))));
+		segment.applyChanges(toSortedChanges(IndividualChange.createInsertChange(key2At1, createValue("Bob"))));
+		Path chunkPath = segment.getPathFor(1);
+		assertTrue(FileUtils.exists(ChunkDeltas.getDeltaPath(chunkPath)));
+		assertEquals(1, ChunkStatistics.loadIfExists(chunkPath).getRecordCount());  // the statistics don't cover the deltas
+		assertNull(segment.getLastKeyFromStatistics());
+		try (SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE)) {
+			assertEquals(2, iterator.countRemaining());
+		}
+	}
+
+	@SafeVarargs
+	private static SortedChangeSupplier<TestValue> toSortedChanges(IndividualChange<TestValue>...changes) {
+		return new InMemorySortedChangeSupplier<TestValue>(Arrays.asList(changes), new Range(Long.MIN_VALUE, Long.MAX_VALUE));
+	}
+
 	@Test
 	public void test_tryReportRead() {
 		ReadWriteSegment<TestValue> segment = new ReadWriteSegment<>(null, new Range(0, 1), null, null, Arrays.asList());
@@ -0,0 +1,142 @@
+package org.bluedb.disk.segment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.disk.BlueDbDiskTestBase;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.segment.path.SegmentPathManager;
+import org.junit.Test;
+
+public class SegmentCatalogTest extends BlueDbDiskTestBase {
+
+	@Test
+	public void test_getSegmentRanges_loadsExistingChunks() {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(segmentSize * 3, createValue("Sue", 3));
+
+		SegmentPathManager pathManager = getTimeSegmentManager().getPathManager();
+		SegmentCatalog catalog = new SegmentCatalog(pathManager);
+		assertFalse(catalog.isLoaded());
+		assertEquals(2, catalog.getSegmentCount());
+		assertTrue(catalog.isLoaded());
+		assertEquals(3, catalog.getChunkCount());
+
+		Range allValues = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+		List<Range> expected = pathManager.getExistingSegmentFiles(allValues).stream()
+				.map( (f) -> getTimeSegmentManager().toRange(f.toPath()) )
+				.sorted()
+				.collect(Collectors.toList());
+		assertEquals(expected, catalog.getSegmentRanges(allValues));
+		assertEquals(Arrays.asList(new Range(segmentSize * 3, segmentSize * 4 - 1)), catalog.getSegmentRanges(new Range(segmentSize, segmentSize * 3)));
+		assertEquals(Arrays.asList(), catalog.getSegmentRanges(new Range(segmentSize, segmentSize * 3 - 1)));
+	}
+
+	@Test
+	public void test_getChunkRanges() {
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+		SegmentCatalog catalog = getTimeSegmentManager().getCatalog();
+
+		List<Range> expected = segment.getOrderedFilesInRange(new Range(0, 1)).stream()
+				.map( Range::fromFileWithUnderscoreDelmimitedName )
+				.collect(Collectors.toList());
+		assertEquals(1, expected.size());
+		assertEquals(expected, catalog.getChunkRanges(segment.getRange(), new Range(0, 1)));
+		assertEquals(expected, segment.getOrderedChunkRangesInRange(new Range(0, 1)));
+		assertEquals(2, catalog.getChunkRanges(segment.getRange(), new Range(0, 2)).size());
+		assertEquals(0, catalog.getChunkRanges(segment.getRange(), new Range(3, 100)).size());
+		Range emptySegmentRange = getSegment(segment.getRange().getEnd() + 1).getRange();
+		assertEquals(0, catalog.getChunkRanges(emptySegmentRange, new Range(Long.MIN_VALUE, Long.MAX_VALUE)).size());
+	}
+
+	@Test
+	public void test_keptUpToDateByWrites() throws Exception {
+		SegmentCatalog catalog = getTimeSegmentManager().getCatalog();
+		assertEquals(0, catalog.getSegmentCount());
+
+		BlueKey key1 = insertAtTime(1, createValue("Joe", 1));
+		BlueKey key2 = insertAtTime(2, createValue("Bob", 2));
+		assertEquals(1, catalog.getSegmentCount());
+		assertEquals(2, catalog.getChunkCount());
+		assertEquals(getChunkRangesOnDisk(getSegment(1)), catalog.getChunkRanges(getSegment(1).getRange(), new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+
+		getTimeCollection().delete(key1);
+		assertEquals(1, catalog.getChunkCount());
+		getTimeCollection().delete(key2);
+		assertEquals(0, catalog.getChunkCount());
+		assertEquals(0, catalog.getSegmentCount());
+		assertEquals(0, getTimeSegmentManager().getAllExistingSegments().size());
+	}
+
+	@Test
+	public void test_keptUpToDateByRollups() throws Exception {
+		SegmentCatalog catalog = getTimeSegmentManager().getCatalog();
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		assertEquals(2, catalog.getChunkCount());
+
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+		Range rollupRange = Range.forValueAndRangeSize(0, segment.getMinimumRollupSizeBeforeBatch());
+		segment.rollup(rollupRange);
+		assertEquals(Arrays.asList(rollupRange), catalog.getChunkRanges(segment.getRange(), new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+		assertEquals(getChunkRangesOnDisk(segment), catalog.getChunkRanges(segment.getRange(), new Range(Long.MIN_VALUE, Long.MAX_VALUE)));
+		assertEquals(2, getTimeCollection().query().getList().size());
+	}
+
+	@Test
+	public void test_getPathFor() throws Exception {
+		insertAtTime(1, createValue("Joe", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+		Range rollupRange = Range.forValueAndRangeSize(0, segment.getMinimumRollupSizeBeforeBatch());
+		Path rolledUpPath = Paths.get(segment.getPath().toString(), rollupRange.toUnderscoreDelimitedString());
+		assertEquals(Paths.get(segment.getPath().toString(), "1_1"), segment.getPathFor(1));
+		assertEquals(Paths.get(segment.getPath().toString(), "3_3"), segment.getPathFor(3));
+
+		Files.createFile(rolledUpPath);  // written behind the catalog's back
+		ReadWriteSegment<TestValue> segmentWithoutCatalog = new ReadWriteSegment<>(segment.getPath(), segment.getRange(), null, getFileManager(), getTimeSegmentManager().getPathManager().getRollupLevels());
+		assertEquals(rolledUpPath, segmentWithoutCatalog.getPathFor(3));
+		assertEquals(Paths.get(segment.getPath().toString(), "3_3"), segment.getPathFor(3));
+		getTimeSegmentManager().getCatalog().reload();
+		assertEquals(rolledUpPath, segment.getPathFor(3));
+		Files.delete(rolledUpPath);
+		getTimeSegmentManager().getCatalog().reload();
+
+		segment.rollup(rollupRange);
+		assertEquals(rolledUpPath, segment.getPathFor(1));
+		assertEquals(rolledUpPath, segment.getPathFor(3));
+		assertEquals(createValue("Joe", 1), getTimeCollection().query().where(v -> v.getCupcakes() == 1).getList().get(0));
+	}
+
+	@Test
+	public void test_addChunk_beforeLoad() {
+		long segmentSize = getTimeSegmentManager().getSegmentSize();
+		SegmentCatalog catalog = new SegmentCatalog(getTimeSegmentManager().getPathManager());
+		Range segmentRange = new Range(0, segmentSize - 1);
+		catalog.addChunk(segmentRange, new Range(0, 0));  // loading will find anything that was added before it
+		assertEquals(0, catalog.getChunkCount());
+
+		catalog.addChunk(segmentRange, new Range(0, 0));
+		catalog.addChunk(segmentRange, new Range(1, 1));
+		assertEquals(2, catalog.getChunkCount());
+		catalog.removeChunk(segmentRange, new Range(0, 0));
+		assertEquals(Arrays.asList(new Range(1, 1)), catalog.getChunkRanges(segmentRange, new Range(0, 10)));
+
+		catalog.reload();
+		assertFalse(catalog.isLoaded());
+		assertEquals(0, catalog.getChunkCount());
+	}
+
+	private List<Range> getChunkRangesOnDisk(ReadWriteSegment<TestValue> segment) {
+		return ReadableSegment.getAllFileRangesInOrder(segment.getPath());
+	}
+}
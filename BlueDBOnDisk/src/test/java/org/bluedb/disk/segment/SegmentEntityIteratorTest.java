@@ -4,10 +4,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.bluedb.api.BlueCollectionVersion;
 import org.bluedb.api.exceptions.BlueDbException;
@@ -20,6 +22,7 @@ import org.bluedb.disk.file.BlueObjectInput;
 import org.bluedb.disk.file.BlueObjectOutput;
 import org.bluedb.disk.serialization.BlueEntity;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class SegmentEntityIteratorTest extends BlueDbDiskTestBase {
 
@@ -173,6 +176,7 @@ public class SegmentEntityIteratorTest extends BlueDbDiskTestBase {
 		Range rangeToRemove = new Range(2,2);
 		Path pathToRemove = Paths.get(segment.getPath().toString(), rangeToRemove.toUnderscoreDelimitedString());
 		assertTrue(pathToRemove.toFile().delete());
+		getTimeCollection().getSegmentManager().getCatalog().reload(); // a real rollup keeps the catalog up to date
 
 		// add the remaining items
 		while (iterator.hasNext()) {
@@ -280,6 +284,348 @@ public class SegmentEntityIteratorTest extends BlueDbDiskTestBase {
 	}
 
 
+	@Test
+	public void test_countRemaining() throws Exception {
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(3, createValue("Chuck", 3));
+		insertAtTimeFrame(2, 10, createValue("Dan", 4));
+
+		List<Range> ranges = Arrays.asList(new Range(Long.MIN_VALUE, Long.MAX_VALUE), new Range(0, 0), new Range(1, 2), new Range(3, 5), new Range(4, 20), new Range(11, 20));
+		for (Range range : ranges) {
+			SegmentEntityIterator<TestValue> iterator = segment.getIterator(range.getStart(), range.getEnd());
+			int expected = toList(iterator).size();
+			iterator.close();
+
+			iterator = segment.getIterator(range.getStart(), range.getEnd());
+			assertEquals(expected, iterator.countRemaining());
+			assertFalse(iterator.hasNext());
+			iterator.close();
+		}
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(iterator.hasNext());
+		iterator.next();
+		assertTrue(iterator.hasNext());
+		assertEquals(3, iterator.countRemaining());
+		iterator.close();
+		try {
+			iterator.countRemaining();
+			fail();
+		} catch(RuntimeException e) {
+			//Should be thrown
+		}
+	}
+
+	@Test
+	public void test_countRemaining_withoutDeserializing() throws Exception {
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		ReadWriteSegment<TestValue> segment = Mockito.spy(getSegment(1));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		Mockito.doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			BlueObjectInput<BlueEntity<TestValue>> input = Mockito.spy((BlueObjectInput<BlueEntity<TestValue>>) invocation.callRealMethod());
+			inputs.add(input);
+			return input;
+		}).when(segment).getObjectInputFor(Mockito.anyLong());
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(2, iterator.countRemaining());
+		iterator.close();
+		assertEquals(2, inputs.size());
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs) {
+			Mockito.verify(input, Mockito.never()).next();
+			Mockito.verify(input, Mockito.never()).peek();
+		}
+	}
+
+	@Test
+	public void test_countRemaining_fromStatistics() throws Exception {
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(2, createValue("Chuck", 3));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(3, iterator.countRemaining());
+		iterator.close();
+		assertEquals(2, inputs.size());
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs) {
+			Mockito.verify(input, Mockito.never()).nextRawBytesWithoutDeserializing();
+			Mockito.verify(input, Mockito.never()).peek();
+		}
+	}
+
+	@Test
+	public void test_skipsChunksOutsideRangeUsingStatistics() throws Exception {
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTimeFrame(3, 10, createValue("Chuck", 3));
+		insertAtTime(4, createValue("Dan", 4));
+		insertAtTime(20, createValue("Ed", 5));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(5, 8);
+		assertEquals(Arrays.asList(createValue("Chuck", 3)), toValueList(iterator));
+		iterator.close();
+		assertEquals(4, inputs.size());  // the chunk at 20 doesn't overlap the range so it isn't opened at all
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs) {
+			if (input.getPath().getFileName().toString().equals("3_3")) {
+				Mockito.verify(input, Mockito.atLeastOnce()).peekKey();  // the time frame could overlap the range so it has to be read
+			} else {
+				Mockito.verify(input, Mockito.never()).peekKey();
+			}
+		}
+	}
+
+	@Test
+	public void test_keyFilter() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Anna", 1));
+		BlueKey key2 = insertAtTime(2, createValue("Bob", 2));
+		BlueKey key3 = insertAtTime(3, createValue("Chuck", 3));
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(0, 10);
+		iterator.setKeyFilter(key -> !key.equals(key2));
+		assertEquals(Arrays.asList(createValue("Anna", 1), createValue("Chuck", 3)), toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(0, 10);
+		iterator.setKeyFilter(key -> key.equals(key1) || key.equals(key3));
+		assertEquals(2, iterator.countRemaining());
+		iterator.close();
+	}
+
+	@Test
+	public void test_keysOnly() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Anna", 1));
+		BlueKey key2 = insertAtTimeFrame(2, 10, createValue("Bob", 2));
+		insertAtTime(20, createValue("Chuck", 3));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(0, 10);
+		iterator.setKeysOnly(true);
+		List<BlueKey> keys = new ArrayList<>();
+		while (iterator.hasNext()) {
+			BlueEntity<TestValue> entity = iterator.next();
+			assertNull(entity.getValue());
+			keys.add(entity.getKey());
+		}
+		iterator.close();
+		assertEquals(Arrays.asList(key1, key2), keys);
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs) {
+			Mockito.verify(input, Mockito.never()).next();
+			Mockito.verify(input, Mockito.never()).peek();
+		}
+	}
+
+	@Test
+	public void test_skip() throws Exception {
+		BlueKey key2 = insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(3, createValue("Chuck", 3));
+		insertAtTime(4, createValue("Dan", 4));
+		insertAtTime(5, createValue("Ed", 5));
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(0, 10);
+		assertEquals(0, iterator.skip(0));
+		assertEquals(2, iterator.skip(2));
+		assertEquals(createValue("Chuck", 3), iterator.next().getValue());
+		assertTrue(iterator.hasNext());
+		assertEquals(2, iterator.skip(5));  // the record that hasNext read counts as skipped
+		assertFalse(iterator.hasNext());
+		iterator.close();
+
+		iterator = segment.getIterator(0, 10);
+		iterator.setKeyFilter(key -> !key.equals(key2));
+		assertEquals(1, iterator.skip(1));
+		assertEquals(createValue("Chuck", 3), iterator.next().getValue());
+		iterator.close();
+		try {
+			iterator.skip(1);
+			fail();
+		} catch(RuntimeException e) {
+			//Should be thrown
+		}
+	}
+
+	@Test
+	public void test_skip_usesStatisticsForWholeChunks() throws Exception {
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(3, createValue("Chuck", 3));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(2, iterator.skip(2));
+		assertEquals(createValue("Chuck", 3), iterator.next().getValue());
+		iterator.close();
+		assertEquals(3, inputs.size());
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs.subList(0, 2)) {
+			Mockito.verify(input, Mockito.never()).peekKey();
+			Mockito.verify(input, Mockito.never()).nextRawBytesWithoutDeserializing();
+		}
+	}
+
+	@Test
+	public void test_setStartAfterKey() throws Exception {
+		BlueKey key1 = createKey(1, 2);
+		BlueKey key2 = createKey(2, 2);
+		insertAtTime(1, createValue("Anna", 1));
+		getTimeCollection().insert(key1, createValue("Bob", 2));
+		getTimeCollection().insert(key2, createValue("Chuck", 3));
+		insertAtTime(3, createValue("Dan", 4));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		iterator.setStartAfterKey(key1);
+		assertEquals(Arrays.asList(createValue("Chuck", 3), createValue("Dan", 4)), toValueList(iterator));
+		iterator.close();
+		assertTrue(inputs.stream().noneMatch(input -> input.getPath().getFileName().toString().equals("1_1")));  // the chunk before the key isn't opened
+
+		iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		iterator.setStartAfterKey(createKey(0, 2));  // a key that isn't in the segment
+		assertEquals(3, iterator.countRemaining());
+		iterator.close();
+
+		iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		iterator.setStartAfterKey(key2);
+		assertEquals(1, iterator.countRemaining());
+		iterator.close();
+	}
+
+	@Test
+	public void test_setDescending() throws Exception {
+		BlueKey key1 = insertAtTime(1, createValue("Anna", 1));
+		BlueKey key2 = insertAtTime(2, createValue("Bob", 2));
+		BlueKey key3 = insertAtTime(3, createValue("Chuck", 3));
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(0, 10);
+		iterator.setDescending(true);
+		assertEquals(Arrays.asList(createValue("Chuck", 3), createValue("Bob", 2), createValue("Anna", 1)), toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(0, 2);
+		iterator.setDescending(true);
+		iterator.setKeysOnly(true);
+		assertEquals(Arrays.asList(key2, key1), toList(iterator).stream().map(BlueEntity::getKey).collect(Collectors.toList()));
+		iterator.close();
+
+		iterator = segment.getIterator(0, 10);
+		iterator.setDescending(true);
+		iterator.setStartAfterKey(key3);
+		assertEquals(Arrays.asList(createValue("Bob", 2), createValue("Anna", 1)), toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(1, 0, 10, false);  // the records up to the completed grouping number were returned with the segment before
+		iterator.setDescending(true);
+		assertEquals(Arrays.asList(createValue("Chuck", 3), createValue("Bob", 2)), toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(0, 10);
+		iterator.setStartAfterKey(key3);
+		try {
+			iterator.setDescending(true);
+			fail();
+		} catch (IllegalStateException e) {}
+		iterator.close();
+	}
+
+	@Test
+	public void test_setDescending_readsRolledUpChunkInBlocks() throws Exception {
+		List<TestValue> values = new ArrayList<>();
+		List<BlueKey> keys = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			TestValue value = createValue("Value" + i, i);
+			keys.add(insertAtTime(i, value));
+			values.add(value);
+		}
+		long segmentSize = getTimeCollection().getSegmentManager().getSegmentSize();
+		ReadWriteSegment<TestValue> segment = getSegment(1);
+		segment.rollup(new Range(0, segmentSize - 1));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		segment = spyOnInputs(segment, inputs);
+		List<TestValue> reversed = new ArrayList<>(values);
+		Collections.reverse(reversed);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(0, segmentSize - 1);
+		iterator.setDescending(true);
+		assertEquals(reversed, toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(10, 50);
+		iterator.setDescending(true);
+		assertEquals(reversed.subList(49, 90), toValueList(iterator));
+		iterator.close();
+
+		iterator = segment.getIterator(0, segmentSize - 1);
+		iterator.setDescending(true);
+		iterator.setStartAfterKey(keys.get(60));
+		assertEquals(reversed.subList(40, 100), toValueList(iterator));
+		iterator.close();
+
+		inputs.clear();
+		iterator = segment.getIterator(0, segmentSize - 1);
+		iterator.setDescending(true);
+		assertEquals(values.get(99), iterator.next().getValue());
+		iterator.close();
+		assertEquals(1, inputs.size());
+		Mockito.verify(inputs.get(0), Mockito.atMost(50)).peekKey();  // only the last block of the chunk was read
+	}
+
+	@Test
+	public void test_skip_descending() throws Exception {
+		insertAtTime(1, createValue("Anna", 1));
+		insertAtTime(2, createValue("Bob", 2));
+		insertAtTime(3, createValue("Chuck", 3));
+		insertAtTime(4, createValue("Dan", 4));
+		List<BlueObjectInput<BlueEntity<TestValue>>> inputs = new ArrayList<>();
+		ReadWriteSegment<TestValue> segment = spyOnInputs(getSegment(1), inputs);
+
+		SegmentEntityIterator<TestValue> iterator = segment.getIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		iterator.setDescending(true);
+		assertEquals(2, iterator.skip(2));
+		assertEquals(createValue("Bob", 2), iterator.next().getValue());
+		assertEquals(1, iterator.countRemaining());
+		iterator.close();
+		for (BlueObjectInput<BlueEntity<TestValue>> input : inputs.subList(0, 2)) {
+			Mockito.verify(input, Mockito.never()).peekKey();  // the chunks were skipped using their statistics
+		}
+
+		iterator = segment.getIterator(0, 10);
+		iterator.setDescending(true);
+		iterator.setKeyFilter(key -> key.getGroupingNumber() != 3);
+		assertEquals(1, iterator.skip(1));
+		assertEquals(createValue("Bob", 2), iterator.next().getValue());
+		iterator.close();
+	}
+
+	private static ReadWriteSegment<TestValue> spyOnInputs(ReadWriteSegment<TestValue> segment, List<BlueObjectInput<BlueEntity<TestValue>>> inputs) throws BlueDbException {
+		ReadWriteSegment<TestValue> spySegment = Mockito.spy(segment);
+		Mockito.doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			BlueObjectInput<BlueEntity<TestValue>> input = Mockito.spy((BlueObjectInput<BlueEntity<TestValue>>) invocation.callRealMethod());
+			inputs.add(input);
+			return input;
+		}).when(spySegment).getObjectInputFor(Mockito.anyLong());
+		Mockito.doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			BlueObjectInput<BlueEntity<TestValue>> input = Mockito.spy((BlueObjectInput<BlueEntity<TestValue>>) invocation.callRealMethod());
+			inputs.add(input);
+			return input;
+		}).when(spySegment).getObjectInputReadingBackwards(Mockito.anyLong(), Mockito.anyLong());
+		return spySegment;
+	}
+
 	@Test
 	public void test_insert_longs() throws Exception {
 		ReadWriteCollectionOnDisk<String> stringCollection = (ReadWriteCollectionOnDisk<String>) db().getCollectionBuilder("test_strings", LongKey.class, String.class).build();
@@ -370,6 +370,8 @@ public class BatchWriterTest {
 		Mockito.doAnswer(writeObjectMethod).when(mockOutput).write(anyObject());
 		Mockito.doAnswer(writeBytesMethod).when(mockOutput).writeBytesAndAllowEncryption(anyObject());
 		Mockito.doAnswer(writeBytesMethod).when(mockOutput).writeBytesAndForceSkipEncryption(anyObject());
+		Mockito.doAnswer(writeBytesMethod).when(mockOutput).writeBytesAndAllowEncryption(anyObject(), anyObject());
+		Mockito.doAnswer(writeBytesMethod).when(mockOutput).writeBytesAndForceSkipEncryption(anyObject(), anyObject());
 		Mockito.when(mockOutput.getMetadata()).thenReturn(new BlueFileMetadata());
 		return mockOutput;
 	}
@@ -41,8 +41,9 @@ public class UpdateWriterTest {
 		updateWriter.process(mockInput, mockOutput);
 
 		// Assert
-		verify(mockOutput, times(2)).writeBytesAndForceSkipEncryption(expected);
+		verify(mockOutput, times(2)).writeBytesAndForceSkipEncryption(expected, otherKey);
 		verify(mockOutput, never()).writeBytesAndAllowEncryption(any());
+		verify(mockOutput, never()).writeBytesAndAllowEncryption(any(), any());
 	}
 
 	@Test
@@ -74,8 +75,9 @@ public class UpdateWriterTest {
 		updateWriter.process(mockInput, mockOutput);
 
 		// Assert
-		verify(mockOutput, times(2)).writeBytesAndAllowEncryption(expected);
+		verify(mockOutput, times(2)).writeBytesAndAllowEncryption(expected, otherKey);
 		verify(mockOutput, never()).writeBytesAndForceSkipEncryption(any());
+		verify(mockOutput, never()).writeBytesAndForceSkipEncryption(any(), any());
 	}
 
 }
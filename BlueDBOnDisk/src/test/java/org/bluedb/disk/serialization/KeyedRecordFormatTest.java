@@ -0,0 +1,83 @@
+package org.bluedb.disk.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bluedb.api.keys.BlueKey;
+import org.bluedb.api.keys.LongKey;
+import org.bluedb.api.keys.TimeKey;
+import org.bluedb.disk.TestValue;
+import org.bluedb.disk.collection.config.TestDefaultConfigurationService;
+import org.bluedb.disk.metadata.BlueFileMetadata;
+import org.bluedb.disk.serialization.validation.SerializationException;
+import org.junit.Test;
+
+public class KeyedRecordFormatTest {
+
+	private final BlueSerializer serializer = new ThreadLocalFstSerializer(new TestDefaultConfigurationService(), ThreadLocalFstSerializer.getClassesToAlwaysRegister().toArray(new Class[0]));
+
+	@Test
+	public void test_toBytes() throws SerializationException {
+		BlueKey key = new TimeKey(1, 2);
+		TestValue value = new TestValue("Joe", 3);
+		byte[] bytes = KeyedRecordFormat.toBytes(serializer.serializeObjectToByteArray(key), serializer.serializeObjectToByteArray(value));
+
+		assertTrue(KeyedRecordFormat.isKeyedRecord(bytes));
+		assertEquals(key, serializer.deserializeObjectFromByteArray(KeyedRecordFormat.getKeyBytes(bytes)));
+		assertEquals(value, serializer.deserializeObjectFromByteArray(KeyedRecordFormat.getValueBytes(bytes)));
+	}
+
+	@Test
+	public void test_toBytes_nullValue() throws SerializationException {
+		BlueKey key = new LongKey(1);
+		byte[] bytes = KeyedRecordFormat.toBytes(serializer.serializeObjectToByteArray(key), serializer.serializeObjectToByteArray(null));
+		assertEquals(key, serializer.deserializeObjectFromByteArray(KeyedRecordFormat.getKeyBytes(bytes)));
+		assertNull(serializer.deserializeObjectFromByteArray(KeyedRecordFormat.getValueBytes(bytes)));
+	}
+
+	@Test
+	public void test_isKeyedRecord_serializedObjects() throws SerializationException {
+		List<Object> objects = new ArrayList<>(Arrays.asList(new BlueEntity<>(new TimeKey(1, 2), new TestValue("Joe")), new TimeKey(1, 2), new BlueFileMetadata(), "K", new byte[] { KeyedRecordFormat.MARKER }, 75, 75L, true, null));
+		for (Object object : objects) {
+			assertFalse(String.valueOf(object), KeyedRecordFormat.isKeyedRecord(serializer.serializeObjectToByteArray(object)));
+		}
+		assertFalse(KeyedRecordFormat.isKeyedRecord(null));
+		assertFalse(KeyedRecordFormat.isKeyedRecord(new byte[0]));
+	}
+
+	@Test
+	public void test_invalidRecords() throws SerializationException {
+		byte[] keyBytes = serializer.serializeObjectToByteArray(new LongKey(1));
+		byte[] bytes = KeyedRecordFormat.toBytes(keyBytes, new byte[] { 1 });
+		assertArrayEquals(keyBytes, KeyedRecordFormat.getKeyBytes(bytes));
+
+		assertInvalid(Arrays.copyOf(bytes, bytes.length - 1));  // nothing left for the value
+		assertInvalid(new byte[] { KeyedRecordFormat.MARKER, 0, 0 });
+		assertInvalid(serializer.serializeObjectToByteArray(new LongKey(1)));
+
+		byte[] negativeKeyLength = bytes.clone();
+		negativeKeyLength[1] = (byte) 0xff;
+		assertInvalid(negativeKeyLength);
+	}
+
+	private static void assertInvalid(byte[] bytes) {
+		try {
+			KeyedRecordFormat.getKeyBytes(bytes);
+			fail();
+		} catch (SerializationException e) {
+		}
+		try {
+			KeyedRecordFormat.getValueBytes(bytes);
+			fail();
+		} catch (SerializationException e) {
+		}
+	}
+}
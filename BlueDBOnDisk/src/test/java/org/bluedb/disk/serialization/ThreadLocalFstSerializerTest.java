@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -88,6 +89,12 @@ public class ThreadLocalFstSerializerTest {
 		} catch(SerializationException e) {
 		}
 		
+		try {
+			serializer.clone((Serializable) invalidObject);
+			fail(); //It should have thrown an exception
+		} catch(SerializationException e) {
+		}
+		
 		@SuppressWarnings("deprecation")
 		byte[] invalidBytes = serializer.serializeObjectToByteArrayWithoutChecks(invalidObject);
 		try {